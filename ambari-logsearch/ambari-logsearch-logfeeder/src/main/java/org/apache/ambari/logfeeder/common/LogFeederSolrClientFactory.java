@@ -48,6 +48,9 @@ public class LogFeederSolrClientFactory {
       logger.info("Using zookeepr. zkConnectString=" + zkConnectionString);
       CloudSolrClient.Builder builder = new CloudSolrClient.Builder();
       builder.withZkHost(zkConnectionString);
+      // documents are routed on the client side, and the update of each shard is sent to its leader in parallel
+      builder.sendUpdatesOnlyToShardLeaders();
+      builder.withParallelUpdates(true);
       CloudSolrClient solrClient = builder.build();
       solrClient.setDefaultCollection(collection);
       return solrClient;
@@ -131,6 +131,16 @@ public class LogFeederProps implements LogFeederProperties {
   @Value("${" + LogFeederConstants.CHECKPOINT_FOLDER_PROPERTY + ":/usr/lib/ambari-logsearch-logfeeder/conf/checkpoints}")
   public String checkpointFolder;
 
+  @LogSearchPropertyDescription(
+    name = LogFeederConstants.TAIL_THREADS_PROPERTY,
+    description = "Number of threads shared by the file inputs to read the monitored log files.",
+    examples = {"8"},
+    defaultValue = LogFeederConstants.DEFAULT_TAIL_THREADS + "",
+    sources = {LogFeederConstants.LOGFEEDER_PROPERTIES_FILE}
+  )
+  @Value("${" + LogFeederConstants.TAIL_THREADS_PROPERTY + ":" + LogFeederConstants.DEFAULT_TAIL_THREADS + "}")
+  private int tailThreads;
+
   @LogSearchPropertyDescription(
     name = LogFeederConstants.DOCKER_CONTAINER_REGISTRY_ENABLED_PROPERTY,
     description = "Enable to monitor docker containers and store their metadata in an in-memory registry.",
@@ -304,6 +314,14 @@ public class LogFeederProps implements LogFeederProperties {
     this.dockerContainerRegistryEnabled = dockerContainerRegistryEnabled;
   }
 
+  public int getTailThreads() {
+    return tailThreads;
+  }
+
+  public void setTailThreads(int tailThreads) {
+    this.tailThreads = tailThreads;
+  }
+
   public boolean isUseLocalConfigs() {
     return this.useLocalConfigs;
   }
@@ -19,7 +19,6 @@
 
 package org.apache.ambari.logfeeder.filter;
 
-import com.google.gson.reflect.TypeToken;
 import oi.thekraken.grok.api.Grok;
 import oi.thekraken.grok.api.exception.GrokException;
 import org.apache.ambari.logfeeder.conf.LogFeederProps;
@@ -38,7 +37,6 @@ import org.apache.log4j.Logger;
 
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -56,11 +54,11 @@ public class FilterGrok extends Filter<LogFeederProps> {
   private String messagePattern = null;
   private String multilinePattern = null;
 
-  private Grok grokMultiline = null;
-  private Grok grokMessage = null;
+  private GrokMatcher grokMultiline = null;
+  private GrokMatcher grokMessage = null;
 
   private StringBuilder strBuff = null;
-  private String currMultilineJsonStr = null;
+  private String currMultilineStr = null;
 
   private InputMarker savedInputMarker = null;
 
@@ -70,9 +68,10 @@ public class FilterGrok extends Filter<LogFeederProps> {
   private Set<String> namedParamList = new HashSet<String>();
   private Set<String> multiLineamedParamList = new HashSet<String>();
 
-  private Type jsonType = new TypeToken<Map<String, String>>() {}.getType();
-
   private MetricData grokErrorMetric = new MetricData("filter.error.grok", false);
+  private MetricData grokTimeMetric = new MetricData("filter.grok.time_ms", false);
+  private MetricData grokSkipMetric = new MetricData("filter.grok.prefilter_skip", false);
+  private long grokTimeNanos = 0;
 
   private boolean skipOnError = false;
 
@@ -103,20 +102,22 @@ public class FilterGrok extends Filter<LogFeederProps> {
       }
       extractNamedParams(messagePattern, namedParamList);
 
-      grokMessage = new Grok();
-      loadPatterns(grokMessage);
-      grokMessage.compile(messagePattern);
+      Grok grok = new Grok();
+      loadPatterns(grok);
+      grok.compile(messagePattern);
       if (((FilterGrokDescriptor)getFilterDescriptor()).isDeepExtract()) {
-        extractNamedParams(grokMessage.getNamedRegexCollection());
+        extractNamedParams(grok.getNamedRegexCollection());
       } else {
         extractNamedParams(messagePattern, namedParamList);
       }
+      grokMessage = new GrokMatcher(grok);
       if (!StringUtils.isEmpty(multilinePattern)) {
         extractNamedParams(multilinePattern, multiLineamedParamList);
 
-        grokMultiline = new Grok();
-        loadPatterns(grokMultiline);
-        grokMultiline.compile(multilinePattern);
+        Grok multilineGrok = new Grok();
+        loadPatterns(multilineGrok);
+        multilineGrok.compile(multilinePattern);
+        grokMultiline = new GrokMatcher(multilineGrok);
       }
     } catch (Throwable t) {
       LOG.fatal("Caught exception while initializing Grok. multilinePattern=" + multilinePattern + ", messagePattern="
@@ -197,19 +198,20 @@ public class FilterGrok extends Filter<LogFeederProps> {
     }
 
     if (grokMultiline != null) {
-      String jsonStr = grokMultiline.capture(inputStr);
-      if (!"{}".equals(jsonStr) || skipOnError) {
+      boolean multilineMatch = matches(grokMultiline, inputStr);
+      if (multilineMatch || skipOnError) {
         if (strBuff != null) {
           Map<String, Object> jsonObj = Collections.synchronizedMap(new HashMap<String, Object>());
           try {
             LogFeederUtil.fillMapWithFieldDefaults(jsonObj, inputMarker, false);
-            applyMessage(strBuff.toString(), jsonObj, currMultilineJsonStr);
+            applyMessage(strBuff.toString(), jsonObj, currMultilineStr);
           } finally {
             strBuff = null;
             savedInputMarker = null;
           }
         }
-        currMultilineJsonStr = jsonStr;
+        // the fields of the first line are only extracted if the message can't be parsed
+        currMultilineStr = multilineMatch ? inputStr : "";
       }
 
       if (strBuff == null) {
@@ -239,27 +241,28 @@ public class FilterGrok extends Filter<LogFeederProps> {
     }
   }
 
-  private void applyMessage(String inputStr, Map<String, Object> jsonObj, String multilineJsonStr) throws Exception {
-    String jsonStr = grokMessage.capture(inputStr);
+  private void applyMessage(String inputStr, Map<String, Object> jsonObj, String multilineStr) throws Exception {
+    Map<String, String> jsonSrc = extract(grokMessage, inputStr);
 
     boolean parseError = false;
-    if ("{}".equals(jsonStr) && !skipOnError) {
+    if (jsonSrc == null && !skipOnError) {
       parseError = true;
       logParseError(inputStr);
 
-      if (multilineJsonStr == null) {
+      if (multilineStr == null) {
         // TODO: Should we just add this as raw message in solr?
         return;
       }
     }
 
     if (parseError) {
-      jsonStr = multilineJsonStr;
+      jsonSrc = extract(grokMultiline, multilineStr);
     }
-    Map<String, String> jsonSrc = LogFeederUtil.getGson().fromJson(jsonStr, jsonType);
-    for (String namedParam : namedParamList) {
-      if (jsonSrc.get(namedParam) != null) {
-        jsonObj.put(namedParam, jsonSrc.get(namedParam));
+    if (jsonSrc != null) {
+      for (String namedParam : namedParamList) {
+        if (jsonSrc.get(namedParam) != null) {
+          jsonObj.put(namedParam, jsonSrc.get(namedParam));
+        }
       }
     }
     if (parseError) {
@@ -279,6 +282,40 @@ public class FilterGrok extends Filter<LogFeederProps> {
     statMetric.value++;
   }
 
+  private boolean matches(GrokMatcher grokMatcher, String inputStr) {
+    if (!grokMatcher.mayMatch(inputStr)) {
+      grokSkipMetric.value++;
+      return false;
+    }
+    long startTime = System.nanoTime();
+    try {
+      return grokMatcher.matches(inputStr);
+    } finally {
+      addGrokTime(startTime);
+    }
+  }
+
+  private Map<String, String> extract(GrokMatcher grokMatcher, String inputStr) {
+    if (grokMatcher == null || inputStr == null) {
+      return null;
+    }
+    if (!grokMatcher.mayMatch(inputStr)) {
+      grokSkipMetric.value++;
+      return null;
+    }
+    long startTime = System.nanoTime();
+    try {
+      return grokMatcher.extract(inputStr, namedParamList);
+    } finally {
+      addGrokTime(startTime);
+    }
+  }
+
+  private void addGrokTime(long startTime) {
+    grokTimeNanos += System.nanoTime() - startTime;
+    grokTimeMetric.value = grokTimeNanos / 1000000;
+  }
+
   private void logParseError(String inputStr) {
     grokErrorMetric.value++;
     String logMessageKey = this.getClass().getSimpleName() + "_PARSEERROR";
@@ -293,7 +330,7 @@ public class FilterGrok extends Filter<LogFeederProps> {
     if (strBuff != null) {
       Map<String, Object> jsonObj = Collections.synchronizedMap(new HashMap<String, Object>());
       try {
-        applyMessage(strBuff.toString(), jsonObj, currMultilineJsonStr);
+        applyMessage(strBuff.toString(), jsonObj, currMultilineStr);
       } catch (Exception e) {
         LOG.error(e.getLocalizedMessage(), e.getCause());
       }
@@ -312,11 +349,15 @@ public class FilterGrok extends Filter<LogFeederProps> {
   public void addMetricsContainers(List<MetricData> metricsList) {
     super.addMetricsContainers(metricsList);
     metricsList.add(grokErrorMetric);
+    metricsList.add(grokTimeMetric);
+    metricsList.add(grokSkipMetric);
   }
 
   @Override
   public void logStat() {
     super.logStat();
     logStatForMetric(grokErrorMetric, "Stat: Grok Errors");
+    logStatForMetric(grokTimeMetric, "Stat: Grok Match Time ms");
+    logStatForMetric(grokSkipMetric, "Stat: Grok Pre-filter Skips");
   }
 }
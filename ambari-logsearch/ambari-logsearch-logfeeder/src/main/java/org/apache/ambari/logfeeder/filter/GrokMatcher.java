@@ -0,0 +1,328 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ambari.logfeeder.filter;
+
+import com.google.gson.reflect.TypeToken;
+import oi.thekraken.grok.api.Grok;
+import org.apache.ambari.logfeeder.util.LogFeederUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Matches log lines against a compiled grok pattern.
+ * <br/>
+ * Before running the regex a line is checked for the literal tokens the pattern requires outside of its groups
+ * (e.g. the brackets around the thread name), in the order they appear in the pattern, so lines which cannot match
+ * are skipped cheaply. The values of the matched groups are read directly from the regex matcher, only for the
+ * requested fields, instead of building the json of all the captures.
+ */
+class GrokMatcher {
+  private static final Logger LOG = Logger.getLogger(GrokMatcher.class);
+
+  private static final String UNWANTED = "UNWANTED";
+
+  private final Grok grok;
+  private final Pattern pattern;
+  private final List<String> requiredTokens;
+  private final boolean anchoredToStart;
+  /** field name -> names of the regex groups capturing it */
+  private final Map<String, List<String>> fieldGroups = new HashMap<>();
+
+  private final Type jsonType = new TypeToken<Map<String, String>>() {}.getType();
+
+  GrokMatcher(Grok grok) {
+    this.grok = grok;
+    String namedRegex = grok.getNamedRegex();
+    this.pattern = compile(namedRegex);
+    this.requiredTokens = pattern != null ? findRequiredTokens(namedRegex) : Collections.<String>emptyList();
+    this.anchoredToStart = pattern != null && isAnchoredToStart(namedRegex);
+
+    Map<String, String> namedRegexCollection = grok.getNamedRegexCollection();
+    if (namedRegexCollection != null) {
+      for (Map.Entry<String, String> entry : namedRegexCollection.entrySet()) {
+        if (!UNWANTED.equals(entry.getValue())) {
+          List<String> groups = fieldGroups.get(entry.getValue());
+          if (groups == null) {
+            groups = new ArrayList<>();
+            fieldGroups.put(entry.getValue(), groups);
+          }
+          groups.add(entry.getKey());
+        }
+      }
+    }
+    LOG.info("Grok pre-filter tokens=" + requiredTokens + ", anchoredToStart=" + anchoredToStart);
+  }
+
+  private Pattern compile(String namedRegex) {
+    try {
+      return Pattern.compile(namedRegex);
+    } catch (PatternSyntaxException e) {
+      LOG.warn("Couldn't compile grok regex directly, falling back to grok captures: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * @return false if the line surely doesn't match the pattern
+   */
+  boolean mayMatch(String line) {
+    if (StringUtils.isBlank(line)) {
+      return false;
+    }
+    int from = 0;
+    for (int i = 0; i < requiredTokens.size(); i++) {
+      String token = requiredTokens.get(i);
+      if (i == 0 && anchoredToStart) {
+        if (!line.startsWith(token)) {
+          return false;
+        }
+        from = token.length();
+        continue;
+      }
+      int index = line.indexOf(token, from);
+      if (index < 0) {
+        return false;
+      }
+      from = index + token.length();
+    }
+    return true;
+  }
+
+  /**
+   * @return true if the pattern matches the line
+   */
+  boolean matches(String line) {
+    if (pattern == null) {
+      return !"{}".equals(grok.capture(line));
+    }
+    return !StringUtils.isBlank(line) && pattern.matcher(line).find();
+  }
+
+  /**
+   * Extracts the values of some fields from a line.
+   *
+   * @param line line to match
+   * @param fields names of the fields to extract
+   * @return the non null values of the fields, or null if the line doesn't match the pattern
+   */
+  Map<String, String> extract(String line, Collection<String> fields) {
+    if (StringUtils.isBlank(line)) {
+      return null;
+    }
+    if (pattern == null) {
+      String jsonStr = grok.capture(line);
+      return "{}".equals(jsonStr) ? null : LogFeederUtil.getGson().<Map<String, String>>fromJson(jsonStr, jsonType);
+    }
+
+    Matcher matcher = pattern.matcher(line);
+    if (!matcher.find()) {
+      return null;
+    }
+    Map<String, String> values = new HashMap<>();
+    for (String field : fields) {
+      List<String> groups = fieldGroups.get(field);
+      if (groups == null) {
+        continue;
+      }
+      for (String group : groups) {
+        String value = matcher.group(group);
+        if (value != null) {
+          values.put(field, unquote(value));
+          break;
+        }
+      }
+    }
+    return values;
+  }
+
+  private String unquote(String value) {
+    int length = value.length();
+    if (length >= 2 && ((value.charAt(0) == '"' && value.charAt(length - 1) == '"') ||
+        (value.charAt(0) == '\'' && value.charAt(length - 1) == '\''))) {
+      return value.substring(1, length - 1);
+    }
+    return value;
+  }
+
+  /**
+   * Collects the literal strings of a regex which are not inside a group, char class or optional part, in the order
+   * they appear. Every match of the regex contains them in this order. Returns nothing if the regex has top level
+   * alternatives or flags that change how literals match.
+   */
+  static List<String> findRequiredTokens(String regex) {
+    if (regex.contains("\\Q")) {
+      return Collections.emptyList();
+    }
+    List<String> tokens = new ArrayList<>();
+    StringBuilder token = new StringBuilder();
+    int depth = 0;
+    int length = regex.length();
+    for (int i = 0; i < length; i++) {
+      char c = regex.charAt(i);
+      if (depth > 0) {
+        if (c == '\\') {
+          i++;
+        } else if (c == '[') {
+          i = skipCharClass(regex, i);
+        } else if (c == '(') {
+          depth++;
+        } else if (c == ')') {
+          depth--;
+        }
+        continue;
+      }
+
+      if (c == '\\' && i + 1 < length) {
+        char escaped = regex.charAt(++i);
+        if (Character.isLetterOrDigit(escaped)) {
+          addToken(tokens, token);
+        } else if (isQuantified(regex, i + 1)) {
+          addToken(tokens, token);
+        } else {
+          token.append(escaped);
+        }
+      } else if (c == '(') {
+        addToken(tokens, token);
+        if (regex.startsWith("(?", i) && hasCaseOrCommentsFlag(regex, i + 2)) {
+          return Collections.emptyList();
+        }
+        depth++;
+      } else if (c == '|') {
+        return Collections.emptyList();
+      } else if (c == '[') {
+        addToken(tokens, token);
+        i = skipCharClass(regex, i);
+      } else if (c == '{' && i > 0 && isQuantifierBrace(regex, i)) {
+        addToken(tokens, token);
+        i = regex.indexOf('}', i);
+      } else if ("?*+{.^$)".indexOf(c) >= 0) {
+        addToken(tokens, token);
+      } else if (isQuantified(regex, i + 1)) {
+        addToken(tokens, token);
+      } else {
+        token.append(c);
+      }
+    }
+    addToken(tokens, token);
+    return tokens;
+  }
+
+  /**
+   * @return true if the regex can only match at the start of the input, so the first token must be its prefix
+   */
+  static boolean isAnchoredToStart(String regex) {
+    int i = 0;
+    boolean multiline = false;
+    while (regex.startsWith("(?", i) && regex.indexOf(')', i) > 0) {
+      int end = regex.indexOf(')', i);
+      String flags = regex.substring(i + 2, end);
+      if (!flags.matches("[a-zA-Z-]+")) {
+        break;
+      }
+      int minus = flags.indexOf('-');
+      multiline |= (minus < 0 ? flags : flags.substring(0, minus)).indexOf('m') >= 0;
+      i = end + 1;
+    }
+    int literalStart;
+    if (regex.startsWith("\\A", i)) {
+      literalStart = i + 2;
+    } else if (!multiline && regex.startsWith("^", i)) {
+      literalStart = i + 1;
+    } else {
+      return false;
+    }
+    return literalStart < regex.length() && startsWithLiteral(regex, literalStart);
+  }
+
+  private static boolean startsWithLiteral(String regex, int i) {
+    char c = regex.charAt(i);
+    if (c == '\\') {
+      return i + 1 < regex.length() && !Character.isLetterOrDigit(regex.charAt(i + 1)) && !isQuantified(regex, i + 2);
+    }
+    return "()[]{}?*+.^$|".indexOf(c) < 0 && !isQuantified(regex, i + 1);
+  }
+
+  private static void addToken(List<String> tokens, StringBuilder token) {
+    if (token.length() > 0) {
+      tokens.add(token.toString());
+      token.setLength(0);
+    }
+  }
+
+  /**
+   * @return true if the char before the given position is made optional or repeatable by a quantifier
+   */
+  private static boolean isQuantified(String regex, int i) {
+    if (i >= regex.length()) {
+      return false;
+    }
+    char c = regex.charAt(i);
+    return c == '?' || c == '*' || c == '+' || (c == '{' && isQuantifierBrace(regex, i));
+  }
+
+  private static boolean isQuantifierBrace(String regex, int i) {
+    int end = regex.indexOf('}', i);
+    return end > i + 1 && regex.substring(i + 1, end).matches("\\d+(,\\d*)?");
+  }
+
+  private static boolean hasCaseOrCommentsFlag(String regex, int i) {
+    int end = i;
+    while (end < regex.length() && Character.isLetter(regex.charAt(end))) {
+      end++;
+    }
+    String flags = regex.substring(i, end);
+    return flags.indexOf('i') >= 0 || flags.indexOf('x') >= 0 || flags.indexOf('u') >= 0 || flags.indexOf('U') >= 0;
+  }
+
+  private static int skipCharClass(String regex, int start) {
+    int i = start + 1;
+    if (i < regex.length() && regex.charAt(i) == '^') {
+      i++;
+    }
+    if (i < regex.length() && regex.charAt(i) == ']') {
+      i++;
+    }
+    int nested = 0;
+    for (; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == '[') {
+        nested++;
+      } else if (c == ']') {
+        if (nested == 0) {
+          return i;
+        }
+        nested--;
+      }
+    }
+    return i;
+  }
+}
@@ -26,9 +26,12 @@ import org.apache.ambari.logfeeder.input.monitor.DockerLogFileUpdateMonitor;
 import org.apache.ambari.logfeeder.input.monitor.LogFileDetachMonitor;
 import org.apache.ambari.logfeeder.input.monitor.LogFilePathUpdateMonitor;
 import org.apache.ambari.logfeeder.input.reader.LogsearchReaderFactory;
+import org.apache.ambari.logfeeder.input.file.CheckpointStore;
 import org.apache.ambari.logfeeder.input.file.FileCheckInHelper;
+import org.apache.ambari.logfeeder.input.file.LogFileTailer;
 import org.apache.ambari.logfeeder.input.file.ProcessFileHelper;
 import org.apache.ambari.logfeeder.input.file.ResumeLineNumberHelper;
+import org.apache.ambari.logfeeder.input.file.TailedLogFile;
 import org.apache.ambari.logfeeder.plugin.filter.Filter;
 import org.apache.ambari.logfeeder.plugin.input.Input;
 import org.apache.ambari.logfeeder.util.FileUtil;
@@ -42,8 +45,8 @@ import org.apache.solr.common.util.Base64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.File;
+import java.nio.channels.ReadableByteChannel;
 import java.util.*;
 
 public class InputFile extends Input<LogFeederProps, InputFileMarker> {
@@ -75,16 +78,13 @@ public class InputFile extends Input<LogFeederProps, InputFileMarker> {
   private int pathUpdateIntervalMin;
   private Integer maxAgeMin;
 
-  private Map<String, File> checkPointFiles = new HashMap<>();
   private Map<String, Long> lastCheckPointTimeMSs = new HashMap<>();
   private Map<String, Map<String, Object>> jsonCheckPoints = new HashMap<>();
   private Map<String, InputFileMarker> lastCheckPointInputMarkers = new HashMap<>();
 
   private Thread thread;
-  private Thread logFileDetacherThread;
-  private Thread logFilePathUpdaterThread;
-  private Thread dockerLogFileUpdateMonitorThread;
-  private ThreadGroup threadGroup;
+  private LogFileTailer logFileTailer;
+  private CheckpointStore checkpointStore;
 
   private boolean multiFolder = false;
   private boolean dockerLog = false;
@@ -170,35 +170,26 @@ public class InputFile extends Input<LogFeederProps, InputFileMarker> {
       if (dockerLog && dockerLogParent) {
         Map<String, Map<String, DockerMetadata>> metadataMap = dockerContainerRegistry.getContainerMetadataMap();
         String logType = getLogType();
-        threadGroup = new ThreadGroup("docker-parent-" + logType);
         if (metadataMap.containsKey(logType)) {
           Map<String, DockerMetadata> dockerMetadataMap = metadataMap.get(logType);
           for (Map.Entry<String, DockerMetadata> dockerMetadataEntry : dockerMetadataMap.entrySet()) {
             try {
-              startNewChildDockerInputFileThread(dockerMetadataEntry.getValue());
+              startNewChildDockerInputFile(dockerMetadataEntry.getValue());
             } catch (Exception e) {
               throw new RuntimeException(e);
             }
           }
-          dockerLogFileUpdateMonitorThread = new Thread(new DockerLogFileUpdateMonitor((InputFile) this, pathUpdateIntervalMin, detachTimeMin), "docker_logfiles_updater=" + logType);
-          dockerLogFileUpdateMonitorThread.setDaemon(true);
-          dockerLogFileUpdateMonitorThread.start();
+          logFileTailer.schedule(new DockerLogFileUpdateMonitor((InputFile) this, pathUpdateIntervalMin, detachTimeMin), pathUpdateIntervalMin);
         }
       }
       else if (multiFolder) {
         try {
-          threadGroup = new ThreadGroup(getNameForThread());
           if (getFolderMap() != null) {
             for (Map.Entry<String, List<File>> folderFileEntry : getFolderMap().entrySet()) {
-              startNewChildInputFileThread(folderFileEntry);
+              startNewChildInputFile(folderFileEntry);
             }
-            logFilePathUpdaterThread = new Thread(new LogFilePathUpdateMonitor((InputFile) this, pathUpdateIntervalMin, detachTimeMin), "logfile_path_updater=" + filePath);
-            logFilePathUpdaterThread.setDaemon(true);
-            logFileDetacherThread = new Thread(new LogFileDetachMonitor((InputFile) this, detachIntervalMin, detachTimeMin), "logfile_detacher=" + filePath);
-            logFileDetacherThread.setDaemon(true);
-
-            logFilePathUpdaterThread.start();
-            logFileDetacherThread.start();
+            logFileTailer.schedule(new LogFilePathUpdateMonitor((InputFile) this, pathUpdateIntervalMin, detachTimeMin), pathUpdateIntervalMin);
+            logFileTailer.schedule(new LogFileDetachMonitor((InputFile) this, detachIntervalMin, detachTimeMin), detachIntervalMin);
           }
         } catch (Exception e) {
           throw new RuntimeException(e);
@@ -311,12 +302,12 @@ public class InputFile extends Input<LogFeederProps, InputFileMarker> {
     ProcessFileHelper.processFile(this, logPathFile, follow);
   }
 
-  public BufferedReader openLogFile(File logFile) throws Exception {
-    BufferedReader br = new BufferedReader(LogsearchReaderFactory.INSTANCE.getReader(logFile));
+  public ReadableByteChannel openLogChannel(File logFile) throws Exception {
+    ReadableByteChannel channel = LogsearchReaderFactory.INSTANCE.getChannel(logFile);
     fileKey = getFileKeyFromLogFile(logFile);
     base64FileKey = Base64.byteArrayToBase64(fileKey.toString().getBytes());
     LOG.info("fileKey=" + fileKey + ", base64=" + base64FileKey + ". " + getShortDescription());
-    return br;
+    return channel;
   }
 
   public Object getFileKeyFromLogFile(File logFile) {
@@ -341,57 +332,75 @@ public class InputFile extends Input<LogFeederProps, InputFileMarker> {
     }
   }
 
-  public void startNewChildDockerInputFileThread(DockerMetadata dockerMetadata) throws CloneNotSupportedException {
-    LOG.info("Start docker child input thread - " + dockerMetadata.getLogPath());
+  public void startNewChildDockerInputFile(DockerMetadata dockerMetadata) throws CloneNotSupportedException {
+    LOG.info("Start docker child input - " + dockerMetadata.getLogPath());
     InputFile clonedObject = (InputFile) this.clone();
     clonedObject.setDockerLogParent(false);
     clonedObject.logPath = dockerMetadata.getLogPath();
     clonedObject.setFilePath(logPath);
     clonedObject.logFiles = new File[]{new File(dockerMetadata.getLogPath())};
     clonedObject.setInputChildMap(new HashMap<>());
-    clonedObject.setDockerLogFileUpdateMonitorThread(null);
     copyFilters(clonedObject, getFirstFilter());
-    Thread thread = new Thread(threadGroup, clonedObject, "file=" + dockerMetadata.getLogPath());
-    clonedObject.setThread(thread);
     inputChildMap.put(dockerMetadata.getLogPath(), clonedObject);
-    thread.start();
+    clonedObject.startTailing();
   }
 
-  public void stopChildDockerInputFileThread(String logPathKey) {
-    LOG.info("Stop child input thread - " + logPathKey);
-    String filePath = new File(logPathKey).getName();
+  public void stopChildDockerInputFile(String logPathKey) {
+    LOG.info("Stop child input - " + logPathKey);
     if (inputChildMap.containsKey(logPathKey)) {
       InputFile inputFile = inputChildMap.get(logPathKey);
       inputFile.setClosed(true);
-      if (inputFile.getThread() != null && inputFile.getThread().isAlive()) {
-        inputFile.getThread().interrupt();
-      }
+      logFileTailer.stop(inputFile);
       inputChildMap.remove(logPathKey);
     } else {
       LOG.warn(logPathKey + " not found as an input child.");
     }
   }
 
-  public void startNewChildInputFileThread(Map.Entry<String, List<File>> folderFileEntry) throws CloneNotSupportedException {
-    LOG.info("Start child input thread - " + folderFileEntry.getKey());
+  public void startNewChildInputFile(Map.Entry<String, List<File>> folderFileEntry) throws CloneNotSupportedException {
+    LOG.info("Start child input - " + folderFileEntry.getKey());
     InputFile clonedObject = (InputFile) this.clone();
     String folderPath = folderFileEntry.getKey();
     String filePath = new File(getFilePath()).getName();
     String fullPathWithWildCard = String.format("%s/%s", folderPath, filePath);
     if (clonedObject.getMaxAgeMin() != 0 && FileUtil.isFileTooOld(new File(fullPathWithWildCard), clonedObject.getMaxAgeMin().longValue())) {
-      LOG.info(String.format("File ('%s') is too old (max age min: %d), monitor thread not starting...", getFilePath(), clonedObject.getMaxAgeMin()));
+      LOG.info(String.format("File ('%s') is too old (max age min: %d), monitoring not starting...", getFilePath(), clonedObject.getMaxAgeMin()));
     } else {
       clonedObject.setMultiFolder(false);
       clonedObject.logFiles = folderFileEntry.getValue().toArray(new File[0]); // TODO: works only with tail
       clonedObject.logPath = fullPathWithWildCard;
-      clonedObject.setLogFileDetacherThread(null);
-      clonedObject.setLogFilePathUpdaterThread(null);
       clonedObject.setInputChildMap(new HashMap<>());
       copyFilters(clonedObject, getFirstFilter());
-      Thread thread = new Thread(threadGroup, clonedObject, "file=" + fullPathWithWildCard);
-      clonedObject.setThread(thread);
       inputChildMap.put(fullPathWithWildCard, clonedObject);
-      thread.start();
+      clonedObject.startTailing();
+    }
+  }
+
+  /**
+   * Reads the log files of a child input on the shared tailer, the same way {@link #start()} reads them on the
+   * thread of an input. The input is closed once its files are read or it is stopped.
+   */
+  private void startTailing() {
+    boolean isProcessFile = BooleanUtils.toBooleanDefaultIfNull(((InputFileDescriptor)getInputDescriptor()).getProcessFile(), true);
+    if (!isProcessFile) {
+      logFileTailer.execute(() -> copyFiles(logFiles));
+      return;
+    }
+    TailedLogFile firstFile = null;
+    TailedLogFile lastFile = null;
+    for (int i = logFiles.length - 1; i >= 0; i--) {
+      if (i == 0 || !tail) {
+        TailedLogFile tailedFile = new TailedLogFile(this, logFiles[i], i == 0);
+        if (firstFile == null) {
+          firstFile = tailedFile;
+        } else {
+          lastFile.setNext(tailedFile);
+        }
+        lastFile = tailedFile;
+      }
+    }
+    if (firstFile != null) {
+      logFileTailer.tail(firstFile, this::close);
     }
   }
 
@@ -423,16 +432,14 @@ public class InputFile extends Input<LogFeederProps, InputFileMarker> {
     }
   }
 
-  public void stopChildInputFileThread(String folderPathKey) {
-    LOG.info("Stop child input thread - " + folderPathKey);
+  public void stopChildInputFile(String folderPathKey) {
+    LOG.info("Stop child input - " + folderPathKey);
     String filePath = new File(getFilePath()).getName();
     String fullPathWithWildCard = String.format("%s/%s", folderPathKey, filePath);
     if (inputChildMap.containsKey(fullPathWithWildCard)) {
       InputFile inputFile = inputChildMap.get(fullPathWithWildCard);
       inputFile.setClosed(true);
-      if (inputFile.getThread() != null && inputFile.getThread().isAlive()) {
-        inputFile.getThread().interrupt();
-      }
+      logFileTailer.stop(inputFile);
       inputChildMap.remove(fullPathWithWildCard);
     } else {
       LOG.warn(fullPathWithWildCard + " not found as an input child.");
@@ -517,10 +524,6 @@ public class InputFile extends Input<LogFeederProps, InputFileMarker> {
     return checkPointIntervalMS;
   }
 
-  public Map<String, File> getCheckPointFiles() {
-    return checkPointFiles;
-  }
-
   public Map<String, Long> getLastCheckPointTimeMSs() {
     return lastCheckPointTimeMSs;
   }
@@ -567,28 +570,20 @@ public class InputFile extends Input<LogFeederProps, InputFileMarker> {
     this.thread = thread;
   }
 
-  public Thread getLogFileDetacherThread() {
-    return logFileDetacherThread;
-  }
-
-  public void setLogFileDetacherThread(Thread logFileDetacherThread) {
-    this.logFileDetacherThread = logFileDetacherThread;
-  }
-
-  public Thread getLogFilePathUpdaterThread() {
-    return logFilePathUpdaterThread;
+  public LogFileTailer getLogFileTailer() {
+    return logFileTailer;
   }
 
-  public void setLogFilePathUpdaterThread(Thread logFilePathUpdaterThread) {
-    this.logFilePathUpdaterThread = logFilePathUpdaterThread;
+  public void setLogFileTailer(LogFileTailer logFileTailer) {
+    this.logFileTailer = logFileTailer;
   }
 
-  public Thread getDockerLogFileUpdateMonitorThread() {
-    return dockerLogFileUpdateMonitorThread;
+  public CheckpointStore getCheckpointStore() {
+    return checkpointStore;
   }
 
-  public void setDockerLogFileUpdateMonitorThread(Thread dockerLogFileUpdateMonitorThread) {
-    this.dockerLogFileUpdateMonitorThread = dockerLogFileUpdateMonitorThread;
+  public void setCheckpointStore(CheckpointStore checkpointStore) {
+    this.checkpointStore = checkpointStore;
   }
 
   public Integer getMaxAgeMin() {
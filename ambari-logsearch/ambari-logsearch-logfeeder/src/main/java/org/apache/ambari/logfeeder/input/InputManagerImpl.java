@@ -22,23 +22,21 @@ import com.google.common.annotations.VisibleForTesting;
 import org.apache.ambari.logfeeder.conf.LogFeederProps;
 import org.apache.ambari.logfeeder.docker.DockerContainerRegistry;
 import org.apache.ambari.logfeeder.docker.DockerContainerRegistryMonitor;
+import org.apache.ambari.logfeeder.input.file.CheckpointStore;
+import org.apache.ambari.logfeeder.input.file.LogFileTailer;
 import org.apache.ambari.logfeeder.input.monitor.CheckpointCleanupMonitor;
 import org.apache.ambari.logfeeder.plugin.common.MetricData;
 import org.apache.ambari.logfeeder.plugin.input.Input;
 import org.apache.ambari.logfeeder.plugin.manager.InputManager;
 import org.apache.ambari.logfeeder.util.FileUtil;
 import org.apache.ambari.logfeeder.util.LogFeederUtil;
-import org.apache.commons.io.filefilter.WildcardFileFilter;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 import org.apache.solr.common.util.Base64;
 
 import javax.inject.Inject;
-import java.io.EOFException;
 import java.io.File;
-import java.io.FileFilter;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -61,11 +59,14 @@ public class InputManagerImpl extends InputManager {
 
   private String checkPointExtension;
   private File checkPointFolderFile;
+  private CheckpointStore checkpointStore;
 
   private MetricData filesCountMetric = new MetricData("input.files.count", true);
 
   private Thread inputIsReadyMonitor;
 
+  private LogFileTailer logFileTailer;
+
   @Inject
   private DockerContainerRegistry dockerContainerRegistry;
 
@@ -131,11 +132,12 @@ public class InputManagerImpl extends InputManager {
   @Override
   public void init() throws Exception {
     initCheckPointSettings();
+    logFileTailer = new LogFileTailer(logFeederProps.getTailThreads());
     startMonitorThread();
     startDockerMetadataThread();
   }
 
-  private void initCheckPointSettings() {
+  private void initCheckPointSettings() throws IOException {
     checkPointExtension = logFeederProps.getCheckPointExtension();
     LOG.info("Determining valid checkpoint folder");
     boolean isCheckPointFolderValid = false;
@@ -159,6 +161,7 @@ public class InputManagerImpl extends InputManager {
 
     if (isCheckPointFolderValid) {
       LOG.info("Using folder " + checkPointFolderFile + " for storing checkpoints");
+      checkpointStore = CheckpointStore.getInstance(checkPointFolderFile, checkPointExtension);
       // check checkpoint cleanup every 2000 min
       Thread checkpointCleanupThread = new Thread(new CheckpointCleanupMonitor(this, 2000),"checkpoint_cleanup");
       checkpointCleanupThread.setDaemon(true);
@@ -215,6 +218,8 @@ public class InputManagerImpl extends InputManager {
         if (input instanceof InputFile) {// apply docker metadata registry
           InputFile inputFile = (InputFile)  input;
           inputFile.setDockerContainerRegistry(dockerContainerRegistry);
+          inputFile.setLogFileTailer(logFileTailer);
+          inputFile.setCheckpointStore(checkpointStore);
         }
         input.init(logFeederProps);
         if (input.isReady()) {
@@ -287,79 +292,62 @@ public class InputManagerImpl extends InputManager {
 
 
   public void cleanCheckPointFiles() {
-    if (checkPointFolderFile == null) {
-      LOG.info("Will not clean checkPoint files. checkPointFolderFile=" + checkPointFolderFile);
+    if (checkpointStore == null) {
+      LOG.info("Will not clean checkPoints. checkPointFolderFile=" + checkPointFolderFile);
       return;
     }
-    LOG.info("Cleaning checkPoint files. checkPointFolderFile=" + checkPointFolderFile.getAbsolutePath());
+    LOG.info("Cleaning checkPoints. checkPointFolderFile=" + checkPointFolderFile.getAbsolutePath());
     try {
-      // Loop over the check point files and if filePath is not present, then move to closed
-      String searchPath = "*" + checkPointExtension;
-      FileFilter fileFilter = new WildcardFileFilter(searchPath);
-      File[] checkPointFiles = checkPointFolderFile.listFiles(fileFilter);
-      int totalCheckFilesDeleted = 0;
-      for (File checkPointFile : checkPointFiles) {
-        if (checkCheckPointFile(checkPointFile)) {
-          totalCheckFilesDeleted++;
+      // Loop over the check points and if filePath is not present, then remove the check point
+      int totalCheckPointsDeleted = 0;
+      for (Map.Entry<String, Map<String, Object>> entry : checkpointStore.getAll().entrySet()) {
+        if (checkCheckPoint(entry.getKey(), entry.getValue())) {
+          totalCheckPointsDeleted++;
         }
       }
-      LOG.info("Deleted " + totalCheckFilesDeleted + " checkPoint file(s). checkPointFolderFile=" +
+      LOG.info("Deleted " + totalCheckPointsDeleted + " checkPoint(s). checkPointFolderFile=" +
         checkPointFolderFile.getAbsolutePath());
 
     } catch (Throwable t) {
-      LOG.error("Error while cleaning checkPointFiles", t);
+      LOG.error("Error while cleaning checkPoints", t);
     }
   }
 
-  private boolean checkCheckPointFile(File checkPointFile) {
+  private boolean checkCheckPoint(String checkPointKey, Map<String, Object> jsonCheckPoint) {
     boolean deleted = false;
-    try (RandomAccessFile checkPointReader = new RandomAccessFile(checkPointFile, "r")) {
-      int contentSize = checkPointReader.readInt();
-      byte b[] = new byte[contentSize];
-      int readSize = checkPointReader.read(b, 0, contentSize);
-      if (readSize != contentSize) {
-        LOG.error("Couldn't read expected number of bytes from checkpoint file. expected=" + contentSize + ", read="
-          + readSize + ", checkPointFile=" + checkPointFile);
-      } else {
-        String jsonCheckPointStr = new String(b, 0, readSize);
-        Map<String, Object> jsonCheckPoint = LogFeederUtil.toJSONObject(jsonCheckPointStr);
-
-        String logFilePath = (String) jsonCheckPoint.get("file_path");
-        String logFileKey = (String) jsonCheckPoint.get("file_key");
-        Integer maxAgeMin = null;
-        if (jsonCheckPoint.containsKey("max_age_min")) {
-          maxAgeMin = Integer.parseInt(jsonCheckPoint.get("max_age_min").toString());
-        }
-        if (logFilePath != null && logFileKey != null) {
-          boolean deleteCheckPointFile = false;
-          File logFile = new File(logFilePath);
-          if (logFile.exists()) {
-            Object fileKeyObj = FileUtil.getFileKey(logFile);
-            String fileBase64 = Base64.byteArrayToBase64(fileKeyObj.toString().getBytes());
-            if (!logFileKey.equals(fileBase64)) {
-              LOG.info("CheckPoint clean: File key has changed. old=" + logFileKey + ", new=" + fileBase64 + ", filePath=" +
-                logFilePath + ", checkPointFile=" + checkPointFile.getAbsolutePath());
-              deleteCheckPointFile = !wasFileRenamed(logFile.getParentFile(), logFileKey);
-            } else if (maxAgeMin != null && maxAgeMin != 0 && FileUtil.isFileTooOld(logFile, maxAgeMin)) {
-              deleteCheckPointFile = true;
-              LOG.info("Checkpoint clean: File reached max age minutes (" + maxAgeMin + "):" + logFilePath);
-            }
-          } else {
-            LOG.info("CheckPoint clean: Log file doesn't exist. filePath=" + logFilePath + ", checkPointFile=" +
-              checkPointFile.getAbsolutePath());
-            deleteCheckPointFile = !wasFileRenamed(logFile.getParentFile(), logFileKey);
-          }
-          if (deleteCheckPointFile) {
-            LOG.info("Deleting CheckPoint file=" + checkPointFile.getAbsolutePath() + ", logFile=" + logFilePath);
-            checkPointFile.delete();
-            deleted = true;
+    try {
+      String logFilePath = (String) jsonCheckPoint.get("file_path");
+      String logFileKey = (String) jsonCheckPoint.get("file_key");
+      Integer maxAgeMin = null;
+      if (jsonCheckPoint.containsKey("max_age_min")) {
+        maxAgeMin = Integer.parseInt(jsonCheckPoint.get("max_age_min").toString());
+      }
+      if (logFilePath != null && logFileKey != null) {
+        boolean deleteCheckPoint = false;
+        File logFile = new File(logFilePath);
+        if (logFile.exists()) {
+          Object fileKeyObj = FileUtil.getFileKey(logFile);
+          String fileBase64 = Base64.byteArrayToBase64(fileKeyObj.toString().getBytes());
+          if (!logFileKey.equals(fileBase64)) {
+            LOG.info("CheckPoint clean: File key has changed. old=" + logFileKey + ", new=" + fileBase64 + ", filePath=" +
+              logFilePath + ", checkPointKey=" + checkPointKey);
+            deleteCheckPoint = !wasFileRenamed(logFile.getParentFile(), logFileKey);
+          } else if (maxAgeMin != null && maxAgeMin != 0 && FileUtil.isFileTooOld(logFile, maxAgeMin)) {
+            deleteCheckPoint = true;
+            LOG.info("Checkpoint clean: File reached max age minutes (" + maxAgeMin + "):" + logFilePath);
           }
+        } else {
+          LOG.info("CheckPoint clean: Log file doesn't exist. filePath=" + logFilePath + ", checkPointKey=" + checkPointKey);
+          deleteCheckPoint = !wasFileRenamed(logFile.getParentFile(), logFileKey);
+        }
+        if (deleteCheckPoint) {
+          LOG.info("Deleting CheckPoint key=" + checkPointKey + ", logFile=" + logFilePath);
+          checkpointStore.remove(checkPointKey);
+          deleted = true;
         }
       }
-    } catch (EOFException eof) {
-      LOG.warn("Caught EOFException. Ignoring reading existing checkPoint file. " + checkPointFile);
     } catch (Throwable t) {
-      LOG.error("Error while checking checkPoint file. " + checkPointFile, t);
+      LOG.error("Error while checking checkPoint. key=" + checkPointKey, t);
     }
 
     return deleted;
@@ -412,6 +400,13 @@ public class InputManagerImpl extends InputManager {
         input.lastCheckIn();
       }
     }
+    if (checkpointStore != null) {
+      try {
+        checkpointStore.flush();
+      } catch (IOException e) {
+        LOG.error("Error while writing checkpoints", e);
+      }
+    }
   }
 
   public void close() {
@@ -446,6 +441,7 @@ public class InputManagerImpl extends InputManager {
       }
       if (allClosed) {
         LOG.info("All inputs are closed. Iterations=" + i);
+        shutdownLogFileTailer();
         return;
       }
     }
@@ -458,6 +454,13 @@ public class InputManagerImpl extends InputManager {
         }
       }
     }
+    shutdownLogFileTailer();
+  }
+
+  private void shutdownLogFileTailer() {
+    if (logFileTailer != null) {
+      logFileTailer.shutdown();
+    }
   }
 
   @VisibleForTesting
@@ -25,8 +25,9 @@ import org.apache.solr.common.util.Base64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 
 public class InputS3File extends InputFile {
 
@@ -79,16 +80,16 @@ public class InputS3File extends InputFile {
   }
 
   @Override
-  public BufferedReader openLogFile(File logPathFile) throws Exception {
+  public ReadableByteChannel openLogChannel(File logPathFile) throws Exception {
     String s3AccessKey = ((InputS3FileDescriptor)getInputDescriptor()).getS3AccessKey();
     String s3SecretKey = ((InputS3FileDescriptor)getInputDescriptor()).getS3SecretKey();
-    BufferedReader br = S3Util.getReader(logPathFile.getPath(), s3AccessKey, s3SecretKey);
+    ReadableByteChannel channel = Channels.newChannel(S3Util.getInputStream(logPathFile.getPath(), s3AccessKey, s3SecretKey));
     Object fileKey = getFileKey(logPathFile);
     setFileKey(fileKey);
     String base64FileKey = Base64.byteArrayToBase64(getFileKey().toString().getBytes());
     setBase64FileKey(base64FileKey);
     LOG.info("fileKey=" + fileKey + ", base64=" + base64FileKey + ". " + getShortDescription());
-    return br;
+    return channel;
   }
 
   private Object getFileKey(File logFile) {
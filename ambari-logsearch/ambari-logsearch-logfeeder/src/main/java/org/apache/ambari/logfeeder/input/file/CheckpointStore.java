@@ -0,0 +1,320 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ambari.logfeeder.input.file;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.ambari.logfeeder.util.FileUtil;
+import org.apache.ambari.logfeeder.util.LogFeederUtil;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores the checkpoints of all the input files of a checkpoint folder in one file.
+ * <br/>
+ * Checkpoint updates are kept in memory and written by a single writer thread periodically: the updates since the
+ * last write are appended to the file as json lines, followed by one sync. When the file contains too many
+ * outdated records it is compacted by writing the current checkpoints to a new file and replacing the old one.
+ * Only checkpoints of already processed lines are stored, so losing the last updates on a crash means reading some
+ * lines again, never skipping them.
+ * <br/>
+ * Checkpoint files of the earlier format (one file per log file) found in the folder are imported on startup.
+ */
+public class CheckpointStore {
+
+  private static final Logger LOG = Logger.getLogger(CheckpointStore.class);
+
+  static final String STORE_FILE_NAME = "logfeeder_checkpoints.jsonl";
+
+  private static final long FLUSH_INTERVAL_MS = 1000;
+  /** The file is compacted if it has more records than this many times the number of checkpoints */
+  private static final int COMPACTION_RATIO = 4;
+  private static final int MIN_RECORDS_TO_COMPACT = 1000;
+
+  private static final String KEY_FIELD = "key";
+  private static final String CHECKPOINT_FIELD = "checkpoint";
+
+  private static final Map<File, CheckpointStore> stores = new HashMap<>();
+
+  private final File storeFile;
+  private final Map<String, Map<String, Object>> checkpoints = new HashMap<>();
+  /** key -> checkpoint to write, null if it was removed */
+  private final Map<String, Map<String, Object>> pending = new LinkedHashMap<>();
+
+  private final Object writeLock = new Object();
+  private FileOutputStream out;
+  private int recordCount;
+  /** set if a write failed, the file may end with a partial record */
+  private boolean writeFailed;
+
+  private final ScheduledExecutorService writer;
+
+  /**
+   * @return the store of a checkpoint folder, which is opened at the first call
+   */
+  public static CheckpointStore getInstance(File checkPointFolder, String checkPointExtension) throws IOException {
+    synchronized (stores) {
+      File folder = checkPointFolder.getAbsoluteFile();
+      CheckpointStore store = stores.get(folder);
+      if (store == null) {
+        store = new CheckpointStore(folder, checkPointExtension);
+        stores.put(folder, store);
+      }
+      return store;
+    }
+  }
+
+  @VisibleForTesting
+  CheckpointStore(File checkPointFolder, String checkPointExtension) throws IOException {
+    storeFile = new File(checkPointFolder, STORE_FILE_NAME);
+    load();
+    List<File> legacyFiles = importLegacyFiles(checkPointFolder, checkPointExtension);
+    synchronized (writeLock) {
+      if (!legacyFiles.isEmpty() || needsCompaction()) {
+        compact();
+      } else {
+        out = new FileOutputStream(storeFile, true);
+      }
+    }
+    for (File legacyFile : legacyFiles) {
+      if (!legacyFile.delete()) {
+        LOG.warn("Couldn't delete imported checkpoint file " + legacyFile.getAbsolutePath());
+      }
+    }
+    LOG.info("Loaded " + checkpoints.size() + " checkpoints from " + storeFile.getAbsolutePath());
+
+    writer = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("checkpoint_writer").setDaemon(true).build());
+    writer.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @return a copy of the checkpoint of a log file, or null if there is no checkpoint for it
+   */
+  public synchronized Map<String, Object> get(String key) {
+    Map<String, Object> checkpoint = checkpoints.get(key);
+    return checkpoint == null ? null : new HashMap<>(checkpoint);
+  }
+
+  /**
+   * @return copies of all the checkpoints by the keys of their log files
+   */
+  public synchronized Map<String, Map<String, Object>> getAll() {
+    Map<String, Map<String, Object>> copy = new HashMap<>();
+    for (Map.Entry<String, Map<String, Object>> entry : checkpoints.entrySet()) {
+      copy.put(entry.getKey(), new HashMap<>(entry.getValue()));
+    }
+    return copy;
+  }
+
+  /**
+   * Updates the checkpoint of a log file. It is written to the disk by the next flush.
+   */
+  public synchronized void put(String key, Map<String, Object> checkpoint) {
+    Map<String, Object> copy = new HashMap<>(checkpoint);
+    checkpoints.put(key, copy);
+    pending.put(key, copy);
+  }
+
+  /**
+   * Removes the checkpoint of a log file. The removal is written to the disk by the next flush.
+   */
+  public synchronized void remove(String key) {
+    if (checkpoints.remove(key) != null) {
+      pending.put(key, null);
+    }
+  }
+
+  /**
+   * Writes the checkpoint updates since the last flush to the disk.
+   */
+  public void flush() throws IOException {
+    synchronized (writeLock) {
+      Map<String, Map<String, Object>> batch = drainPending();
+      if (batch.isEmpty()) {
+        return;
+      }
+      try {
+        if (writeFailed) {
+          // rewrite the file instead of appending after a possibly partial record
+          compact();
+          writeFailed = false;
+          return;
+        }
+        StringBuilder records = new StringBuilder();
+        for (Map.Entry<String, Map<String, Object>> entry : batch.entrySet()) {
+          appendRecord(records, entry.getKey(), entry.getValue());
+        }
+        out.write(records.toString().getBytes(StandardCharsets.UTF_8));
+        out.getFD().sync();
+        recordCount += batch.size();
+
+        if (needsCompaction()) {
+          compact();
+        }
+      } catch (IOException e) {
+        writeFailed = true;
+        requeue(batch);
+        throw e;
+      }
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (Throwable t) {
+      LOG.error("Error while writing checkpoints to " + storeFile.getAbsolutePath(), t);
+    }
+  }
+
+  private synchronized Map<String, Map<String, Object>> drainPending() {
+    Map<String, Map<String, Object>> batch = new LinkedHashMap<>(pending);
+    pending.clear();
+    return batch;
+  }
+
+  /**
+   * Puts back the updates of a failed write, unless there are newer ones.
+   */
+  private synchronized void requeue(Map<String, Map<String, Object>> batch) {
+    for (Map.Entry<String, Map<String, Object>> entry : batch.entrySet()) {
+      if (!pending.containsKey(entry.getKey())) {
+        pending.put(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  private synchronized boolean needsCompaction() {
+    return recordCount > Math.max(MIN_RECORDS_TO_COMPACT, COMPACTION_RATIO * checkpoints.size());
+  }
+
+  /**
+   * Writes all the checkpoints to a new file and replaces the current file with it. Called holding the write lock.
+   */
+  private void compact() throws IOException {
+    Map<String, Map<String, Object>> snapshot = getAll();
+    StringBuilder records = new StringBuilder();
+    for (Map.Entry<String, Map<String, Object>> entry : snapshot.entrySet()) {
+      appendRecord(records, entry.getKey(), entry.getValue());
+    }
+
+    File tmpStoreFile = new File(storeFile.getAbsolutePath() + ".tmp");
+    try (FileOutputStream tmpOut = new FileOutputStream(tmpStoreFile, false)) {
+      tmpOut.write(records.toString().getBytes(StandardCharsets.UTF_8));
+      tmpOut.getFD().sync();
+    }
+    if (out != null) {
+      out.close();
+    }
+    FileUtil.move(tmpStoreFile, storeFile);
+    out = new FileOutputStream(storeFile, true);
+    recordCount = snapshot.size();
+    LOG.info("Compacted checkpoint file " + storeFile.getAbsolutePath() + ", checkpoints=" + snapshot.size());
+  }
+
+  private void appendRecord(StringBuilder records, String key, Map<String, Object> checkpoint) {
+    Map<String, Object> record = new HashMap<>();
+    record.put(KEY_FIELD, key);
+    if (checkpoint != null) {
+      record.put(CHECKPOINT_FIELD, checkpoint);
+    }
+    records.append(LogFeederUtil.getGson().toJson(record)).append('\n');
+  }
+
+  /**
+   * Reads the records of the store file, the later records of a log file override the earlier ones.
+   */
+  @SuppressWarnings("unchecked")
+  private void load() throws IOException {
+    if (!storeFile.exists()) {
+      return;
+    }
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(storeFile), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        recordCount++;
+        try {
+          Map<String, Object> record = LogFeederUtil.toJSONObject(line);
+          String key = (String) record.get(KEY_FIELD);
+          Map<String, Object> checkpoint = (Map<String, Object>) record.get(CHECKPOINT_FIELD);
+          if (key == null) {
+            continue;
+          }
+          if (checkpoint != null) {
+            checkpoints.put(key, new HashMap<>(checkpoint));
+          } else {
+            checkpoints.remove(key);
+          }
+        } catch (Exception e) {
+          // the last record may be partially written if the process was killed while writing it
+          LOG.warn("Ignoring invalid checkpoint record in " + storeFile.getAbsolutePath() + ": " + line);
+        }
+      }
+    }
+  }
+
+  private List<File> importLegacyFiles(File checkPointFolder, String checkPointExtension) {
+    List<File> importedFiles = new ArrayList<>();
+    File[] legacyFiles = checkPointFolder.listFiles((dir, name) ->
+      name.endsWith(checkPointExtension) && !name.startsWith(STORE_FILE_NAME));
+    if (legacyFiles == null) {
+      return importedFiles;
+    }
+    for (File legacyFile : legacyFiles) {
+      String key = legacyFile.getName().substring(0, legacyFile.getName().length() - checkPointExtension.length());
+      try (RandomAccessFile reader = new RandomAccessFile(legacyFile, "r")) {
+        int contentSize = reader.readInt();
+        byte[] content = new byte[contentSize];
+        reader.readFully(content);
+        if (!checkpoints.containsKey(key)) {
+          checkpoints.put(key, LogFeederUtil.toJSONObject(new String(content, 0, contentSize)));
+        }
+        importedFiles.add(legacyFile);
+        LOG.info("Imported checkpoint file " + legacyFile.getAbsolutePath());
+      } catch (EOFException e) {
+        LOG.warn("Ignoring incomplete checkpoint file " + legacyFile.getAbsolutePath());
+        importedFiles.add(legacyFile);
+      } catch (Exception e) {
+        LOG.error("Error while importing checkpoint file " + legacyFile.getAbsolutePath(), e);
+      }
+    }
+    return importedFiles;
+  }
+}
@@ -19,14 +19,13 @@
 package org.apache.ambari.logfeeder.input.file;
 
 import java.io.File;
-import java.io.RandomAccessFile;
+import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.ambari.logfeeder.input.InputFile;
 import org.apache.ambari.logfeeder.input.InputFileMarker;
-import org.apache.ambari.logfeeder.util.FileUtil;
 import org.apache.ambari.logfeeder.util.LogFeederUtil;
 import org.apache.log4j.Logger;
 
@@ -44,10 +43,7 @@ public class FileCheckInHelper {
         jsonCheckPoint = createNewCheckpointObject(inputFile);
         attachCheckpointToInput(inputFile, jsonCheckPoint);
       }
-      File checkPointFile = inputFile.getCheckPointFiles().get(inputMarker.getBase64FileKey());
-      if (checkPointFile == null || !checkPointFile.exists()) {
-        checkPointFile = FileCheckInHelper.attachCheckpointFileToInput(inputFile);
-      }
+      CheckpointStore checkpointStore = getCheckpointStore(inputFile);
 
       int lineNumber = LogFeederUtil.objectToInt(jsonCheckPoint.get("line_number"), 0, "line_number");
       if (lineNumber > inputMarker.getLineNumber()) {
@@ -72,22 +68,13 @@ public class FileCheckInHelper {
       jsonCheckPoint.put("last_write_time_ms", "" + new Long(currMS));
       jsonCheckPoint.put("last_write_time_date", new Date());
 
-      String jsonStr = LogFeederUtil.getGson().toJson(jsonCheckPoint);
-
-      File tmpCheckPointFile = new File(checkPointFile.getAbsolutePath() + ".tmp");
-      if (tmpCheckPointFile.exists()) {
-        tmpCheckPointFile.delete();
-      }
-      RandomAccessFile tmpRaf = new RandomAccessFile(tmpCheckPointFile, "rws");
-      tmpRaf.writeInt(jsonStr.length());
-      tmpRaf.write(jsonStr.getBytes());
-      tmpRaf.getFD().sync();
-      tmpRaf.close();
-
-      FileUtil.move(tmpCheckPointFile, checkPointFile);
+      // the store writes the checkpoints of all the inputs together periodically
+      checkpointStore.put(inputMarker.getBase64FileKey(), jsonCheckPoint);
 
       if (inputFile.isClosed()) {
-        LOG.info(String.format("Wrote final checkPoint, input=%s, checkPointFile=%s, checkPoint=%s", inputFile.getShortDescription(), checkPointFile.getAbsolutePath(), jsonStr));
+        checkpointStore.flush();
+        LOG.info(String.format("Wrote final checkPoint, input=%s, checkPoint=%s", inputFile.getShortDescription(),
+          LogFeederUtil.getGson().toJson(jsonCheckPoint)));
       }
     } catch (Throwable t) {
       LOG.error("Caught exception checkIn. , input=" + inputFile.getShortDescription(), t);
@@ -120,16 +107,16 @@ public class FileCheckInHelper {
   }
 
   /**
-   * Create a new file object for input checkpoint
-   * @param inputFile input file object that will have the new checkpoint file
-   * @return Newly created checkpoint file
+   * Get the checkpoint store of the checkpoint folder of an input file
+   * @param inputFile input file object that will use the store
+   * @return Checkpoint store of the input file
    */
-  static File attachCheckpointFileToInput(final InputFile inputFile) throws Exception {
-    String checkPointFileName = inputFile.getBase64FileKey() + inputFile.getCheckPointExtension();
-    File checkPointFolder = inputFile.getInputManager().getCheckPointFolderFile();
-    File checkPointFile = new File(checkPointFolder, checkPointFileName);
-    inputFile.getCheckPointFiles().put(inputFile.getBase64FileKey(), checkPointFile);
-    return checkPointFile;
+  static CheckpointStore getCheckpointStore(final InputFile inputFile) throws IOException {
+    if (inputFile.getCheckpointStore() == null) {
+      File checkPointFolder = inputFile.getInputManager().getCheckPointFolderFile();
+      inputFile.setCheckpointStore(CheckpointStore.getInstance(checkPointFolder, inputFile.getCheckPointExtension()));
+    }
+    return inputFile.getCheckpointStore();
   }
 
 
@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ambari.logfeeder.input.file;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.ambari.logfeeder.input.InputFile;
+import org.apache.ambari.logfeeder.input.monitor.AbstractLogFileMonitor;
+import org.apache.ambari.logfeeder.util.LogFeederUtil;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the log files of the file inputs on a small pool of worker threads instead of a thread per file.
+ * <br/>
+ * A file is read when the watch service reports a change in its folder. Every file is also polled periodically,
+ * which flushes the filters of idle files, detects rolled over files and catches changes the watch service
+ * does not report (e.g. on network file systems). A file is read by only one worker at a time, and its lines
+ * are passed to the filters of its input on that worker. The periodic monitors of the inputs (path updates,
+ * detaching old files) run on the scheduler thread of the tailer.
+ */
+public class LogFileTailer {
+
+  private static final Logger LOG = Logger.getLogger(LogFileTailer.class);
+
+  static final long POLL_INTERVAL_MS = 1000;
+
+  private final ExecutorService workers;
+  private final ScheduledExecutorService scheduler;
+  private final WatchService watchService;
+  private final Thread watcherThread;
+  private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(TailedLogFile.BUFFER_SIZE));
+
+  private final Set<TailedLogFile> tailedFiles = ConcurrentHashMap.newKeySet();
+  private final Map<Path, Set<TailedLogFile>> watchedFolders = new HashMap<>();
+  private final Map<Path, WatchKey> watchKeys = new HashMap<>();
+
+  public LogFileTailer(int threads) {
+    workers = Executors.newFixedThreadPool(Math.max(threads, 1),
+      new ThreadFactoryBuilder().setNameFormat("logfile_tailer-%d").setDaemon(true).build());
+    scheduler = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("logfile_tailer_scheduler").setDaemon(true).build());
+    scheduler.scheduleWithFixedDelay(this::pollAll, POLL_INTERVAL_MS, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+    watchService = createWatchService();
+    if (watchService != null) {
+      watcherThread = new Thread(this::watch, "logfile_tailer_watcher");
+      watcherThread.setDaemon(true);
+      watcherThread.start();
+    } else {
+      watcherThread = null;
+    }
+    LOG.info("Started log file tailer with " + Math.max(threads, 1) + " threads");
+  }
+
+  private WatchService createWatchService() {
+    try {
+      return FileSystems.getDefault().newWatchService();
+    } catch (IOException | UnsupportedOperationException e) {
+      LOG.warn("File change notifications are not available, log files will only be polled.", e);
+      return null;
+    }
+  }
+
+  /**
+   * Starts reading a log file, and then the files linked to it one after the other.
+   *
+   * @param tailedFile first file to read
+   * @param onFinished called once all the files are read or the input is stopped, may be null
+   */
+  public void tail(TailedLogFile tailedFile, Runnable onFinished) {
+    for (TailedLogFile file = tailedFile; file != null; file = file.getNext()) {
+      file.setOnFinished(onFinished);
+    }
+    start(tailedFile);
+  }
+
+  /**
+   * Stops reading the log files of an input.
+   */
+  public void stop(InputFile inputFile) {
+    for (TailedLogFile tailedFile : tailedFiles) {
+      if (tailedFile.getInputFile() == inputFile) {
+        tailedFile.cancel();
+        schedule(tailedFile);
+      }
+    }
+  }
+
+  /**
+   * Runs a monitor of an input periodically on the scheduler thread of the tailer.
+   *
+   * @param interval seconds between the runs of the monitor
+   */
+  public void schedule(AbstractLogFileMonitor monitor, int interval) {
+    LOG.info(monitor.getStartLog());
+    scheduler.scheduleWithFixedDelay(monitor::monitor, interval, interval, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Runs a task on a worker of the tailer.
+   */
+  public void execute(Runnable task) {
+    workers.execute(task);
+  }
+
+  public void shutdown() {
+    LOG.info("Shutting down log file tailer");
+    scheduler.shutdownNow();
+    if (watcherThread != null) {
+      watcherThread.interrupt();
+      try {
+        watchService.close();
+      } catch (IOException e) {
+        LOG.warn("Error while closing watch service", e);
+      }
+    }
+    workers.shutdown();
+  }
+
+  private void start(TailedLogFile tailedFile) {
+    tailedFiles.add(tailedFile);
+    watchFolder(tailedFile);
+    schedule(tailedFile);
+  }
+
+  private void finish(TailedLogFile tailedFile) {
+    tailedFiles.remove(tailedFile);
+    unwatchFolder(tailedFile);
+    tailedFile.close();
+    tailedFile.markFinished();
+
+    TailedLogFile next = tailedFile.getNext();
+    if (next != null && !tailedFile.isStopped()) {
+      start(next);
+    } else if (tailedFile.getOnFinished() != null) {
+      try {
+        tailedFile.getOnFinished().run();
+      } catch (Throwable t) {
+        LOG.error("Error while finishing input " + tailedFile.getInputFile().getShortDescription(), t);
+      }
+    }
+  }
+
+  private void schedule(TailedLogFile tailedFile) {
+    tailedFile.requestRead();
+    if (tailedFile.markScheduled()) {
+      try {
+        workers.execute(() -> read(tailedFile));
+      } catch (RejectedExecutionException e) {
+        tailedFile.unmarkScheduled();
+      }
+    }
+  }
+
+  private void read(TailedLogFile tailedFile) {
+    tailedFile.clearReadRequest();
+    boolean finished = false;
+    boolean dataRead = false;
+    try {
+      if (!tailedFile.isOpen() && !tailedFile.isStopped()) {
+        try {
+          tailedFile.open();
+        } catch (Throwable t) {
+          LOG.error("Error processing file=" + tailedFile.getLogFile().getAbsolutePath(), t);
+          finished = true;
+        }
+      }
+      if (!finished) {
+        if (tailedFile.isStopped()) {
+          finished = true;
+        } else {
+          dataRead = tailedFile.read(buffers.get());
+          finished = tailedFile.isStopped() || (!dataRead && tailedFile.handleEndOfFile());
+        }
+      }
+    } catch (Throwable t) {
+      String logMessageKey = tailedFile.getInputFile().getClass().getSimpleName() + "_READ_LOOP_EXCEPTION";
+      LogFeederUtil.logErrorMessageByInterval(logMessageKey, "Caught exception in read loop. input=" +
+        tailedFile.getInputFile().getShortDescription(), t, LOG, Level.ERROR);
+    }
+
+    if (finished) {
+      // the file stays marked as scheduled, so that it is not read again
+      finish(tailedFile);
+      return;
+    }
+    tailedFile.unmarkScheduled();
+    if (dataRead || tailedFile.clearReadRequest()) {
+      // there may be more to read, queue the file behind the others
+      schedule(tailedFile);
+    }
+  }
+
+  private void pollAll() {
+    for (TailedLogFile tailedFile : tailedFiles) {
+      schedule(tailedFile);
+    }
+  }
+
+  private void watch() {
+    while (!Thread.currentThread().isInterrupted()) {
+      WatchKey watchKey;
+      try {
+        watchKey = watchService.take();
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+        break;
+      }
+      Path folder = (Path) watchKey.watchable();
+      for (WatchEvent<?> event : watchKey.pollEvents()) {
+        Object fileName = event.context();
+        for (TailedLogFile tailedFile : getWatchedFiles(folder)) {
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW || tailedFile.getLogFile().getName().equals(String.valueOf(fileName))) {
+            schedule(tailedFile);
+          }
+        }
+      }
+      watchKey.reset();
+    }
+  }
+
+  private synchronized Set<TailedLogFile> getWatchedFiles(Path folder) {
+    Set<TailedLogFile> files = watchedFolders.get(folder);
+    return files == null ? new HashSet<>() : new HashSet<>(files);
+  }
+
+  private synchronized void watchFolder(TailedLogFile tailedFile) {
+    if (watchService == null || tailedFile.getLogFile().getAbsoluteFile().getParentFile() == null) {
+      return;
+    }
+    Path folder = tailedFile.getLogFile().getAbsoluteFile().getParentFile().toPath();
+    Set<TailedLogFile> files = watchedFolders.get(folder);
+    if (files == null) {
+      try {
+        watchKeys.put(folder, folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+      } catch (IOException | ClosedWatchServiceException e) {
+        LOG.warn("Cannot watch folder " + folder + ", log files in it will only be polled: " + e.getMessage());
+      }
+      files = new HashSet<>();
+      watchedFolders.put(folder, files);
+    }
+    files.add(tailedFile);
+  }
+
+  private synchronized void unwatchFolder(TailedLogFile tailedFile) {
+    if (watchService == null || tailedFile.getLogFile().getAbsoluteFile().getParentFile() == null) {
+      return;
+    }
+    Path folder = tailedFile.getLogFile().getAbsoluteFile().getParentFile().toPath();
+    Set<TailedLogFile> files = watchedFolders.get(folder);
+    if (files != null) {
+      files.remove(tailedFile);
+      if (files.isEmpty()) {
+        watchedFolders.remove(folder);
+        WatchKey watchKey = watchKeys.remove(folder);
+        if (watchKey != null) {
+          watchKey.cancel();
+        }
+      }
+    }
+  }
+}
@@ -18,9 +18,6 @@
  */
 package org.apache.ambari.logfeeder.input.file;
 
-import java.io.EOFException;
-import java.io.File;
-import java.io.RandomAccessFile;
 import java.util.Map;
 
 import org.apache.ambari.logfeeder.input.InputFile;
@@ -38,45 +35,26 @@ public class ResumeLineNumberHelper {
   public static int getResumeFromLineNumber(InputFile inputFile) {
     int resumeFromLineNumber = 0;
 
-    File checkPointFile = null;
     try {
-      LOG.info("Checking existing checkpoint file. " + inputFile.getShortDescription());
+      LOG.info("Checking existing checkpoint. " + inputFile.getShortDescription());
 
-      checkPointFile = FileCheckInHelper.attachCheckpointFileToInput(inputFile);
-      Map<String, Object> jsonCheckPoint = null;
-      if (!checkPointFile.exists()) {
-        LOG.info("Checkpoint file for log file " + inputFile.getFilePath() + " doesn't exist, starting to read it from the beginning");
-      } else {
-        try (RandomAccessFile checkPointWriter = new RandomAccessFile(checkPointFile, "rw")) {
-          int contentSize = checkPointWriter.readInt();
-          byte b[] = new byte[contentSize];
-          int readSize = checkPointWriter.read(b, 0, contentSize);
-          if (readSize != contentSize) {
-            LOG.error("Couldn't read expected number of bytes from checkpoint file. expected=" + contentSize + ", read=" +
-              readSize + ", checkPointFile=" + checkPointFile + ", input=" + inputFile.getShortDescription());
-          } else {
-            String jsonCheckPointStr = new String(b, 0, readSize);
-            jsonCheckPoint = LogFeederUtil.toJSONObject(jsonCheckPointStr);
-
-            resumeFromLineNumber = LogFeederUtil.objectToInt(jsonCheckPoint.get("line_number"), 0, "line_number");
-
-            LOG.info("CheckPoint. checkPointFile=" + checkPointFile + ", json=" + jsonCheckPointStr +
-              ", resumeFromLineNumber=" + resumeFromLineNumber);
-          }
-        } catch (EOFException eofEx) {
-          LOG.info("EOFException. Will reset checkpoint file " + checkPointFile.getAbsolutePath() + " for " +
-            inputFile.getShortDescription(), eofEx);
-        }
-      }
+      CheckpointStore checkpointStore = FileCheckInHelper.getCheckpointStore(inputFile);
+      Map<String, Object> jsonCheckPoint = checkpointStore.get(inputFile.getBase64FileKey());
       if (jsonCheckPoint == null) {
+        LOG.info("Checkpoint for log file " + inputFile.getFilePath() + " doesn't exist, starting to read it from the beginning");
         // This seems to be first time, so creating the initial checkPoint object
-        FileCheckInHelper.createNewCheckpointObject(inputFile);
+        jsonCheckPoint = FileCheckInHelper.createNewCheckpointObject(inputFile);
+      } else {
+        resumeFromLineNumber = LogFeederUtil.objectToInt(jsonCheckPoint.get("line_number"), 0, "line_number");
+
+        LOG.info("CheckPoint. json=" + LogFeederUtil.getGson().toJson(jsonCheckPoint) + ", resumeFromLineNumber=" +
+          resumeFromLineNumber);
       }
 
       FileCheckInHelper.attachCheckpointToInput(inputFile, jsonCheckPoint);
 
     } catch (Throwable t) {
-      LOG.error("Error while configuring checkpoint file. Will reset file. checkPointFile=" + checkPointFile, t);
+      LOG.error("Error while reading checkpoint. Will read the file from the beginning. input=" + inputFile.getShortDescription(), t);
     }
 
     return resumeFromLineNumber;
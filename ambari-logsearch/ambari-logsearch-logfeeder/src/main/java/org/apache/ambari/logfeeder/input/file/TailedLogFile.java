@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ambari.logfeeder.input.file;
+
+import org.apache.ambari.logfeeder.input.InputFile;
+import org.apache.ambari.logfeeder.input.InputFileMarker;
+import org.apache.ambari.logfeeder.util.LogFeederUtil;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * State of a log file read by an input: the open channel, the number of lines read (the checkpoint of the file)
+ * and the beginning of a line which is not completely written yet. The file is read in ranges into a buffer
+ * provided by the reading thread, so the buffers can be reused for every file.
+ */
+public class TailedLogFile {
+
+  private static final Logger LOG = Logger.getLogger(TailedLogFile.class);
+
+  static final int BUFFER_SIZE = 64 * 1024;
+
+  /** Number of ranges read at once, so that a busy file does not hold up the others */
+  private static final int MAX_READS = 16;
+  /** Idle time after which the buffered lines of the filters are flushed */
+  private static final long FLUSH_IDLE_MS = 2 * 1000;
+  /** Idle time after which the file is checked for rollover */
+  private static final long ROLLOVER_IDLE_MS = 5 * 1000;
+
+  private final InputFile inputFile;
+  private final File logFile;
+  private final boolean follow;
+  private final Charset charset = Charset.defaultCharset();
+  private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+
+  private TailedLogFile next;
+  private Runnable onFinished;
+
+  private ReadableByteChannel channel;
+  private int lineCount;
+  private int resumeFromLineNumber;
+  private boolean resume = true;
+  private long lastReadTime;
+  private boolean flushed = true;
+
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private final AtomicBoolean readRequested = new AtomicBoolean();
+  private final CountDownLatch finished = new CountDownLatch(1);
+  private volatile boolean cancelled;
+
+  public TailedLogFile(InputFile inputFile, File logFile, boolean follow) {
+    this.inputFile = inputFile;
+    this.logFile = logFile;
+    this.follow = follow;
+  }
+
+  void open() throws Exception {
+    LOG.info("Monitoring logPath=" + inputFile.getLogPath() + ", logPathFile=" + logFile);
+    inputFile.setFilePath(logFile.getAbsolutePath());
+    channel = inputFile.openLogChannel(logFile);
+
+    resumeFromLineNumber = inputFile.getResumeFromLineNumber();
+    if (resumeFromLineNumber > 0) {
+      LOG.info("Resuming log file " + logFile.getAbsolutePath() + " from line number " + resumeFromLineNumber);
+      resume = false;
+    }
+    inputFile.setClosed(false);
+    lastReadTime = System.currentTimeMillis();
+  }
+
+  boolean isOpen() {
+    return channel != null;
+  }
+
+  /**
+   * Reads the lines written since the last read.
+   *
+   * @param buffer buffer of the reading thread
+   * @return true if anything was read
+   */
+  boolean read(ByteBuffer buffer) throws Exception {
+    boolean dataRead = false;
+    for (int i = 0; i < MAX_READS && !isStopped(); i++) {
+      buffer.clear();
+      if (channel.read(buffer) <= 0) {
+        break;
+      }
+      dataRead = true;
+      buffer.flip();
+      processLines(buffer);
+    }
+    if (dataRead) {
+      lastReadTime = System.currentTimeMillis();
+      flushed = false;
+    }
+    return dataRead;
+  }
+
+  /**
+   * Called when there was nothing to read: flushes the filters once the file was idle for a while and reopens the
+   * file if it was rolled over.
+   *
+   * @return true if reading the file has finished
+   */
+  boolean handleEndOfFile() throws Exception {
+    resume = true;
+    if (!follow) {
+      outputPartialLine();
+      inputFile.flush();
+      LOG.info("End of file. Done with filePath=" + logFile.getAbsolutePath() + ", lineCount=" + lineCount);
+      return true;
+    }
+
+    long idleTime = System.currentTimeMillis() - lastReadTime;
+    if (!flushed && idleTime >= FLUSH_IDLE_MS) {
+      inputFile.flush();
+      flushed = true;
+    }
+    return idleTime >= ROLLOVER_IDLE_MS && rollOverIfNeeded();
+  }
+
+  private boolean rollOverIfNeeded() {
+    Object newFileKey = inputFile.getFileKeyFromLogFile(logFile);
+    if (newFileKey == null || (inputFile.getFileKey() != null && newFileKey.equals(inputFile.getFileKey()))) {
+      return false;
+    }
+    LOG.info("File key is different. Marking this input file for rollover. oldKey=" + inputFile.getFileKey() + ", newKey=" +
+      newFileKey + ". " + inputFile.getShortDescription());
+
+    outputPartialLine();
+    LOG.info("File is rolled over. Closing current open file." + inputFile.getShortDescription() + ", lineCount=" + lineCount);
+    close();
+    try {
+      LOG.info("Opening new rolled over file." + inputFile.getShortDescription());
+      channel = inputFile.openLogChannel(logFile);
+      lineCount = 0;
+      lastReadTime = System.currentTimeMillis();
+    } catch (Exception ex) {
+      LOG.error("Error opening rolled over file. " + inputFile.getShortDescription(), ex);
+      LOG.info("Added input to not ready list." + inputFile.getShortDescription());
+      inputFile.setReady(false);
+      inputFile.getInputManager().addToNotReady(inputFile);
+      return true;
+    }
+    LOG.info("File is successfully rolled over. " + inputFile.getShortDescription());
+    return false;
+  }
+
+  private void processLines(ByteBuffer buffer) {
+    byte[] bytes = buffer.array();
+    int end = buffer.limit();
+    int lineStart = buffer.position();
+    for (int i = lineStart; i < end && !isStopped(); i++) {
+      if (bytes[i] == '\n') {
+        if (partialLine.size() > 0) {
+          partialLine.write(bytes, lineStart, i - lineStart);
+          outputLine(partialLine.toByteArray(), 0, partialLine.size());
+          partialLine.reset();
+        } else {
+          outputLine(bytes, lineStart, i - lineStart);
+        }
+        lineStart = i + 1;
+      }
+    }
+    if (lineStart < end && !isStopped()) {
+      partialLine.write(bytes, lineStart, end - lineStart);
+    }
+  }
+
+  private void outputPartialLine() {
+    if (partialLine.size() > 0) {
+      outputLine(partialLine.toByteArray(), 0, partialLine.size());
+      partialLine.reset();
+    }
+  }
+
+  private void outputLine(byte[] bytes, int offset, int length) {
+    if (length > 0 && bytes[offset + length - 1] == '\r') {
+      length--;
+    }
+    lineCount++;
+    try {
+      if (!resume && lineCount > resumeFromLineNumber) {
+        LOG.info("Resuming to read from last line. lineCount=" + lineCount + ", input=" + inputFile.getShortDescription());
+        resume = true;
+      }
+      if (resume) {
+        InputFileMarker marker = new InputFileMarker(inputFile, inputFile.getBase64FileKey(), lineCount);
+        inputFile.outputLine(new String(bytes, offset, length, charset), marker);
+      }
+    } catch (Throwable t) {
+      String logMessageKey = inputFile.getClass().getSimpleName() + "_READ_LOOP_EXCEPTION";
+      LogFeederUtil.logErrorMessageByInterval(logMessageKey, "Caught exception in read loop. lineNumber=" + lineCount +
+        ", input=" + inputFile.getShortDescription(), t, LOG, Level.ERROR);
+    }
+  }
+
+  void close() {
+    if (channel != null) {
+      LOG.info("Closing reader." + inputFile.getShortDescription() + ", lineCount=" + lineCount);
+      try {
+        channel.close();
+      } catch (Throwable t) {
+        // ignore
+      }
+      channel = null;
+    }
+  }
+
+  /**
+   * @return true if the input was drained or stopped
+   */
+  boolean isStopped() {
+    return cancelled || inputFile.isDrain();
+  }
+
+  void cancel() {
+    cancelled = true;
+  }
+
+  boolean markScheduled() {
+    return scheduled.compareAndSet(false, true);
+  }
+
+  void unmarkScheduled() {
+    scheduled.set(false);
+  }
+
+  void requestRead() {
+    readRequested.set(true);
+  }
+
+  boolean clearReadRequest() {
+    return readRequested.getAndSet(false);
+  }
+
+  void markFinished() {
+    finished.countDown();
+  }
+
+  /**
+   * Waits until reading the file has finished.
+   */
+  public void awaitFinished() throws InterruptedException {
+    finished.await();
+  }
+
+  public InputFile getInputFile() {
+    return inputFile;
+  }
+
+  public File getLogFile() {
+    return logFile;
+  }
+
+  public TailedLogFile getNext() {
+    return next;
+  }
+
+  /**
+   * @param next file of the same input to read once this one has been read
+   */
+  public void setNext(TailedLogFile next) {
+    this.next = next;
+  }
+
+  Runnable getOnFinished() {
+    return onFinished;
+  }
+
+  void setOnFinished(Runnable onFinished) {
+    this.onFinished = onFinished;
+  }
+}
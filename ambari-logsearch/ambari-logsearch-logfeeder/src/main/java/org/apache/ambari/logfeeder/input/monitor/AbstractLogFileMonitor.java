@@ -58,7 +58,18 @@ public abstract class AbstractLogFileMonitor implements Runnable {
     }
   }
 
-  protected abstract String getStartLog();
+  /**
+   * Checks the log files once, used when the monitor is scheduled instead of running on its own thread.
+   */
+  public void monitor() {
+    try {
+      monitorAndUpdate();
+    } catch (Exception e) {
+      LOG.error("Error while monitoring log files.", e);
+    }
+  }
+
+  public abstract String getStartLog();
 
   protected abstract void monitorAndUpdate() throws Exception;
 }
@@ -49,7 +49,7 @@ public class DockerLogFileUpdateMonitor extends AbstractLogFileMonitor {
   }
 
   @Override
-  protected String getStartLog() {
+  public String getStartLog() {
     return "Start docker component type log files monitor thread for " + getInputFile().getLogType();
   }
 
@@ -73,12 +73,12 @@ public class DockerLogFileUpdateMonitor extends AbstractLogFileMonitor {
             LOG.debug("Container with id {} is stopped, won't monitor as it stopped for long time.", containerId);
           } else {
             LOG.info("Found new container (id: {}) with new log path: {}", logPath, containerId);
-            getInputFile().startNewChildDockerInputFileThread(containerEntry.getValue());
+            getInputFile().startNewChildDockerInputFile(containerEntry.getValue());
           }
         } else {
           if (!running && isItTooOld(timestamp, new Date().getTime(), getDetachTime())) {
             LOG.info("Removing: {}", logPath);
-            getInputFile().stopChildDockerInputFileThread(containerEntry.getKey());
+            getInputFile().stopChildDockerInputFile(containerEntry.getKey());
           }
         }
       }
@@ -87,7 +87,7 @@ public class DockerLogFileUpdateMonitor extends AbstractLogFileMonitor {
         LOG.info("Removing all inputs with type: {}", logType);
         for (Map.Entry<String, InputFile> inputFileEntry : copiedChildMap.entrySet()) {
           LOG.info("Removing: {}", inputFileEntry.getKey());
-          getInputFile().stopChildDockerInputFileThread(inputFileEntry.getKey());
+          getInputFile().stopChildDockerInputFile(inputFileEntry.getKey());
         }
       }
     }
@@ -60,16 +60,16 @@ public class LogFileDetachMonitor extends AbstractLogFileMonitor {
             File monitoredFile = entry.getValue().get(0);
             boolean isFileTooOld = FileUtil.isFileTooOld(monitoredFile, getDetachTime());
             if (isFileTooOld) {
-              LOG.info("File ('{}') in folder ('{}') is too old (reached {} minutes), detach input thread.", entry.getKey(), getDetachTime());
-              getInputFile().stopChildInputFileThread(entry.getKey());
+              LOG.info("File ('{}') in folder ('{}') is too old (reached {} minutes), detach input.", entry.getKey(), getDetachTime());
+              getInputFile().stopChildInputFile(entry.getKey());
             }
           }
         }
       } else {
-        LOG.info("Folder not exists. ({}) Stop thread.", entry.getKey());
+        LOG.info("Folder not exists. ({}) Stop monitoring it.", entry.getKey());
         for (Map.Entry<String, InputFile> inputFileEntry : copiedInputFileMap.entrySet()) {
           if (inputFileEntry.getKey().startsWith(entry.getKey())) {
-            getInputFile().stopChildInputFileThread(entry.getKey());
+            getInputFile().stopChildInputFile(entry.getKey());
             getInputFile().setFolderMap(actualFolderMap);
           }
         }
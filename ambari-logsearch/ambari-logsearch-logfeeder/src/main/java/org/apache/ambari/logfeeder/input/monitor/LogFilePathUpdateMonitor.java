@@ -54,19 +54,19 @@ public class LogFilePathUpdateMonitor extends AbstractLogFileMonitor {
         if (!entry.getValue().isEmpty()) { // check tail only for now
           File lastFile = entry.getValue().get(0);
           if (!originalLogFiles.get(0).getAbsolutePath().equals(lastFile.getAbsolutePath())) {
-            LOG.info("New file found (old: '{}', new: {}), reload thread for {}",
+            LOG.info("New file found (old: '{}', new: {}), reload input for {}",
               lastFile.getAbsolutePath(), originalLogFiles.get(0).getAbsolutePath(), entry.getKey());
-            getInputFile().stopChildInputFileThread(entry.getKey());
-            getInputFile().startNewChildInputFileThread(entry);
+            getInputFile().stopChildInputFile(entry.getKey());
+            getInputFile().startNewChildInputFile(entry);
           }
         }
       } else {
-        LOG.info("New log file folder found: {}, start a new thread if tail file is not too old.", entry.getKey());
+        LOG.info("New log file folder found: {}, start a new input if tail file is not too old.", entry.getKey());
         File monitoredFile = entry.getValue().get(0);
         if (FileUtil.isFileTooOld(monitoredFile, getDetachTime())) {
-          LOG.info("'{}' file is too old. No new thread start needed.", monitoredFile.getAbsolutePath());
+          LOG.info("'{}' file is too old. No new input start needed.", monitoredFile.getAbsolutePath());
         } else {
-          getInputFile().startNewChildInputFileThread(entry);
+          getInputFile().startNewChildInputFile(entry);
         }
       }
     }
@@ -21,9 +21,16 @@ package org.apache.ambari.logfeeder.input.reader;
 import org.apache.log4j.Logger;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
 
 public enum LogsearchReaderFactory {
   INSTANCE;
@@ -38,4 +45,14 @@ public enum LogsearchReaderFactory {
       return new FileReader(file);
     }
   }
+
+  public ReadableByteChannel getChannel(File file) throws IOException {
+    LOG.debug("Inside reader factory for file:" + file);
+    if (GZIPReader.isValidFile(file.getAbsolutePath())) {
+      LOG.info("Reading file " + file + " as gzip file");
+      return Channels.newChannel(new GZIPInputStream(new FileInputStream(file)));
+    } else {
+      return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+  }
 }
@@ -22,6 +22,7 @@ package org.apache.ambari.logfeeder.output;
 import org.apache.ambari.logfeeder.common.IdGeneratorHelper;
 import org.apache.ambari.logfeeder.common.LogFeederSolrClientFactory;
 import org.apache.ambari.logfeeder.conf.LogFeederProps;
+import org.apache.ambari.logfeeder.plugin.common.MetricData;
 import org.apache.ambari.logfeeder.plugin.input.InputMarker;
 import org.apache.ambari.logfeeder.plugin.output.Output;
 import org.apache.ambari.logfeeder.util.DateUtil;
@@ -44,13 +45,16 @@ import org.apache.solr.common.cloud.ZkStateReader;
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collection;;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -65,8 +69,15 @@ public class OutputSolr extends Output<LogFeederProps, InputMarker> {
   private static final int DEFAULT_MAX_INTERVAL_MS = 3000;
   private static final int DEFAULT_NUMBER_OF_WORKERS = 1;
   private static final boolean DEFAULT_SKIP_LOGTIME = false;
+  private static final int DEFAULT_TARGET_LATENCY_MS = 1000;
 
+  /** Smallest size the batches can shrink to when Solr is slow */
+  private static final int MIN_BATCH_SIZE = 100;
+
+  /** Maximum interval between the retries of a failed batch in seconds, the first retry is after 1 second */
   private static final int RETRY_INTERVAL = 30;
+  /** Number of failed batches a worker keeps for retrying before it stops taking new logs */
+  private static final int MAX_RETRY_BATCHES = 3;
 
   private static final String JAVA_SECURITY_AUTH_LOGIN_CONFIG = "java.security.auth.login.config";
   private static final String SOLR_HTTPCLIENT_BUILDER_FACTORY = "solr.httpclient.builder.factory";
@@ -80,6 +91,7 @@ public class OutputSolr extends Output<LogFeederProps, InputMarker> {
   private int maxIntervalMS;
   private int workers;
   private int maxBufferSize;
+  private int targetLatencyMS;
   private boolean implicitRouting = false;
   private int lastSlotByMin = -1;
   private boolean skipLogtime = false;
@@ -88,6 +100,10 @@ public class OutputSolr extends Output<LogFeederProps, InputMarker> {
   private BlockingQueue<OutputData> outgoingBuffer = null;
   private List<SolrWorkerThread> workerThreadList = new ArrayList<>();
 
+  private MetricData writeLatencyMetric = new MetricData("output.solr.write_latency_ms", true);
+  private MetricData batchSizeMetric = new MetricData("output.solr.batch_size", true);
+  private MetricData writeRetriesMetric = new MetricData("output.solr.write_retries", false);
+
   private LogFeederProps logFeederProps;
 
   @Override
@@ -156,9 +172,10 @@ public class OutputSolr extends Output<LogFeederProps, InputMarker> {
       LOG.warn("maxBufferSize is less than 1. Making it 1");
       maxBufferSize = 1;
     }
+    targetLatencyMS = getIntValue("target_latency_ms", DEFAULT_TARGET_LATENCY_MS);
 
-    LOG.info(String.format("Config: Number of workers=%d, splitMode=%s, splitInterval=%d."
-        + getShortDescription(), workers, splitMode, splitInterval));
+    LOG.info(String.format("Config: Number of workers=%d, splitMode=%s, splitInterval=%d, maxBatchSize=%d, targetLatencyMS=%d."
+        + getShortDescription(), workers, splitMode, splitInterval, maxBufferSize, targetLatencyMS));
 
     implicitRouting = logFeederProps.isSolrImplicitRouting(); // TODO: in the future, load it from output config (can be a use case to use different routing for audit/service logs)
     if (implicitRouting) {
@@ -192,11 +209,15 @@ public class OutputSolr extends Output<LogFeederProps, InputMarker> {
   }
 
   private SolrClient getSolrClient(int count) throws Exception, MalformedURLException {
-    SolrClient solrClient = new LogFeederSolrClientFactory().createSolrClient(zkConnectString, solrUrls, collection);
+    SolrClient solrClient = createSolrClient();
     pingSolr(count, solrClient);
     return solrClient;
   }
 
+  protected SolrClient createSolrClient() throws Exception {
+    return new LogFeederSolrClientFactory().createSolrClient(zkConnectString, solrUrls, collection);
+  }
+
   private void pingSolr(int count, SolrClient solrClient) {
     try {
       LOG.info("Pinging Solr server.");
@@ -282,11 +303,25 @@ public class OutputSolr extends Output<LogFeederProps, InputMarker> {
   public Long getPendingCount() {
     long pendingCount = 0;
     for (SolrWorkerThread solrWorkerThread : workerThreadList) {
-      pendingCount += solrWorkerThread.localBuffer.size();
+      pendingCount += solrWorkerThread.getPendingCount();
     }
     return pendingCount;
   }
 
+  @Override
+  public void addMetricsContainers(List<MetricData> metricsList) {
+    super.addMetricsContainers(metricsList);
+    metricsList.add(writeLatencyMetric);
+    metricsList.add(batchSizeMetric);
+    metricsList.add(writeRetriesMetric);
+  }
+
+  @Override
+  public synchronized void logStat() {
+    super.logStat();
+    logStatForMetric(writeRetriesMetric, "Stat: Solr Write Retries");
+  }
+
   @Override
   public void close() {
     LOG.info("Closing Solr client...");
@@ -301,6 +336,27 @@ public class OutputSolr extends Output<LogFeederProps, InputMarker> {
     return "output:destination=solr,collection=" + collection;
   }
 
+  /**
+   * Documents sent to Solr in one request, with the latest input markers of their files which are checked in once
+   * the documents are written.
+   */
+  private static class SolrBatch {
+    private final long sequence;
+    private final Collection<SolrInputDocument> documents;
+    private final long bytesSize;
+    private final Map<String, InputMarker> inputMarkers;
+
+    private int attempts = 0;
+    private long nextRetryTime = 0;
+
+    SolrBatch(long sequence, Collection<SolrInputDocument> documents, long bytesSize, Map<String, InputMarker> inputMarkers) {
+      this.sequence = sequence;
+      this.documents = documents;
+      this.bytesSize = bytesSize;
+      this.inputMarkers = inputMarkers;
+    }
+  }
+
   class SolrWorkerThread extends Thread {
     private static final String ROUTER_FIELD = "_router_field_";
 
@@ -310,6 +366,17 @@ public class OutputSolr extends Output<LogFeederProps, InputMarker> {
 
     private long localBufferBytesSize = 0;
 
+    /** Size of the batches, adapted to the latency of the Solr updates */
+    private int batchSize = maxBufferSize;
+    private long batchSequence = 0;
+    /** Failed batches waiting for retry, the oldest first */
+    private final Deque<SolrBatch> retryBatches = new ConcurrentLinkedDeque<>();
+    /**
+     * Input markers of written batches which can't be checked in yet, as an earlier batch with logs of the same file
+     * is waiting for retry: file key -> batch sequence and input marker
+     */
+    private final Map<String, Map.Entry<Long, InputMarker>> deferredInputMarkers = new HashMap<>();
+
     public SolrWorkerThread(SolrClient solrClient) {
       this.solrClient = solrClient;
     }
@@ -323,8 +390,19 @@ public class OutputSolr extends Output<LogFeederProps, InputMarker> {
         long currTimeMS = System.currentTimeMillis();
         OutputData outputData = null;
         try {
+          retryBatches(false);
+          if (retryBatches.size() >= MAX_RETRY_BATCHES) {
+            if (isDrain()) {
+              LOG.warn("In drain mode and sending to Solr failed. So exiting. output=" + getShortDescription());
+              break;
+            }
+            // Solr is not available, stop taking logs until the next retry, the outgoingBuffer blocks the inputs
+            Thread.sleep(Math.min(Math.max(getTimeToNextRetry(), 1), 1000));
+            continue;
+          }
+
           long nextDispatchDuration = maxIntervalMS - (currTimeMS - lastDispatchTime);
-          outputData = getOutputData(nextDispatchDuration);
+          outputData = getOutputData(Math.min(nextDispatchDuration, getTimeToNextRetry()));
 
           if (outputData != null) {
             createSolrDocument(outputData);
@@ -335,7 +413,7 @@ public class OutputSolr extends Output<LogFeederProps, InputMarker> {
           }
 
           if (!localBuffer.isEmpty() &&
-              (outputData == null && isDrain() || nextDispatchDuration <= 0 || localBuffer.size() >= maxBufferSize)
+              (outputData == null && isDrain() || nextDispatchDuration <= 0 || localBuffer.size() >= batchSize)
              ) {
             boolean response = sendToSolr(outputData);
             if (isDrain() && !response) {
@@ -357,6 +435,10 @@ public class OutputSolr extends Output<LogFeederProps, InputMarker> {
         }
       }
 
+      if (!retryBatches.isEmpty()) {
+        // last attempt for the failed batches before exiting
+        retryBatches(true);
+      }
       closeSolrClient();
 
       resetLocalBuffer();
@@ -364,44 +446,78 @@ public class OutputSolr extends Output<LogFeederProps, InputMarker> {
     }
     
     /**
-     * This will loop till Solr is available and LogFeeder is
-     * successfully able to write to the collection or shard. It will block till
-     * it can write. The outgoingBuffer is a BlockingQueue and when it is full, it
-     * will automatically stop parsing the log files.
+     * Sends the local buffer to Solr as one batch. If Solr is not reachable the batch is kept for retry, and the
+     * worker goes on with the next logs while there are only a few failed batches. If there are too many of them
+     * it stops taking logs, and as the outgoingBuffer is a BlockingQueue, when it is full, it will automatically
+     * stop parsing the log files.
      */
     private boolean sendToSolr(OutputData outputData) {
-      boolean result = false;
-      while (!isDrain()) {
-        try {
-          if (implicitRouting) {
-            // Compute the current router value
-            addRouterField();
-          }
-          addToSolr(outputData);
-          resetLocalBuffer();
-          //Send successful, will return 
-          result = true;
-          break;
-        } catch (IOException | SolrException exception) {
-          // Transient error, lets block till it is available
-          try {
-            LOG.warn("Solr is not reachable. Going to retry after " + RETRY_INTERVAL + " seconds. " + "output="
-                + getShortDescription(), exception);
-            Thread.sleep(RETRY_INTERVAL * 1000);
-          } catch (Throwable t) {
-            // ignore
-          }
-        } catch (Throwable serverException) {
-          // Something unknown happened. Let's not block because of this error. 
-          // Clear the buffer
-          String logMessageKey = this.getClass().getSimpleName() + "_SOLR_UPDATE_EXCEPTION";
-          LogFeederUtil.logErrorMessageByInterval(logMessageKey, "Error sending log message to server. Dropping logs",
-              serverException, LOG, Level.ERROR);
-          resetLocalBuffer();
-          break;
+      SolrBatch batch = new SolrBatch(batchSequence++, new ArrayList<>(localBuffer), localBufferBytesSize,
+        new HashMap<>(latestInputMarkers));
+      resetLocalBuffer();
+      return send(batch, outputData);
+    }
+
+    private boolean send(SolrBatch batch, OutputData outputData) {
+      try {
+        if (implicitRouting) {
+          // Compute the current router value
+          addRouterField(batch.documents);
         }
-      } 
-      return result;
+        addToSolr(batch, outputData);
+        //Send successful, will return
+        return true;
+      } catch (IOException | SolrException exception) {
+        // Transient error, let's retry later
+        scheduleRetry(batch, exception);
+      } catch (Throwable serverException) {
+        // Something unknown happened. Let's not block because of this error.
+        // Drop the batch
+        String logMessageKey = this.getClass().getSimpleName() + "_SOLR_UPDATE_EXCEPTION";
+        LogFeederUtil.logErrorMessageByInterval(logMessageKey, "Error sending log message to server. Dropping logs",
+            serverException, LOG, Level.ERROR);
+        completeBatch(batch, false);
+      }
+      return false;
+    }
+
+    private void scheduleRetry(SolrBatch batch, Exception exception) {
+      if (batch.attempts == 0) {
+        retryBatches.addLast(batch);
+      }
+      batch.attempts++;
+      long retryIntervalMS = Math.min(1000L << Math.min(batch.attempts - 1, 16), RETRY_INTERVAL * 1000L);
+      batch.nextRetryTime = System.currentTimeMillis() + retryIntervalMS;
+      // a failing request may be too big for a slow Solr
+      batchSize = Math.max(Math.min(MIN_BATCH_SIZE, maxBufferSize), batchSize / 2);
+      incrementMetric(writeRetriesMetric, 1);
+
+      String logMessageKey = this.getClass().getSimpleName() + "_SOLR_NOT_REACHABLE";
+      LogFeederUtil.logErrorMessageByInterval(logMessageKey, "Solr is not reachable. Going to retry batch of " +
+        batch.documents.size() + " documents after " + retryIntervalMS + " ms, attempts=" + batch.attempts +
+        ", failed batches=" + retryBatches.size() + ". output=" + getShortDescription(), exception, LOG, Level.WARN);
+    }
+
+    /**
+     * Retries the failed batches in their original order.
+     *
+     * @param all retry all the batches now, not only the ones which are due
+     */
+    private void retryBatches(boolean all) {
+      long currTimeMS = System.currentTimeMillis();
+      for (SolrBatch batch : new ArrayList<>(retryBatches)) {
+        if (all || batch.nextRetryTime <= currTimeMS) {
+          send(batch, null);
+        }
+      }
+    }
+
+    private long getTimeToNextRetry() {
+      long nextRetryTime = Long.MAX_VALUE;
+      for (SolrBatch batch : retryBatches) {
+        nextRetryTime = Math.min(nextRetryTime, batch.nextRetryTime);
+      }
+      return nextRetryTime == Long.MAX_VALUE ? Long.MAX_VALUE : nextRetryTime - System.currentTimeMillis();
     }
 
     private OutputData getOutputData(long nextDispatchDuration) throws InterruptedException {
@@ -433,7 +549,7 @@ public class OutputSolr extends Output<LogFeederProps, InputMarker> {
       localBuffer.add(document);
     }
 
-    private void addRouterField() {
+    private void addRouterField(Collection<SolrInputDocument> documents) {
       ZkStateReader reader = ((CloudSolrClient) solrClient).getZkStateReader();
       DocCollection docCollection = reader.getClusterState().getCollection(collection);
       Collection<Slice> slices = docCollection.getSlices();
@@ -454,23 +570,77 @@ public class OutputSolr extends Output<LogFeederProps, InputMarker> {
         lastSlotByMin = slotByMin;
       }
 
-      for (SolrInputDocument solrInputDocument : localBuffer) {
+      for (SolrInputDocument solrInputDocument : documents) {
         solrInputDocument.setField(ROUTER_FIELD, shard);
       }
     }
 
-    private void addToSolr(OutputData outputData) throws SolrServerException, IOException {
-      UpdateResponse response = solrClient.add(localBuffer);
+    private void addToSolr(SolrBatch batch, OutputData outputData) throws SolrServerException, IOException {
+      long startTime = System.currentTimeMillis();
+      UpdateResponse response = solrClient.add(batch.documents);
+      long latencyMS = System.currentTimeMillis() - startTime;
       if (response.getStatus() != 0) {
         String logMessageKey = this.getClass().getSimpleName() + "_SOLR_UPDATE_ERROR";
         LogFeederUtil.logErrorMessageByInterval(logMessageKey,
             String.format("Error writing to Solr. response=%s, log=%s", response, outputData), null, LOG, Level.ERROR);
       }
-      statMetric.value += localBuffer.size();
-      writeBytesMetric.value += localBufferBytesSize;
-      for (InputMarker inputMarker : latestInputMarkers.values()) {
-        inputMarker.getInput().checkIn(inputMarker);
+      adaptBatchSize(batch, latencyMS);
+      incrementMetric(statMetric, batch.documents.size());
+      incrementMetric(writeBytesMetric, batch.bytesSize);
+      writeLatencyMetric.value = latencyMS;
+      completeBatch(batch, true);
+    }
+
+    /**
+     * Shrinks the batches if Solr responds slower than the target latency, and grows them back while it responds
+     * fast to full batches.
+     */
+    private void adaptBatchSize(SolrBatch batch, long latencyMS) {
+      int minBatchSize = Math.min(MIN_BATCH_SIZE, maxBufferSize);
+      if (latencyMS > targetLatencyMS) {
+        int newBatchSize = (int) (batchSize * targetLatencyMS / latencyMS);
+        batchSize = Math.max(minBatchSize, Math.max(newBatchSize, batchSize / 2));
+      } else if (latencyMS < targetLatencyMS / 2 && batch.documents.size() >= batchSize) {
+        batchSize = Math.min(maxBufferSize, batchSize + Math.max(1, maxBufferSize / 10));
       }
+      batchSizeMetric.value = batchSize;
+    }
+
+    /**
+     * Checks in the input markers of a written or dropped batch, unless an earlier batch with logs of the same file is
+     * waiting for retry, in which case the newest marker is checked in after that one is written.
+     *
+     * @param written false if the batch was dropped, then only the deferred markers of later batches are checked in
+     */
+    private void completeBatch(SolrBatch batch, boolean written) {
+      retryBatches.remove(batch);
+      for (Map.Entry<String, InputMarker> entry : batch.inputMarkers.entrySet()) {
+        String fileKey = entry.getKey();
+        if (isWaitingForRetry(fileKey)) {
+          Map.Entry<Long, InputMarker> deferred = deferredInputMarkers.get(fileKey);
+          if (written && (deferred == null || deferred.getKey() < batch.sequence)) {
+            deferredInputMarkers.put(fileKey, new SimpleImmutableEntry<>(batch.sequence, entry.getValue()));
+          }
+          continue;
+        }
+        InputMarker inputMarker = written ? entry.getValue() : null;
+        Map.Entry<Long, InputMarker> deferred = deferredInputMarkers.remove(fileKey);
+        if (deferred != null && (inputMarker == null || deferred.getKey() > batch.sequence)) {
+          inputMarker = deferred.getValue();
+        }
+        if (inputMarker != null) {
+          inputMarker.getInput().checkIn(inputMarker);
+        }
+      }
+    }
+
+    private boolean isWaitingForRetry(String fileKey) {
+      for (SolrBatch batch : retryBatches) {
+        if (batch.inputMarkers.containsKey(fileKey)) {
+          return true;
+        }
+      }
+      return false;
     }
 
     private void closeSolrClient() {
@@ -489,8 +659,22 @@ public class OutputSolr extends Output<LogFeederProps, InputMarker> {
       latestInputMarkers.clear();
     }
 
+    public long getPendingCount() {
+      long pendingCount = localBuffer.size();
+      for (SolrBatch batch : retryBatches) {
+        pendingCount += batch.documents.size();
+      }
+      return pendingCount;
+    }
+
     public boolean isDone() {
-      return localBuffer.isEmpty();
+      return localBuffer.isEmpty() && retryBatches.isEmpty();
+    }
+  }
+
+  private void incrementMetric(MetricData metric, long delta) {
+    synchronized (metric) {
+      metric.value += delta;
     }
   }
 
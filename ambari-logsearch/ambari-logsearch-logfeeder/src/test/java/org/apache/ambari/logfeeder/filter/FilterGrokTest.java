@@ -149,6 +149,32 @@ public class FilterGrokTest {
     assertFalse("Something was captured", capture.hasCaptured());
   }
 
+  @Test
+  public void testFilterGrok_skipLineWithoutRequiredTokens() throws Exception {
+    LOG.info("testFilterGrok_skipLineWithoutRequiredTokens()");
+
+    FilterGrokDescriptorImpl filterGrokDescriptor = new FilterGrokDescriptorImpl();
+    filterGrokDescriptor.setMessagePattern("(?m)^%{TIMESTAMP_ISO8601:logtime}%{SPACE}%{LOGLEVEL:level}%{SPACE}\\[%{DATA:thread_name}\\]%{SPACE}%{GREEDYDATA:log_message}");
+    init(filterGrokDescriptor);
+
+    mockOutputManager.write(EasyMock.capture(capture), EasyMock.anyObject(InputFileMarker.class));
+    EasyMock.expectLastCall().once();
+    EasyMock.replay(mockOutputManager);
+
+    filterGrok.apply("2016-04-08 15:55:23,548 INFO This is a test", new InputFileMarker(null, null, 0));
+    filterGrok.apply("2016-04-08 15:55:24,548 WARN [main] Next message", new InputFileMarker(null, null, 0));
+
+    EasyMock.verify(mockOutputManager);
+    Map<String, Object> jsonParams = capture.getValue();
+
+    assertNotNull(jsonParams);
+    assertEquals("Incorrect parsing: log time", "2016-04-08 15:55:24,548", jsonParams.remove("logtime"));
+    assertEquals("Incorrect parsing: log level", "WARN", jsonParams.remove("level"));
+    assertEquals("Incorrect parsing: thread name", "main", jsonParams.remove("thread_name"));
+    assertEquals("Incorrect parsing: log message", "Next message", jsonParams.remove("log_message"));
+    assertTrue("jsonParams are not empty!", jsonParams.isEmpty());
+  }
+
   @After
   public void cleanUp() {
     capture.reset();
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ambari.logfeeder.filter;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GrokMatcherTest {
+
+  @Test
+  public void testFindRequiredTokens_topLevelLiterals() {
+    assertEquals(Arrays.asList(" [", "] ", ":"),
+      GrokMatcher.findRequiredTokens("(?s)(?m)^(?<name0>\\d+) \\[(?<name1>.*?)\\] (?<name2>[a-z.]+):(?<name3>.*)"));
+  }
+
+  @Test
+  public void testFindRequiredTokens_skipsOptionalLiterals() {
+    assertEquals(Arrays.asList("ab", "d"), GrokMatcher.findRequiredTokens("abc?d(x)?e*f{0,2}"));
+  }
+
+  @Test
+  public void testFindRequiredTokens_noTokensWithAlternativesOrIgnoreCase() {
+    assertEquals(Collections.emptyList(), GrokMatcher.findRequiredTokens("abc|def"));
+    assertEquals(Collections.emptyList(), GrokMatcher.findRequiredTokens("(?i)abc"));
+  }
+
+  @Test
+  public void testIsAnchoredToStart() {
+    assertTrue(GrokMatcher.isAnchoredToStart("(?s)^\\[(?<name0>.*)"));
+    assertFalse(GrokMatcher.isAnchoredToStart("(?s)(?m)^\\[(?<name0>.*)"));
+    assertFalse(GrokMatcher.isAnchoredToStart("^(?<name0>.*)"));
+    assertFalse(GrokMatcher.isAnchoredToStart("\\[(?<name0>.*)"));
+  }
+}
@@ -26,6 +26,7 @@ import java.util.List;
 
 import org.apache.ambari.logfeeder.conf.LogEntryCacheConfig;
 import org.apache.ambari.logfeeder.conf.LogFeederProps;
+import org.apache.ambari.logfeeder.input.file.LogFileTailer;
 import org.apache.ambari.logfeeder.plugin.filter.Filter;
 import org.apache.ambari.logfeeder.plugin.input.InputMarker;
 import org.apache.ambari.logfeeder.plugin.manager.InputManager;
@@ -145,6 +146,36 @@ public class InputFileTest {
     EasyMock.verify(inputManager);
   }
 
+  @Test
+  public void testInputFile_process3RowsWithTailer() throws Exception {
+    LOG.info("testInputFile_process3RowsWithTailer()");
+
+    File checkPointDir = createCheckpointDir("process3_tailer_checkpoint");
+    File testFile = createFile("process3_tailer.log");
+
+    init(testFile.getAbsolutePath());
+
+    InputManager inputManager = EasyMock.createStrictMock(InputManager.class);
+    EasyMock.expect(inputManager.getCheckPointFolderFile()).andReturn(checkPointDir);
+    EasyMock.replay(inputManager);
+    inputFile.setInputManager(inputManager);
+
+    LogFileTailer logFileTailer = new LogFileTailer(2);
+    try {
+      inputFile.setLogFileTailer(logFileTailer);
+      inputFile.isReady();
+      inputFile.start();
+    } finally {
+      logFileTailer.shutdown();
+    }
+
+    assertEquals("Amount of the rows is incorrect", rows.size(), 3);
+    for (int row = 0; row < 3; row++)
+      assertEquals("Row #" + (row + 1) + " not correct", TEST_LOG_FILE_ROWS[row], rows.get(row));
+
+    EasyMock.verify(inputManager);
+  }
+
   @Test
   public void testInputFile_noLogPath() throws Exception {
     LOG.info("testInputFile_noLogPath()");
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ambari.logfeeder.input.file;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class CheckpointStoreTest {
+
+  private static final File TEST_DIR = new File(FileUtils.getTempDirectoryPath(), "logfeeder_checkpoint_store_test");
+
+  @Before
+  public void setUp() throws Exception {
+    FileUtils.deleteDirectory(TEST_DIR);
+    TEST_DIR.mkdirs();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(TEST_DIR);
+  }
+
+  @Test
+  public void testCheckpointStore_reloadFlushedCheckpoints() throws Exception {
+    CheckpointStore checkpointStore = new CheckpointStore(TEST_DIR, ".cp");
+    checkpointStore.put("key1", createCheckpoint("/var/log/a.log", 10));
+    checkpointStore.put("key2", createCheckpoint("/var/log/b.log", 20));
+    checkpointStore.flush();
+    checkpointStore.put("key1", createCheckpoint("/var/log/a.log", 15));
+    checkpointStore.remove("key2");
+    checkpointStore.flush();
+
+    CheckpointStore reloadedStore = new CheckpointStore(TEST_DIR, ".cp");
+    assertEquals("15", reloadedStore.get("key1").get("line_number"));
+    assertNull(reloadedStore.get("key2"));
+  }
+
+  @Test
+  public void testCheckpointStore_importLegacyCheckpointFiles() throws Exception {
+    File legacyFile = new File(TEST_DIR, "key1.cp");
+    String json = "{\"file_path\":\"/var/log/a.log\",\"file_key\":\"key1\",\"line_number\":\"42\"}";
+    try (RandomAccessFile raf = new RandomAccessFile(legacyFile, "rw")) {
+      raf.writeInt(json.length());
+      raf.write(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    CheckpointStore checkpointStore = new CheckpointStore(TEST_DIR, ".cp");
+    assertEquals("42", checkpointStore.get("key1").get("line_number"));
+    assertFalse("Imported checkpoint file was not deleted", legacyFile.exists());
+
+    CheckpointStore reloadedStore = new CheckpointStore(TEST_DIR, ".cp");
+    assertEquals("42", reloadedStore.get("key1").get("line_number"));
+  }
+
+  private Map<String, Object> createCheckpoint(String filePath, int lineNumber) {
+    Map<String, Object> checkpoint = new HashMap<>();
+    checkpoint.put("file_path", filePath);
+    checkpoint.put("line_number", "" + lineNumber);
+    return checkpoint;
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ambari.logfeeder.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.stream.Collectors;
+
+import org.apache.ambari.logfeeder.conf.LogFeederProps;
+import org.apache.ambari.logfeeder.conf.LogFeederSecurityConfig;
+import org.apache.ambari.logfeeder.input.InputFileMarker;
+import org.apache.ambari.logfeeder.plugin.input.Input;
+import org.apache.ambari.logfeeder.plugin.input.InputMarker;
+import org.apache.log4j.Logger;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.response.SolrPingResponse;
+import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.NamedList;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OutputSolrTest {
+  private static final Logger LOG = Logger.getLogger(OutputSolrTest.class);
+
+  private static final long TIMEOUT_MS = 10000;
+
+  private OutputSolr outputSolr;
+
+  private SolrClient mockSolrClient = EasyMock.createNiceMock(SolrClient.class);
+
+  @SuppressWarnings("rawtypes")
+  private Input mockInput = EasyMock.createNiceMock(Input.class);
+
+  /** What the next adds do: a latency in ms or an exception to throw, the adds succeed at once when empty */
+  private final Queue<Object> addBehaviors = new LinkedList<>();
+
+  /** The adds, as the ids of their documents, and the check-ins, as the line numbers of their markers, in order */
+  private final List<String> events = new ArrayList<>();
+
+  private final List<Integer> addSizes = new ArrayList<>();
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void init() throws Exception {
+    SolrPingResponse pingResponse = new SolrPingResponse();
+    pingResponse.setResponse(createResponse());
+    EasyMock.expect(mockSolrClient.ping()).andReturn(pingResponse).anyTimes();
+    EasyMock.expect(mockSolrClient.add(EasyMock.<Collection<SolrInputDocument>>anyObject())).andAnswer(() -> {
+      Collection<SolrInputDocument> documents = (Collection<SolrInputDocument>) EasyMock.getCurrentArguments()[0];
+      Object behavior;
+      synchronized (addBehaviors) {
+        behavior = addBehaviors.poll();
+      }
+      if (behavior instanceof Long) {
+        Thread.sleep((Long) behavior);
+      }
+      recordEvent("add:" + documents.stream().map(document -> document.getFieldValue("id").toString())
+        .collect(Collectors.joining(",")), documents.size());
+      if (behavior instanceof Exception) {
+        throw (Exception) behavior;
+      }
+      UpdateResponse updateResponse = new UpdateResponse();
+      updateResponse.setResponse(createResponse());
+      return updateResponse;
+    }).anyTimes();
+
+    mockInput.checkIn(EasyMock.anyObject(InputMarker.class));
+    EasyMock.expectLastCall().andAnswer(() -> {
+      InputFileMarker inputMarker = (InputFileMarker) EasyMock.getCurrentArguments()[0];
+      recordEvent("checkIn:" + inputMarker.getLineNumber(), null);
+      return null;
+    }).anyTimes();
+    EasyMock.replay(mockSolrClient, mockInput);
+
+    outputSolr = new OutputSolr() {
+      @Override
+      protected SolrClient createSolrClient() {
+        return mockSolrClient;
+      }
+    };
+  }
+
+  @Test
+  public void testOutputSolr_failedBatchesAreRetriedInOrder() throws Exception {
+    LOG.info("testOutputSolr_failedBatchesAreRetriedInOrder()");
+
+    addBehaviors.addAll(Arrays.asList(new IOException("Solr is down"), new IOException("Solr is down")));
+    initOutputSolr(2, 1000);
+
+    for (int line = 1; line <= 6; line++) {
+      write("file1", line);
+    }
+
+    awaitEvents(6);
+    assertEquals(Arrays.asList("add:doc1,doc2", "add:doc3,doc4", "add:doc5,doc6",
+      "add:doc1,doc2", "add:doc3,doc4", "checkIn:6"), getEvents());
+  }
+
+  @Test
+  public void testOutputSolr_checkpointAdvancesOnlyAfterSuccessfulAdd() throws Exception {
+    LOG.info("testOutputSolr_checkpointAdvancesOnlyAfterSuccessfulAdd()");
+
+    addBehaviors.add(new IOException("Solr is down"));
+    initOutputSolr(2, 1000);
+
+    write("file1", 1);
+    write("file1", 2);
+    awaitEvents(1);
+    // the logs of another file are written and checked in while the failed batch waits
+    write("file2", 3);
+    write("file2", 4);
+    awaitEvents(3);
+    assertEquals(Arrays.asList("add:doc1,doc2", "add:doc3,doc4", "checkIn:4"), getEvents());
+
+    awaitEvents(5);
+    assertEquals(Arrays.asList("add:doc1,doc2", "add:doc3,doc4", "checkIn:4", "add:doc1,doc2", "checkIn:2"),
+      getEvents());
+  }
+
+  @Test
+  public void testOutputSolr_batchSizeAdaptsToLatencyAndFailures() throws Exception {
+    LOG.info("testOutputSolr_batchSizeAdaptsToLatencyAndFailures()");
+
+    // slower than the target latency, then fast, then failing, then fast again
+    addBehaviors.addAll(Arrays.asList(300L, 0L, new IOException("Solr is down")));
+    initOutputSolr(400, 100);
+
+    for (int line = 1; line <= 960; line++) {
+      write("file1", line);
+    }
+    awaitAdds(5);
+    for (int line = 961; line <= 1160; line++) {
+      write("file1", line);
+    }
+    awaitAdds(6);
+
+    // 400 -> shrunk to 200 by the latency -> grown to 240 -> halved to 120 by the failure -> grows back by 40 at
+    // each fast full batch, including the retried batch of 240 documents
+    assertEquals(Arrays.asList(400, 200, 240, 120, 240, 200), getAddSizes());
+  }
+
+  @After
+  public void cleanUp() {
+    if (outputSolr != null) {
+      outputSolr.close();
+    }
+    EasyMock.reset(mockSolrClient, mockInput);
+  }
+
+  private void initOutputSolr(int flushSize, int targetLatencyMS) throws Exception {
+    Map<String, Object> config = new HashMap<String, Object>();
+    config.put("solr_urls", Collections.singletonList("http://localhost:8886/solr"));
+    config.put("collection", "hadoop_logs");
+    config.put("flush_size", String.valueOf(flushSize));
+    config.put("target_latency_ms", String.valueOf(targetLatencyMS));
+    // batches are only sent when they are full
+    config.put("idle_flush_time_ms", "60000");
+
+    LogFeederProps logFeederProps = new LogFeederProps();
+    logFeederProps.setLogFeederSecurityConfig(new LogFeederSecurityConfig());
+    outputSolr.loadConfig(config);
+    outputSolr.init(logFeederProps);
+  }
+
+  private void write(String fileKey, int line) throws Exception {
+    Map<String, Object> jsonObj = new HashMap<>();
+    jsonObj.put("id", "doc" + line);
+    jsonObj.put("log_message", "line " + line);
+    outputSolr.write(jsonObj, new InputFileMarker(mockInput, fileKey, line));
+  }
+
+  private NamedList<Object> createResponse() {
+    NamedList<Object> header = new NamedList<>();
+    header.add("status", 0);
+    NamedList<Object> response = new NamedList<>();
+    response.add("responseHeader", header);
+    return response;
+  }
+
+  private synchronized void recordEvent(String event, Integer addSize) {
+    events.add(event);
+    if (addSize != null) {
+      addSizes.add(addSize);
+    }
+    notifyAll();
+  }
+
+  private synchronized List<String> getEvents() {
+    return new ArrayList<>(events);
+  }
+
+  private synchronized List<Integer> getAddSizes() {
+    return new ArrayList<>(addSizes);
+  }
+
+  private synchronized void awaitEvents(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+    while (events.size() < count && System.currentTimeMillis() < deadline) {
+      wait(100);
+    }
+    assertTrue("Expected " + count + " events, got " + events, events.size() >= count);
+  }
+
+  private synchronized void awaitAdds(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+    while (addSizes.size() < count && System.currentTimeMillis() < deadline) {
+      wait(100);
+    }
+    assertEquals(count, addSizes.size());
+  }
+}
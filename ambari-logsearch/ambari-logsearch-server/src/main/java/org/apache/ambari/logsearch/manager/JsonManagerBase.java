@@ -60,10 +60,19 @@ public class JsonManagerBase {
       return "";
     }
 
-    Gson gson = new GsonBuilder()
+    return createGson().toJson(obj);
+  }
+
+  /**
+   * Writes an object as JSON without building the whole JSON string first.
+   */
+  protected void writeObjAsJson(Object obj, Appendable writer) {
+    createGson().toJson(obj, writer);
+  }
+
+  private Gson createGson() {
+    return new GsonBuilder()
       .registerTypeAdapter(Date.class, jsonDateSerialiazer)
       .registerTypeAdapter(Date.class, jsonDateDeserialiazer).create();
-
-    return gson.toJson(obj);
   }
 }
@@ -18,10 +18,13 @@
  */
 package org.apache.ambari.logsearch.manager;
 
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -29,11 +32,13 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
@@ -95,6 +100,7 @@ import org.apache.solr.client.solrj.response.UpdateResponse;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrException;
+import org.apache.solr.common.params.CursorMarkParams;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.data.solr.core.DefaultQueryParser;
 import org.springframework.data.solr.core.query.Criteria;
@@ -117,6 +123,8 @@ public class ServiceLogsManager extends ManagerBase<ServiceLogData, ServiceLogRe
   private static final Logger logger = Logger.getLogger(ServiceLogsManager.class);
 
   private static final String SERVICE_LOG_TEMPLATE = "service_log_txt.ftl";
+  private static final int EXPORT_PAGE_SIZE = 1000;
+  private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
 
   @Inject
   private ServiceLogsSolrDao serviceLogsSolrDao;
@@ -254,79 +262,43 @@ public class ServiceLogsManager extends ManagerBase<ServiceLogData, ServiceLogRe
     return getPageForKeywordByType(request, keyword, isNext, event);
   }
 
+  /**
+   * Finds the page of the next or previous log containing the keyword. Logs are ordered by their time and then
+   * by their sequence number, so the position of a log is given by these two values: the hit is looked up
+   * from the first log after the current page (or the last one before it) and its page is computed from the
+   * number of logs positioned before it.
+   */
   private LogListResponse<ServiceLogData> getPageForKeywordByType(ServiceLogRequest request, String keyword, boolean isNext, String event) {
-    String fromDate = request.getFrom(); // store start & end dates
-    String toDate = request.getTo();
     boolean timeAscending = LogSearchConstants.ASCENDING_ORDER.equals(request.getSortType());
-
     int currentPageNumber = Integer.parseInt(request.getPage());
     int maxRows = Integer.parseInt(request.getPageSize());
-    Date logDate = getDocDateFromNextOrLastPage(request, keyword, isNext, currentPageNumber, maxRows);
-    if (logDate == null) {
-      throw RESTErrorUtil.createRESTException("The keyword " + "\"" + keyword + "\"" + " was not found", MessageEnums.ERROR_SYSTEM);
-    }
-
-    String nextOrPreviousPageDate = DateUtil.convertDateWithMillisecondsToSolrDate(logDate);
-    SolrServiceLogData firstKeywordLog = getNextHitForKeyword(request, keyword, isNext, event, timeAscending, nextOrPreviousPageDate);
 
-    long keywordSeqNum = firstKeywordLog.getSeqNum();
-    String keywordLogtime = DateUtil.convertDateWithMillisecondsToSolrDate(firstKeywordLog.getLogTime());
+    SolrServiceLogData boundaryLog = getLogFromNextOrLastPage(request, keyword, isNext, currentPageNumber, maxRows);
+    SolrServiceLogData keywordLog = getNextHitForKeyword(request, keyword, isNext, event, timeAscending, boundaryLog);
 
-    long numberOfDateDuplicates = countNumberOfDuplicates(request, isNext, keywordSeqNum, keywordLogtime);
+    SimpleQuery logsBeforeQuery = conversionService.convert(request, SimpleQuery.class);
+    logsBeforeQuery.addFilterQuery(createPositionFilter(keywordLog, timeAscending, false, false));
+    long numberOfLogsUntilFound = serviceLogsSolrDao.count(logsBeforeQuery);
 
-    long numberOfLogsUntilFound = getNumberOfLogsUntilFound(request, fromDate, toDate, timeAscending, keywordLogtime, numberOfDateDuplicates);
-    int start = (int) ((numberOfLogsUntilFound / maxRows));
-
-    request.setFrom(fromDate);
-    request.setTo(toDate);
-    request.setPage(String.valueOf(start));
+    request.setPage(String.valueOf(numberOfLogsUntilFound / maxRows));
     SolrQuery keywordNextPageQuery = new DefaultQueryParser().doConstructSolrQuery(conversionService.convert(request, SimpleQuery.class));
     return getLogAsPaginationProvided(keywordNextPageQuery, serviceLogsSolrDao, event);
   }
 
-  private Long getNumberOfLogsUntilFound(ServiceLogRequest request, String fromDate, String toDate, boolean timeAscending,
-                                         String keywordLogtime, long numberOfDateDuplicates) {
-    if (!timeAscending) {
-      request.setTo(toDate);
-      request.setFrom(keywordLogtime);
-    } else {
-      request.setTo(keywordLogtime);
-      request.setFrom(fromDate);
-    }
-    SimpleQuery rangeQuery = conversionService.convert(request, SimpleQuery.class);
-    return serviceLogsSolrDao.count(rangeQuery) - numberOfDateDuplicates;
-  }
-
-  private long countNumberOfDuplicates(ServiceLogRequest request, boolean isNext, long keywordSeqNum, String keywordLogtime) {
-    request.setFrom(keywordLogtime);
-    request.setTo(keywordLogtime);
-    SimpleQuery duplicationsQuery = conversionService.convert(request, SimpleQuery.class);
-    if (isNext) {
-      duplicationsQuery.addFilterQuery(new SimpleFilterQuery(new SimpleStringCriteria(String.format("%s:[* TO %d]", SEQUENCE_ID, keywordSeqNum - 1))));
-    } else {
-      duplicationsQuery.addFilterQuery(new SimpleFilterQuery(new SimpleStringCriteria(String.format("%s:[%d TO *]", SEQUENCE_ID, keywordSeqNum + 1))));
-    }
-    return serviceLogsSolrDao.count(duplicationsQuery);
-  }
-
-  private SolrServiceLogData getNextHitForKeyword(ServiceLogRequest request, String keyword, boolean isNext, String event, boolean timeAscending, String nextOrPreviousPageDate) {
-    if (hasNextOrAscOrder(isNext, timeAscending)) {
-      request.setTo(nextOrPreviousPageDate);
-    } else {
-      request.setFrom(nextOrPreviousPageDate);
-    }
+  private SolrServiceLogData getNextHitForKeyword(ServiceLogRequest request, String keyword, boolean isNext, String event,
+                                                  boolean timeAscending, SolrServiceLogData boundaryLog) {
     SimpleQuery keywordNextQuery = conversionService.convert(request, SimpleQuery.class);
     keywordNextQuery.addFilterQuery(new SimpleFilterQuery(new Criteria(KEY_LOG_MESSAGE).contains(keyword)));
-    keywordNextQuery.setRows(1);
-    SolrQuery kewordNextSolrQuery = new DefaultQueryParser().doConstructSolrQuery(keywordNextQuery);
-    kewordNextSolrQuery.setStart(0);
-    if (hasNextOrAscOrder(isNext, timeAscending)) {
-      kewordNextSolrQuery.setSort(LOGTIME, SolrQuery.ORDER.desc);
-    } else {
-      kewordNextSolrQuery.setSort(LOGTIME, SolrQuery.ORDER.asc);
-    }
-    kewordNextSolrQuery.addSort(SEQUENCE_ID, SolrQuery.ORDER.desc);
-    QueryResponse  queryResponse = serviceLogsSolrDao.process(kewordNextSolrQuery, event);
+    keywordNextQuery.addFilterQuery(createPositionFilter(boundaryLog, timeAscending, isNext, true));
+    SolrQuery keywordNextSolrQuery = new DefaultQueryParser().doConstructSolrQuery(keywordNextQuery);
+    keywordNextSolrQuery.setStart(0);
+    keywordNextSolrQuery.setRows(1);
+    keywordNextSolrQuery.setFields(LOGTIME, SEQUENCE_ID);
+    // the closest hit comes first, previous hits are looked up in reverse order
+    boolean ascending = isNext == timeAscending;
+    keywordNextSolrQuery.setSort(LOGTIME, ascending ? SolrQuery.ORDER.asc : SolrQuery.ORDER.desc);
+    keywordNextSolrQuery.addSort(SEQUENCE_ID, isNext ? SolrQuery.ORDER.desc : SolrQuery.ORDER.asc);
+    QueryResponse queryResponse = serviceLogsSolrDao.process(keywordNextSolrQuery, event);
     if (queryResponse == null) {
       throw RESTErrorUtil.createRESTException("The keyword " + "\"" + keyword + "\"" + " was not found", MessageEnums.ERROR_SYSTEM);
     }
@@ -337,7 +309,8 @@ public class ServiceLogsManager extends ManagerBase<ServiceLogData, ServiceLogRe
     return solrServiceLogDataList.get(0);
   }
 
-  private Date getDocDateFromNextOrLastPage(ServiceLogRequest request, String keyword, boolean isNext, int currentPageNumber, int maxRows) {
+  private SolrServiceLogData getLogFromNextOrLastPage(ServiceLogRequest request, String keyword, boolean isNext,
+                                                      int currentPageNumber, int maxRows) {
     int lastOrFirstLogIndex;
     if (isNext) {
       lastOrFirstLogIndex = ((currentPageNumber + 1) * maxRows);
@@ -353,31 +326,56 @@ public class ServiceLogsManager extends ManagerBase<ServiceLogData, ServiceLogRe
     nextPageLogTimeQuery.remove("rows");
     nextPageLogTimeQuery.setStart(lastOrFirstLogIndex);
     nextPageLogTimeQuery.setRows(1);
+    nextPageLogTimeQuery.setFields(LOGTIME, SEQUENCE_ID);
 
     QueryResponse queryResponse = serviceLogsSolrDao.process(nextPageLogTimeQuery);
     if (queryResponse == null) {
       throw RESTErrorUtil.createRESTException(String.format("Cannot process next page query for \"%s\" ", keyword), MessageEnums.ERROR_SYSTEM);
     }
-    SolrDocumentList docList = queryResponse.getResults();
-    if (docList == null || docList.isEmpty()) {
+    List<SolrServiceLogData> solrServiceLogDataList = queryResponse.getBeans(SolrServiceLogData.class);
+    if (CollectionUtils.isEmpty(solrServiceLogDataList)) {
       throw RESTErrorUtil.createRESTException(String.format("Next page element for \"%s\" is not found", keyword), MessageEnums.ERROR_SYSTEM);
     }
-
-    SolrDocument solrDoc = docList.get(0);
-    return (Date) solrDoc.get(LOGTIME);
+    return solrServiceLogDataList.get(0);
   }
 
-  private boolean hasNextOrAscOrder(boolean isNext, boolean timeAscending) {
-    return isNext && !timeAscending || !isNext && timeAscending;
+  /**
+   * Creates a filter for the logs positioned after (or before) the given log in the order of the pages: by
+   * time and then by sequence number in descending order.
+   */
+  private SimpleFilterQuery createPositionFilter(SolrServiceLogData log, boolean timeAscending, boolean after, boolean inclusive) {
+    String logTime = "\"" + DateUtil.convertDateWithMillisecondsToSolrDate(log.getLogTime()) + "\"";
+    long seqNum = log.getSeqNum();
+    String timeRange = after == timeAscending
+      ? String.format("{%s TO *]", logTime)
+      : String.format("[* TO %s}", logTime);
+    String seqNumRange;
+    if (after) {
+      seqNumRange = String.format(inclusive ? "[* TO %d]" : "[* TO %d}", seqNum);
+    } else {
+      seqNumRange = String.format(inclusive ? "[%d TO *]" : "{%d TO *]", seqNum);
+    }
+    return new SimpleFilterQuery(new SimpleStringCriteria(String.format("%s:%s OR (%s:%s AND %s:%s)",
+      LOGTIME, timeRange, LOGTIME, logTime, SEQUENCE_ID, seqNumRange)));
   }
 
   public Response export(ServiceLogExportRequest request) {
     String defaultFormat = "text";
-    SimpleQuery solrQuery = conversionService.convert(request, SimpleQuery.class);
+    SimpleQuery simpleQuery = conversionService.convert(request, SimpleQuery.class);
     String from = request.getFrom();
     String to = request.getTo();
     String utcOffset = StringUtils.isBlank(request.getUtcOffset()) ? "0" : request.getUtcOffset();
-    String format = request.getFormat() != null && defaultFormat.equalsIgnoreCase(request.getFormat()) ? ".txt" : ".json";
+    String requestedFormat = request.getFormat() == null ? "json" : request.getFormat().toLowerCase(Locale.ENGLISH);
+    String format;
+    if (defaultFormat.equals(requestedFormat) || "txt".equals(requestedFormat)) {
+      format = ".txt";
+    } else if ("json".equals(requestedFormat)) {
+      format = ".json";
+    } else {
+      throw RESTErrorUtil.createRESTException(
+          "Unsupported format, it should be either json or text",
+          MessageEnums.INVALID_INPUT_DATA);
+    }
     String fileName = "Component_Logs_" + DateUtil.getCurrentDateInString();
 
     if (!DateUtil.isDateValid(from) || !DateUtil.isDateValid(to)) {
@@ -396,38 +394,19 @@ public class ServiceLogsManager extends ManagerBase<ServiceLogData, ServiceLogRe
       from = DateUtil.addOffsetToDate(from, Long.parseLong(utcOffset), "yyyy-MM-dd HH:mm:ss,SSS");
     }
 
-    String textToSave = "";
+    SolrQuery solrQuery = new DefaultQueryParser().doConstructSolrQuery(simpleQuery);
+    boolean compress = request.isCompress();
     try {
-      QueryResponse response = serviceLogsSolrDao.process(solrQuery);
-      if (response == null) {
-        throw RESTErrorUtil.createRESTException(MessageEnums.SOLR_ERROR.getMessage().getMessage(), MessageEnums.ERROR_SYSTEM);
-      }
-      SolrDocumentList docList = response.getResults();
-      if (docList == null) {
-        throw RESTErrorUtil.createRESTException(MessageEnums.SOLR_ERROR.getMessage().getMessage(), MessageEnums.ERROR_SYSTEM);
-      }
-
+      // the summary is rendered up front, errors can not be reported once the logs are being streamed
+      String summary = null;
       if (format.toLowerCase(Locale.ENGLISH).equals(".txt")) {
-        Template template = freemarkerConfiguration.getTemplate(SERVICE_LOG_TEMPLATE);
-        Map<String, Object> models = new HashMap<>();
-        DownloadUtil.fillModelsForLogFile(docList, models, request, format, from, to);
-        StringWriter stringWriter = new StringWriter();
-        template.process(models, stringWriter);
-        textToSave = stringWriter.toString();
-      } else if (format.toLowerCase(Locale.ENGLISH).equals(".json")) {
-        textToSave = convertObjToString(docList);
-      } else {
-        throw RESTErrorUtil.createRESTException(
-            "unsoported format either should be json or text",
-            MessageEnums.ERROR_SYSTEM);
+        summary = createExportSummary(solrQuery, request, format, from, to);
       }
-      File file = File.createTempFile(fileName, format);
-      FileOutputStream fis = new FileOutputStream(file);
-      fis.write(textToSave.getBytes());
-      fis.close();
+      final String exportSummary = summary;
+      StreamingOutput exportStream = output -> writeExport(solrQuery, exportSummary, compress, output);
       return Response
-        .ok(file, MediaType.APPLICATION_OCTET_STREAM)
-        .header("Content-Disposition", "attachment;filename=" + fileName + format)
+        .ok(exportStream, MediaType.APPLICATION_OCTET_STREAM)
+        .header("Content-Disposition", "attachment;filename=" + fileName + format + (compress ? ".gz" : ""))
         .build();
     } catch (SolrException | TemplateException | IOException e) {
       logger.error("Error during solrQuery=" + solrQuery, e);
@@ -435,6 +414,123 @@ public class ServiceLogsManager extends ManagerBase<ServiceLogData, ServiceLogRe
     }
   }
 
+  /**
+   * Renders the summary of a text export. The hosts, components and levels of
+   * the exported logs are faceted by Solr, so that the summary can be written
+   * before the logs are read.
+   */
+  private String createExportSummary(SolrQuery solrQuery, ServiceLogExportRequest request, String format,
+                                     String from, String to) throws IOException, TemplateException {
+    SolrQuery summaryQuery = solrQuery.getCopy();
+    summaryQuery.setStart(0);
+    summaryQuery.setRows(0);
+    summaryQuery.setFacet(true);
+    summaryQuery.setFacetMinCount(1);
+    summaryQuery.setFacetLimit(-1);
+    summaryQuery.addFacetField(HOST, COMPONENT, LEVEL);
+    QueryResponse response = serviceLogsSolrDao.process(summaryQuery);
+    if (response == null || response.getResults() == null) {
+      throw RESTErrorUtil.createRESTException(MessageEnums.SOLR_ERROR.getMessage().getMessage(), MessageEnums.ERROR_SYSTEM);
+    }
+
+    Map<String, Object> models = new HashMap<>();
+    DownloadUtil.fillModelsForLogFile(response.getResults().getNumFound(), getFacetValues(response, HOST),
+      getFacetValues(response, COMPONENT), getFacetValues(response, LEVEL), models, request, format, from, to);
+    Template template = freemarkerConfiguration.getTemplate(SERVICE_LOG_TEMPLATE);
+    StringWriter stringWriter = new StringWriter();
+    template.process(models, stringWriter);
+    return stringWriter.toString();
+  }
+
+  private List<String> getFacetValues(QueryResponse response, String field) {
+    List<String> values = new ArrayList<>();
+    FacetField facetField = response.getFacetField(field);
+    if (facetField != null && facetField.getValues() != null) {
+      for (Count count : facetField.getValues()) {
+        values.add(count.getName());
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Writes the exported logs page by page, as lines of text after the summary
+   * or as a JSON array with a document per line. Pages are read with a Solr
+   * cursor, so only a single page of documents is held at any time. The output
+   * is closed even if reading a page fails.
+   */
+  private void writeExport(SolrQuery solrQuery, String summary, boolean compress, OutputStream output) throws IOException {
+    long toSkip = solrQuery.getStart() == null ? 0 : solrQuery.getStart();
+    long remaining = solrQuery.getRows() == null ? Long.MAX_VALUE : solrQuery.getRows();
+
+    SolrQuery pageQuery = solrQuery.getCopy();
+    // a cursor can not start at an offset, the documents of the previous pages are skipped instead
+    pageQuery.setStart(0);
+    pageQuery.setRows(EXPORT_PAGE_SIZE);
+    if (!isSortedBy(pageQuery, ID)) {
+      // the sort of a cursor has to end with the unique key
+      pageQuery.addSort(ID, SolrQuery.ORDER.desc);
+    }
+
+    boolean json = summary == null;
+    OutputStream target = compress ? new GZIPOutputStream(output, EXPORT_BUFFER_SIZE) : output;
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), EXPORT_BUFFER_SIZE)) {
+      writer.write(json ? "[" : summary);
+
+      boolean first = true;
+      String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+      while (remaining > 0) {
+        SolrQuery query = pageQuery.getCopy();
+        query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+        QueryResponse response = serviceLogsSolrDao.process(query);
+        if (response == null || response.getResults() == null) {
+          throw new IOException(MessageEnums.SOLR_ERROR.getMessage().getMessage());
+        }
+
+        for (SolrDocument doc : response.getResults()) {
+          if (toSkip > 0) {
+            toSkip--;
+            continue;
+          }
+          if (remaining-- == 0) {
+            break;
+          }
+          if (json) {
+            writer.write(first ? "\n" : ",\n");
+            writeObjAsJson(doc, writer);
+          } else {
+            writer.write(DownloadUtil.formatLogLine(doc));
+            writer.write("\n");
+          }
+          first = false;
+        }
+
+        String nextCursorMark = response.getNextCursorMark();
+        if (nextCursorMark == null || nextCursorMark.equals(cursorMark)) {
+          break;
+        }
+        cursorMark = nextCursorMark;
+      }
+
+      if (json) {
+        writer.write("\n]");
+      }
+    } catch (IOException | RuntimeException e) {
+      // the response is already committed, the export is cut short
+      logger.error("Error during export of solrQuery=" + solrQuery, e);
+      throw e;
+    }
+  }
+
+  private boolean isSortedBy(SolrQuery solrQuery, String field) {
+    for (SolrQuery.SortClause sortClause : solrQuery.getSorts()) {
+      if (field.equals(sortClause.getItem())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public NodeListResponse getComponentListWithLevelCounts(ServiceLogComponentLevelRequest request) {
     SimpleFacetQuery facetQuery = conversionService.convert(request, SimpleFacetQuery.class);
     SolrQuery solrQuery = new DefaultQueryParser().doConstructSolrQuery(facetQuery);
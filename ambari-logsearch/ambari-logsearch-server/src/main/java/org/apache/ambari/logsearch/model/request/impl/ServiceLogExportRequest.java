@@ -19,11 +19,13 @@
 package org.apache.ambari.logsearch.model.request.impl;
 
 import org.apache.ambari.logsearch.common.Marker;
+import org.apache.ambari.logsearch.model.request.CompressParamDefinition;
 import org.apache.ambari.logsearch.model.request.FormatParamDefinition;
 import org.apache.ambari.logsearch.model.request.UtcOffsetParamDefinition;
 
 import javax.ws.rs.QueryParam;
 
 @Marker
-public interface ServiceLogExportRequest extends ServiceLogRequest, FormatParamDefinition, UtcOffsetParamDefinition {
+public interface ServiceLogExportRequest extends ServiceLogRequest, FormatParamDefinition, UtcOffsetParamDefinition,
+  CompressParamDefinition {
 }
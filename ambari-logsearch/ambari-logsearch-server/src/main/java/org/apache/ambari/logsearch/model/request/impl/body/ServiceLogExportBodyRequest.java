@@ -29,6 +29,9 @@ public class ServiceLogExportBodyRequest extends ServiceLogBodyRequest implement
   @JsonProperty(LogSearchConstants.REQUEST_PARAM_UTC_OFFSET)
   private String utcOffset;
 
+  @JsonProperty(LogSearchConstants.REQUEST_PARAM_COMPRESS)
+  private boolean compress;
+
   @Override
   public String getFormat() {
     return format;
@@ -48,4 +51,14 @@ public class ServiceLogExportBodyRequest extends ServiceLogBodyRequest implement
   public void setUtcOffset(String utcOffset) {
     this.utcOffset = utcOffset;
   }
+
+  @Override
+  public boolean isCompress() {
+    return compress;
+  }
+
+  @Override
+  public void setCompress(boolean compress) {
+    this.compress = compress;
+  }
 }
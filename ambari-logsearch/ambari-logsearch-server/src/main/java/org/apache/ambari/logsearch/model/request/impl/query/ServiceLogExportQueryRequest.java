@@ -30,6 +30,9 @@ public class ServiceLogExportQueryRequest extends ServiceLogQueryRequest impleme
   @QueryParam(LogSearchConstants.REQUEST_PARAM_UTC_OFFSET)
   private String utcOffset;
 
+  @QueryParam(LogSearchConstants.REQUEST_PARAM_COMPRESS)
+  private boolean compress;
+
   @Override
   public String getFormat() {
     return format;
@@ -49,4 +52,14 @@ public class ServiceLogExportQueryRequest extends ServiceLogQueryRequest impleme
   public void setUtcOffset(String utcOffset) {
     this.utcOffset = utcOffset;
   }
+
+  @Override
+  public boolean isCompress() {
+    return compress;
+  }
+
+  @Override
+  public void setCompress(boolean compress) {
+    this.compress = compress;
+  }
 }
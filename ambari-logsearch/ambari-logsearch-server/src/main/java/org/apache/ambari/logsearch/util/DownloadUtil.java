@@ -32,14 +32,11 @@ import org.apache.ambari.logsearch.model.response.NameValueData;
 import org.apache.ambari.logsearch.model.response.TemplateData;
 import org.apache.commons.lang.StringUtils;
 import org.apache.solr.common.SolrDocument;
-import org.apache.solr.common.SolrDocumentList;
 
 import static org.apache.ambari.logsearch.solr.SolrConstants.ServiceLogConstants.LINE_NUMBER;
 import static org.apache.ambari.logsearch.solr.SolrConstants.ServiceLogConstants.LOGTIME;
 import static org.apache.ambari.logsearch.solr.SolrConstants.ServiceLogConstants.LOG_MESSAGE;
 import static org.apache.ambari.logsearch.solr.SolrConstants.ServiceLogConstants.LEVEL;
-import static org.apache.ambari.logsearch.solr.SolrConstants.ServiceLogConstants.HOST;
-import static org.apache.ambari.logsearch.solr.SolrConstants.ServiceLogConstants.COMPONENT;
 import static org.apache.ambari.logsearch.solr.SolrConstants.ServiceLogConstants.LOGGER_NAME;
 import static org.apache.ambari.logsearch.solr.SolrConstants.ServiceLogConstants.THREAD_NAME;
 import static org.apache.ambari.logsearch.solr.SolrConstants.CommonLogConstants.FILE;
@@ -51,61 +48,13 @@ public class DownloadUtil {
     throw new UnsupportedOperationException();
   }
 
-  public static void fillModelsForLogFile(SolrDocumentList docList, Map<String, Object> models, ServiceLogExportRequest request,
-                                          String format, String from, String to) {
-    long numLogs = docList.getNumFound();
-    List<String> hosts = new ArrayList<>();
-    List<String> components = new ArrayList<>();
-    List<String> levels = new ArrayList<>();
-    List<TemplateData> logData = new ArrayList<>();
-    for (SolrDocument doc : docList) {
-      if (doc != null) {
-        String hostname = (String) doc.getFieldValue(HOST);
-        String comp = (String) doc.getFieldValue(COMPONENT);
-        String level = (String) doc.getFieldValue(LEVEL);
-
-        if (!hosts.contains(hostname)) {
-          hosts.add(hostname);
-        }
-
-        if (!components.contains(comp)) {
-          components.add(comp);
-        }
-
-        if (!levels.contains(level)) {
-          levels.add(level);
-        }
-
-        StringBuffer textToWrite = new StringBuffer();
-
-        if (doc.getFieldValue(LOGTIME) != null) {
-          textToWrite.append(doc.getFieldValue(LOGTIME).toString() + " ");
-        }
-        if (doc.getFieldValue(LEVEL) != null) {
-          textToWrite.append(doc.getFieldValue(LEVEL).toString()).append(" ");
-        }
-        if (doc.getFieldValue(THREAD_NAME) != null) {
-          textToWrite.append(doc.getFieldValue(THREAD_NAME).toString().trim()).append(" ");
-        }
-        if (doc.getFieldValue(LOGGER_NAME) != null) {
-          textToWrite.append(doc.getFieldValue(LOGGER_NAME).toString().trim()).append(" ");
-        }
-        if (doc.getFieldValue(FILE) != null && doc.getFieldValue(LINE_NUMBER) != null) {
-          textToWrite
-            .append(doc.getFieldValue(FILE).toString())
-            .append(":")
-            .append(doc.getFieldValue(LINE_NUMBER).toString())
-            .append(" ");
-        }
-        if (doc.getFieldValue(LOG_MESSAGE) != null) {
-          textToWrite.append("- ")
-            .append(doc.getFieldValue(LOG_MESSAGE).toString());
-        }
-        logData.add(new TemplateData((textToWrite.toString())));
-      }
-    }
+  /**
+   * Fills the models of the summary of a log file export.
+   */
+  public static void fillModelsForLogFile(long numLogs, Collection<String> hosts, Collection<String> components,
+                                          Collection<String> levels, Map<String, Object> models,
+                                          ServiceLogExportRequest request, String format, String from, String to) {
     models.put("numberOfLogs", numLogs);
-    models.put("logs", logData);
     models.put("hosts", "[ " + StringUtils.join(hosts, " ; ") + " ]");
     models.put("components", "[ " + StringUtils.join(components, " ; ") + " ]");
     models.put("format", format);
@@ -131,6 +80,38 @@ public class DownloadUtil {
     models.put("eString", excludeString);
   }
 
+  /**
+   * Formats a log document as a line of a log file export.
+   */
+  public static String formatLogLine(SolrDocument doc) {
+    StringBuilder textToWrite = new StringBuilder();
+
+    if (doc.getFieldValue(LOGTIME) != null) {
+      textToWrite.append(doc.getFieldValue(LOGTIME).toString()).append(" ");
+    }
+    if (doc.getFieldValue(LEVEL) != null) {
+      textToWrite.append(doc.getFieldValue(LEVEL).toString()).append(" ");
+    }
+    if (doc.getFieldValue(THREAD_NAME) != null) {
+      textToWrite.append(doc.getFieldValue(THREAD_NAME).toString().trim()).append(" ");
+    }
+    if (doc.getFieldValue(LOGGER_NAME) != null) {
+      textToWrite.append(doc.getFieldValue(LOGGER_NAME).toString().trim()).append(" ");
+    }
+    if (doc.getFieldValue(FILE) != null && doc.getFieldValue(LINE_NUMBER) != null) {
+      textToWrite
+        .append(doc.getFieldValue(FILE).toString())
+        .append(":")
+        .append(doc.getFieldValue(LINE_NUMBER).toString())
+        .append(" ");
+    }
+    if (doc.getFieldValue(LOG_MESSAGE) != null) {
+      textToWrite.append("- ")
+        .append(doc.getFieldValue(LOG_MESSAGE).toString());
+    }
+    return textToWrite.toString();
+  }
+
   public static void fillUserResourcesModel(Map<String, Object> models, BarGraphDataListResponse vBarUserDataList, BarGraphDataListResponse vBarResourceDataList) {
     List<TemplateData> usersDataList = new ArrayList<>();
     List<TemplateData> resourceDataList = new ArrayList<>();
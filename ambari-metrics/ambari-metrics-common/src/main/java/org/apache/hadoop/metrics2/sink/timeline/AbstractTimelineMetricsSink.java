@@ -62,6 +62,8 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -91,6 +93,12 @@ public abstract class AbstractTimelineMetricsSink {
   public static final String COOKIE = "Cookie";
   private static final String WWW_AUTHENTICATE = "WWW-Authenticate";
   private static final String NEGOTIATE = "Negotiate";
+  private static final String RETRY_AFTER = "Retry-After";
+  // Sent by the collector when it cannot accept more metrics for now
+  private static final int SC_TOO_MANY_REQUESTS = 429;
+  private static final int DEFAULT_RETRY_AFTER_SECONDS = 10;
+  // Maximum number of data points kept to be resent once a collector accepts metrics again
+  public static final int MAX_RETRY_METRICS_POINTS = 100000;
 
   protected final AtomicInteger failedCollectorConnectionsCounter = new AtomicInteger(0);
   public static int NUMBER_OF_SKIPPED_COLLECTOR_EXCEPTIONS = 100;
@@ -106,6 +114,11 @@ public abstract class AbstractTimelineMetricsSink {
 
   private SSLSocketFactory sslSocketFactory;
   private AppCookieManager appCookieManager = null;
+  // Time until which each collector asked not to post metrics, by collector URL
+  private final ConcurrentMap<String, Long> retryAfterTimes = new ConcurrentHashMap<>();
+  // Metrics not posted because the collector asked to retry later
+  private final TimelineMetrics retryMetrics = new TimelineMetrics();
+  private int retryMetricsPoints = 0;
 
   protected final Log LOG;
 
@@ -164,6 +177,13 @@ public abstract class AbstractTimelineMetricsSink {
   }
 
   protected boolean emitMetricsJson(String connectUrl, String jsonData) {
+    if (isBackingOff(connectUrl)) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Collector asked to retry later, skipping metrics post to " + connectUrl);
+      }
+      return false;
+    }
+
     int timeout = getTimeoutSeconds() * 1000;
     HttpURLConnection connection = null;
     try {
@@ -208,6 +228,17 @@ public abstract class AbstractTimelineMetricsSink {
         }
       }
 
+      if (statusCode == SC_TOO_MANY_REQUESTS) {
+        // The collector is overloaded rather than unreachable, back off
+        // without counting a failed connection
+        int retryAfterSeconds = getRetryAfterSeconds(connection);
+        retryAfterTimes.put(connectUrl, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(retryAfterSeconds));
+        LOG.info("Collector " + connectUrl + " cannot accept metrics, " +
+            "postponing posts for " + retryAfterSeconds + " seconds");
+        cleanupInputStream(connection.getErrorStream());
+        return false;
+      }
+
       if (statusCode != 200) {
         LOG.info("Unable to POST metrics to collector, " + connectUrl + ", " +
             "statusCode = " + statusCode);
@@ -249,6 +280,88 @@ public abstract class AbstractTimelineMetricsSink {
     }
   }
 
+  /**
+   * @param connectUrl the URL of a collector
+   * @return true if the collector asked not to post metrics for now
+   */
+  protected boolean isBackingOff(String connectUrl) {
+    if (connectUrl == null) {
+      return false;
+    }
+    Long retryAfterTime = retryAfterTimes.get(connectUrl);
+    if (retryAfterTime == null) {
+      return false;
+    }
+    if (System.currentTimeMillis() >= retryAfterTime) {
+      retryAfterTimes.remove(connectUrl, retryAfterTime);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Keeps metrics which were not posted because the collector asked to retry
+   * later, so that they are sent with the next post. Metrics past
+   * {@link #MAX_RETRY_METRICS_POINTS} data points are discarded.
+   */
+  private void retainForRetry(TimelineMetrics metrics) {
+    int points = 0;
+    for (TimelineMetric metric : metrics.getMetrics()) {
+      points += metric.getMetricValues().size();
+    }
+
+    synchronized (retryMetrics) {
+      if (retryMetricsPoints + points > MAX_RETRY_METRICS_POINTS) {
+        LOG.info("Discarding " + points + " data points, " + retryMetricsPoints +
+            " data points are already waiting for the collector to accept metrics");
+        return;
+      }
+      for (TimelineMetric metric : metrics.getMetrics()) {
+        retryMetrics.addOrMergeTimelineMetric(metric);
+      }
+      retryMetricsPoints += points;
+    }
+  }
+
+  /**
+   * Adds the metrics kept by {@link #retainForRetry} to the metrics to post.
+   */
+  private void addRetryMetrics(TimelineMetrics metrics) {
+    synchronized (retryMetrics) {
+      for (TimelineMetric metric : retryMetrics.getMetrics()) {
+        metrics.addOrMergeTimelineMetric(metric);
+      }
+      retryMetrics.setMetrics(new ArrayList<TimelineMetric>());
+      retryMetricsPoints = 0;
+    }
+  }
+
+  /**
+   * @return a live collector which did not ask to retry later, or the given
+   *         collector if there is none
+   */
+  private synchronized String findCollectorNotBackingOff(String collectorHost) {
+    for (String host : allKnownLiveCollectors) {
+      if (!host.equals(collectorHost) && !isBackingOff(getCollectorUri(host))) {
+        LOG.debug("Collector " + collectorHost + " asked to retry later, posting metrics to " + host);
+        return host;
+      }
+    }
+    return collectorHost;
+  }
+
+  private int getRetryAfterSeconds(HttpURLConnection connection) {
+    String retryAfter = connection.getHeaderField(RETRY_AFTER);
+    if (retryAfter != null) {
+      try {
+        return Math.max(1, Integer.parseInt(retryAfter.trim()));
+      } catch (NumberFormatException e) {
+        LOG.debug("Invalid " + RETRY_AFTER + " header: " + retryAfter);
+      }
+    }
+    return DEFAULT_RETRY_AFTER_SECONDS;
+  }
+
   private int emitMetricsJson(HttpURLConnection connection, int timeout, String jsonData) throws IOException {
     connection.setRequestMethod("POST");
     connection.setRequestProperty("Content-Type", "application/json");
@@ -327,6 +440,9 @@ public abstract class AbstractTimelineMetricsSink {
       String collectorHost  = getCurrentCollectorHost();
       if (collectorHost == null) {
         validCollectorHost = false;
+      } else if (isBackingOff(getCollectorUri(collectorHost))) {
+        // fail over to another collector for as long as this one is overloaded
+        collectorHost = findCollectorNotBackingOff(collectorHost);
       }
       connectUrl = getCollectorUri(collectorHost);
     }
@@ -341,6 +457,15 @@ public abstract class AbstractTimelineMetricsSink {
     }
 
     if (validCollectorHost) {
+      if (isBackingOff(connectUrl)) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Collector asked to retry later, keeping metrics to post to " + connectUrl);
+        }
+        retainForRetry(metricsToEmit);
+        return false;
+      }
+      addRetryMetrics(metricsToEmit);
+
       String jsonData = null;
       LOG.debug("EmitMetrics connectUrl = "  + connectUrl);
       try {
@@ -349,7 +474,11 @@ public abstract class AbstractTimelineMetricsSink {
         LOG.error("Unable to parse metrics", e);
       }
       if (jsonData != null) {
-        return emitMetricsJson(connectUrl, jsonData);
+        boolean posted = emitMetricsJson(connectUrl, jsonData);
+        if (!posted && isBackingOff(connectUrl)) {
+          retainForRetry(metricsToEmit);
+        }
+        return posted;
       }
     }
     return false;
@@ -29,6 +29,7 @@ import javax.xml.bind.annotation.XmlRootElement;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.map.annotate.JsonDeserialize;
 
 @XmlRootElement(name = "metric")
@@ -45,7 +46,14 @@ public class TimelineMetric implements Comparable<TimelineMetric>, Serializable
   private long startTime;
   private String type;
   private String units;
+
+  /**
+   * The values of the metric are held either as a map, or as a series of
+   * primitives once compacted (see {@link #compactMetricValues()}). The map is
+   * rebuilt when it is requested again.
+   */
   private TreeMap<Long, Double> metricValues = new TreeMap<Long, Double>();
+  private TimelineMetricValues metricValueSeries;
   private HashMap<String, String> metadata = new HashMap<>();
 
   // default
@@ -70,7 +78,13 @@ public class TimelineMetric implements Comparable<TimelineMetric>, Serializable
     setInstanceId(metric.getInstanceId());
     setHostName(metric.getHostName());
     setStartTime(metric.getStartTime());
-    setMetricValues(new TreeMap<Long, Double>(metric.getMetricValues()));
+    synchronized (metric) {
+      if (metric.metricValueSeries != null) {
+        setMetricValueSeries(new TimelineMetricValues(metric.metricValueSeries));
+      } else {
+        setMetricValues(new TreeMap<Long, Double>(metric.metricValues));
+      }
+    }
   }
 
   @XmlElement(name = "metricname")
@@ -146,15 +160,61 @@ public class TimelineMetric implements Comparable<TimelineMetric>, Serializable
   }
 
   @XmlElement(name = "metrics")
-  public TreeMap<Long, Double> getMetricValues() {
+  public synchronized TreeMap<Long, Double> getMetricValues() {
+    if (metricValues == null) {
+      metricValues = metricValueSeries.toTreeMap();
+      metricValueSeries = null;
+    }
     return metricValues;
   }
 
-  public void setMetricValues(TreeMap<Long, Double> metricValues) {
+  public synchronized void setMetricValues(TreeMap<Long, Double> metricValues) {
     this.metricValues = metricValues;
+    this.metricValueSeries = null;
   }
 
-  public void addMetricValues(Map<Long, Double> metricValues) {
+  /**
+   * Gets the values of the metric as primitive arrays. Once the values are
+   * compacted this is the series backing the metric, otherwise a copy of the
+   * map.
+   *
+   * @return the values sorted by timestamp
+   */
+  @JsonIgnore
+  public synchronized TimelineMetricValues getMetricValueSeries() {
+    if (metricValueSeries != null) {
+      return metricValueSeries;
+    }
+    return TimelineMetricValues.fromMap(metricValues);
+  }
+
+  @JsonIgnore
+  public synchronized void setMetricValueSeries(TimelineMetricValues metricValues) {
+    this.metricValueSeries = metricValues;
+    this.metricValues = null;
+  }
+
+  /**
+   * Converts the values of the metric to primitive arrays, to hold them for
+   * longer with less memory. A map obtained from {@link #getMetricValues()}
+   * before no longer backs the values of the metric.
+   */
+  public synchronized void compactMetricValues() {
+    if (metricValues != null) {
+      metricValueSeries = TimelineMetricValues.fromMap(metricValues);
+      metricValues = null;
+    }
+  }
+
+  public synchronized void addMetricValues(Map<Long, Double> metricValues) {
+    if (metricValueSeries != null) {
+      metricValueSeries = metricValueSeries.merge(TimelineMetricValues.fromMap(metricValues));
+      if (!metricValueSeries.isEmpty()) {
+        this.setStartTime(metricValueSeries.getFirstTimestamp());
+      }
+      return;
+    }
+
     this.metricValues.putAll(metricValues);
     if (!this.metricValues.isEmpty()) {
       this.setStartTime(this.metricValues.firstKey());
@@ -0,0 +1,258 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * The values of a metric as parallel arrays of timestamps and values, sorted
+ * by timestamp. This holds the same data as a {@code TreeMap<Long, Double>}
+ * in 16 bytes per point instead of the ~80 bytes of the boxed keys, values
+ * and tree entries.
+ *
+ * A missing (null) value is stored as {@link #MISSING}, a NaN of its own, so
+ * that it is told apart from an actual {@link Double#NaN} value.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Unstable
+public class TimelineMetricValues implements Serializable {
+
+  private static final int DEFAULT_CAPACITY = 8;
+
+  private static final long MISSING_BITS = 0x7ff8000000000001L;
+
+  /**
+   * The value of a point whose value is missing.
+   */
+  public static final double MISSING = Double.longBitsToDouble(MISSING_BITS);
+
+  private long[] timestamps;
+  private double[] values;
+  private int size;
+
+  public TimelineMetricValues() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public TimelineMetricValues(int capacity) {
+    timestamps = new long[capacity];
+    values = new double[capacity];
+  }
+
+  public TimelineMetricValues(TimelineMetricValues other) {
+    timestamps = Arrays.copyOf(other.timestamps, other.size);
+    values = Arrays.copyOf(other.values, other.size);
+    size = other.size;
+  }
+
+  /**
+   * Creates the series holding the values of a map.
+   *
+   * @param metricValues metric values by timestamp
+   * @return the series of the values
+   */
+  public static TimelineMetricValues fromMap(Map<Long, Double> metricValues) {
+    TimelineMetricValues series = new TimelineMetricValues(metricValues.size());
+    Map<Long, Double> sorted = metricValues instanceof TreeMap ? metricValues : new TreeMap<>(metricValues);
+    for (Map.Entry<Long, Double> entry : sorted.entrySet()) {
+      Double value = entry.getValue();
+      series.append(entry.getKey(), value == null ? MISSING : value);
+    }
+    return series;
+  }
+
+  /**
+   * @return true if the value is {@link #MISSING}, false for any other value
+   *         including {@link Double#NaN}
+   */
+  public static boolean isMissing(double value) {
+    return Double.doubleToRawLongBits(value) == MISSING_BITS;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public long getTimestamp(int index) {
+    checkIndex(index);
+    return timestamps[index];
+  }
+
+  public double getValue(int index) {
+    checkIndex(index);
+    return values[index];
+  }
+
+  public long getFirstTimestamp() {
+    return getTimestamp(0);
+  }
+
+  public long getLastTimestamp() {
+    return getTimestamp(size - 1);
+  }
+
+  /**
+   * Adds a point to the series. Points are expected to be appended in order
+   * of their timestamps, which takes constant time; an older point is
+   * inserted at its position instead. The value of an existing timestamp is
+   * replaced, as {@link Map#put} would.
+   *
+   * @param timestamp the timestamp of the point
+   * @param value     the value of the point
+   */
+  public void append(long timestamp, double value) {
+    if (size == 0 || timestamp > timestamps[size - 1]) {
+      ensureCapacity(size + 1);
+      timestamps[size] = timestamp;
+      values[size] = value;
+      size++;
+      return;
+    }
+
+    int index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+    if (index >= 0) {
+      values[index] = value;
+      return;
+    }
+
+    int insertion = -index - 1;
+    ensureCapacity(size + 1);
+    System.arraycopy(timestamps, insertion, timestamps, insertion + 1, size - insertion);
+    System.arraycopy(values, insertion, values, insertion + 1, size - insertion);
+    timestamps[insertion] = timestamp;
+    values[insertion] = value;
+    size++;
+  }
+
+  /**
+   * Gets the points of a time range.
+   *
+   * @param startTime the start of the range, inclusive
+   * @param endTime   the end of the range, exclusive
+   * @return a new series with the points of the range
+   */
+  public TimelineMetricValues slice(long startTime, long endTime) {
+    int from = lowerBound(startTime);
+    int to = Math.max(from, lowerBound(endTime));
+
+    TimelineMetricValues slice = new TimelineMetricValues(Math.max(to - from, 1));
+    System.arraycopy(timestamps, from, slice.timestamps, 0, to - from);
+    System.arraycopy(values, from, slice.values, 0, to - from);
+    slice.size = to - from;
+    return slice;
+  }
+
+  /**
+   * Merges two series in a single pass. When both series have a point at the
+   * same timestamp, the value of the other series wins, as it would with
+   * {@link Map#putAll}.
+   *
+   * @param other the series to merge with this one
+   * @return a new series with the points of both series
+   */
+  public TimelineMetricValues merge(TimelineMetricValues other) {
+    TimelineMetricValues merged = new TimelineMetricValues(Math.max(size + other.size, 1));
+    int i = 0;
+    int j = 0;
+    while (i < size || j < other.size) {
+      if (j == other.size || (i < size && timestamps[i] < other.timestamps[j])) {
+        merged.timestamps[merged.size] = timestamps[i];
+        merged.values[merged.size++] = values[i++];
+      } else {
+        if (i < size && timestamps[i] == other.timestamps[j]) {
+          i++;
+        }
+        merged.timestamps[merged.size] = other.timestamps[j];
+        merged.values[merged.size++] = other.values[j++];
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * @return the points as a map of value by timestamp
+   */
+  public TreeMap<Long, Double> toTreeMap() {
+    TreeMap<Long, Double> metricValues = new TreeMap<>();
+    for (int i = 0; i < size; i++) {
+      metricValues.put(timestamps[i], isMissing(values[i]) ? null : values[i]);
+    }
+    return metricValues;
+  }
+
+  private int lowerBound(long timestamp) {
+    int index = Arrays.binarySearch(timestamps, 0, size, timestamp);
+    return index >= 0 ? index : -index - 1;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > timestamps.length) {
+      int newCapacity = Math.max(capacity, Math.max(DEFAULT_CAPACITY, timestamps.length + (timestamps.length >> 1)));
+      timestamps = Arrays.copyOf(timestamps, newCapacity);
+      values = Arrays.copyOf(values, newCapacity);
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    TimelineMetricValues that = (TimelineMetricValues) o;
+    if (size != that.size) return false;
+    for (int i = 0; i < size; i++) {
+      if (timestamps[i] != that.timestamps[i]
+        || Double.doubleToRawLongBits(values[i]) != Double.doubleToRawLongBits(that.values[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = size;
+    for (int i = 0; i < size; i++) {
+      long bits = Double.doubleToRawLongBits(values[i]);
+      result = 31 * result + (int) (timestamps[i] ^ (timestamps[i] >>> 32));
+      result = 31 * result + (int) (bits ^ (bits >>> 32));
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return toTreeMap().toString();
+  }
+}
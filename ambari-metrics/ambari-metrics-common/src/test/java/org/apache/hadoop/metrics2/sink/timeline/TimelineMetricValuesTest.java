@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class TimelineMetricValuesTest {
+
+  @Test
+  public void testAppend() {
+    TimelineMetricValues series = new TimelineMetricValues(1);
+    series.append(200L, 2.0);
+    series.append(300L, 3.0);
+    // out of order and existing timestamps
+    series.append(100L, 1.0);
+    series.append(300L, 4.0);
+
+    assertEquals(3, series.size());
+    assertEquals(100L, series.getFirstTimestamp());
+    assertEquals(300L, series.getLastTimestamp());
+    assertEquals(1.0, series.getValue(0), 0.0);
+    assertEquals(2.0, series.getValue(1), 0.0);
+    assertEquals(4.0, series.getValue(2), 0.0);
+  }
+
+  @Test
+  public void testSlice() {
+    TimelineMetricValues series = new TimelineMetricValues();
+    for (long timestamp = 100L; timestamp <= 500L; timestamp += 100L) {
+      series.append(timestamp, timestamp / 100.0);
+    }
+
+    TimelineMetricValues slice = series.slice(150L, 400L);
+    assertEquals(2, slice.size());
+    assertEquals(200L, slice.getFirstTimestamp());
+    assertEquals(300L, slice.getLastTimestamp());
+
+    assertTrue(series.slice(600L, 700L).isEmpty());
+    assertTrue(series.slice(400L, 100L).isEmpty());
+  }
+
+  @Test
+  public void testMerge() {
+    TimelineMetricValues first = new TimelineMetricValues();
+    first.append(100L, 1.0);
+    first.append(300L, 3.0);
+
+    TimelineMetricValues second = new TimelineMetricValues();
+    second.append(200L, 2.0);
+    second.append(300L, 30.0);
+    second.append(400L, 4.0);
+
+    TreeMap<Long, Double> expected = first.toTreeMap();
+    expected.putAll(second.toTreeMap());
+
+    assertEquals(expected, first.merge(second).toTreeMap());
+  }
+
+  @Test
+  public void testMapConversion() {
+    TreeMap<Long, Double> metricValues = new TreeMap<>();
+    metricValues.put(100L, 1.0);
+    metricValues.put(200L, null);
+    metricValues.put(300L, Double.NaN);
+
+    TimelineMetricValues series = TimelineMetricValues.fromMap(metricValues);
+    assertTrue(TimelineMetricValues.isMissing(series.getValue(1)));
+    assertFalse(TimelineMetricValues.isMissing(series.getValue(2)));
+    assertNull(series.toTreeMap().get(200L));
+    assertTrue(series.toTreeMap().get(300L).isNaN());
+    assertEquals(metricValues, series.toTreeMap());
+  }
+
+  @Test
+  public void testCompactTimelineMetric() {
+    TimelineMetric metric = new TimelineMetric();
+    metric.getMetricValues().put(100L, 1.0);
+    metric.compactMetricValues();
+
+    TimelineMetricValues series = metric.getMetricValueSeries();
+    assertSame(series, metric.getMetricValueSeries());
+
+    TreeMap<Long, Double> more = new TreeMap<>();
+    more.put(50L, 0.5);
+    metric.addMetricValues(more);
+    assertEquals(50L, metric.getStartTime());
+
+    TimelineMetric copy = new TimelineMetric(metric);
+    assertEquals(2, copy.getMetricValues().size());
+
+    assertEquals(Double.valueOf(0.5), metric.getMetricValues().get(50L));
+    assertEquals(Double.valueOf(1.0), metric.getMetricValues().get(100L));
+  }
+}
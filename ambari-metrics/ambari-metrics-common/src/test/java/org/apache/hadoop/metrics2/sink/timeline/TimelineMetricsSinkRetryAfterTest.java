@@ -0,0 +1,314 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Tests how sinks back off when a collector answers 429 (Too Many Requests).
+ */
+public class TimelineMetricsSinkRetryAfterTest {
+
+  private static final long MINUTE = 60000;
+
+  // the last minute is complete, so every point is posted at once
+  private static final long START_TIME = System.currentTimeMillis() / MINUTE * MINUTE - 10 * MINUTE + 55000;
+
+  @Test
+  public void testPointsAreResentAfterRetryAfter() throws Exception {
+    TestSink sink = new TestSink("host1");
+    sink.respond("host1", 429, "1");
+
+    assertFalse(sink.emitMetrics(createMetrics(START_TIME)));
+    assertEquals(1, sink.posts.size());
+    assertTrue(sink.isBackingOff(sink.getCollectorUri("host1")));
+
+    // within the back-off window, nothing is posted but the points are kept
+    assertFalse(sink.emitMetrics(createMetrics(START_TIME + MINUTE)));
+    assertEquals(1, sink.posts.size());
+
+    Thread.sleep(1100);
+    assertFalse(sink.isBackingOff(sink.getCollectorUri("host1")));
+
+    assertTrue(sink.emitMetrics(createMetrics(START_TIME + 2 * MINUTE)));
+    assertEquals(2, sink.posts.size());
+    Post post = sink.posts.get(1);
+    assertEquals("host1", post.host);
+    for (int i = 0; i < 3; i++) {
+      assertTrue(post.body.contains("\"" + (START_TIME + i * MINUTE) + "\""));
+    }
+
+    // the resent points are not sent again
+    assertTrue(sink.emitMetrics(createMetrics(START_TIME + 3 * MINUTE)));
+    assertFalse(sink.posts.get(2).body.contains("\"" + START_TIME + "\""));
+  }
+
+  @Test
+  public void testRetryAfterParsing() throws Exception {
+    TestSink sink = new TestSink("host1");
+
+    sink.respond("host1", 429, "2");
+    long before = System.currentTimeMillis();
+    sink.emitMetrics(createMetrics(START_TIME));
+    Thread.sleep(1100);
+    assertTrue(sink.isBackingOff(sink.getCollectorUri("host1")));
+    while (sink.isBackingOff(sink.getCollectorUri("host1"))) {
+      Thread.sleep(50);
+    }
+    long backOff = System.currentTimeMillis() - before;
+    assertTrue("Backed off for " + backOff + " ms", backOff >= 2000 && backOff < 5000);
+
+    // an invalid or missing header backs off for the default time
+    TestSink invalid = new TestSink("host1");
+    invalid.respond("host1", 429, "soon");
+    invalid.emitMetrics(createMetrics(START_TIME));
+    Thread.sleep(1100);
+    assertTrue(invalid.isBackingOff(invalid.getCollectorUri("host1")));
+
+    TestSink missing = new TestSink("host1");
+    missing.respond("host1", 429, null);
+    missing.emitMetrics(createMetrics(START_TIME));
+    Thread.sleep(1100);
+    assertTrue(missing.isBackingOff(missing.getCollectorUri("host1")));
+  }
+
+  @Test
+  public void testBackOffIsPerCollector() throws Exception {
+    TestSink sink = new TestSink("host1");
+    sink.allKnownLiveCollectors.addAll(Arrays.asList("host1", "host2"));
+    sink.respond("host1", 429, "60");
+
+    assertFalse(sink.emitMetrics(createMetrics(START_TIME)));
+    assertTrue(sink.isBackingOff(sink.getCollectorUri("host1")));
+    assertFalse(sink.isBackingOff(sink.getCollectorUri("host2")));
+
+    // the overloaded collector is skipped, its peer gets the kept points as well
+    assertTrue(sink.emitMetrics(createMetrics(START_TIME + MINUTE)));
+    assertEquals(2, sink.posts.size());
+    Post post = sink.posts.get(1);
+    assertEquals("host2", post.host);
+    assertTrue(post.body.contains("\"" + START_TIME + "\""));
+    assertTrue(post.body.contains("\"" + (START_TIME + MINUTE) + "\""));
+
+    // a 429 does not count as a failed connection
+    assertEquals(0, sink.failedCollectorConnectionsCounter.get());
+  }
+
+  @Test
+  public void testRetryBufferIsBounded() throws Exception {
+    TestSink sink = new TestSink("host1");
+    sink.respond("host1", 429, "60");
+
+    int points = 0;
+    for (int i = 0; points <= AbstractTimelineMetricsSink.MAX_RETRY_METRICS_POINTS; i++) {
+      assertFalse(sink.emitMetrics(createMetrics(START_TIME + i * MINUTE, 1000)));
+      points += 1000;
+    }
+    assertEquals(1, sink.posts.size());
+
+    // the kept points are posted to another collector
+    sink.allKnownLiveCollectors.add("host2");
+    assertTrue(sink.emitMetrics(createMetrics(START_TIME - MINUTE)));
+    TimelineMetrics posted = AbstractTimelineMetricsSink.mapper.readValue(sink.posts.get(1).body, TimelineMetrics.class);
+    int postedPoints = 0;
+    for (TimelineMetric metric : posted.getMetrics()) {
+      postedPoints += metric.getMetricValues().size();
+    }
+    assertEquals(AbstractTimelineMetricsSink.MAX_RETRY_METRICS_POINTS + 1, postedPoints);
+  }
+
+  private TimelineMetrics createMetrics(long timestamp) {
+    return createMetrics(timestamp, 1);
+  }
+
+  /**
+   * Creates a metric with points ending at a timestamp, one millisecond apart.
+   */
+  private TimelineMetrics createMetrics(long timestamp, int count) {
+    TreeMap<Long, Double> values = new TreeMap<>();
+    for (int i = 0; i < count; i++) {
+      values.put(timestamp - i, (double) i);
+    }
+
+    TimelineMetric metric = new TimelineMetric("metric1", "h1", "app1", "instance1");
+    metric.setStartTime(values.firstKey());
+    metric.addMetricValues(values);
+
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.addOrMergeTimelineMetric(metric);
+    return metrics;
+  }
+
+  private static class Post {
+    private final String host;
+    private final String body;
+
+    Post(String host, String body) {
+      this.host = host;
+      this.body = body;
+    }
+  }
+
+  /**
+   * Sink posting to fake connections which answer 200 unless told otherwise.
+   */
+  private static class TestSink extends AbstractTimelineMetricsSink {
+    private final String collectorHost;
+    private final Map<String, Queue<String[]>> responses = new HashMap<>();
+    private final List<Post> posts = new ArrayList<>();
+
+    TestSink(String collectorHost) {
+      this.collectorHost = collectorHost;
+    }
+
+    void respond(String host, int statusCode, String retryAfter) {
+      if (!responses.containsKey(host)) {
+        responses.put(host, new LinkedList<String[]>());
+      }
+      responses.get(host).add(new String[] {String.valueOf(statusCode), retryAfter});
+    }
+
+    @Override
+    protected HttpURLConnection getConnection(String spec) throws IOException {
+      final URL url = new URL(spec);
+      Queue<String[]> hostResponses = responses.get(url.getHost());
+      final String[] response = hostResponses == null || hostResponses.isEmpty() ?
+          new String[] {"200", null} : hostResponses.poll();
+
+      return new HttpURLConnection(url) {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        @Override
+        public OutputStream getOutputStream() {
+          return body;
+        }
+
+        @Override
+        public int getResponseCode() {
+          posts.add(new Post(url.getHost(), body.toString()));
+          return Integer.parseInt(response[0]);
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+          return "Retry-After".equals(name) ? response[1] : null;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+          return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+          return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public boolean usingProxy() {
+          return false;
+        }
+      };
+    }
+
+    @Override
+    protected synchronized String findPreferredCollectHost() {
+      return collectorHost;
+    }
+
+    @Override
+    protected String getCollectorUri(String host) {
+      return "http://" + host + ":6188" + WS_V1_TIMELINE_METRICS;
+    }
+
+    @Override
+    protected String getCollectorProtocol() {
+      return "http";
+    }
+
+    @Override
+    protected String getCollectorPort() {
+      return "6188";
+    }
+
+    @Override
+    protected int getTimeoutSeconds() {
+      return 10;
+    }
+
+    @Override
+    protected String getZookeeperQuorum() {
+      return null;
+    }
+
+    @Override
+    protected Collection<String> getConfiguredCollectorHosts() {
+      return Arrays.asList(collectorHost);
+    }
+
+    @Override
+    protected String getHostname() {
+      return "h1";
+    }
+
+    @Override
+    protected boolean isHostInMemoryAggregationEnabled() {
+      return false;
+    }
+
+    @Override
+    protected int getHostInMemoryAggregationPort() {
+      return 61888;
+    }
+
+    @Override
+    protected String getHostInMemoryAggregationProtocol() {
+      return "http";
+    }
+  }
+}
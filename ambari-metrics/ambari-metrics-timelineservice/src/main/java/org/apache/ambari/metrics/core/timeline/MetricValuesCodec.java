@@ -0,0 +1,494 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.metrics.core.timeline;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+
+/**
+ * Encodes the values of a metric stored in the METRICS column.
+ *
+ * The values are encoded as a compact binary series: the timestamps as
+ * delta-of-deltas and the values XOR'ed with the previous one, both packed in
+ * a variable number of bits. Since consecutive timestamps of a metric are
+ * evenly spaced and consecutive values are often equal or close, most points
+ * take a few bits instead of the ~30 characters of their JSON representation.
+ * The series is stored in the VARCHAR column as Base64 text, prefixed with
+ * {@link #BINARY_PREFIX} so that rows written as JSON by previous versions
+ * remain readable.
+ *
+ * Layout of version 2: version (8 bits) and number of points (32 bits),
+ * followed for a non empty series by the last point, so that it is read
+ * without decoding the series, then the first timestamp (64 bits) and the
+ * value of the first point, then the timestamp and value of every other
+ * point. A value starts with a bit telling whether it is present, a missing
+ * (null) value being only that bit, so that it is not confused with a
+ * {@link Double#NaN} value. The first value present is written as is (64
+ * bits) and the following ones XOR'ed with the previous value present.
+ *
+ * Version 1 had neither the last point nor the presence bits, and stored
+ * missing values as {@link Double#NaN}. It is still decoded.
+ */
+public final class MetricValuesCodec {
+
+  /**
+   * Marks a binary encoded series. JSON series always start with '{' and '#'
+   * is not part of the Base64 alphabet.
+   */
+  static final char BINARY_PREFIX = '#';
+
+  private static final int VERSION_1 = 1;
+
+  private static final int VERSION = 2;
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private static final TypeReference<TreeMap<Long, Double>> metricValuesTypeRef =
+    new TypeReference<TreeMap<Long, Double>>() {};
+
+  private MetricValuesCodec() {
+  }
+
+  /**
+   * Encodes the values of a metric as a binary series.
+   *
+   * @param values metric values sorted by timestamp
+   * @return the encoded series
+   */
+  public static String encode(TimelineMetricValues values) {
+    int size = values.size();
+    BitWriter out = new BitWriter(32 + size * 2);
+    out.writeBits(VERSION, 8);
+    out.writeBits(size, 32);
+
+    if (size > 0) {
+      out.writeBits(values.getLastTimestamp(), 64);
+      writeRawValue(out, values.getValue(size - 1));
+
+      long previousTimestamp = values.getFirstTimestamp();
+      long previousDelta = 0;
+      out.writeBits(previousTimestamp, 64);
+
+      ValueWriter valueWriter = new ValueWriter(out);
+      valueWriter.write(values.getValue(0));
+      for (int i = 1; i < size; i++) {
+        long timestamp = values.getTimestamp(i);
+        long delta = timestamp - previousTimestamp;
+        writeDeltaOfDelta(out, delta - previousDelta);
+        previousDelta = delta;
+        previousTimestamp = timestamp;
+
+        valueWriter.write(values.getValue(i));
+      }
+    }
+
+    return BINARY_PREFIX + Base64.getEncoder().encodeToString(out.toByteArray());
+  }
+
+  /**
+   * Decodes the values of a metric, encoded either as a binary series or as
+   * JSON.
+   *
+   * @param encoded the content of the METRICS column
+   * @return metric values sorted by timestamp
+   * @throws IOException if the values cannot be decoded
+   */
+  public static TreeMap<Long, Double> decode(String encoded) throws IOException {
+    if (!isBinary(encoded)) {
+      return mapper.readValue(encoded, metricValuesTypeRef);
+    }
+
+    TreeMap<Long, Double> values = new TreeMap<>();
+    Reader reader = reader(encoded);
+    while (reader.next()) {
+      values.put(reader.getTimestamp(), reader.isMissing() ? null : reader.getValue());
+    }
+    return values;
+  }
+
+  /**
+   * Decodes the last value of a metric. The last point of a binary series is
+   * read from its header, without decoding the other points.
+   *
+   * @param encoded the content of the METRICS column
+   * @return the last metric value, or no value if the series is empty
+   * @throws IOException if the values cannot be decoded
+   */
+  public static TreeMap<Long, Double> decodeLast(String encoded) throws IOException {
+    TreeMap<Long, Double> last = new TreeMap<>();
+    if (!isBinary(encoded)) {
+      TreeMap<Long, Double> values = mapper.readValue(encoded, metricValuesTypeRef);
+      if (!values.isEmpty()) {
+        Map.Entry<Long, Double> lastEntry = values.lastEntry();
+        last.put(lastEntry.getKey(), lastEntry.getValue());
+      }
+      return last;
+    }
+
+    Reader reader = reader(encoded);
+    if (reader.skipToLast()) {
+      last.put(reader.getTimestamp(), reader.isMissing() ? null : reader.getValue());
+    }
+    return last;
+  }
+
+  /**
+   * Creates a reader over a binary series, which decodes the points one at a
+   * time as primitives. Points of a time range can be selected by reading
+   * until the first point past the range.
+   *
+   * @param encoded a binary series
+   * @return the reader of the series
+   * @throws IOException if the series is not a binary series of a supported version
+   */
+  public static Reader reader(String encoded) throws IOException {
+    if (!isBinary(encoded)) {
+      throw new IOException("Metric values are not binary encoded");
+    }
+
+    byte[] bytes;
+    try {
+      bytes = Base64.getDecoder().decode(encoded.substring(1));
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Cannot decode metric values", e);
+    }
+
+    BitReader in = new BitReader(bytes);
+    int version = (int) in.readBits(8);
+    if (version != VERSION && version != VERSION_1) {
+      throw new IOException("Unsupported metric values encoding version " + version);
+    }
+    return new Reader(in, version, (int) in.readBits(32));
+  }
+
+  /**
+   * @return true if the content of the METRICS column is a binary series
+   */
+  public static boolean isBinary(String encoded) {
+    return encoded != null && !encoded.isEmpty() && encoded.charAt(0) == BINARY_PREFIX;
+  }
+
+  private static void writeRawValue(BitWriter out, double value) {
+    boolean present = !TimelineMetricValues.isMissing(value);
+    out.writeBit(present);
+    if (present) {
+      out.writeBits(Double.doubleToRawLongBits(value), 64);
+    }
+  }
+
+  private static void writeDeltaOfDelta(BitWriter out, long deltaOfDelta) {
+    if (deltaOfDelta == 0) {
+      out.writeBit(false);
+    } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+      out.writeBits(0b10, 2);
+      out.writeBits(deltaOfDelta + 63, 7);
+    } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+      out.writeBits(0b110, 3);
+      out.writeBits(deltaOfDelta + 255, 9);
+    } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+      out.writeBits(0b1110, 4);
+      out.writeBits(deltaOfDelta + 2047, 12);
+    } else {
+      out.writeBits(0b1111, 4);
+      out.writeBits(deltaOfDelta, 64);
+    }
+  }
+
+  private static long readDeltaOfDelta(BitReader in) throws IOException {
+    if (!in.readBit()) {
+      return 0;
+    }
+    if (!in.readBit()) {
+      return in.readBits(7) - 63;
+    }
+    if (!in.readBit()) {
+      return in.readBits(9) - 255;
+    }
+    if (!in.readBit()) {
+      return in.readBits(12) - 2047;
+    }
+    return in.readBits(64);
+  }
+
+  /**
+   * Writes the values of a series, each XOR'ed with the previous value
+   * present.
+   */
+  private static final class ValueWriter {
+    private final BitWriter out;
+    private boolean hasPrevious;
+    private long previousValue;
+    private int previousLeading = -1;
+    private int previousTrailing;
+
+    private ValueWriter(BitWriter out) {
+      this.out = out;
+    }
+
+    private void write(double doubleValue) {
+      if (TimelineMetricValues.isMissing(doubleValue)) {
+        out.writeBit(false);
+        return;
+      }
+      out.writeBit(true);
+
+      long value = Double.doubleToRawLongBits(doubleValue);
+      if (!hasPrevious) {
+        out.writeBits(value, 64);
+        hasPrevious = true;
+        previousValue = value;
+        return;
+      }
+
+      long xor = value ^ previousValue;
+      previousValue = value;
+      if (xor == 0) {
+        out.writeBit(false);
+        return;
+      }
+
+      out.writeBit(true);
+      int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+      int trailing = Long.numberOfTrailingZeros(xor);
+      if (previousLeading != -1 && leading >= previousLeading && trailing >= previousTrailing) {
+        // the changed bits fit in the window of the previous value
+        out.writeBit(false);
+        out.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+      } else {
+        int significant = 64 - leading - trailing;
+        out.writeBit(true);
+        out.writeBits(leading, 5);
+        out.writeBits(significant - 1, 6);
+        out.writeBits(xor >>> trailing, significant);
+        previousLeading = leading;
+        previousTrailing = trailing;
+      }
+    }
+  }
+
+  /**
+   * Reads the points of a binary series in order of their timestamps.
+   */
+  public static final class Reader {
+    private final BitReader in;
+    private final int version;
+    private final int size;
+    private int position;
+
+    private long lastTimestamp;
+    private boolean lastMissing;
+    private long lastValue;
+
+    private long timestamp;
+    private boolean missing;
+    private long value;
+    private boolean hasPrevious;
+    private long previousValue;
+    private long delta;
+    private int leading = -1;
+    private int trailing;
+
+    private Reader(BitReader in, int version, int size) throws IOException {
+      this.in = in;
+      this.version = version;
+      this.size = size;
+
+      if (version != VERSION_1 && size > 0) {
+        lastTimestamp = in.readBits(64);
+        lastMissing = !in.readBit();
+        if (!lastMissing) {
+          lastValue = in.readBits(64);
+        }
+      }
+    }
+
+    /**
+     * @return the number of points of the series
+     */
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Moves to the next point of the series.
+     *
+     * @return false if there are no more points
+     * @throws IOException if the series is truncated
+     */
+    public boolean next() throws IOException {
+      if (position == size) {
+        return false;
+      }
+
+      if (position == 0) {
+        timestamp = in.readBits(64);
+      } else {
+        delta += readDeltaOfDelta(in);
+        timestamp += delta;
+      }
+
+      if (version == VERSION_1) {
+        readValue();
+        missing = Double.isNaN(Double.longBitsToDouble(value));
+      } else {
+        missing = !in.readBit();
+        if (!missing) {
+          readValue();
+        }
+      }
+
+      position++;
+      return true;
+    }
+
+    private void readValue() throws IOException {
+      if (!hasPrevious) {
+        value = in.readBits(64);
+        hasPrevious = true;
+      } else if (in.readBit()) {
+        if (in.readBit()) {
+          leading = (int) in.readBits(5);
+          int significant = (int) in.readBits(6) + 1;
+          trailing = 64 - leading - significant;
+        } else if (leading == -1) {
+          throw new IOException("Corrupted metric values");
+        }
+        value = previousValue ^ (in.readBits(64 - leading - trailing) << trailing);
+      } else {
+        value = previousValue;
+      }
+      previousValue = value;
+    }
+
+    /**
+     * Moves to the last point of the series, which is read from the header of
+     * the series. The points before it are skipped.
+     *
+     * @return false if the series is empty
+     * @throws IOException if the series is truncated
+     */
+    public boolean skipToLast() throws IOException {
+      if (version == VERSION_1) {
+        boolean found = false;
+        while (next()) {
+          found = true;
+        }
+        return found;
+      }
+
+      if (size == 0) {
+        return false;
+      }
+      timestamp = lastTimestamp;
+      missing = lastMissing;
+      value = lastValue;
+      position = size;
+      return true;
+    }
+
+    /**
+     * @return the timestamp of the current point
+     */
+    public long getTimestamp() {
+      return timestamp;
+    }
+
+    /**
+     * @return true if the value of the current point is missing
+     */
+    public boolean isMissing() {
+      return missing;
+    }
+
+    /**
+     * @return the value of the current point, or {@link TimelineMetricValues#MISSING}
+     *         if it is missing
+     */
+    public double getValue() {
+      return missing ? TimelineMetricValues.MISSING : Double.longBitsToDouble(value);
+    }
+  }
+
+  private static final class BitWriter {
+    private byte[] buffer;
+    private int bitCount;
+
+    private BitWriter(int capacity) {
+      buffer = new byte[Math.max(capacity, 16)];
+    }
+
+    private void writeBit(boolean bit) {
+      int index = bitCount >>> 3;
+      if (index == buffer.length) {
+        byte[] grown = new byte[buffer.length * 2];
+        System.arraycopy(buffer, 0, grown, 0, buffer.length);
+        buffer = grown;
+      }
+      if (bit) {
+        buffer[index] |= 1 << (7 - (bitCount & 7));
+      }
+      bitCount++;
+    }
+
+    private void writeBits(long bits, int count) {
+      for (int i = count - 1; i >= 0; i--) {
+        writeBit(((bits >>> i) & 1) != 0);
+      }
+    }
+
+    private byte[] toByteArray() {
+      byte[] bytes = new byte[(bitCount + 7) >>> 3];
+      System.arraycopy(buffer, 0, bytes, 0, bytes.length);
+      return bytes;
+    }
+  }
+
+  private static final class BitReader {
+    private final byte[] buffer;
+    private int bitPosition;
+
+    private BitReader(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    private boolean readBit() throws IOException {
+      int index = bitPosition >>> 3;
+      if (index >= buffer.length) {
+        throw new IOException("Truncated metric values");
+      }
+      boolean bit = (buffer[index] & (1 << (7 - (bitPosition & 7)))) != 0;
+      bitPosition++;
+      return bit;
+    }
+
+    private long readBits(int count) throws IOException {
+      long bits = 0;
+      for (int i = 0; i < count; i++) {
+        bits = (bits << 1) | (readBit() ? 1 : 0);
+      }
+      return bits;
+    }
+  }
+}
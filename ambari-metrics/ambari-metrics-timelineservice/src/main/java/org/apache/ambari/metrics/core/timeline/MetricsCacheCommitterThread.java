@@ -17,22 +17,134 @@
  */
 package org.apache.ambari.metrics.core.timeline;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 
+/**
+ * Writes the cached metrics of one partition of the metric series to the
+ * store. Metrics are committed in batches: a batch is committed once it holds
+ * the configured number of rows or bytes, or once the commit interval has
+ * passed since its first metrics were queued.
+ */
 public class MetricsCacheCommitterThread implements Runnable {
 
-    private static final Log LOG = LogFactory.getLog(MetricsCacheCommitterThread.class);
-    private static PhoenixHBaseAccessor phoenixHBaseAccessor;
+  private static final Log LOG = LogFactory.getLog(MetricsCacheCommitterThread.class);
+
+  // Rough size of the identifying fields and aggregates of a row
+  private static final int ROW_OVERHEAD_BYTES = 128;
+  private static final int POINT_BYTES = 16;
+
+  private final PhoenixHBaseAccessor phoenixHBaseAccessor;
+  private final BlockingQueue<TimelineMetrics> queue;
+  private final long commitIntervalMillis;
+  private final int batchRows;
+  private final long batchBytes;
+  private final MetricsCacheSource metricsSource;
+
+  public MetricsCacheCommitterThread(PhoenixHBaseAccessor phoenixHBaseAccessor, int cacheSize,
+                                     long commitIntervalMillis, int batchRows, long batchBytes,
+                                     MetricsCacheSource metricsSource) {
+    this.phoenixHBaseAccessor = phoenixHBaseAccessor;
+    this.queue = new ArrayBlockingQueue<>(cacheSize);
+    this.commitIntervalMillis = commitIntervalMillis;
+    this.batchRows = batchRows;
+    this.batchBytes = batchBytes;
+    this.metricsSource = metricsSource;
+  }
+
+  /**
+   * Queues metrics to be committed, waiting for space in the queue for at
+   * most the given time.
+   *
+   * @return false if the queue stayed full
+   */
+  boolean offer(TimelineMetrics metrics, long timeoutMillis) throws InterruptedException {
+    return queue.offer(metrics, timeoutMillis, TimeUnit.MILLISECONDS);
+  }
+
+  int getQueueSize() {
+    return queue.size();
+  }
 
-    public MetricsCacheCommitterThread(PhoenixHBaseAccessor phoenixHBaseAccessor) {
-        this.phoenixHBaseAccessor = phoenixHBaseAccessor;
+  int getQueueCapacity() {
+    return queue.size() + queue.remainingCapacity();
+  }
+
+  /**
+   * Commits all of the queued metrics on the calling thread.
+   */
+  void commitQueued() {
+    List<TimelineMetrics> batch = new ArrayList<>(queue.size());
+    queue.drainTo(batch);
+    if (!batch.isEmpty()) {
+      int rows = 0;
+      long bytes = 0;
+      for (TimelineMetrics metrics : batch) {
+        rows += metrics.getMetrics().size();
+        bytes += estimateBytes(metrics);
+      }
+      commit(batch, rows, bytes);
     }
-    @Override
-    public void run() {
-        LOG.debug("Checking if metrics cache is empty");
-        if (!phoenixHBaseAccessor.isInsertCacheEmpty()) {
-            phoenixHBaseAccessor.commitMetricsFromCache();
+  }
+
+  @Override
+  public void run() {
+    List<TimelineMetrics> batch = new ArrayList<>();
+    while (!Thread.currentThread().isInterrupted()) {
+      int rows = 0;
+      long bytes = 0;
+      try {
+        TimelineMetrics metrics = queue.take();
+        long deadline = System.currentTimeMillis() + commitIntervalMillis;
+        while (metrics != null) {
+          batch.add(metrics);
+          rows += metrics.getMetrics().size();
+          bytes += estimateBytes(metrics);
+          if (rows >= batchRows || bytes >= batchBytes) {
+            break;
+          }
+          long wait = deadline - System.currentTimeMillis();
+          metrics = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : null;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+
+      try {
+        if (!batch.isEmpty()) {
+          commit(batch, rows, bytes);
         }
+      } catch (Exception e) {
+        LOG.error("Error committing cached metrics.", e);
+      } finally {
+        batch.clear();
+      }
+    }
+
+    // Do not lose the metrics already accepted
+    commitQueued();
+  }
+
+  private void commit(List<TimelineMetrics> batch, int rows, long bytes) {
+    LOG.debug("Committing " + rows + " cached metric rows");
+    long startTime = System.currentTimeMillis();
+    phoenixHBaseAccessor.commitCachedMetrics(batch);
+    metricsSource.addCommit(rows, bytes, System.currentTimeMillis() - startTime);
+  }
+
+  private static long estimateBytes(TimelineMetrics metrics) {
+    long bytes = 0;
+    for (TimelineMetric metric : metrics.getMetrics()) {
+      bytes += ROW_OVERHEAD_BYTES + (long) POINT_BYTES * metric.getMetricValueSeries().size();
     }
+    return bytes;
+  }
 }
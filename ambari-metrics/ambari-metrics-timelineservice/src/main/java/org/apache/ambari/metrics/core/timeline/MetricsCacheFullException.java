@@ -0,0 +1,42 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.metrics.core.timeline;
+
+import java.io.IOException;
+
+/**
+ * Thrown when metrics cannot be accepted because the cache they are queued in
+ * before being written to the store is full. The metrics should be sent again
+ * after the given delay.
+ */
+public class MetricsCacheFullException extends IOException {
+
+  private final int retryAfterSeconds;
+
+  public MetricsCacheFullException(String message, int retryAfterSeconds) {
+    super(message);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  /**
+   * @return the number of seconds after which the metrics should be sent again
+   */
+  public int getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
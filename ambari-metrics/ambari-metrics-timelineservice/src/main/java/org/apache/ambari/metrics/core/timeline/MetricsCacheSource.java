@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.metrics.core.timeline;
+
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsException;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+import org.apache.hadoop.metrics2.lib.MetricsRegistry;
+import org.apache.hadoop.metrics2.lib.MutableCounterLong;
+import org.apache.hadoop.metrics2.lib.MutableGaugeInt;
+import org.apache.hadoop.metrics2.lib.MutableRate;
+import org.apache.hadoop.metrics2.lib.MutableStat;
+
+/**
+ * Metrics of the cache which precision metrics are queued in before they are
+ * written to the store, published through the metrics system of the
+ * collector along with its JVM metrics.
+ */
+public class MetricsCacheSource implements MetricsSource {
+
+  private static final Log LOG = LogFactory.getLog(MetricsCacheSource.class);
+
+  static final String SOURCE_NAME = "TimelineMetricsCache";
+
+  private final MetricsRegistry registry = new MetricsRegistry(SOURCE_NAME);
+  private final MutableGaugeInt queueDepth =
+    registry.newGauge("QueueDepth", "Number of metric submissions waiting to be written", 0);
+  private final MutableGaugeInt queueCapacity =
+    registry.newGauge("QueueCapacity", "Number of metric submissions the cache can hold", 0);
+  private final MutableStat batchRows =
+    registry.newStat("CommitBatchRows", "Rows written per commit", "Commits", "Rows");
+  private final MutableStat batchBytes =
+    registry.newStat("CommitBatchBytes", "Estimated bytes written per commit", "Commits", "Bytes");
+  private final MutableRate commitLatency =
+    registry.newRate("CommitLatency", "Time taken to write a batch of metrics", false);
+  private final MutableCounterLong rejectedSubmissions =
+    registry.newCounter("RejectedSubmissions", "Metric submissions rejected because the cache was full", 0L);
+
+  private final List<MetricsCacheCommitterThread> committers;
+
+  MetricsCacheSource(List<MetricsCacheCommitterThread> committers) {
+    this.committers = committers;
+  }
+
+  /**
+   * Registers the source with the metrics system of the collector.
+   */
+  void register() {
+    try {
+      DefaultMetricsSystem.instance().register(SOURCE_NAME, "Precision metrics cache", this);
+    } catch (MetricsException e) {
+      LOG.warn("Unable to register metrics cache source: " + e.getMessage());
+    }
+  }
+
+  void addCommit(int rows, long bytes, long latencyMillis) {
+    batchRows.add(rows);
+    batchBytes.add(bytes);
+    commitLatency.add(latencyMillis);
+  }
+
+  void incrementRejected() {
+    rejectedSubmissions.incr();
+  }
+
+  @Override
+  public void getMetrics(MetricsCollector collector, boolean all) {
+    int depth = 0;
+    int capacity = 0;
+    for (MetricsCacheCommitterThread committer : committers) {
+      depth += committer.getQueueSize();
+      capacity += committer.getQueueCapacity();
+    }
+    queueDepth.set(depth);
+    queueCapacity.set(capacity);
+    registry.snapshot(collector.addRecord(registry.info()), all);
+  }
+}
@@ -47,9 +47,14 @@ import static org.apache.ambari.metrics.core.timeline.TimelineMetricConfiguratio
 import static org.apache.ambari.metrics.core.timeline.TimelineMetricConfiguration.HOST_MINUTE_TABLE_TTL;
 import static org.apache.ambari.metrics.core.timeline.TimelineMetricConfiguration.METRICS_TRANSIENT_TABLE_TTL;
 import static org.apache.ambari.metrics.core.timeline.TimelineMetricConfiguration.PRECISION_TABLE_TTL;
+import static org.apache.ambari.metrics.core.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_BINARY_VALUES_ENABLED;
+import static org.apache.ambari.metrics.core.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_COMMIT_BATCH_BYTES;
+import static org.apache.ambari.metrics.core.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_COMMIT_BATCH_ROWS;
 import static org.apache.ambari.metrics.core.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_COMMIT_INTERVAL;
 import static org.apache.ambari.metrics.core.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_ENABLED;
+import static org.apache.ambari.metrics.core.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_OFFER_TIMEOUT;
 import static org.apache.ambari.metrics.core.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_SIZE;
+import static org.apache.ambari.metrics.core.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CACHE_WRITER_THREADS;
 import static org.apache.ambari.metrics.core.timeline.TimelineMetricConfiguration.TIMELINE_METRIC_AGGREGATOR_SINK_CLASS;
 import static org.apache.ambari.metrics.core.timeline.query.PhoenixTransactSQL.CONTAINER_METRICS_TABLE_NAME;
 import static org.apache.ambari.metrics.core.timeline.query.PhoenixTransactSQL.CREATE_CONTAINER_METRICS_TABLE_SQL;
@@ -106,11 +111,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.ambari.metrics.core.timeline.aggregators.AggregatorUtils;
 import org.apache.ambari.metrics.core.timeline.aggregators.Function;
@@ -157,8 +157,6 @@ import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.hadoop.yarn.api.records.ContainerId;
 import org.apache.hadoop.yarn.util.timeline.TimelineUtils;
 import org.apache.phoenix.exception.PhoenixIOException;
-import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.type.TypeReference;
 
 import com.google.common.collect.Multimap;
 
@@ -185,8 +183,6 @@ public class PhoenixHBaseAccessor {
   public static int clusterSecondAggregatorDataInterval = 30;
 
   static TimelineMetricReadHelper TIMELINE_METRIC_READ_HELPER = new TimelineMetricReadHelper();
-  static ObjectMapper mapper = new ObjectMapper();
-  static TypeReference<TreeMap<Long, Double>> metricValuesTypeRef = new TypeReference<TreeMap<Long, Double>>() {};
 
   private final Configuration hbaseConf;
   private final Configuration metricsConf;
@@ -194,12 +190,14 @@ public class PhoenixHBaseAccessor {
   private final PhoenixConnectionProvider dataSource;
   private final int cacheSize;
   private final boolean cacheEnabled;
-  private final BlockingQueue<TimelineMetrics> insertCache;
-  private ScheduledExecutorService scheduledExecutorService;
-  private MetricsCacheCommitterThread metricsCommiterThread;
+  // Writers of the cached metrics, each for a partition of the metric series
+  private final List<MetricsCacheCommitterThread> cacheCommitters = new ArrayList<>();
+  private final long cacheOfferTimeoutMillis;
+  private final MetricsCacheSource cacheMetricsSource;
   private TimelineMetricsAggregatorSink aggregatorSink;
   private final int cacheCommitInterval;
   private final boolean skipBlockCacheForAggregatorsEnabled;
+  private final boolean binaryMetricValuesEnabled;
   private TimelineMetricMetadataManager metadataManagerInstance;
   private Set<String> eventMetricPatterns = new HashSet<>();
   private boolean supportMultipleClusterMetrics = false;
@@ -245,8 +243,9 @@ public class PhoenixHBaseAccessor {
     this.cacheEnabled = Boolean.valueOf(metricsConf.get(TIMELINE_METRICS_CACHE_ENABLED, "true"));
     this.cacheSize = Integer.valueOf(metricsConf.get(TIMELINE_METRICS_CACHE_SIZE, "150"));
     this.cacheCommitInterval = Integer.valueOf(metricsConf.get(TIMELINE_METRICS_CACHE_COMMIT_INTERVAL, "3"));
-    this.insertCache = new ArrayBlockingQueue<TimelineMetrics>(cacheSize);
+    this.cacheOfferTimeoutMillis = metricsConf.getLong(TIMELINE_METRICS_CACHE_OFFER_TIMEOUT, 1000);
     this.skipBlockCacheForAggregatorsEnabled = metricsConf.getBoolean(AGGREGATORS_SKIP_BLOCK_CACHE, false);
+    this.binaryMetricValuesEnabled = metricsConf.getBoolean(TIMELINE_METRICS_BINARY_VALUES_ENABLED, false);
 
     String eventMetricPatternStrings = metricsConf.get(TIMELINE_METRICS_EVENT_METRIC_PATTERNS, StringUtils.EMPTY);
     eventMetricPatterns.addAll(getJavaMetricPatterns(eventMetricPatternStrings));
@@ -264,11 +263,23 @@ public class PhoenixHBaseAccessor {
 
     this.supportMultipleClusterMetrics = Boolean.valueOf(metricsConf.get(TIMELINE_METRICS_SUPPORT_MULTIPLE_CLUSTERS, "false"));
 
+    this.cacheMetricsSource = new MetricsCacheSource(cacheCommitters);
     if (cacheEnabled) {
-      LOG.debug("Initialising and starting metrics cache committer thread...");
-      metricsCommiterThread = new MetricsCacheCommitterThread(this);
-      scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
-      scheduledExecutorService.scheduleWithFixedDelay(metricsCommiterThread, 0, cacheCommitInterval, TimeUnit.SECONDS);
+      int writerThreads = Math.max(1, metricsConf.getInt(TIMELINE_METRICS_CACHE_WRITER_THREADS, 2));
+      int batchRows = metricsConf.getInt(TIMELINE_METRICS_CACHE_COMMIT_BATCH_ROWS, PHOENIX_MAX_MUTATION_STATE_SIZE);
+      long batchBytes = metricsConf.getLong(TIMELINE_METRICS_CACHE_COMMIT_BATCH_BYTES, 64L * 1024 * 1024);
+      LOG.debug("Initialising and starting " + writerThreads + " metrics cache committer threads...");
+      // The configured cache size bounds the total buffered submissions, so it is split across the writers
+      for (int i = 0; i < writerThreads; i++) {
+        int writerCacheSize = Math.max(1, cacheSize / writerThreads + (i < cacheSize % writerThreads ? 1 : 0));
+        MetricsCacheCommitterThread committer = new MetricsCacheCommitterThread(this, writerCacheSize,
+          SECONDS.toMillis(cacheCommitInterval), batchRows, batchBytes, cacheMetricsSource);
+        cacheCommitters.add(committer);
+        Thread thread = new Thread(committer, "MetricsCacheCommitter-" + i);
+        thread.setDaemon(true);
+        thread.start();
+      }
+      cacheMetricsSource.register();
     }
 
     Class<? extends TimelineMetricsAggregatorSink> metricSinkClass =
@@ -295,21 +306,33 @@ public class PhoenixHBaseAccessor {
   }
 
   public boolean isInsertCacheEmpty() {
-    return insertCache.isEmpty();
+    for (MetricsCacheCommitterThread committer : cacheCommitters) {
+      if (committer.getQueueSize() > 0) {
+        return false;
+      }
+    }
+    return true;
   }
 
+  /**
+   * Commits all of the cached metrics on the calling thread.
+   */
   public void commitMetricsFromCache() {
     LOG.debug("Clearing metrics cache");
-    List<TimelineMetrics> metricsList = new ArrayList<TimelineMetrics>(insertCache.size());
-    if (!insertCache.isEmpty()) {
-      insertCache.drainTo(metricsList); // More performant than poll
+    for (MetricsCacheCommitterThread committer : cacheCommitters) {
+      committer.commitQueued();
     }
-    if (metricsList.size() > 0) {
-      commitMetrics(metricsList);
-      if (!rawMetricsSources.isEmpty()) {
-        for (InternalMetricsSource rawMetricsSource : rawMetricsSources) {
-          rawMetricsSource.publishTimelineMetrics(metricsList);
-        }
+  }
+
+  /**
+   * Commits a batch of metrics taken from the cache and publishes them to the
+   * raw metrics sources.
+   */
+  void commitCachedMetrics(List<TimelineMetrics> metricsList) {
+    commitMetrics(metricsList);
+    if (!rawMetricsSources.isEmpty()) {
+      for (InternalMetricsSource rawMetricsSource : rawMetricsSources) {
+        rawMetricsSource.publishTimelineMetrics(metricsList);
       }
     }
   }
@@ -344,7 +367,7 @@ public class PhoenixHBaseAccessor {
                     "values: " + metric.getMetricValues());
           }
           double[] aggregates = AggregatorUtils.calculateAggregates(
-                  metric.getMetricValues());
+                  metric.getMetricValueSeries());
 
           if (aggregates[3] != 0.0) {
             rowCount++;
@@ -359,8 +382,7 @@ public class PhoenixHBaseAccessor {
             metricRecordStmt.setDouble(4, aggregates[1]);
             metricRecordStmt.setDouble(5, aggregates[2]);
             metricRecordStmt.setLong(6, (long) aggregates[3]);
-            String json = TimelineUtils.dumpTimelineRecordtoJSON(metric.getMetricValues());
-            metricRecordStmt.setString(7, json);
+            metricRecordStmt.setString(7, encodeMetricValues(metric));
 
             try {
               int rows = metricRecordStmt.executeUpdate();
@@ -428,7 +450,7 @@ public class PhoenixHBaseAccessor {
           "values: " + metric.getMetricValues());
       }
       double[] aggregates = AggregatorUtils.calculateAggregates(
-        metric.getMetricValues());
+        metric.getMetricValueSeries());
 
       metricTransientRecordStmt.setString(1, metric.getMetricName());
       metricTransientRecordStmt.setString(2, metric.getHostName());
@@ -440,8 +462,7 @@ public class PhoenixHBaseAccessor {
       metricTransientRecordStmt.setDouble(8, aggregates[1]);
       metricTransientRecordStmt.setDouble(9, aggregates[2]);
       metricTransientRecordStmt.setLong(10, (long) aggregates[3]);
-      String json = TimelineUtils.dumpTimelineRecordtoJSON(metric.getMetricValues());
-      metricTransientRecordStmt.setString(11, json);
+      metricTransientRecordStmt.setString(11, encodeMetricValues(metric));
 
       try {
         metricTransientRecordStmt.executeUpdate();
@@ -454,22 +475,23 @@ public class PhoenixHBaseAccessor {
 
   private static TimelineMetric getLastTimelineMetricFromResultSet(ResultSet rs) throws SQLException, IOException {
     TimelineMetric metric = TIMELINE_METRIC_READ_HELPER.getTimelineMetricCommonsFromResultSet(rs);
-    metric.setMetricValues(readLastMetricValueFromJSON(rs.getString("METRICS")));
+    metric.setMetricValues(MetricValuesCodec.decodeLast(rs.getString("METRICS")));
     return metric;
   }
 
-  private static TreeMap<Long, Double> readLastMetricValueFromJSON(String json) throws IOException {
-    TreeMap<Long, Double> values = readMetricFromJSON(json);
-    Long lastTimeStamp = values.lastKey();
-
-    TreeMap<Long, Double> valueMap = new TreeMap<Long, Double>();
-    valueMap.put(lastTimeStamp, values.get(lastTimeStamp));
-    return valueMap;
+  /**
+   * Reads the values of a metric from the METRICS column, which are either
+   * binary encoded or JSON.
+   */
+  public static TreeMap<Long, Double> readMetricValues(String metrics) throws IOException {
+    return MetricValuesCodec.decode(metrics);
   }
 
-  @SuppressWarnings("unchecked")
-  public static TreeMap<Long, Double> readMetricFromJSON(String json) throws IOException {
-    return mapper.readValue(json, metricValuesTypeRef);
+  private String encodeMetricValues(TimelineMetric metric) throws IOException {
+    if (binaryMetricValuesEnabled) {
+      return MetricValuesCodec.encode(metric.getMetricValueSeries());
+    }
+    return TimelineUtils.dumpTimelineRecordtoJSON(metric.getMetricValues());
   }
 
   public Connection getConnectionRetryingOnException() throws SQLException, InterruptedException {
@@ -923,22 +945,74 @@ public class PhoenixHBaseAccessor {
       }
     }
 
+    if (!skipCache && cacheEnabled) {
+      // hold the values of the cached metrics as primitives until they are committed
+      for (TimelineMetric tm : timelineMetrics) {
+        tm.compactMetricValues();
+      }
+    }
+
     if  (!skipCache && cacheEnabled) {
       LOG.debug("Adding metrics to cache");
-      if (insertCache.size() >= cacheSize) {
-        commitMetricsFromCache();
-      }
-      try {
-        insertCache.put(metrics); // blocked while the queue is full
-      } catch (InterruptedException e) {
-        e.printStackTrace();
-      }
+      addMetricsToCache(metrics);
     } else {
       LOG.debug("Skipping metrics cache");
       commitMetrics(metrics);
     }
   }
 
+  /**
+   * Queues metrics to be written by the committers of their series. Every
+   * series is always written by the same committer, so that its points are
+   * written in order. If the cache of a committer stays full, the sink is asked
+   * to send the metrics again later. Any part of the metrics already queued is
+   * written twice then, which is harmless since rows are upserted.
+   */
+  private void addMetricsToCache(TimelineMetrics metrics) throws IOException {
+    List<TimelineMetrics> partitions = partitionMetrics(metrics);
+    try {
+      for (int i = 0; i < partitions.size(); i++) {
+        TimelineMetrics partition = partitions.get(i);
+        if (partition != null && !cacheCommitters.get(i).offer(partition, cacheOfferTimeoutMillis)) {
+          cacheMetricsSource.incrementRejected();
+          throw new MetricsCacheFullException("Metrics cache is full, metrics cannot be accepted",
+            cacheCommitInterval);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while adding metrics to cache", e);
+    }
+  }
+
+  /**
+   * Splits metrics by the committer of their series. The committer is chosen
+   * from the fields the UUID of a series is generated from, so that the
+   * metadata does not have to be looked up twice.
+   *
+   * @return the metrics of each committer, null for a committer without metrics
+   */
+  private List<TimelineMetrics> partitionMetrics(TimelineMetrics metrics) {
+    int committers = cacheCommitters.size();
+    if (committers == 1) {
+      return Collections.singletonList(metrics);
+    }
+
+    List<TimelineMetrics> partitions = new ArrayList<>(Collections.nCopies(committers, (TimelineMetrics) null));
+    for (TimelineMetric metric : metrics.getMetrics()) {
+      int hash = Arrays.hashCode(new Object[] {
+        metric.getMetricName(), metric.getAppId(), metric.getInstanceId(), metric.getHostName() });
+      int index = (hash & Integer.MAX_VALUE) % committers;
+      TimelineMetrics partition = partitions.get(index);
+      if (partition == null) {
+        partition = new TimelineMetrics();
+        partitions.set(index, partition);
+      }
+      partition.getMetrics().add(metric);
+    }
+    return partitions;
+  }
+
   public void insertMetricRecords(TimelineMetrics metrics, boolean skipCache) throws SQLException, IOException {
     insertMetricRecordsWithMetadata(null, metrics, skipCache);
   }
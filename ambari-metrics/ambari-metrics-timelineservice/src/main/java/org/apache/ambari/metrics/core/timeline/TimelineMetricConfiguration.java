@@ -88,6 +88,35 @@ public class TimelineMetricConfiguration {
   public static final String TIMELINE_METRICS_CACHE_ENABLED =
     "timeline.metrics.cache.enabled";
 
+  /**
+   * Number of threads writing cached metrics to the store. The metric series
+   * are partitioned across the threads, which share the
+   * {@link #TIMELINE_METRICS_CACHE_SIZE} submissions of the cache.
+   */
+  public static final String TIMELINE_METRICS_CACHE_WRITER_THREADS =
+    "timeline.metrics.cache.writer.threads";
+
+  /**
+   * Number of rows after which a batch of cached metrics is committed before
+   * the commit interval has passed.
+   */
+  public static final String TIMELINE_METRICS_CACHE_COMMIT_BATCH_ROWS =
+    "timeline.metrics.cache.commit.batch.rows";
+
+  /**
+   * Estimated size in bytes after which a batch of cached metrics is
+   * committed before the commit interval has passed.
+   */
+  public static final String TIMELINE_METRICS_CACHE_COMMIT_BATCH_BYTES =
+    "timeline.metrics.cache.commit.batch.bytes";
+
+  /**
+   * Time in milliseconds a submission waits for space in a full cache before
+   * it is rejected, asking the sink to send it again later.
+   */
+  public static final String TIMELINE_METRICS_CACHE_OFFER_TIMEOUT =
+    "timeline.metrics.cache.offer.timeout";
+
   public static final String DEFAULT_CHECKPOINT_LOCATION =
     System.getProperty("java.io.tmpdir");
 
@@ -262,6 +291,13 @@ public class TimelineMetricConfiguration {
   public static final String TIMELINE_METRICS_CLUSTER_AGGREGATOR_INTERPOLATION_ENABLED =
     "timeline.metrics.cluster.aggregator.interpolation.enabled";
 
+  /**
+   * Number of threads the cluster second aggregator slices and aggregates
+   * metrics with. Defaults to the number of available processors.
+   */
+  public static final String TIMELINE_METRICS_CLUSTER_AGGREGATOR_SECOND_THREADS =
+    "timeline.metrics.cluster.aggregator.second.threads";
+
   public static final String TIMELINE_METRICS_SINK_COLLECTION_PERIOD =
     "timeline.metrics.sink.collection.period";
 
@@ -298,6 +334,16 @@ public class TimelineMetricConfiguration {
   public static final String TIMELINE_METRICS_UUID_GEN_STRATEGY =
     "timeline.metrics.uuid.gen.strategy";
 
+  /**
+   * Whether the values of precision metrics are written as a compact binary
+   * series instead of JSON. Both formats are always readable, but collectors
+   * of previous versions only read JSON, so this is disabled by default and
+   * should only be enabled once every collector writing to or reading from
+   * the same tables has been upgraded.
+   */
+  public static final String TIMELINE_METRICS_BINARY_VALUES_ENABLED =
+    "timeline.metrics.service.binary.values.enabled";
+
   public static final String HOST_APP_ID = "HOST";
 
   public static final String DEFAULT_INSTANCE_ID = "DEFAULT";
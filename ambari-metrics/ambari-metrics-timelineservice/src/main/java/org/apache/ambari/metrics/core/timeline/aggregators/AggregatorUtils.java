@@ -31,6 +31,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.metrics2.sink.timeline.PostProcessingUtil;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
 
 /**
  *
@@ -70,6 +71,37 @@ public class AggregatorUtils {
     return values;
   }
 
+  /**
+   * Same as {@link #calculateAggregates(Map)}, over the primitive values of a
+   * metric, where missing values are NaN.
+   */
+  public static double[] calculateAggregates(TimelineMetricValues metricValues) {
+    double[] values = new double[4];
+    double max = Double.MIN_VALUE;
+    double min = Double.MAX_VALUE;
+    double sum = 0.0;
+
+    int metricCount = metricValues.size();
+    for (int i = 0; i < metricCount; i++) {
+      double value = metricValues.getValue(i);
+      if (!Double.isNaN(value)) {
+        if (value > max) {
+          max = value;
+        }
+        if (value < min) {
+          min = value;
+        }
+        sum += value;
+      }
+    }
+    values[0] = sum;
+    values[1] = max != Double.MIN_VALUE ? max : 0.0;
+    values[2] = min != Double.MAX_VALUE ? min : 0.0;
+    values[3] = metricCount;
+
+    return values;
+  }
+
   public static Map<TimelineClusterMetric, Double> sliceFromTimelineMetric(
     TimelineMetric timelineMetric, List<Long[]> timeSlices, boolean interpolationEnabled) {
 
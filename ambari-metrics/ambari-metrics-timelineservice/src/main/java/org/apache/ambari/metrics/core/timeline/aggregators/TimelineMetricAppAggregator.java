@@ -87,6 +87,23 @@ public class TimelineMetricAppAggregator {
    */
   public void processTimelineClusterMetric(TimelineClusterMetric clusterMetric,
                                            String hostname, Double metricValue) {
+    processTimelineClusterMetric(clusterMetric, hostname, metricValue, aggregateClusterMetrics);
+  }
+
+  /**
+   * Calculate aggregates if the clusterMetric is a Host metric for recorded
+   * apps that are housed by this host, into the given aggregates instead of
+   * the ones of the current aggregation cycle. This allows separate threads
+   * to aggregate metrics concurrently.
+   *
+   * @param clusterMetric @TimelineClusterMetric Host / App metric
+   * @param hostname This is the hostname from which this clusterMetric originated.
+   * @param metricValue The metric value for this metric.
+   * @param appAggregateClusterMetrics The app level aggregates to update.
+   */
+  public void processTimelineClusterMetric(TimelineClusterMetric clusterMetric,
+                                           String hostname, Double metricValue,
+                                           Map<TimelineClusterMetric, MetricClusterAggregate> appAggregateClusterMetrics) {
 
     String appId = clusterMetric.getAppId();
     if (appId == null) {
@@ -97,7 +114,7 @@ public class TimelineMetricAppAggregator {
     if (appId.equalsIgnoreCase(HOST_APP_ID)) {
       // Candidate metric, update app aggregates
       if (hostMetadata.containsKey(hostname)) {
-        updateAppAggregatesFromHostMetric(clusterMetric, hostname, metricValue);
+        updateAppAggregatesFromHostMetric(clusterMetric, hostname, metricValue, appAggregateClusterMetrics);
       }
     } else {
       // Build the hostedapps map if not a host metric
@@ -106,13 +123,14 @@ public class TimelineMetricAppAggregator {
         TimelineMetricHostMetadata timelineMetricHostMetadata = hostMetadata.get(hostname);
         ConcurrentHashMap<String, String> appIds;
         if (timelineMetricHostMetadata == null) {
-          appIds = new ConcurrentHashMap<>();
-          hostMetadata.put(hostname, new TimelineMetricHostMetadata(appIds));
-        } else {
-          appIds = timelineMetricHostMetadata.getHostedApps();
+          timelineMetricHostMetadata = new TimelineMetricHostMetadata(new ConcurrentHashMap<String, String>());
+          TimelineMetricHostMetadata existing = hostMetadata.putIfAbsent(hostname, timelineMetricHostMetadata);
+          if (existing != null) {
+            timelineMetricHostMetadata = existing;
+          }
         }
-        if (!appIds.containsKey(appId)) {
-          appIds.put(appId, appId);
+        appIds = timelineMetricHostMetadata.getHostedApps();
+        if (appIds.putIfAbsent(appId, appId) == null) {
           LOG.info("Adding appId to hosted apps: appId = " +
             clusterMetric.getAppId() + ", hostname = " + hostname);
         }
@@ -124,7 +142,8 @@ public class TimelineMetricAppAggregator {
    * Build a cluster app metric from a host metric
    */
   private void updateAppAggregatesFromHostMetric(TimelineClusterMetric clusterMetric,
-                                                 String hostname, Double metricValue) {
+                                                 String hostname, Double metricValue,
+                                                 Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics) {
 
     if (aggregateClusterMetrics == null) {
       LOG.error("Aggregation requested without init call.");
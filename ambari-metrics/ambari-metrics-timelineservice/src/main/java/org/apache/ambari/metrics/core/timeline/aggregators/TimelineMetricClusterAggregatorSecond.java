@@ -19,6 +19,7 @@ package org.apache.ambari.metrics.core.timeline.aggregators;
 
 
 import static org.apache.ambari.metrics.core.timeline.TimelineMetricConfiguration.SERVER_SIDE_TIMESIFT_ADJUSTMENT;
+import static org.apache.ambari.metrics.core.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CLUSTER_AGGREGATOR_SECOND_THREADS;
 import static org.apache.ambari.metrics.core.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_CLUSTER_AGGREGATOR_INTERPOLATION_ENABLED;
 import static org.apache.ambari.metrics.core.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_EVENT_METRIC_PATTERNS;
 import static org.apache.ambari.metrics.core.timeline.TimelineMetricConfiguration.TIMELINE_METRICS_SUPPORT_MULTIPLE_CLUSTERS;
@@ -35,9 +36,18 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.mutable.MutableInt;
@@ -69,6 +79,11 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
   private String skipAggrPatternStrings;
   private List<String> skipInterpolationMetricPatterns = new ArrayList<>();
   private final static String liveHostsMetricName = "live_hosts";
+  // Number of metric series read before a partition is handed to a worker
+  private static final int PARTITION_SIZE = 1000;
+  // Worker threads aggregating the partitions, null if aggregating on the aggregator thread
+  private final ExecutorService executor;
+  private final Semaphore pendingPartitions;
 
   public TimelineMetricClusterAggregatorSecond(AGGREGATOR_NAME aggregatorName,
                                                TimelineMetricMetadataManager metadataManager,
@@ -105,6 +120,27 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     } else {
       this.timelineMetricReadHelper = new TimelineMetricReadHelper(metadataManager, true);
     }
+
+    int threads = metricsConf.getInt(TIMELINE_METRICS_CLUSTER_AGGREGATOR_SECOND_THREADS,
+      Runtime.getRuntime().availableProcessors());
+    if (threads > 1) {
+      final String threadName = aggregatorName + "-worker-";
+      this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, threadName + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      this.pendingPartitions = new Semaphore(threads * 2);
+    } else {
+      this.executor = null;
+      this.pendingPartitions = null;
+    }
+    LOG.info("Aggregating cluster metrics with " + Math.max(threads, 1) + " thread(s).");
   }
 
   @Override
@@ -149,67 +185,163 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     return condition;
   }
 
+  /**
+   * Reads the metrics of the aggregation cycle and aggregates them across
+   * hosts. Rows are read in order of their UUID, which starts with the UUID of
+   * the metric, so the series of all hosts of a metric are read one after the
+   * other. The series are grouped in partitions made of whole metrics, which
+   * are sliced and aggregated by the worker threads while the next partitions
+   * are read. The aggregates of the partitions are merged once all of the rows
+   * are read.
+   */
   Map<TimelineClusterMetric, MetricClusterAggregate> aggregateMetricsFromResultSet(ResultSet rs, List<Long[]> timeSlices)
     throws SQLException, IOException {
-    Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics =
-      new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+    List<Future<Partition>> partitions = new ArrayList<>();
+    Partition partition = new Partition(timeSlices);
 
-    TimelineMetric metric = null;
-    Map<String, MutableInt> hostedAppCounter = new HashMap<>();
-    if (rs.next()) {
-      metric = timelineMetricReadHelper.getTimelineMetricFromResultSet(rs);
-      while (metric == null && rs.next()) {
+    try {
+      TimelineMetric metric = null;
+      if (rs.next()) {
         metric = timelineMetricReadHelper.getTimelineMetricFromResultSet(rs);
-      }
-
-      // Call slice after all rows for a host are read
-      while (rs.next()) {
-        TimelineMetric nextMetric = timelineMetricReadHelper.getTimelineMetricFromResultSet(rs);
-        // If rows belong to same host combine them before slicing. This
-        // avoids issues across rows that belong to same hosts but get
-        // counted as coming from different ones.
-        if (nextMetric == null) {
-          continue;
+        while (metric == null && rs.next()) {
+          metric = timelineMetricReadHelper.getTimelineMetricFromResultSet(rs);
         }
 
-        if (metric.equalsExceptTime(nextMetric)) {
-          metric.addMetricValues(nextMetric.getMetricValues());
-        } else {
-          // Process the current metric
-          int numHosts = processAggregateClusterMetrics(aggregateClusterMetrics, metric, timeSlices);
-          if (!hostedAppCounter.containsKey(metric.getAppId())) {
-            hostedAppCounter.put(metric.getAppId(), new MutableInt(numHosts));
+        // Call slice after all rows for a host are read
+        while (rs.next()) {
+          TimelineMetric nextMetric = timelineMetricReadHelper.getTimelineMetricFromResultSet(rs);
+          // If rows belong to same host combine them before slicing. This
+          // avoids issues across rows that belong to same hosts but get
+          // counted as coming from different ones.
+          if (nextMetric == null) {
+            continue;
+          }
+
+          if (metric.equalsExceptTime(nextMetric)) {
+            metric.addMetricValues(nextMetric.getMetricValues());
           } else {
-            int currentHostCount = hostedAppCounter.get(metric.getAppId()).intValue();
-            if (currentHostCount < numHosts) {
-              hostedAppCounter.put(metric.getAppId(), new MutableInt(numHosts));
+            partition.metrics.add(metric);
+            // Only close a partition between two metrics, the number of hosts
+            // of a metric is counted within a single partition.
+            if (partition.metrics.size() >= PARTITION_SIZE && !isSameClusterMetric(metric, nextMetric)) {
+              partitions.add(submit(partition));
+              partition = new Partition(timeSlices);
             }
+            metric = nextMetric;
           }
-          metric = nextMetric;
         }
       }
-    }
-    // Process last metric
-    if (metric != null) {
-      int numHosts = processAggregateClusterMetrics(aggregateClusterMetrics, metric, timeSlices);
-      if (!hostedAppCounter.containsKey(metric.getAppId())) {
-        hostedAppCounter.put(metric.getAppId(), new MutableInt(numHosts));
-      } else {
-        int currentHostCount = hostedAppCounter.get(metric.getAppId()).intValue();
-        if (currentHostCount < numHosts) {
-          hostedAppCounter.put(metric.getAppId(), new MutableInt(numHosts));
+      if (metric != null) {
+        partition.metrics.add(metric);
+      }
+      partitions.add(submit(partition));
+
+      Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics = new HashMap<>();
+      Map<TimelineClusterMetric, MetricClusterAggregate> appAggregateClusterMetrics = new HashMap<>();
+      Map<String, MutableInt> hostedAppCounter = new HashMap<>();
+      for (Future<Partition> future : partitions) {
+        Partition aggregated = getPartition(future);
+        mergeAggregates(aggregateClusterMetrics, aggregated.aggregateClusterMetrics);
+        mergeAggregates(appAggregateClusterMetrics, aggregated.appAggregateClusterMetrics);
+        for (Map.Entry<String, MutableInt> appHostsEntry : aggregated.hostedAppCounter.entrySet()) {
+          updateHostedAppCounter(hostedAppCounter, appHostsEntry.getKey(), appHostsEntry.getValue().intValue());
         }
       }
+
+      // Add app level aggregates to save
+      aggregateClusterMetrics.putAll(appAggregateClusterMetrics);
+
+      // Add liveHosts per AppId metrics.
+      long timestamp = timeSlices.get(timeSlices.size() - 1)[1];
+      processLiveAppCountMetrics(aggregateClusterMetrics, hostedAppCounter, timestamp);
+
+      return aggregateClusterMetrics;
+    } finally {
+      for (Future<Partition> future : partitions) {
+        future.cancel(true);
+      }
     }
+  }
 
-    // Add app level aggregates to save
-    aggregateClusterMetrics.putAll(appAggregator.getAggregateClusterMetrics());
+  /**
+   * Aggregates a partition on one of the worker threads, or on the calling
+   * thread when there are none. At most two partitions per worker thread are
+   * pending at any time, so that reading does not run ahead of aggregation
+   * with all of the metrics of the cycle in memory.
+   */
+  private Future<Partition> submit(final Partition partition) throws IOException {
+    if (executor == null) {
+      FutureTask<Partition> task = new FutureTask<>(partition);
+      task.run();
+      return task;
+    }
 
-    // Add liveHosts per AppId metrics.
-    long timestamp = timeSlices.get(timeSlices.size() - 1)[1];
-    processLiveAppCountMetrics(aggregateClusterMetrics, hostedAppCounter, timestamp);
+    try {
+      pendingPartitions.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while aggregating metrics", e);
+    }
 
-    return aggregateClusterMetrics;
+    // Released once the partition is aggregated or cancelled
+    FutureTask<Partition> task = new FutureTask<Partition>(partition) {
+      @Override
+      protected void done() {
+        pendingPartitions.release();
+      }
+    };
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      task.cancel(false);
+      throw e;
+    }
+    return task;
+  }
+
+  private Partition getPartition(Future<Partition> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while aggregating metrics", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException("Failed to aggregate metrics", cause);
+    }
+  }
+
+  private static boolean isSameClusterMetric(TimelineMetric metric, TimelineMetric otherMetric) {
+    return StringUtils.equals(metric.getMetricName(), otherMetric.getMetricName())
+      && StringUtils.equals(metric.getAppId(), otherMetric.getAppId())
+      && StringUtils.equals(metric.getInstanceId(), otherMetric.getInstanceId());
+  }
+
+  private static void mergeAggregates(Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics,
+                                      Map<TimelineClusterMetric, MetricClusterAggregate> partialClusterMetrics) {
+    for (Map.Entry<TimelineClusterMetric, MetricClusterAggregate> partialEntry : partialClusterMetrics.entrySet()) {
+      MetricClusterAggregate aggregate = aggregateClusterMetrics.get(partialEntry.getKey());
+      if (aggregate == null) {
+        aggregateClusterMetrics.put(partialEntry.getKey(), partialEntry.getValue());
+      } else {
+        aggregate.updateAggregates(partialEntry.getValue());
+      }
+    }
+  }
+
+  private static void updateHostedAppCounter(Map<String, MutableInt> hostedAppCounter, String appId, int numHosts) {
+    MutableInt currentHostCount = hostedAppCounter.get(appId);
+    if (currentHostCount == null) {
+      hostedAppCounter.put(appId, new MutableInt(numHosts));
+    } else if (currentHostCount.intValue() < numHosts) {
+      currentHostCount.setValue(numHosts);
+    }
   }
 
   /**
@@ -219,6 +351,13 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
    */
   protected int processAggregateClusterMetrics(Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics,
                                                TimelineMetric metric, List<Long[]> timeSlices) {
+    return processAggregateClusterMetrics(aggregateClusterMetrics, appAggregator.getAggregateClusterMetrics(),
+      metric, timeSlices);
+  }
+
+  private int processAggregateClusterMetrics(Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics,
+                                             Map<TimelineClusterMetric, MetricClusterAggregate> appAggregateClusterMetrics,
+                                             TimelineMetric metric, List<Long[]> timeSlices) {
     // Create time slices
     TimelineMetricMetadataKey appKey =  new TimelineMetricMetadataKey(metric.getMetricName(), metric.getAppId(), metric.getInstanceId());
     TimelineMetricMetadata metricMetadata = metadataManagerInstance.getMetadataCacheValue(appKey);
@@ -232,12 +371,21 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
 
     Map<TimelineClusterMetric, Double> clusterMetrics = sliceFromTimelineMetric(metric, timeSlices, !skipInterpolationForMetric && interpolationEnabled);
 
-    return aggregateClusterMetricsFromSlices(clusterMetrics, aggregateClusterMetrics, metric.getHostName());
+    return aggregateClusterMetricsFromSlices(clusterMetrics, aggregateClusterMetrics, appAggregateClusterMetrics,
+      metric.getHostName());
   }
 
   protected int aggregateClusterMetricsFromSlices(Map<TimelineClusterMetric, Double> clusterMetrics,
                                                   Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics,
                                                   String hostname) {
+    return aggregateClusterMetricsFromSlices(clusterMetrics, aggregateClusterMetrics,
+      appAggregator.getAggregateClusterMetrics(), hostname);
+  }
+
+  private int aggregateClusterMetricsFromSlices(Map<TimelineClusterMetric, Double> clusterMetrics,
+                                                Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics,
+                                                Map<TimelineClusterMetric, MetricClusterAggregate> appAggregateClusterMetrics,
+                                                String hostname) {
 
     int numHosts = 0;
     if (clusterMetrics != null && !clusterMetrics.isEmpty()) {
@@ -260,7 +408,7 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
 
         numHosts = aggregate.getNumberOfHosts();
         // Update app level aggregates
-        appAggregator.processTimelineClusterMetric(clusterMetric, hostname, avgValue);
+        appAggregator.processTimelineClusterMetric(clusterMetric, hostname, avgValue, appAggregateClusterMetrics);
       }
     }
     return numHosts;
@@ -284,6 +432,33 @@ public class TimelineMetricClusterAggregatorSecond extends AbstractTimelineAggre
     }
   }
 
+  /**
+   * The metrics of a partition of the rows read in an aggregation cycle, along
+   * with their aggregates once the partition is aggregated.
+   */
+  private class Partition implements Callable<Partition> {
+    private final List<Long[]> timeSlices;
+    private final List<TimelineMetric> metrics = new ArrayList<>();
+    private final Map<TimelineClusterMetric, MetricClusterAggregate> aggregateClusterMetrics = new HashMap<>();
+    private final Map<TimelineClusterMetric, MetricClusterAggregate> appAggregateClusterMetrics = new HashMap<>();
+    private final Map<String, MutableInt> hostedAppCounter = new HashMap<>();
+
+    private Partition(List<Long[]> timeSlices) {
+      this.timeSlices = timeSlices;
+    }
+
+    @Override
+    public Partition call() {
+      for (TimelineMetric metric : metrics) {
+        int numHosts = processAggregateClusterMetrics(aggregateClusterMetrics, appAggregateClusterMetrics,
+          metric, timeSlices);
+        updateHostedAppCounter(hostedAppCounter, metric.getAppId(), numHosts);
+      }
+      metrics.clear();
+      return this;
+    }
+  }
+
   private boolean shouldInterpolationBeSkipped(String metricName) {
     for (String pattern : skipInterpolationMetricPatterns) {
       if (metricName.matches(pattern)) {
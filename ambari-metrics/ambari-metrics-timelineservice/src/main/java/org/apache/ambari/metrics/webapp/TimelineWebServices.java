@@ -47,6 +47,7 @@ import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import org.apache.ambari.metrics.core.timeline.MetricsCacheFullException;
 import org.apache.ambari.metrics.core.timeline.TimelineMetricServiceSummary;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.logging.Log;
@@ -79,6 +80,9 @@ public class TimelineWebServices {
   
   private TimelineMetricStore timelineMetricStore;
   private static final String SMOKETEST_METRIC_APP_ID = "amssmoketestfake";
+  // Not part of Response.Status in JAX-RS 1.x
+  private static final int TOO_MANY_REQUESTS = 429;
+  private static final String RETRY_AFTER = "Retry-After";
 
   @Inject
   public TimelineWebServices(TimelineMetricStore timelineMetricStore) {
@@ -157,6 +161,10 @@ public class TimelineWebServices {
         return timelineMetricStore.putMetrics(metrics);
       }
 
+    } catch (MetricsCacheFullException e) {
+      LOG.warn("Rejecting metrics: " + e.getMessage());
+      throw new WebApplicationException(Response.status(TOO_MANY_REQUESTS)
+        .header(RETRY_AFTER, e.getRetryAfterSeconds()).build());
     } catch (Exception e) {
       LOG.error("Error saving metrics.", e);
       throw new WebApplicationException(e, Response.Status.INTERNAL_SERVER_ERROR);
@@ -0,0 +1,221 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.metrics.core.timeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Test;
+
+public class MetricValuesCodecTest {
+
+  @Test
+  public void testEmptySeries() throws Exception {
+    String encoded = MetricValuesCodec.encode(new TimelineMetricValues());
+
+    assertTrue(MetricValuesCodec.isBinary(encoded));
+    assertTrue(MetricValuesCodec.decode(encoded).isEmpty());
+    assertTrue(MetricValuesCodec.decodeLast(encoded).isEmpty());
+    assertEquals(0, MetricValuesCodec.reader(encoded).size());
+  }
+
+  @Test
+  public void testSinglePoint() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<>();
+    values.put(1500000000000L, 42.5);
+
+    assertRoundTrip(values);
+  }
+
+  @Test
+  public void testRegularSeries() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<>();
+    for (int i = 0; i < 60; i++) {
+      values.put(1500000000000L + i * 10000L, i % 3 == 0 ? 1.0 : 1.5 * i);
+    }
+
+    String encoded = assertRoundTrip(values);
+    // evenly spaced timestamps take a bit per point
+    assertTrue(encoded.length() < new ObjectMapper().writeValueAsString(values).length() / 2);
+  }
+
+  @Test
+  public void testIrregularAndNegativeDeltas() throws Exception {
+    long[] timestamps = {
+      -5000000000L, -1000L, 0L, 1L, 65L, 300L, 2400L, 2401L, 100000000L, 100000001L, Long.MAX_VALUE / 2
+    };
+    TreeMap<Long, Double> values = new TreeMap<>();
+    for (int i = 0; i < timestamps.length; i++) {
+      values.put(timestamps[i], i % 2 == 0 ? -i * 1.25 : i * 1e300);
+    }
+
+    assertRoundTrip(values);
+  }
+
+  @Test
+  public void testSpecialValues() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<>();
+    values.put(1000L, Double.POSITIVE_INFINITY);
+    values.put(2000L, Double.NEGATIVE_INFINITY);
+    values.put(3000L, Double.NaN);
+    values.put(4000L, -0.0);
+    values.put(5000L, 0.0);
+    values.put(6000L, Double.MIN_VALUE);
+    values.put(7000L, Double.MAX_VALUE);
+
+    TreeMap<Long, Double> decoded = MetricValuesCodec.decode(assertRoundTrip(values));
+    assertTrue(decoded.get(3000L).isNaN());
+    assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(decoded.get(4000L)));
+  }
+
+  @Test
+  public void testMissingValuesAreNotNaN() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<>();
+    values.put(1000L, null);
+    values.put(2000L, 1.0);
+    values.put(3000L, null);
+    values.put(4000L, Double.NaN);
+    values.put(5000L, 1.0);
+    values.put(6000L, null);
+
+    String encoded = assertRoundTrip(values);
+    TreeMap<Long, Double> decoded = MetricValuesCodec.decode(encoded);
+    assertTrue(decoded.containsKey(1000L));
+    assertNull(decoded.get(1000L));
+    assertNull(decoded.get(3000L));
+    assertTrue(decoded.get(4000L).isNaN());
+
+    MetricValuesCodec.Reader reader = MetricValuesCodec.reader(encoded);
+    assertTrue(reader.next());
+    assertTrue(reader.isMissing());
+    assertTrue(TimelineMetricValues.isMissing(reader.getValue()));
+    assertTrue(reader.next());
+    assertFalse(reader.isMissing());
+    assertEquals(1.0, reader.getValue(), 0.0);
+  }
+
+  @Test
+  public void testLargeSeries() throws Exception {
+    Random random = new Random(7);
+    TreeMap<Long, Double> values = new TreeMap<>();
+    long timestamp = 1500000000000L;
+    double value = 100.0;
+    for (int i = 0; i < 100000; i++) {
+      timestamp += random.nextInt(10) == 0 ? 1 + random.nextInt(100000) : 60000L;
+      value += random.nextInt(4) == 0 ? random.nextGaussian() : 0;
+      values.put(timestamp, random.nextInt(1000) == 0 ? null : value);
+    }
+
+    assertRoundTrip(values);
+  }
+
+  @Test
+  public void testDecodeLastReadsHeader() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<>();
+    for (int i = 0; i < 1000; i++) {
+      values.put(1000L * i, (double) i);
+    }
+    String encoded = MetricValuesCodec.encode(TimelineMetricValues.fromMap(values));
+
+    // the points after the header are not read
+    String truncated = encoded.substring(0, 40);
+    TreeMap<Long, Double> last = MetricValuesCodec.decodeLast(truncated);
+    assertEquals(1, last.size());
+    assertEquals(Double.valueOf(999.0), last.get(999000L));
+
+    MetricValuesCodec.Reader reader = MetricValuesCodec.reader(encoded);
+    assertTrue(reader.skipToLast());
+    assertFalse(reader.next());
+  }
+
+  @Test
+  public void testDecodeLastMissingValue() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<>();
+    values.put(1000L, 1.0);
+    values.put(2000L, null);
+
+    TreeMap<Long, Double> last = MetricValuesCodec.decodeLast(
+      MetricValuesCodec.encode(TimelineMetricValues.fromMap(values)));
+    assertEquals(1, last.size());
+    assertTrue(last.containsKey(2000L));
+    assertNull(last.get(2000L));
+  }
+
+  @Test
+  public void testJsonFallback() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<>();
+    values.put(1000L, 1.0);
+    values.put(2000L, null);
+    values.put(3000L, 3.5);
+    String json = new ObjectMapper().writeValueAsString(values);
+
+    assertFalse(MetricValuesCodec.isBinary(json));
+    assertEquals(values, MetricValuesCodec.decode(json));
+
+    TreeMap<Long, Double> last = MetricValuesCodec.decodeLast(json);
+    assertEquals(1, last.size());
+    assertEquals(Double.valueOf(3.5), last.get(3000L));
+
+    assertTrue(MetricValuesCodec.decodeLast("{}").isEmpty());
+  }
+
+  @Test(expected = IOException.class)
+  public void testReaderRejectsJson() throws Exception {
+    MetricValuesCodec.reader("{\"1000\":1.0}");
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncatedSeries() throws Exception {
+    TreeMap<Long, Double> values = new TreeMap<>();
+    for (int i = 0; i < 100; i++) {
+      values.put(1000L * i * i, Math.sqrt(i));
+    }
+    String encoded = MetricValuesCodec.encode(TimelineMetricValues.fromMap(values));
+
+    MetricValuesCodec.decode(encoded.substring(0, encoded.length() / 2));
+  }
+
+  /**
+   * Encodes the values, checks that they are decoded as they were and that
+   * the last one is decoded alone.
+   *
+   * @return the encoded values
+   */
+  private String assertRoundTrip(TreeMap<Long, Double> values) throws IOException {
+    String encoded = MetricValuesCodec.encode(TimelineMetricValues.fromMap(values));
+    assertTrue(MetricValuesCodec.isBinary(encoded));
+
+    TreeMap<Long, Double> decoded = MetricValuesCodec.decode(encoded);
+    assertEquals(values, decoded);
+
+    TreeMap<Long, Double> last = MetricValuesCodec.decodeLast(encoded);
+    assertEquals(1, last.size());
+    assertEquals(values.lastKey(), last.firstKey());
+    assertEquals(values.lastEntry().getValue(), last.firstEntry().getValue());
+    return encoded;
+  }
+}
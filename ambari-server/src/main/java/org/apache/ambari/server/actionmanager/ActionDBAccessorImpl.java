@@ -27,6 +27,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.ambari.annotations.TransactionalLock;
@@ -49,6 +51,7 @@ import org.apache.ambari.server.events.TaskCreateEvent;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
 import org.apache.ambari.server.events.publishers.STOMPUpdatePublisher;
 import org.apache.ambari.server.events.publishers.TaskEventPublisher;
+import org.apache.ambari.server.metrics.system.impl.ServerMetricsSource;
 import org.apache.ambari.server.orm.dao.ClusterDAO;
 import org.apache.ambari.server.orm.dao.ExecutionCommandDAO;
 import org.apache.ambari.server.orm.dao.HostDAO;
@@ -74,8 +77,13 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
 import com.google.common.eventbus.Subscribe;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -86,6 +94,29 @@ import com.google.inject.persist.Transactional;
 public class ActionDBAccessorImpl implements ActionDBAccessor {
   private static final Logger LOG = LoggerFactory.getLogger(ActionDBAccessorImpl.class);
 
+  private static final String METRIC_PREFIX = "actiondb.commands.cache";
+
+  /**
+   * Number of tasks found in the {@link HostRoleCommand} cache.
+   */
+  private static final Counter CACHE_HITS = ServerMetricsSource.registry.counter(METRIC_PREFIX + ".hits");
+
+  /**
+   * Number of tasks which had to be loaded from the database.
+   */
+  private static final Counter CACHE_MISSES = ServerMetricsSource.registry.counter(METRIC_PREFIX + ".misses");
+
+  /**
+   * Number of tasks evicted from the cache because of its weight or expiry.
+   */
+  private static final Counter CACHE_EVICTIONS = ServerMetricsSource.registry.counter(METRIC_PREFIX + ".evictions");
+
+  /**
+   * The estimated weight of a cached {@link HostRoleCommand}, not counting its
+   * strings.
+   */
+  private static final int COMMAND_BASE_WEIGHT = 512;
+
   private long requestId;
 
   @Inject
@@ -118,6 +149,9 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
   @Inject
   HostRoleCommandFactory hostRoleCommandFactory;
 
+  @Inject
+  HostRoleCommandOutputs hostRoleCommandOutputs;
+
   @Inject
   Clusters clusters;
 
@@ -150,16 +184,40 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
    */
   private Cache<Long,RequestDetails> auditlogRequestCache = CacheBuilder.newBuilder().expireAfterAccess(60, TimeUnit.MINUTES).concurrencyLevel(4).build();
 
-  private Cache<Long, HostRoleCommand> hostRoleCommandCache;
-  private long cacheLimit; //may be exceeded to store tasks from one request
+  /**
+   * Cache of the completed {@link HostRoleCommand}s by task id. Its size is
+   * bounded by the estimated weight of the commands in bytes (see
+   * {@link #estimateWeight(HostRoleCommand)}). The outputs of cached commands
+   * are released and read from the database when requested, so that they do
+   * not count against the cache.
+   */
+  private final Cache<Long, HostRoleCommand> hostRoleCommandCache;
+
+  /**
+   * The ids of the cached tasks by host name, so that the tasks of removed
+   * hosts can be invalidated.
+   */
+  private final ConcurrentMap<String, Set<Long>> cachedTaskIdsByHost = new ConcurrentHashMap<>();
 
   @Inject
-  public ActionDBAccessorImpl(@Named("executionCommandCacheSize") long cacheLimit,
+  public ActionDBAccessorImpl(@Named("executionCommandCacheWeight") long cacheWeight,
                               AmbariEventPublisher eventPublisher) {
 
-    this.cacheLimit = cacheLimit;
     hostRoleCommandCache = CacheBuilder.newBuilder().
         expireAfterAccess(5, TimeUnit.MINUTES).
+        maximumWeight(cacheWeight).
+        weigher(new Weigher<Long, HostRoleCommand>() {
+          @Override
+          public int weigh(Long taskId, HostRoleCommand hostRoleCommand) {
+            return estimateWeight(hostRoleCommand);
+          }
+        }).
+        removalListener(new RemovalListener<Long, HostRoleCommand>() {
+          @Override
+          public void onRemoval(RemovalNotification<Long, HostRoleCommand> notification) {
+            onCachedCommandRemoval(notification);
+          }
+        }).
         build();
 
     eventPublisher.register(this);
@@ -722,21 +780,27 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     List<Long> absent = new ArrayList<>(taskIds);
     absent.removeAll(cached.keySet());
 
-    if (!absent.isEmpty()) {
-      boolean allowStore = hostRoleCommandCache.size() <= cacheLimit;
+    CACHE_HITS.inc(cached.size());
+    CACHE_MISSES.inc(absent.size());
 
+    if (!absent.isEmpty()) {
+      List<HostRoleCommand> loaded = new ArrayList<>(absent.size());
       for (HostRoleCommandEntity commandEntity : hostRoleCommandDAO.findByPKs(absent)) {
-        HostRoleCommand hostRoleCommand = hostRoleCommandFactory.createExisting(commandEntity);
+        loaded.add(hostRoleCommandFactory.createExisting(commandEntity));
+      }
+
+      // outputs are not loaded with the tasks, read them per request if needed
+      hostRoleCommandOutputs.release(loaded);
+
+      for (HostRoleCommand hostRoleCommand : loaded) {
         commands.add(hostRoleCommand);
-        if (allowStore) {
-          switch (hostRoleCommand.getStatus()) {
-            case ABORTED:
-            case COMPLETED:
-            case TIMEDOUT:
-            case FAILED:
-              hostRoleCommandCache.put(hostRoleCommand.getTaskId(), hostRoleCommand);
-              break;
-          }
+        switch (hostRoleCommand.getStatus()) {
+          case ABORTED:
+          case COMPLETED:
+          case TIMEDOUT:
+          case FAILED:
+            cacheCommand(hostRoleCommand);
+            break;
         }
       }
     }
@@ -846,13 +910,86 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
   }
 
   /**
-   * Invalidate cached HostRoleCommands if a host is deleted.
+   * Invalidate cached HostRoleCommands of the hosts which are deleted.
    * @param event @HostRemovedEvent
    */
   @Subscribe
   public void invalidateCommandCacheOnHostRemove(HostsRemovedEvent event) {
     LOG.info("Invalidating HRC cache after receiveing {}", event);
-    hostRoleCommandCache.invalidateAll();
+    for (String hostName : event.getHostNames()) {
+      Set<Long> taskIds = cachedTaskIdsByHost.remove(hostName);
+      if (null != taskIds) {
+        hostRoleCommandCache.invalidateAll(taskIds);
+      }
+    }
+  }
+
+  /**
+   * Caches a completed command, whose outputs must have been released.
+   *
+   * @param hostRoleCommand
+   *          the command to cache
+   */
+  private void cacheCommand(HostRoleCommand hostRoleCommand) {
+    // server side actions are not bound to a host
+    String hostName = hostRoleCommand.getHostName();
+    if (null != hostName) {
+      cachedTaskIdsByHost.computeIfAbsent(hostName,
+          k -> Collections.newSetFromMap(new ConcurrentHashMap<>())).add(hostRoleCommand.getTaskId());
+    }
+
+    hostRoleCommandCache.put(hostRoleCommand.getTaskId(), hostRoleCommand);
+  }
+
+  /**
+   * Keeps the index of cached tasks by host and the eviction count up to date
+   * when a command leaves the cache.
+   */
+  private void onCachedCommandRemoval(RemovalNotification<Long, HostRoleCommand> notification) {
+    if (notification.wasEvicted()) {
+      CACHE_EVICTIONS.inc();
+    }
+
+    HostRoleCommand hostRoleCommand = notification.getValue();
+    if (null == hostRoleCommand || null == hostRoleCommand.getHostName()
+        || notification.getCause() == RemovalCause.REPLACED) {
+      return;
+    }
+
+    Set<Long> taskIds = cachedTaskIdsByHost.get(hostRoleCommand.getHostName());
+    if (null != taskIds) {
+      taskIds.remove(notification.getKey());
+    }
+  }
+
+  /**
+   * Estimates the memory held by a cached command in bytes, assuming two bytes
+   * per character of its strings. The outputs of cached commands are released
+   * and its execution command is loaded lazily, so neither is counted.
+   *
+   * @param hostRoleCommand
+   *          the command to weigh
+   * @return the estimated weight of the command
+   */
+  static int estimateWeight(HostRoleCommand hostRoleCommand) {
+    long weight = COMMAND_BASE_WEIGHT
+        + sizeOf(hostRoleCommand.getHostName())
+        + sizeOf(hostRoleCommand.getCommandDetail())
+        + sizeOf(hostRoleCommand.getCustomCommandName())
+        + sizeOf(hostRoleCommand.getOpsDisplayName())
+        + sizeOf(hostRoleCommand.getOutputLog())
+        + sizeOf(hostRoleCommand.getErrorLog());
+
+    ServiceComponentHostEventWrapper event = hostRoleCommand.getEvent();
+    if (null != event) {
+      weight += sizeOf(event.getEventJson());
+    }
+
+    return (int) Math.min(weight, Integer.MAX_VALUE);
+  }
+
+  private static long sizeOf(String value) {
+    return null == value ? 0L : 2L * value.length();
   }
 
   /**
@@ -185,10 +185,10 @@ public class ActionManager {
   }
 
   public void handleLostHost(String host) {
-    //Do nothing, the task will timeout anyway.
-    //The actions can be failed faster as an optimization
-    //if action timeout happens to be much larger than
-    //heartbeat timeout.
+    //The task will timeout anyway, but an event-driven scheduler
+    //has to be woken up to fail the actions of the lost host
+    //before the action timeout.
+    scheduler.onHostLost(host);
   }
 
   public long getNextRequestId() {
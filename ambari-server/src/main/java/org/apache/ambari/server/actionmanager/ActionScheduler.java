@@ -47,14 +47,18 @@ import org.apache.ambari.server.agent.ExecutionCommand;
 import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.HostsMap;
 import org.apache.ambari.server.events.ActionFinalReportReceivedEvent;
+import org.apache.ambari.server.events.TaskCreateEvent;
+import org.apache.ambari.server.events.TaskUpdateEvent;
 import org.apache.ambari.server.events.jpa.EntityManagerCacheInvalidationEvent;
 import org.apache.ambari.server.events.listeners.tasks.TaskStatusListener;
 import org.apache.ambari.server.events.publishers.AgentCommandsPublisher;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
 import org.apache.ambari.server.events.publishers.JPAEventPublisher;
+import org.apache.ambari.server.events.publishers.TaskEventPublisher;
 import org.apache.ambari.server.metadata.RoleCommandOrder;
 import org.apache.ambari.server.metadata.RoleCommandOrderProvider;
 import org.apache.ambari.server.metadata.RoleCommandPair;
+import org.apache.ambari.server.metrics.system.impl.ServerMetricsSource;
 import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
 import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
 import org.apache.ambari.server.orm.entities.RequestEntity;
@@ -76,6 +80,9 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
 import com.google.common.base.Function;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
@@ -106,6 +113,21 @@ class ActionScheduler implements Runnable {
   public static final String FAILED_TASK_ABORT_REASONING =
     "Server considered task failed and automatically aborted it";
 
+  /**
+   * Time spent in each scheduler cycle which scanned the action DB.
+   */
+  private static final Timer CYCLE_LATENCY = ServerMetricsSource.registry.timer("actionscheduler.cycle.latency");
+
+  /**
+   * Number of stages in progress found by each scan of the action DB.
+   */
+  private static final Histogram STAGES_SCANNED = ServerMetricsSource.registry.histogram("actionscheduler.stages.scanned");
+
+  /**
+   * Number of cycles for which no event required a scan of the action DB.
+   */
+  private static final Counter CYCLES_SKIPPED = ServerMetricsSource.registry.counter("actionscheduler.cycles.skipped");
+
   @Inject
   private RoleCommandOrderProvider roleCommandOrderProvider;
 
@@ -186,6 +208,12 @@ class ActionScheduler implements Runnable {
 
   private AtomicBoolean taskStatusLoaded = new AtomicBoolean();
 
+  /**
+   * Stages and hosts found in progress by the last scan, used to skip
+   * scanning the action DB when the scheduler is event-driven.
+   */
+  private final InProgressStagesIndex inProgressStagesIndex = new InProgressStagesIndex();
+
   //Cache for clusterHostinfo, key - stageId-requestId
   private Cache<String, Map<String, Set<String>>> clusterHostInfoCache;
   private Cache<String, Map<String, String>> commandParamsStageCache;
@@ -198,11 +226,12 @@ class ActionScheduler implements Runnable {
    * @param actionTimeout
    * @param db
    * @param jpaPublisher
+   * @param taskEventPublisher
    */
   @Inject
   public ActionScheduler(@Named("schedulerSleeptime") long sleepTime,
                          @Named("actionTimeout") long actionTimeout, ActionDBAccessor db,
-                         JPAEventPublisher jpaPublisher) {
+                         JPAEventPublisher jpaPublisher, TaskEventPublisher taskEventPublisher) {
 
     this.sleepTime = sleepTime;
     this.actionTimeout = actionTimeout;
@@ -211,6 +240,8 @@ class ActionScheduler implements Runnable {
     this.jpaPublisher = jpaPublisher;
     this.jpaPublisher.register(this);
 
+    taskEventPublisher.register(this);
+
     serverActionExecutor = new ServerActionExecutor(db, sleepTime);
 
     initializeCaches();
@@ -333,6 +364,28 @@ class ActionScheduler implements Runnable {
     }
   }
 
+  /**
+   * Should be called when a host stops heartbeating. If the host has tasks in
+   * the stages in progress, the scheduler is woken up so that it can abort
+   * them without waiting for their timeout.
+   *
+   * @param hostName
+   *          the host which was lost
+   */
+  public void onHostLost(String hostName) {
+    if (isEventDriven() && inProgressStagesIndex.onHostLost(hostName)) {
+      awake();
+    }
+  }
+
+  /**
+   * @return {@code true} if the scheduler only scans the stages in progress
+   *         when an event requires it.
+   */
+  private boolean isEventDriven() {
+    return null != configuration && configuration.isEventDrivenStageExecution();
+  }
+
   @Override
   public void run() {
     while (shouldRun) {
@@ -352,14 +405,27 @@ class ActionScheduler implements Runnable {
       } catch (Exception ex) {
         LOG.warn("Exception received", ex);
         requestsInProgress.clear();
+        inProgressStagesIndex.requestScan();
       } catch (Throwable t) {
         LOG.warn("ERROR", t);
         requestsInProgress.clear();
+        inProgressStagesIndex.requestScan();
       }
     }
   }
 
   public void doWork() throws AmbariException {
+    // when event-driven, only go to the DB if something happened which may
+    // change the scheduling decisions since the last scan; otherwise every
+    // wakeup is a full scan
+    long fullScanInterval = isEventDriven() ? configuration.getEventDrivenStageFullScanInterval() : 0L;
+    if (!inProgressStagesIndex.beginScan(System.currentTimeMillis(), fullScanInterval)) {
+      LOG.debug("No event requires a scan of the stages in progress, skipping scheduler run");
+      CYCLES_SKIPPED.inc();
+      return;
+    }
+
+    Timer.Context cycleTimer = CYCLE_LATENCY.time();
     try {
       unitOfWork.begin();
 
@@ -378,6 +444,7 @@ class ActionScheduler implements Runnable {
           LOG.debug("There are no stages currently in progress.");
         }
 
+        STAGES_SCANNED.update(0);
         return;
       }
 
@@ -388,6 +455,13 @@ class ActionScheduler implements Runnable {
         LOG.debug("Processing {} in progress stages", firstStageInProgressPerRequest.size());
       }
 
+      STAGES_SCANNED.update(firstStageInProgressPerRequest.size());
+      if (isEventDriven()) {
+        for (Stage stage : firstStageInProgressPerRequest) {
+          inProgressStagesIndex.addStage(stage);
+        }
+      }
+
       publishInProgressTasks(firstStageInProgressPerRequest);
 
       if (firstStageInProgressPerRequest.isEmpty()) {
@@ -573,7 +647,9 @@ class ActionScheduler implements Runnable {
 
     } finally {
       LOG.debug("Scheduler finished work.");
+      inProgressStagesIndex.endScan();
       unitOfWork.end();
+      cycleTimer.stop();
     }
   }
 
@@ -878,6 +954,7 @@ class ActionScheduler implements Runnable {
 
             // reschedule command
             commandsToSchedule.add(c);
+            inProgressStagesIndex.addTaskTimeout(now + commandTimeout);
             LOG.trace("===> commandsToSchedule(reschedule)={}", commandsToSchedule.size());
           }
         } else if (status.equals(HostRoleStatus.PENDING)) {
@@ -890,10 +967,20 @@ class ActionScheduler implements Runnable {
 
             //Need to schedule first time
             commandsToSchedule.add(c);
+            inProgressStagesIndex.addTaskTimeout(now + commandTimeout);
             LOG.trace("===>commandsToSchedule(first_time)={}", commandsToSchedule.size());
           }
         }
 
+        if (status == HostRoleStatus.QUEUED || status == HostRoleStatus.IN_PROGRESS) {
+          // queued commands waiting for another command on the same host are
+          // past their deadline; they are covered by the deadline of that command
+          long taskTimeout = s.getLastAttemptTime(host, roleStr) + commandTimeout;
+          if (taskTimeout > now) {
+            inProgressStagesIndex.addTaskTimeout(taskTimeout);
+          }
+        }
+
         updateRoleStats(status, roleStats.get(roleStr));
         if (status == HostRoleStatus.FAILED) {
           LOG.info("Role {} on host {} was failed", roleStr, host);
@@ -1207,6 +1294,8 @@ class ActionScheduler implements Runnable {
       requestsToBeCancelled.add(requestId);
       requestCancelReasons.put(requestId, reason);
     }
+
+    inProgressStagesIndex.requestScan();
   }
 
 
@@ -1394,6 +1483,34 @@ class ActionScheduler implements Runnable {
     }
   }
 
+  /**
+   * Handles {@link TaskCreateEvent} instances by requesting a scan of the
+   * stages in progress, since new stages may be ready to be scheduled.
+   *
+   * @param event
+   *          the event to handle (not {@code null}).
+   */
+  @Subscribe
+  public void onTaskCreateEvent(TaskCreateEvent event) {
+    inProgressStagesIndex.requestScan();
+  }
+
+  /**
+   * Handles {@link TaskUpdateEvent} instances. Tasks of the stages in progress
+   * which completed, failed or were put back to pending may unblock further
+   * commands, so they require a new scan of the stages in progress and wake
+   * the scheduler up.
+   *
+   * @param event
+   *          the event to handle (not {@code null}).
+   */
+  @Subscribe
+  public void onTaskUpdateEvent(TaskUpdateEvent event) {
+    if (inProgressStagesIndex.onTasksUpdated(event.getHostRoleCommands()) && isEventDriven()) {
+      awake();
+    }
+  }
+
   static class RoleStats {
     int numInProgress;
     int numQueued = 0;
@@ -17,8 +17,15 @@
  */
 package org.apache.ambari.server.actionmanager;
 
+import java.util.Collection;
+import java.util.Collections;
+
+import javax.persistence.Persistence;
+import javax.persistence.PersistenceUtil;
+
 import org.apache.ambari.server.Role;
 import org.apache.ambari.server.RoleCommand;
+import org.apache.ambari.server.actionmanager.HostRoleCommandOutputs.Output;
 import org.apache.ambari.server.orm.dao.ExecutionCommandDAO;
 import org.apache.ambari.server.orm.dao.HostDAO;
 import org.apache.ambari.server.orm.entities.ExecutionCommandEntity;
@@ -80,6 +87,18 @@ public class HostRoleCommand {
   @Inject
   private ExecutionCommandWrapperFactory ecwFactory;
 
+  /**
+   * Reads the outputs of this command from the database when they are not
+   * held in memory.
+   */
+  private HostRoleCommandOutputs outputs;
+
+  /**
+   * The tasks whose outputs are read along with those of this command,
+   * {@code null} while the outputs are held in memory.
+   */
+  private Collection<Long> outputsGroup;
+
   /**
    * Simple constructor, should be created using the Factory class.
    * @param hostName Host name
@@ -144,10 +163,12 @@ public class HostRoleCommand {
 
   @AssistedInject
   public HostRoleCommand(@Assisted HostRoleCommandEntity hostRoleCommandEntity, HostDAO hostDAO,
-      ExecutionCommandDAO executionCommandDAO, ExecutionCommandWrapperFactory ecwFactory) {
+      ExecutionCommandDAO executionCommandDAO, ExecutionCommandWrapperFactory ecwFactory,
+      HostRoleCommandOutputs outputs) {
     this.hostDAO = hostDAO;
     this.executionCommandDAO = executionCommandDAO;
     this.ecwFactory = ecwFactory;
+    this.outputs = outputs;
 
     taskId = hostRoleCommandEntity.getTaskId();
 
@@ -164,11 +185,23 @@ public class HostRoleCommand {
     hostName = hostRoleCommandEntity.getHostName();
     role = hostRoleCommandEntity.getRole();
     status = hostRoleCommandEntity.getStatus();
-    stdout = hostRoleCommandEntity.getStdOut() != null ? new String(hostRoleCommandEntity.getStdOut()) : "";
-    stderr = hostRoleCommandEntity.getStdError() != null ? new String(hostRoleCommandEntity.getStdError()) : "";
     outputLog = hostRoleCommandEntity.getOutputLog();
     errorLog = hostRoleCommandEntity.getErrorLog();
-    structuredOut = hostRoleCommandEntity.getStructuredOut() != null ? new String(hostRoleCommandEntity.getStructuredOut()) : "";
+
+    // the outputs are fetched lazily, do not load them just to copy them
+    PersistenceUtil persistenceUtil = Persistence.getPersistenceUtil();
+    if (persistenceUtil.isLoaded(hostRoleCommandEntity, "stdOut")
+        && persistenceUtil.isLoaded(hostRoleCommandEntity, "stdError")
+        && persistenceUtil.isLoaded(hostRoleCommandEntity, "structuredOut")) {
+      stdout = hostRoleCommandEntity.getStdOut() != null ? new String(hostRoleCommandEntity.getStdOut()) : "";
+      stderr = hostRoleCommandEntity.getStdError() != null ? new String(hostRoleCommandEntity.getStdError()) : "";
+      structuredOut = hostRoleCommandEntity.getStructuredOut() != null ? new String(hostRoleCommandEntity.getStructuredOut()) : "";
+    } else {
+      stdout = null;
+      stderr = null;
+      structuredOut = null;
+      outputsGroup = Collections.singletonList(taskId);
+    }
     exitCode = hostRoleCommandEntity.getExitcode();
     startTime = hostRoleCommandEntity.getStartTime() != null ? hostRoleCommandEntity.getStartTime() : -1L;
     originalStartTime = hostRoleCommandEntity.getOriginalStartTime() != null ? hostRoleCommandEntity.getOriginalStartTime() : -1L;
@@ -191,10 +224,10 @@ public class HostRoleCommand {
     HostRoleCommandEntity hostRoleCommandEntity = new HostRoleCommandEntity();
     hostRoleCommandEntity.setRole(role);
     hostRoleCommandEntity.setStatus(status);
-    hostRoleCommandEntity.setStdError(stderr.getBytes());
+    hostRoleCommandEntity.setStdError(getStderr().getBytes());
     hostRoleCommandEntity.setExitcode(exitCode);
-    hostRoleCommandEntity.setStdOut(stdout.getBytes());
-    hostRoleCommandEntity.setStructuredOut(structuredOut.getBytes());
+    hostRoleCommandEntity.setStdOut(getStdout().getBytes());
+    hostRoleCommandEntity.setStructuredOut(getStructuredOut().getBytes());
     hostRoleCommandEntity.setStartTime(startTime);
     hostRoleCommandEntity.setOriginalStartTime(originalStartTime);
     hostRoleCommandEntity.setEndTime(endTime);
@@ -325,6 +358,10 @@ public class HostRoleCommand {
   }
 
   public String getStdout() {
+    if (null == stdout && null != outputsGroup) {
+      return outputs.read(taskId, outputsGroup, Output.STDOUT);
+    }
+
     return stdout;
   }
 
@@ -333,6 +370,10 @@ public class HostRoleCommand {
   }
 
   public String getStderr() {
+    if (null == stderr && null != outputsGroup) {
+      return outputs.read(taskId, outputsGroup, Output.STDERR);
+    }
+
     return stderr;
   }
 
@@ -397,9 +438,41 @@ public class HostRoleCommand {
   }
 
   public String getStructuredOut() {
+    if (null == structuredOut && null != outputsGroup) {
+      return outputs.read(taskId, outputsGroup, Output.STRUCTURED_OUT);
+    }
+
     return structuredOut;
   }
 
+  /**
+   * Releases the stdout, stderr and structured output of this command, which
+   * are then read from the database whenever requested instead of being held
+   * in memory. This is used for commands kept in a cache, whose outputs may be
+   * large and are rarely needed.
+   *
+   * @param outputs
+   *          reads the outputs from the database
+   * @param group
+   *          the tasks whose outputs are read along with those of this command
+   * @see HostRoleCommandOutputs#release(Collection)
+   */
+  void releaseOutputs(HostRoleCommandOutputs outputs, Collection<Long> group) {
+    this.outputs = outputs;
+    outputsGroup = group;
+    stdout = null;
+    stderr = null;
+    structuredOut = null;
+  }
+
+  /**
+   * @return {@code true} if the outputs of this command are read from the
+   *         database when requested instead of being held in memory
+   */
+  boolean isOutputsReleased() {
+    return null != outputsGroup;
+  }
+
   public void setStructuredOut(String structuredOut) {
     this.structuredOut = structuredOut;
   }
@@ -89,6 +89,7 @@ public class HostRoleCommandFactoryImpl implements HostRoleCommandFactory {
     return new HostRoleCommand(hostRoleCommandEntity,
         injector.getInstance(HostDAO.class),
         injector.getInstance(ExecutionCommandDAO.class),
-        injector.getInstance(ExecutionCommandWrapperFactory.class));
+        injector.getInstance(ExecutionCommandWrapperFactory.class),
+        injector.getInstance(HostRoleCommandOutputs.class));
   }
 }
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.actionmanager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.metamodel.SingularAttribute;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
+import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
+import org.apache.ambari.server.orm.entities.HostRoleCommandEntity_;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Reads the stdout, stderr and structured output of {@link HostRoleCommand}s
+ * which do not hold them in memory, either because they were released or
+ * because they were not loaded with the task.
+ * <p/>
+ * The commands released together are grouped by request, and the first time
+ * an output of one of them is needed, that output is read for the completed
+ * tasks of the whole group with a single query selecting only its column. The
+ * outputs read are kept for a short while since the outputs of the tasks of a
+ * request are usually requested together. The outputs of the tasks which are
+ * not completed are still being updated, so they are read on each request and
+ * never kept.
+ */
+@Singleton
+public class HostRoleCommandOutputs {
+
+  /**
+   * The maximum size, in bytes, of each kind of output kept after being read.
+   */
+  private static final long MAX_READ_OUTPUTS_WEIGHT = 16 * 1024 * 1024;
+
+  /**
+   * The outputs of a task.
+   */
+  enum Output {
+    STDOUT,
+    STDERR,
+    STRUCTURED_OUT;
+
+    private SingularAttribute<HostRoleCommandEntity, byte[]> getAttribute() {
+      switch (this) {
+        case STDOUT:
+          return HostRoleCommandEntity_.stdOut;
+        case STDERR:
+          return HostRoleCommandEntity_.stdError;
+        default:
+          return HostRoleCommandEntity_.structuredOut;
+      }
+    }
+  }
+
+  private final HostRoleCommandDAO hostRoleCommandDAO;
+
+  private final Configuration configuration;
+
+  /**
+   * The outputs recently read, by task id.
+   */
+  private final Map<Output, Cache<Long, byte[]>> readOutputs = new EnumMap<>(Output.class);
+
+  @Inject
+  public HostRoleCommandOutputs(HostRoleCommandDAO hostRoleCommandDAO, Configuration configuration) {
+    this.hostRoleCommandDAO = hostRoleCommandDAO;
+    this.configuration = configuration;
+
+    for (Output output : Output.values()) {
+      readOutputs.put(output, CacheBuilder.newBuilder().
+          expireAfterWrite(1, TimeUnit.MINUTES).
+          maximumWeight(MAX_READ_OUTPUTS_WEIGHT).
+          <Long, byte[]>weigher((taskId, value) -> value.length).
+          build());
+    }
+  }
+
+  /**
+   * Releases the outputs of the commands, which are then read from the
+   * database when requested. The outputs of the commands of a request are read
+   * together, in groups no larger than the number of tasks which can be
+   * queried at once.
+   *
+   * @param commands
+   *          the commands to release the outputs of
+   */
+  public void release(Collection<HostRoleCommand> commands) {
+    Map<Long, List<HostRoleCommand>> commandsByRequest = new LinkedHashMap<>();
+    for (HostRoleCommand command : commands) {
+      if (command.getTaskId() != -1) {
+        commandsByRequest.computeIfAbsent(command.getRequestId(), k -> new ArrayList<>()).add(command);
+      }
+    }
+
+    for (List<HostRoleCommand> requestCommands : commandsByRequest.values()) {
+      for (List<HostRoleCommand> group : Lists.partition(requestCommands, configuration.getTaskIdListLimit())) {
+        List<Long> taskIds = new ArrayList<>(group.size());
+        for (HostRoleCommand command : group) {
+          taskIds.add(command.getTaskId());
+        }
+
+        taskIds = Collections.unmodifiableList(taskIds);
+        for (HostRoleCommand command : group) {
+          command.releaseOutputs(this, taskIds);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads an output of a task, along with the same output of the other
+   * completed tasks of its group unless it was read recently.
+   *
+   * @param taskId
+   *          the task to read the output of
+   * @param group
+   *          the tasks whose outputs are read together, including the task
+   * @param output
+   *          the output to read
+   * @return the output, or an empty string if there is none
+   */
+  String read(long taskId, Collection<Long> group, Output output) {
+    Cache<Long, byte[]> cache = readOutputs.get(output);
+    byte[] value = cache.getIfPresent(taskId);
+
+    if (null == value) {
+      Map<Long, byte[]> values = hostRoleCommandDAO.findOutputs(group, output.getAttribute(),
+          HostRoleStatus.getCompletedStates());
+      for (Map.Entry<Long, byte[]> entry : values.entrySet()) {
+        if (null != entry.getValue()) {
+          cache.put(entry.getKey(), entry.getValue());
+        }
+      }
+
+      // the output may not fit in the cache
+      value = values.get(taskId);
+
+      if (null == value && !values.containsKey(taskId)) {
+        // the task is not completed, its output may still change
+        value = hostRoleCommandDAO.findOutputs(Collections.singleton(taskId), output.getAttribute()).get(taskId);
+      }
+    }
+
+    return null != value ? new String(value) : "";
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.actionmanager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The {@link InProgressStagesIndex} keeps track of the stages and hosts which
+ * the {@link ActionScheduler} found in progress during its last scan of the
+ * action DB, along with the earliest moment one of their tasks may time out.
+ * <p/>
+ * It is used when the scheduler is event-driven to decide whether a wakeup
+ * has to go to the DB at all. A new scan is only required when:
+ * <ul>
+ * <li>tasks were created</li>
+ * <li>tasks of an indexed stage reached a state which may unblock other commands</li>
+ * <li>a host running tasks of an indexed stage was lost</li>
+ * <li>a task of an indexed stage may have timed out</li>
+ * <li>the full scan interval elapsed since the last scan</li>
+ * </ul>
+ * Updates of tasks outside of the indexed stages are ignored: those tasks were
+ * not in progress during the last scan, and tasks created since then already
+ * requested a scan. When nothing is in progress, only new tasks, cancelled
+ * requests and the full scan interval lead back to the DB.
+ * <p/>
+ * The index is only populated by the scheduler thread, while scans may be
+ * requested from any thread.
+ */
+class InProgressStagesIndex {
+
+  /**
+   * {@code true} if something happened since the last scan that may change
+   * the scheduling decisions.
+   */
+  private final AtomicBoolean scanRequested = new AtomicBoolean(true);
+
+  /**
+   * The stage found in progress per request during the last scan.
+   */
+  private final Map<Long, Long> stageIdsByRequest = new ConcurrentHashMap<>();
+
+  /**
+   * The hosts of the stages found in progress during the last scan.
+   */
+  private final Set<String> hosts = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  /**
+   * The earliest time at which a task of an indexed stage may time out.
+   */
+  private volatile long nextTimeout = Long.MAX_VALUE;
+
+  /**
+   * The time of the last scan.
+   */
+  private volatile long lastScanTime = 0L;
+
+  /**
+   * {@code true} between {@link #beginScan(long, long)} and
+   * {@link #endScan()}, while the index is being populated.
+   */
+  private volatile boolean scanning = false;
+
+  /**
+   * Forces the next call to {@link #beginScan(long, long)} to return
+   * {@code true}.
+   */
+  void requestScan() {
+    scanRequested.set(true);
+  }
+
+  /**
+   * Requests a new scan if any of the specified tasks belongs to an indexed
+   * stage and is neither queued nor running. Tasks being queued or reporting
+   * progress do not change what can be scheduled, so they are ignored. While
+   * a scan is populating the index, every such task requests a new scan since
+   * its stage may not be indexed yet.
+   *
+   * @param commands
+   *          the tasks whose status was just persisted
+   * @return {@code true} if a scan was requested
+   */
+  boolean onTasksUpdated(Collection<HostRoleCommand> commands) {
+    for (HostRoleCommand command : commands) {
+      HostRoleStatus status = command.getStatus();
+      if (status != HostRoleStatus.QUEUED && status != HostRoleStatus.IN_PROGRESS
+          && (scanning || isIndexed(command))) {
+        requestScan();
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Requests a new scan if the specified host is part of an indexed stage.
+   *
+   * @param hostName
+   *          the host which stopped heartbeating
+   * @return {@code true} if a scan was requested
+   */
+  boolean onHostLost(String hostName) {
+    if (hosts.contains(hostName)) {
+      requestScan();
+      return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Determines whether the scheduler has to scan the action DB and, if so,
+   * clears the index so that it can be populated by the scan, which must be
+   * followed by {@link #endScan()}.
+   *
+   * @param now
+   *          the current time
+   * @param fullScanInterval
+   *          the maximum time between two scans
+   * @return {@code true} if the scheduler must scan the action DB
+   */
+  boolean beginScan(long now, long fullScanInterval) {
+    boolean scanRequired = scanRequested.getAndSet(false)
+        || now >= nextTimeout
+        || now - lastScanTime >= fullScanInterval;
+
+    if (scanRequired) {
+      scanning = true;
+      lastScanTime = now;
+      nextTimeout = Long.MAX_VALUE;
+      stageIdsByRequest.clear();
+      hosts.clear();
+    }
+
+    return scanRequired;
+  }
+
+  /**
+   * Marks the end of the scan started by {@link #beginScan(long, long)}.
+   */
+  void endScan() {
+    scanning = false;
+  }
+
+  /**
+   * Adds a stage found in progress by the current scan.
+   *
+   * @param stage
+   *          the stage in progress
+   */
+  void addStage(Stage stage) {
+    stageIdsByRequest.put(stage.getRequestId(), stage.getStageId());
+    for (String host : stage.getHosts()) {
+      // server side actions are not bound to a host
+      if (null != host) {
+        hosts.add(host);
+      }
+    }
+  }
+
+  /**
+   * Records the time at which a queued or running task may time out.
+   *
+   * @param timeout
+   *          the time at which the task times out
+   */
+  void addTaskTimeout(long timeout) {
+    if (timeout < nextTimeout) {
+      nextTimeout = timeout;
+    }
+  }
+
+  /**
+   * @param command
+   *          a task
+   * @return {@code true} if the stage of the task was found in progress by
+   *         the last scan
+   */
+  private boolean isIndexed(HostRoleCommand command) {
+    Long stageId = stageIdsByRequest.get(command.getRequestId());
+    return null != stageId && stageId == command.getStageId();
+  }
+
+  /**
+   * @return the number of stages found in progress by the last scan
+   */
+  int getStageCount() {
+    return stageIdsByRequest.size();
+  }
+
+  /**
+   * @return the earliest time at which an indexed task may time out, or
+   *         {@link Long#MAX_VALUE} if none
+   */
+  long getNextTimeout() {
+    return nextTimeout;
+  }
+}
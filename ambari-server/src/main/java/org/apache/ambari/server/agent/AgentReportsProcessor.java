@@ -19,33 +19,70 @@ package org.apache.ambari.server.agent;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.metrics.system.impl.ServerMetricsSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.persist.UnitOfWork;
 
+/**
+ * Processes agents reports asynchronously. Reports are distributed by host
+ * name between a fixed number of stripes, so that the reports of a host are
+ * always processed in order by the same thread. Each stripe has a bounded
+ * queue: when it is full, the caller waits for room in it, which slows the
+ * STOMP layer down instead of letting the backlog grow without limits. The
+ * reports queued on a stripe are processed together in a single
+ * {@link UnitOfWork}; when a report fails, the unit of work is ended and the
+ * rest of the batch is processed in a new one.
+ */
 @Singleton
 public class AgentReportsProcessor {
   private static final Logger LOG = LoggerFactory.getLogger(AgentReportsProcessor.class);
 
+  private static final String METRIC_PREFIX = "agentreports";
+
+  /**
+   * Number of reports which waited longer than the queue timeout for room in their stripe.
+   */
+  private static final Counter DELAYED_REPORTS = ServerMetricsSource.registry.counter(
+      METRIC_PREFIX + ".delayed");
+
+  /**
+   * Number of reports processed per unit of work.
+   */
+  private static final Histogram BATCH_SIZE = ServerMetricsSource.registry.histogram(
+      METRIC_PREFIX + ".batch.size");
+
   private final int poolSize;
 
-  private final List<ExecutorService> executors;
+  private final int batchSize;
+
+  private final int queueTimeout;
 
-  public void addAgentReport(AgentReport agentReport) {
+  private final List<AgentReportsStripe> stripes;
+
+  public void addAgentReport(AgentReport agentReport) throws AmbariException {
     int hash = agentReport.getHostName().hashCode();
     hash = hash == Integer.MIN_VALUE ? 0 : hash;
     int executorNumber = Math.abs(hash) % poolSize;
-    executors.get(executorNumber).execute(new AgentReportProcessingTask(agentReport));
+    stripes.get(executorNumber).add(agentReport);
   }
 
   @Inject
@@ -55,30 +92,131 @@ public class AgentReportsProcessor {
   public AgentReportsProcessor(Configuration configuration) {
 
     ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("agent-report-processor-%d").build();
-    poolSize = configuration.getAgentsReportThreadPoolSize();
-    executors = new ArrayList<>();
+    poolSize = Math.max(1, configuration.getAgentsReportThreadPoolSize());
+    batchSize = Math.max(1, configuration.getAgentsReportBatchSize());
+    queueTimeout = Math.max(0, configuration.getAgentsReportQueueTimeout());
+    int queueSize = Math.max(1, configuration.getAgentsReportQueueSize());
+    stripes = new ArrayList<>();
     for (int i = 0; i < poolSize; i++) {
-      executors.add(Executors.newSingleThreadExecutor(threadFactory));
+      stripes.add(new AgentReportsStripe(i, queueSize, Executors.newSingleThreadExecutor(threadFactory)));
     }
   }
 
-  private class AgentReportProcessingTask implements Runnable {
+  /**
+   * A queue of reports and the thread processing them.
+   */
+  private class AgentReportsStripe implements Runnable {
+
+    private final int index;
+
+    private final BlockingQueue<AgentReport> queue;
+
+    private final ExecutorService executor;
+
+    /**
+     * The processing thread is only started once a report is queued.
+     */
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private final Timer processingLatency;
+
+    public AgentReportsStripe(int index, int queueSize, ExecutorService executor) {
+      this.index = index;
+      this.executor = executor;
+      queue = new ArrayBlockingQueue<>(queueSize);
+
+      String metricName = METRIC_PREFIX + ".stripe." + index;
+      processingLatency = ServerMetricsSource.registry.timer(metricName + ".processing.latency");
+
+      // the registry outlives this singleton in tests creating several injectors
+      ServerMetricsSource.registry.remove(metricName + ".queue.depth");
+      ServerMetricsSource.registry.register(metricName + ".queue.depth", new Gauge<Integer>() {
+        @Override
+        public Integer getValue() {
+          return queue.size();
+        }
+      });
+    }
 
-    private final AgentReport agentReport;
+    /**
+     * Queues the report, waiting for room in the queue as long as needed. A
+     * warning is logged when the queue stays full for longer than the
+     * configured timeout.
+     *
+     * @param agentReport
+     *          the report to queue
+     * @throws AmbariException
+     *           if the thread is interrupted while waiting
+     */
+    public void add(AgentReport agentReport) throws AmbariException {
+      if (started.compareAndSet(false, true)) {
+        executor.execute(this);
+      }
 
-    public AgentReportProcessingTask(AgentReport agentReport) {
-      this.agentReport = agentReport;
+      try {
+        if (!queue.offer(agentReport, queueTimeout, TimeUnit.SECONDS)) {
+          DELAYED_REPORTS.inc();
+          LOG.warn("Agents reports queue {} is full for more than {} seconds, still waiting to queue report from host {}",
+              index, queueTimeout, agentReport.getHostName());
+          queue.put(agentReport);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AmbariException(String.format(
+            "Interrupted while queueing report from host %s", agentReport.getHostName()), e);
+      }
     }
 
     @Override
     public void run() {
-      try {
-        unitOfWork.begin();
+      List<AgentReport> batch = new ArrayList<>(batchSize);
+      while (!Thread.currentThread().isInterrupted()) {
         try {
-          agentReport.process();
-        } catch (AmbariException e) {
+          batch.add(queue.take());
+          queue.drainTo(batch, batchSize - 1);
+          process(batch);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
           LOG.error("Error processing agent reports", e);
+        } finally {
+          batch.clear();
+        }
+      }
+    }
+
+    private void process(List<AgentReport> batch) {
+      BATCH_SIZE.update(batch.size());
+      int next = 0;
+      while (next < batch.size()) {
+        next = processInUnitOfWork(batch, next);
+      }
+    }
+
+    /**
+     * Processes the reports of a batch in a new unit of work, starting at the
+     * given position and stopping after the first failed report, as the
+     * entity manager may not be usable anymore.
+     *
+     * @return the position of the first report not processed
+     */
+    private int processInUnitOfWork(List<AgentReport> batch, int from) {
+      int next = from;
+      unitOfWork.begin();
+      try {
+        while (next < batch.size()) {
+          AgentReport agentReport = batch.get(next++);
+          Timer.Context timerContext = processingLatency.time();
+          try {
+            agentReport.process();
+          } catch (AmbariException | RuntimeException e) {
+            LOG.error("Error processing agent reports from host {}", agentReport.getHostName(), e);
+            return next;
+          } finally {
+            timerContext.stop();
+          }
         }
+        return next;
       } finally {
         unitOfWork.end();
       }
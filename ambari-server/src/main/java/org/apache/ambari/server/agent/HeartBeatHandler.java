@@ -215,6 +215,7 @@ public class HeartBeatHandler {
       alertHelper.addStaleAlerts(hostObject.getHostId(), heartbeat.getStaleAlerts());
     }
 
+    heartbeatMonitor.heartbeatReceived(hostObject, now);
     try {
       hostObject.handleEvent(new HostHealthyHeartbeatEvent(hostname, now,
           heartbeat.getAgentEnv(), heartbeat.getMounts()));
@@ -246,8 +247,10 @@ public class HeartBeatHandler {
 
   public void handleHostReportStatus(HostStatusReport hostStatusReport, String hostname) throws AmbariException {
     Host host = clusterFsm.getHost(hostname);
+    long now = System.currentTimeMillis();
+    heartbeatMonitor.heartbeatReceived(host, now);
     try {
-      host.handleEvent(new HostHealthyHeartbeatEvent(hostname, System.currentTimeMillis(),
+      host.handleEvent(new HostHealthyHeartbeatEvent(hostname, now,
           hostStatusReport.getAgentEnv(), hostStatusReport.getMounts()));
     } catch (InvalidStateTransitionException ex) {
       LOG.warn("Asking agent to re-register due to " + ex.getMessage(), ex);
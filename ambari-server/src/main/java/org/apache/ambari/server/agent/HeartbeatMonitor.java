@@ -33,6 +33,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.RoleCommand;
@@ -40,8 +45,10 @@ import org.apache.ambari.server.actionmanager.ActionManager;
 import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.AmbariManagementController;
+import org.apache.ambari.server.events.HostRegisteredEvent;
 import org.apache.ambari.server.events.MessageNotDelivered;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
+import org.apache.ambari.server.metrics.system.impl.ServerMetricsSource;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
 import org.apache.ambari.server.state.CommandScriptDefinition;
@@ -63,14 +70,50 @@ import org.apache.ambari.server.state.host.HostHeartbeatLostEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
 import com.google.common.eventbus.Subscribe;
 import com.google.inject.Injector;
 
 /**
  * Monitors the node state and heartbeats.
+ * <p/>
+ * Every tracked host has a deadline in a delay queue: the time its heartbeat
+ * expires, or the time it should stop waiting for status updates. The monitor
+ * thread only wakes up for expired deadlines. Heartbeats don't touch the
+ * queue; when a deadline expires the host's last heartbeat time is checked
+ * and, if the host heartbeated in the meantime, the deadline is moved after
+ * it. This way each host is looked at about once per heartbeat timeout,
+ * independently of the number of hosts.
  */
 public class HeartbeatMonitor implements Runnable {
   private static final Logger LOG = LoggerFactory.getLogger(HeartbeatMonitor.class);
+
+  private static final String METRIC_PREFIX = "heartbeatmonitor";
+
+  /**
+   * Time between two consecutive heartbeats of a host, in milliseconds.
+   */
+  private static final Histogram HEARTBEAT_LAG = ServerMetricsSource.registry.histogram(
+      METRIC_PREFIX + ".heartbeat.lag");
+
+  /**
+   * Time between the deadline of a host and its check by the monitor, in milliseconds.
+   */
+  private static final Histogram CHECK_DELAY = ServerMetricsSource.registry.histogram(
+      METRIC_PREFIX + ".check.delay");
+
+  /**
+   * Number of hosts found to have lost their heartbeat.
+   */
+  private static final Counter HOSTS_LOST = ServerMetricsSource.registry.counter(
+      METRIC_PREFIX + ".hosts.lost");
+
+  /**
+   * Number of wakeup intervals between two checks for hosts which are not tracked.
+   */
+  private static final int RECONCILE_INTERVALS = 10;
+
   private Clusters clusters;
   private ActionManager actionManager;
   private final int threadWakeupInterval; //1 minute
@@ -83,6 +126,16 @@ public class HeartbeatMonitor implements Runnable {
   private final AgentRequests agentRequests;
   private final AmbariEventPublisher ambariEventPublisher;
 
+  /**
+   * The current deadline of each tracked host, by host id.
+   */
+  private final ConcurrentMap<Long, HostDeadline> trackedHosts = new ConcurrentHashMap<>();
+
+  /**
+   * The deadlines of the tracked hosts; may contain superseded ones, which are skipped.
+   */
+  private final DelayQueue<HostDeadline> deadlines = new DelayQueue<>();
+
   public HeartbeatMonitor(Clusters clusters, ActionManager am,
                           int threadWakeupInterval, Injector injector) {
     this.clusters = clusters;
@@ -119,13 +172,40 @@ public class HeartbeatMonitor implements Runnable {
     return agentRequests;
   }
 
+  /**
+   * Records a heartbeat of a host and starts tracking the host if it is not
+   * tracked yet. Must be called before the heartbeat time of the host is
+   * updated.
+   *
+   * @param host          the host
+   * @param heartbeatTime the time the heartbeat was received
+   */
+  public void heartbeatReceived(Host host, long heartbeatTime) {
+    long lastHeartbeat = host.getLastHeartbeatTime();
+    if (lastHeartbeat > 0 && heartbeatTime >= lastHeartbeat) {
+      HEARTBEAT_LAG.update(heartbeatTime - lastHeartbeat);
+    }
+    if (!trackedHosts.containsKey(host.getHostId())) {
+      track(host.getHostId(), heartbeatTime + getHeartbeatTimeout());
+    }
+  }
+
   @Override
   public void run() {
+    long nextReconcile = 0;
     while (shouldRun) {
       try {
-        doWork();
-        LOG.trace("Putting monitor to sleep for {} milliseconds", threadWakeupInterval);
-        Thread.sleep(threadWakeupInterval);
+        long now = System.currentTimeMillis();
+        if (now >= nextReconcile) {
+          trackUntrackedHosts();
+          nextReconcile = now + (long) RECONCILE_INTERVALS * threadWakeupInterval;
+        }
+        LOG.trace("Waiting at most {} milliseconds for a host deadline", threadWakeupInterval);
+        HostDeadline deadline = deadlines.poll(threadWakeupInterval, TimeUnit.MILLISECONDS);
+        while (deadline != null && shouldRun) {
+          checkHost(deadline);
+          deadline = deadlines.poll();
+        }
       } catch (InterruptedException ex) {
         LOG.warn("Scheduler thread is interrupted going to stop", ex);
         shouldRun = false;
@@ -137,27 +217,57 @@ public class HeartbeatMonitor implements Runnable {
     }
   }
 
-  //Go through all the nodes, check for last heartbeat or any waiting state
+  /**
+   * Starts tracking the hosts which are not tracked and haven't lost their
+   * heartbeat, e.g. the hosts known at startup or added without registering.
+   */
+  private void trackUntrackedHosts() {
+    for (Host hostObj : clusters.getHosts()) {
+      if (!trackedHosts.containsKey(hostObj.getHostId()) && hostObj.getState() != HostState.HEARTBEAT_LOST) {
+        track(hostObj.getHostId(), hostObj.getLastHeartbeatTime() + getHeartbeatTimeout());
+      }
+    }
+  }
+
+  private void track(Long hostId, long time) {
+    HostDeadline deadline = new HostDeadline(hostId, time);
+    if (trackedHosts.putIfAbsent(hostId, deadline) == null) {
+      deadlines.add(deadline);
+    }
+  }
+
+  //Check the last heartbeat or the waiting state of a host whose deadline expired
   //If heartbeat is lost, update node clusters state, purge the action queue
   //notify action manager for node failure.
-  private void doWork() throws InvalidStateTransitionException, AmbariException {
-    List<Host> allHosts = clusters.getHosts();
+  private void checkHost(HostDeadline deadline) {
+    Long hostId = deadline.hostId;
+    if (trackedHosts.get(hostId) != deadline) {
+      // superseded or no longer tracked
+      return;
+    }
     long now = System.currentTimeMillis();
-    for (Host hostObj : allHosts) {
-      if (hostObj.getState() == HostState.HEARTBEAT_LOST) {
-        //do not check if host already known be lost
-        continue;
-      }
-      Long hostId = hostObj.getHostId();
-      HostState hostState = hostObj.getState();
+    CHECK_DELAY.update(Math.max(0, now - deadline.time));
 
-      long lastHeartbeat = 0;
-      try {
-        lastHeartbeat = clusters.getHostById(hostId).getLastHeartbeatTime();
-      } catch (AmbariException e) {
-        LOG.warn("Exception in getting host object; Is it fatal?", e);
-      }
+    Host hostObj;
+    try {
+      hostObj = clusters.getHostById(hostId);
+    } catch (AmbariException e) {
+      LOG.debug("Host {} is not found, not tracking it anymore", hostId);
+      trackedHosts.remove(hostId, deadline);
+      return;
+    }
+
+    HostState hostState = hostObj.getState();
+    if (hostState == HostState.HEARTBEAT_LOST) {
+      //do not check if host already known be lost, it is tracked again when it registers
+      trackedHosts.remove(hostId, deadline);
+      return;
+    }
+
+    long lastHeartbeat = hostObj.getLastHeartbeatTime();
+    try {
       if (lastHeartbeat + 2 * threadWakeupInterval < now) {
+        HOSTS_LOST.inc();
         handleHeartbeatLost(hostId);
       }
       if (hostState == HostState.WAITING_FOR_HOST_STATUS_UPDATES) {
@@ -168,9 +278,37 @@ public class HeartbeatMonitor implements Runnable {
           hostObj.setState(HostState.INIT);
         }
       }
+    } catch (Exception e) {
+      LOG.warn("Exception while checking heartbeat of host " + hostObj.getHostName(), e);
+    }
+
+    if (hostObj.getState() == HostState.HEARTBEAT_LOST) {
+      trackedHosts.remove(hostId, deadline);
+      return;
+    }
+
+    long next = lastHeartbeat + getHeartbeatTimeout();
+    if (hostObj.getState() == HostState.WAITING_FOR_HOST_STATUS_UPDATES) {
+      next = Math.min(next, hostObj.getTimeInState() + 5 * threadWakeupInterval + 1);
+    }
+    if (next <= now) {
+      // a host which stays expired is checked again after a wakeup interval
+      next = now + threadWakeupInterval;
+    }
+
+    HostDeadline nextDeadline = new HostDeadline(hostId, next);
+    if (trackedHosts.replace(hostId, deadline, nextDeadline)) {
+      deadlines.add(nextDeadline);
     }
   }
 
+  /**
+   * @return the time after the last heartbeat of a host at which the heartbeat is lost
+   */
+  private long getHeartbeatTimeout() {
+    return 2L * threadWakeupInterval + 1;
+  }
+
   /**
    * @param hostname
    * @return list of commands to get status of service components on a concrete host
@@ -354,6 +492,13 @@ public class HeartbeatMonitor implements Runnable {
     actionManager.handleLostHost(host);
   }
 
+  @Subscribe
+  public void onHostRegistered(HostRegisteredEvent event) {
+    if (event.getHostId() != null) {
+      track(event.getHostId(), System.currentTimeMillis() + getHeartbeatTimeout());
+    }
+  }
+
   @Subscribe
   public void onMessageNotDelivered(MessageNotDelivered messageNotDelivered) {
     try {
@@ -367,4 +512,27 @@ public class HeartbeatMonitor implements Runnable {
       LOG.error("Error during host to heartbeat lost moving", e);
     }
   }
+
+  /**
+   * The time at which a host has to be checked.
+   */
+  private static final class HostDeadline implements Delayed {
+    private final Long hostId;
+    private final long time;
+
+    private HostDeadline(Long hostId, long time) {
+      this.hostId = hostId;
+      this.time = time;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(time - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      return Long.compare(time, ((HostDeadline) other).time);
+    }
+  }
 }
@@ -26,9 +26,16 @@ import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.agent.stomp.dto.Hashable;
 import org.apache.ambari.server.events.STOMPEvent;
 import org.apache.ambari.server.events.publishers.STOMPUpdatePublisher;
+import org.apache.commons.lang.StringUtils;
 
 /**
- * Is used to saving and updating last version of event in cluster scope
+ * Is used to saving and updating last version of event in cluster scope.
+ * <p/>
+ * Holders which can copy their updates (see {@link #copyDelta(STOMPEvent)})
+ * also keep the last update along with the hash of the data it was applied
+ * to, so that an agent which only missed that update receives it instead of
+ * the whole data. Agents apply one event per request, so an agent which
+ * missed more than one update receives the whole data.
  * @param <T> event with hash to control version
  */
 public abstract class AgentClusterDataHolder<T extends STOMPEvent & Hashable> extends AgentDataHolder<T> {
@@ -38,9 +45,26 @@ public abstract class AgentClusterDataHolder<T extends STOMPEvent & Hashable> ex
 
   private volatile T data;
 
+  /**
+   * The last update, or {@code null} if it could not be copied. Guarded by
+   * the update lock.
+   */
+  private T lastDelta;
+
+  /**
+   * The hash of the data the last update was applied to. Guarded by the
+   * update lock.
+   */
+  private String lastDeltaPreviousHash;
+
   public T getUpdateIfChanged(String agentHash) throws AmbariException {
     initializeDataIfNeeded(true);
-    return !Objects.equals(agentHash, data.getHash()) ? data : getEmptyData();
+    if (Objects.equals(agentHash, data.getHash())) {
+      return getEmptyData();
+    }
+
+    T missedUpdate = getUpdateSince(agentHash);
+    return missedUpdate != null ? missedUpdate : data;
   }
 
   /**
@@ -55,6 +79,20 @@ public abstract class AgentClusterDataHolder<T extends STOMPEvent & Hashable> ex
    */
   protected abstract boolean handleUpdate(T update) throws AmbariException;
 
+  /**
+   * Copies an update, as published once applied, so that it can be kept and
+   * later sent to an agent which missed it. The copy must not share any state
+   * with the update, since the update may become part of the data. By default
+   * updates are not kept.
+   *
+   * @param update
+   *          the applied update
+   * @return the copy of the update, or {@code null} if it should not be kept
+   */
+  protected T copyDelta(T update) {
+    return null;
+  }
+
   /**
    * Template method to update the data.
    * @return true if the update introduced any change
@@ -65,8 +103,11 @@ public abstract class AgentClusterDataHolder<T extends STOMPEvent & Hashable> ex
       initializeDataIfNeeded(true);
       boolean changed = handleUpdate(update);
       if (changed) {
+        String previousHash = data.getHash();
         regenerateDataIdentifiers(data);
         update.setHash(getData().getHash());
+        lastDelta = StringUtils.isEmpty(previousHash) ? null : copyDelta(update);
+        lastDeltaPreviousHash = previousHash;
         STOMPUpdatePublisher.publish(update);
       }
       return changed;
@@ -96,4 +137,20 @@ public abstract class AgentClusterDataHolder<T extends STOMPEvent & Hashable> ex
     return data;
   }
 
+  /**
+   * @return a copy of the last update if it was applied to the data with the
+   *         specified hash, or {@code null} if the whole data has to be sent
+   */
+  private T getUpdateSince(String agentHash) {
+    if (StringUtils.isEmpty(agentHash)) {
+      return null;
+    }
+
+    updateLock.lock();
+    try {
+      return lastDelta != null && agentHash.equals(lastDeltaPreviousHash) ? copyDelta(lastDelta) : null;
+    } finally {
+      updateLock.unlock();
+    }
+  }
 }
@@ -151,6 +151,11 @@ public class TopologyHolder extends AgentClusterDataHolder<TopologyUpdateEvent>
     return changed;
   }
 
+  @Override
+  protected TopologyUpdateEvent copyDelta(TopologyUpdateEvent update) {
+    return update.deepCopy();
+  }
+
   @Override
   protected boolean handleUpdate(TopologyUpdateEvent update) throws AmbariException {
     TopologyUpdateHandlingReport report = new TopologyUpdateHandlingReport();
@@ -19,14 +19,35 @@
 package org.apache.ambari.server.api.predicate;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.apache.ambari.server.controller.spi.Predicate;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 /**
  * Compiler which takes a query expression as input and produces a predicate instance as output.
+ * <p/>
+ * Compiled predicates are cached by expression, since clients (e.g. the web UI) poll with the
+ * same query expressions repeatedly.  Predicates are immutable, so the cached instances are
+ * shared by all the callers.
  */
 public class PredicateCompiler {
 
+  /**
+   * The maximum number of cached predicates.
+   */
+  private static final int MAX_CACHED_PREDICATES = 1000;
+
+  /**
+   * Compiled predicates keyed by query expression and ignored properties.
+   */
+  private static final Cache<PredicateKey, Predicate> PREDICATE_CACHE =
+      CacheBuilder.newBuilder().maximumSize(MAX_CACHED_PREDICATES).build();
+
   /**
    * Lexer instance used to translate expressions into stream of tokens.
    */
@@ -46,7 +67,13 @@ public class PredicateCompiler {
    * @throws InvalidQueryException if unable to compile the expression
    */
   public Predicate compile(String exp) throws InvalidQueryException {
-    return parser.parse(lexer.tokens(exp));
+    PredicateKey key = new PredicateKey(exp, Collections.emptySet());
+    Predicate predicate = PREDICATE_CACHE.getIfPresent(key);
+    if (predicate == null) {
+      predicate = parser.parse(lexer.tokens(exp));
+      PREDICATE_CACHE.put(key, predicate);
+    }
+    return predicate;
   }
 
   /**
@@ -59,6 +86,43 @@ public class PredicateCompiler {
    * @throws InvalidQueryException if unable to compile the expression
    */
   public Predicate compile(String exp, Collection<String> ignoredProperties) throws InvalidQueryException {
-    return parser.parse(lexer.tokens(exp, ignoredProperties));
+    PredicateKey key = new PredicateKey(exp, new HashSet<>(ignoredProperties));
+    Predicate predicate = PREDICATE_CACHE.getIfPresent(key);
+    if (predicate == null) {
+      predicate = parser.parse(lexer.tokens(exp, ignoredProperties));
+      PREDICATE_CACHE.put(key, predicate);
+    }
+    return predicate;
+  }
+
+
+  // ----- inner class : PredicateKey ----------------------------------------
+
+  /**
+   * Key of a compiled predicate.
+   */
+  private static class PredicateKey {
+    private final String exp;
+    private final Set<String> ignoredProperties;
+
+    private PredicateKey(String exp, Set<String> ignoredProperties) {
+      this.exp = exp;
+      this.ignoredProperties = ignoredProperties;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      PredicateKey that = (PredicateKey) o;
+
+      return exp.equals(that.exp) && ignoredProperties.equals(that.ignoredProperties);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * exp.hashCode() + ignoredProperties.hashCode();
+    }
   }
 }
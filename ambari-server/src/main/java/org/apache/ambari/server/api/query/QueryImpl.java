@@ -18,13 +18,17 @@
 
 package org.apache.ambari.server.api.query;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.ambari.server.api.query.render.DefaultRenderer;
 import org.apache.ambari.server.api.query.render.Renderer;
@@ -40,6 +44,8 @@ import org.apache.ambari.server.api.util.TreeNodeImpl;
 import org.apache.ambari.server.controller.internal.QueryResponseImpl;
 import org.apache.ambari.server.controller.predicate.AndPredicate;
 import org.apache.ambari.server.controller.predicate.EqualsPredicate;
+import org.apache.ambari.server.controller.predicate.OrPredicate;
+import org.apache.ambari.server.controller.spi.BatchableResourceProvider;
 import org.apache.ambari.server.controller.spi.ClusterController;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
@@ -163,6 +169,11 @@ public class QueryImpl implements Query, ResourceInstance {
    */
   private Predicate processedPredicate;
 
+  /**
+   * The maximum number of parent resources whose sub-resources are queried with a single call.
+   */
+  private static final int MAX_BATCH_SIZE = 100;
+
   /**
    * The logger.
    */
@@ -470,32 +481,34 @@ public class QueryImpl implements Query, ResourceInstance {
       Request       request             = subResource.createRequest();
       Set<Resource> providerResourceSet = new HashSet<>();
 
+      Map<Resource, SubResourceQuery> subResourceQueries = new LinkedHashMap<>();
       for (QueryResult queryResult : populatedQueryResults.values()) {
         for (Resource resource : queryResult.getQueryResponse().getResources()) {
           Map<Resource.Type, String> map = getKeyValueMap(resource, queryResult.getKeyValueMap());
 
-          Predicate     queryPredicate = subResource.createPredicate(map, subResource.processedPredicate);
-          Set<Resource> resourceSet    = new LinkedHashSet<>();
+          Predicate queryPredicate = subResource.createPredicate(map, subResource.processedPredicate);
 
-          try {
-            Set<Resource> queryResources =
-                subResource.doQuery(resourceType, request, queryPredicate, false).getResources();
-
-            providerResourceSet.addAll(queryResources);
-            resourceSet.addAll(queryResources);
-          } catch (NoSuchResourceException e) {
-            // do nothing ...
-          } catch (AuthorizationException e) {
-            // do nothing, since the user does not have access to the data ...
-            LOG.debug("User does not have authorization to get {} resources. The data will not be added to the response.", resourceType.name());
-          }
-          subResource.queryResults.put(resource,
-              new QueryResult(request, queryPredicate, subResourcePredicate, map, new QueryResponseImpl(resourceSet)));
-          subResource.populatedQueryResults.put(resource,
-            new QueryResult(request, queryPredicate, subResourcePredicate, map, new QueryResponseImpl(resourceSet)));
+          subResourceQueries.put(resource, new SubResourceQuery(map, queryPredicate));
         }
       }
 
+      subResource.queryForParentResources(resourceType, request, subResourceQueries.values());
+
+      for (Map.Entry<Resource, SubResourceQuery> queryEntry : subResourceQueries.entrySet()) {
+        Resource         resource         = queryEntry.getKey();
+        SubResourceQuery subResourceQuery = queryEntry.getValue();
+        Set<Resource>    resourceSet      = subResourceQuery.getResources();
+
+        providerResourceSet.addAll(resourceSet);
+
+        subResource.queryResults.put(resource,
+            new QueryResult(request, subResourceQuery.getPredicate(), subResourcePredicate,
+                subResourceQuery.getKeyValueMap(), new QueryResponseImpl(resourceSet)));
+        subResource.populatedQueryResults.put(resource,
+            new QueryResult(request, subResourceQuery.getPredicate(), subResourcePredicate,
+                subResourceQuery.getKeyValueMap(), new QueryResponseImpl(resourceSet)));
+      }
+
       if (renderer.requiresPropertyProviderInput()) {
         clusterController.populateResources(resourceType, providerResourceSet, request, subResourcePredicate);
       }
@@ -504,6 +517,130 @@ public class QueryImpl implements Query, ResourceInstance {
     }
   }
 
+  /**
+   * Query the cluster controller for the resources of this query that belong to
+   * the given parent resources.  If the resource provider supports it, the
+   * resources of the parents with the same key properties are queried with a
+   * single call and joined back to the parents by their key property values.
+   * Otherwise the resources are queried for each parent.
+   *
+   * @param type     the resource type
+   * @param request  the request information
+   * @param queries  the queries for the parent resources; the found resources are added to them
+   */
+  private void queryForParentResources(Resource.Type type, Request request, Collection<SubResourceQuery> queries)
+      throws UnsupportedPropertyException,
+      SystemException,
+      NoSuchParentResourceException {
+
+    if (queries.size() < 2 ||
+        !(clusterController.ensureResourceProvider(type) instanceof BatchableResourceProvider)) {
+      for (SubResourceQuery query : queries) {
+        queryForParentResource(type, request, query);
+      }
+      return;
+    }
+
+    // group the parents by the key properties of their predicates
+    Map<Set<String>, List<SubResourceQuery>> queryGroups = new LinkedHashMap<>();
+    for (SubResourceQuery query : queries) {
+      Map<String, String> keyPropertyValues = getKeyPropertyValues(query.getKeyValueMap());
+      if (keyPropertyValues.isEmpty()) {
+        queryForParentResource(type, request, query);
+      } else {
+        query.setKeyPropertyValues(keyPropertyValues);
+        queryGroups.computeIfAbsent(keyPropertyValues.keySet(), k -> new ArrayList<>()).add(query);
+      }
+    }
+
+    for (List<SubResourceQuery> queryGroup : queryGroups.values()) {
+      for (int i = 0; i < queryGroup.size(); i += MAX_BATCH_SIZE) {
+        List<SubResourceQuery> batch = queryGroup.subList(i, Math.min(i + MAX_BATCH_SIZE, queryGroup.size()));
+        if (batch.size() == 1) {
+          queryForParentResource(type, request, batch.get(0));
+        } else {
+          queryForParentResourceBatch(type, request, batch);
+        }
+      }
+    }
+  }
+
+  /**
+   * Query the cluster controller for the resources of this query that belong to
+   * the given parent resources with a single call.  The parent resources must
+   * have the same key properties.
+   *
+   * @param type     the resource type
+   * @param request  the request information
+   * @param batch    the queries for the parent resources; the found resources are added to them
+   */
+  private void queryForParentResourceBatch(Resource.Type type, Request request, List<SubResourceQuery> batch)
+      throws UnsupportedPropertyException,
+      SystemException,
+      NoSuchParentResourceException {
+
+    Set<String> keyPropertyIds = batch.get(0).getKeyPropertyValues().keySet();
+
+    Map<List<String>, List<SubResourceQuery>> queriesByKey = new HashMap<>();
+    Predicate[] internalPredicates = new Predicate[batch.size()];
+    for (int i = 0; i < batch.size(); i++) {
+      SubResourceQuery query = batch.get(i);
+      internalPredicates[i] = createInternalPredicate(query.getKeyValueMap());
+      queriesByKey.computeIfAbsent(new ArrayList<>(query.getKeyPropertyValues().values()),
+          k -> new ArrayList<>()).add(query);
+    }
+
+    Predicate keyPredicate   = new OrPredicate(internalPredicates);
+    Predicate queryPredicate = processedPredicate == null ? keyPredicate : new AndPredicate(keyPredicate, processedPredicate);
+
+    Set<Resource> queryResources;
+    try {
+      queryResources = doQuery(type, request, queryPredicate, false).getResources();
+    } catch (NoSuchResourceException | AuthorizationException e) {
+      // find out which of the parents the exception applies to
+      for (SubResourceQuery query : batch) {
+        queryForParentResource(type, request, query);
+      }
+      return;
+    }
+
+    for (Resource resource : queryResources) {
+      List<String> key = new ArrayList<>(keyPropertyIds.size());
+      for (String keyPropertyId : keyPropertyIds) {
+        Object value = resource.getPropertyValue(keyPropertyId);
+        key.add(value == null ? null : value.toString());
+      }
+      List<SubResourceQuery> queries = queriesByKey.get(key);
+      if (queries != null) {
+        for (SubResourceQuery query : queries) {
+          query.getResources().add(resource);
+        }
+      }
+    }
+  }
+
+  /**
+   * Query the cluster controller for the resources of this query that belong to
+   * a single parent resource.
+   *
+   * @param type     the resource type
+   * @param request  the request information
+   * @param query    the query for the parent resource; the found resources are added to it
+   */
+  private void queryForParentResource(Resource.Type type, Request request, SubResourceQuery query)
+      throws UnsupportedPropertyException,
+      SystemException,
+      NoSuchParentResourceException {
+    try {
+      query.getResources().addAll(doQuery(type, request, query.getPredicate(), false).getResources());
+    } catch (NoSuchResourceException e) {
+      // do nothing ...
+    } catch (AuthorizationException e) {
+      // do nothing, since the user does not have access to the data ...
+      LOG.debug("User does not have authorization to get {} resources. The data will not be added to the response.", type.name());
+    }
+  }
+
   /**
    * Query the cluster controller for the resources.
    *
@@ -931,6 +1068,24 @@ public class QueryImpl implements Query, ResourceInstance {
     return p;
   }
 
+  // Get the values of the key properties of this query's resource type from the given key value map,
+  // ordered by property id.
+  private Map<String, String> getKeyPropertyValues(Map<Resource.Type, String> mapResourceIds) {
+    Resource.Type resourceType = getResourceDefinition().getType();
+    Schema schema = clusterController.getSchema(resourceType);
+
+    Map<String, String> keyPropertyValues = new TreeMap<>();
+    for (Map.Entry<Resource.Type, String> entry : mapResourceIds.entrySet()) {
+      if (entry.getValue() != null) {
+        String keyPropertyId = schema.getKeyPropertyId(entry.getKey());
+        if (keyPropertyId != null) {
+          keyPropertyValues.put(keyPropertyId, entry.getValue());
+        }
+      }
+    }
+    return keyPropertyValues;
+  }
+
   private Predicate createPredicate() {
     return createPredicate(getKeyValueMap(), userPredicate);
   }
@@ -1077,6 +1232,43 @@ public class QueryImpl implements Query, ResourceInstance {
         resource.getSingularName();
   }
 
+  // ----- inner class : SubResourceQuery ------------------------------------
+
+  /**
+   * The query for the sub-resources of a single parent resource.
+   */
+  private static class SubResourceQuery {
+    private final Map<Resource.Type, String> keyValueMap;
+    private final Predicate predicate;
+    private final Set<Resource> resources = new LinkedHashSet<>();
+    private Map<String, String> keyPropertyValues;
+
+    private SubResourceQuery(Map<Resource.Type, String> keyValueMap, Predicate predicate) {
+      this.keyValueMap = keyValueMap;
+      this.predicate   = predicate;
+    }
+
+    public Map<Resource.Type, String> getKeyValueMap() {
+      return keyValueMap;
+    }
+
+    public Predicate getPredicate() {
+      return predicate;
+    }
+
+    public Set<Resource> getResources() {
+      return resources;
+    }
+
+    public Map<String, String> getKeyPropertyValues() {
+      return keyPropertyValues;
+    }
+
+    public void setKeyPropertyValues(Map<String, String> keyPropertyValues) {
+      this.keyPropertyValues = keyPropertyValues;
+    }
+  }
+
   // ----- inner class : QueryResult -----------------------------------------
 
   /**
@@ -105,8 +105,19 @@ public abstract class BaseService {
 
   protected static RequestAuditLogger requestAuditLogger;
 
+  /**
+   * Whether successful results are streamed to the HTTP response instead of
+   * being serialized in memory first.
+   */
+  private static boolean streamResponses;
+
   public static void init(RequestAuditLogger instance) {
+    init(instance, false);
+  }
+
+  public static void init(RequestAuditLogger instance, boolean streamJsonResponses) {
     requestAuditLogger = instance;
+    streamResponses = streamJsonResponses;
   }
 
   /**
@@ -182,8 +193,15 @@ public abstract class BaseService {
 
     ResultSerializer serializer = mediaType == null ? getResultSerializer() : getResultSerializer(mediaType);
 
-    Response.ResponseBuilder builder = Response.status(result.getStatus().getStatusCode()).entity(
-        serializer.serialize(result));
+    Object entity;
+    if (mediaType == null && serializer instanceof JsonSerializer && !result.getStatus().isErrorState()
+        && isStreamingResponse()) {
+      entity = ((JsonSerializer) serializer).serializeToStream(result);
+    } else {
+      entity = serializer.serialize(result);
+    }
+
+    Response.ResponseBuilder builder = Response.status(result.getStatus().getStatusCode()).entity(entity);
 
     if (mediaType != null) {
       builder.type(mediaType);
@@ -193,6 +211,18 @@ public abstract class BaseService {
     return builder.build();
   }
 
+  /**
+   * Determine whether a successful result serialized as JSON by default is
+   * streamed to the response. Services which read the entity of the
+   * responses they handle, rather than returning it to the client, need it
+   * serialized as a String and should not stream it.
+   *
+   * @return true if the result is streamed to the response
+   */
+  protected boolean isStreamingResponse() {
+    return streamResponses;
+  }
+
   /**
    * Obtain the factory from which to create Request instances.
    *
@@ -18,13 +18,17 @@
 
 package org.apache.ambari.server.api.services.serializers;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import javax.ws.rs.core.StreamingOutput;
+
 import org.apache.ambari.server.api.services.DeleteResultMetadata;
 import org.apache.ambari.server.api.services.Result;
 import org.apache.ambari.server.api.services.ResultMetadata;
@@ -44,6 +48,12 @@ import org.codehaus.jackson.util.DefaultPrettyPrinter;
  */
 public class JsonSerializer implements ResultSerializer {
 
+  /**
+   * The size, in bytes, of the beginning of a streamed result which is held
+   * back until it is complete, so that the response is not committed before.
+   */
+  static final int STREAM_FIRST_CHUNK_SIZE = 64 * 1024;
+
   /**
    * Factory used to create JSON generator.
    */
@@ -66,10 +76,7 @@ public class JsonSerializer implements ResultSerializer {
         return serializeError(result.getStatus());
       }
 
-      TreeNode<Resource> treeNode = result.getResultTree();
-      processNode(treeNode);
-      processResultMetadata(result.getResultMetadata());
-      m_generator.close();
+      writeResult(result);
       return bytesOut.toString("UTF-8");
     } catch (IOException e) {
       //todo: exception handling.  Create ResultStatus 500 and call serializeError
@@ -77,6 +84,47 @@ public class JsonSerializer implements ResultSerializer {
     }
   }
 
+  /**
+   * Serialize the given result directly to an output stream, without holding
+   * the serialized result in memory. The stream is flushed but not closed.
+   *
+   * @param result  internal result, which must not be in an error state
+   * @param out     the stream to write the JSON to
+   *
+   * @throws IOException if unable to write to the stream
+   */
+  public void serialize(Result result, OutputStream out) throws IOException {
+    m_generator = createJsonGenerator(out);
+    m_generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    writeResult(result);
+  }
+
+  /**
+   * Get a response entity which serializes the given result when it is
+   * written, straight to the output stream of the HTTP response. Since the
+   * length of the response is then unknown, it is sent with chunked transfer
+   * encoding.
+   * <p/>
+   * The first {@link #STREAM_FIRST_CHUNK_SIZE} bytes are buffered, so that a
+   * failure to serialize a result smaller than that, or to serialize the
+   * beginning of a larger one, happens before anything is written and can
+   * still be reported with an error status.
+   *
+   * @param result  internal result, which must not be in an error state
+   *
+   * @return the streaming response entity
+   */
+  public StreamingOutput serializeToStream(final Result result) {
+    return new StreamingOutput() {
+      @Override
+      public void write(OutputStream out) throws IOException {
+        BufferedOutputStream firstChunk = new BufferedOutputStream(out, STREAM_FIRST_CHUNK_SIZE);
+        serialize(result, firstChunk);
+        firstChunk.flush();
+      }
+    };
+  }
+
   @Override
   public Object serializeError(ResultStatus error) {
     try {
@@ -95,6 +143,13 @@ public class JsonSerializer implements ResultSerializer {
     }
   }
 
+  private void writeResult(Result result) throws IOException {
+    TreeNode<Resource> treeNode = result.getResultTree();
+    processNode(treeNode);
+    processResultMetadata(result.getResultMetadata());
+    m_generator.close();
+  }
+
   private ByteArrayOutputStream init() throws IOException {
     ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
     m_generator = createJsonGenerator(bytesOut);
@@ -272,8 +327,8 @@ public class JsonSerializer implements ResultSerializer {
     }
   }
 
-  private JsonGenerator createJsonGenerator(ByteArrayOutputStream baos) throws IOException {
-    JsonGenerator generator = m_factory.createJsonGenerator(new OutputStreamWriter(baos,
+  private JsonGenerator createJsonGenerator(OutputStream out) throws IOException {
+    JsonGenerator generator = m_factory.createJsonGenerator(new OutputStreamWriter(out,
         Charset.forName("UTF-8").newEncoder()));
 
     DefaultPrettyPrinter p = new DefaultPrettyPrinter();
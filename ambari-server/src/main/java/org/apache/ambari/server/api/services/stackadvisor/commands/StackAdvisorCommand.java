@@ -148,6 +148,15 @@ public abstract class StackAdvisorCommand<T extends StackAdvisorResponse> extend
 
   protected abstract StackAdvisorCommandType getCommandType();
 
+  /**
+   * The hosts and services information is read from the responses as JSON
+   * strings, so it is never streamed.
+   */
+  @Override
+  protected boolean isStreamingResponse() {
+    return false;
+  }
+
   /**
    * Simple holder for 'hosts.json' and 'services.json' data.
    */
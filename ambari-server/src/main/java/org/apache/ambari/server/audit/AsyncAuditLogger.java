@@ -18,35 +18,95 @@
 package org.apache.ambari.server.audit;
 
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ambari.server.audit.event.AuditEvent;
 import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.metrics.system.impl.ServerMetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import com.google.common.eventbus.AsyncEventBus;
-import com.google.common.eventbus.EventBus;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 
 /**
- * This is a wrapper for an audit log implementation that uses {@link EventBus} to make audit logging asynchronous
+ * This is a wrapper for an audit log implementation that makes audit logging asynchronous.
+ * <p/>
+ * Audit events are put in a bounded ring buffer and written by a single worker thread, which
+ * takes all the events waiting in the buffer (up to the batch size) and passes them to the
+ * wrapped logger at once. When the buffer is full the caller either waits for free space or
+ * the event is dropped, depending on the configured overflow policy; callers never write the
+ * audit log themselves.
  */
 @Singleton
 class AsyncAuditLogger implements AuditLogger {
+  private static final Logger LOG = LoggerFactory.getLogger(AsyncAuditLogger.class);
+
   /**
    * Name for guice injection
    */
   final static String InnerLogger = "AsyncAuditLogger";
 
+  private static final String METRIC_PREFIX = "auditlog";
+
+  /**
+   * Number of audit events dropped because the buffer was full.
+   */
+  private static final Counter DROPPED_EVENTS = ServerMetricsSource.registry.counter(
+      METRIC_PREFIX + ".dropped");
+
+  /**
+   * Number of audit events whose caller had to wait for free space in the buffer.
+   */
+  private static final Counter BLOCKED_EVENTS = ServerMetricsSource.registry.counter(
+      METRIC_PREFIX + ".blocked");
+
+  /**
+   * Number of audit events written at once.
+   */
+  private static final Histogram BATCH_SIZE = ServerMetricsSource.registry.histogram(
+      METRIC_PREFIX + ".batch.size");
+
+  /**
+   * What to do with an audit event when the buffer is full.
+   */
+  enum OverflowPolicy {
+    /**
+     * Wait for free space in the buffer.
+     */
+    BLOCK,
+
+    /**
+     * Discard the event.
+     */
+    DROP
+  }
+
+  /**
+   * The logger which writes the audit events
+   */
+  private final AuditLogger auditLogger;
+
   /**
-   * Event bus that holds audit event objects
+   * Ring buffer that holds the audit events to write
    */
-  private EventBus eventBus;
+  private BlockingQueue<AuditEvent> buffer;
+
+  /**
+   * Maximum number of events written at once
+   */
+  private int batchSize;
+
+  private OverflowPolicy overflowPolicy;
 
   /**
    * Indicates if audit log feature is enabled
@@ -60,19 +120,43 @@ class AsyncAuditLogger implements AuditLogger {
    */
   @Inject
   public AsyncAuditLogger(@Named(InnerLogger) AuditLogger auditLogger, Configuration configuration) {
+    this.auditLogger = auditLogger;
     isEnabled = configuration.isAuditLogEnabled();
     if(isEnabled) {
-      eventBus = new AsyncEventBus("AuditLoggerEventBus", new ThreadPoolExecutor(0, 1, 5L, TimeUnit.MINUTES,
-        new LinkedBlockingQueue<>(configuration.getAuditLoggerCapacity()), new AuditLogThreadFactory(),
-        new ThreadPoolExecutor.CallerRunsPolicy()));
-      eventBus.register(auditLogger);
+      buffer = new ArrayBlockingQueue<>(Math.max(1, configuration.getAuditLoggerCapacity()));
+      batchSize = Math.max(1, configuration.getAuditLoggerBatchSize());
+      overflowPolicy = getOverflowPolicy(configuration.getAuditLoggerOverflowPolicy());
+
+      ServerMetricsSource.registry.remove(METRIC_PREFIX + ".queue.depth");
+      ServerMetricsSource.registry.register(METRIC_PREFIX + ".queue.depth", new Gauge<Integer>() {
+        @Override
+        public Integer getValue() {
+          return buffer.size();
+        }
+      });
+
+      new AuditLogThreadFactory().newThread(new AuditLogWorker()).start();
     }
   }
 
   @Override
   public void log(AuditEvent event) {
-    if(isEnabled) {
-      eventBus.post(event);
+    if(!isEnabled || buffer.offer(event)) {
+      return;
+    }
+
+    if (overflowPolicy == OverflowPolicy.DROP) {
+      DROPPED_EVENTS.inc();
+      return;
+    }
+
+    BLOCKED_EVENTS.inc();
+    try {
+      buffer.put(event);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      DROPPED_EVENTS.inc();
+      LOG.warn("Interrupted while waiting to add an audit event, the event is dropped");
     }
   }
 
@@ -81,6 +165,44 @@ class AsyncAuditLogger implements AuditLogger {
     return isEnabled;
   }
 
+  private static OverflowPolicy getOverflowPolicy(String value) {
+    try {
+      return OverflowPolicy.valueOf(value.trim().toUpperCase());
+    } catch (RuntimeException e) {
+      LOG.warn("Unknown audit logger overflow policy {}, using {}", value, OverflowPolicy.BLOCK);
+      return OverflowPolicy.BLOCK;
+    }
+  }
+
+  /**
+   * Writes the events of the buffer in batches, in the order they were added.
+   */
+  private final class AuditLogWorker implements Runnable {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      List<AuditEvent> batch = new ArrayList<>(batchSize);
+      while (true) {
+        try {
+          batch.add(buffer.take());
+          buffer.drainTo(batch, batchSize - 1);
+          BATCH_SIZE.update(batch.size());
+          auditLogger.logAll(batch);
+        } catch (InterruptedException e) {
+          LOG.warn("Audit log thread is interrupted, stopping");
+          return;
+        } catch (Throwable t) {
+          LOG.error("Unable to write {} audit events", batch.size(), t);
+        } finally {
+          batch.clear();
+        }
+      }
+    }
+  }
+
   /**
    * A custom {@link ThreadFactory} for the threads that logs audit events
    */
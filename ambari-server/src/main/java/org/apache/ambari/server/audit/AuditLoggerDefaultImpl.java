@@ -21,6 +21,7 @@ package org.apache.ambari.server.audit;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 
 import org.apache.ambari.server.audit.event.AuditEvent;
 import org.apache.ambari.server.configuration.Configuration;
@@ -44,6 +45,8 @@ public class AuditLoggerDefaultImpl implements AuditLogger {
    */
   private final boolean isEnabled;
 
+  private static final String LINE_SEPARATOR = System.lineSeparator();
+
   private ThreadLocal<DateFormat> dateFormatThreadLocal = new ThreadLocal<DateFormat>(){
     @Override
     protected DateFormat initialValue() {
@@ -71,6 +74,31 @@ public class AuditLoggerDefaultImpl implements AuditLogger {
     LOG.info("{}, {}", dateFormatThreadLocal.get().format(date), event.getAuditMessage());
   }
 
+  /**
+   * Formats the events into one multi-line message, so the audit appender
+   * writes and flushes them at once. With the default layout of the audit
+   * log (message and line separator) the file content is the same as if the
+   * events were logged one by one.
+   */
+  @Override
+  public void logAll(List<AuditEvent> events) {
+    if(!isEnabled || events.isEmpty()) {
+      return;
+    }
+
+    DateFormat dateFormat = dateFormatThreadLocal.get();
+    StringBuilder message = new StringBuilder(events.size() * 256);
+    Date date = new Date();
+    for (AuditEvent event : events) {
+      if (message.length() > 0) {
+        message.append(LINE_SEPARATOR);
+      }
+      date.setTime(event.getTimestamp());
+      message.append(dateFormat.format(date)).append(", ").append(event.getAuditMessage());
+    }
+    LOG.info(message.toString());
+  }
+
   @Override
   public boolean isEnabled() {
     return isEnabled;
@@ -497,6 +497,16 @@ public class Configuration {
   public static final ConfigurationProperty<String> API_GZIP_MIN_COMPRESSION_SIZE = new ConfigurationProperty<>(
       "api.gzip.compression.min.size", "10240");
 
+  /**
+   * Determines whether successful JSON responses of the REST API are written
+   * directly to the HTTP response instead of being serialized in memory first.
+   * Disabled by default, since a failure once a response has been committed
+   * can no longer be reported with an error status.
+   */
+  @Markdown(description = "Determines whether successful JSON responses of the REST API are streamed to the client using chunked transfer encoding, instead of being fully serialized in memory before being sent. Streaming lowers the memory needed to serve large responses. The first 64 KB of a response are buffered; if serializing a larger response fails after that, the client receives a truncated response with a successful status instead of an error.")
+  public static final ConfigurationProperty<String> API_STREAMING_RESPONSES_ENABLED = new ConfigurationProperty<>(
+      "api.streaming.responses.enabled", "false");
+
   /**
    * Determiens whether communication with the Ambari Agents should have the
    * JSON payloads compressed with GZIP.
@@ -1013,11 +1023,22 @@ public class Configuration {
 
   /**
    * The size of the cache used to hold {@link HostRoleCommand} instances in-memory.
+   *
+   * @deprecated the cache is bounded by {@link #SERVER_EC_CACHE_WEIGHT}
    */
-  @Markdown(description = "The size of the cache which is used to hold current operations in memory until they complete.")
+  @Deprecated
+  @Markdown(description = "The size of the cache which is used to hold current operations in memory until they complete. No longer used, see `server.ecCacheWeight`.")
   public static final ConfigurationProperty<Long> SERVER_EC_CACHE_SIZE = new ConfigurationProperty<>(
       "server.ecCacheSize", 10000L);
 
+  /**
+   * The maximum estimated size, in bytes, of the {@link HostRoleCommand}
+   * instances held in-memory.
+   */
+  @Markdown(description = "The maximum estimated size, in bytes, of the completed operations held in memory. The outputs of the operations are not held in memory and do not count against this limit.")
+  public static final ConfigurationProperty<Long> SERVER_EC_CACHE_WEIGHT = new ConfigurationProperty<>(
+      "server.ecCacheWeight", 104857600L);
+
   /**
    * Determines whether caching a requests's
    * {@link HostRoleCommandStatusSummaryDTO} is enabled.
@@ -1693,6 +1714,28 @@ public class Configuration {
   public static final ConfigurationProperty<Boolean> PARALLEL_STAGE_EXECUTION = new ConfigurationProperty<>(
       "server.stages.parallel", Boolean.TRUE);
 
+  /**
+   * This key defines whether the action scheduler runs a full scan of the
+   * in-progress stages on every wakeup or only when something happened that
+   * may change the scheduling decision (command reports, new or cancelled
+   * requests, task timeouts).
+   */
+  @Markdown(
+      description = "Determines whether the action scheduler only scans in-progress stages when a command report, a new request or a task timeout requires it, instead of on every wakeup.",
+      relatedTo = "server.stages.event.driven.full.scan.interval")
+  public static final ConfigurationProperty<Boolean> EVENT_DRIVEN_STAGE_EXECUTION = new ConfigurationProperty<>(
+      "server.stages.event.driven", Boolean.FALSE);
+
+  /**
+   * The maximum time in milliseconds the action scheduler may go without a
+   * full scan of the in-progress stages when running in event-driven mode.
+   */
+  @Markdown(
+      description = "The maximum time, in milliseconds, between two full scans of the in-progress stages when the action scheduler is event-driven. Protects against missed events such as hosts losing their heartbeat.",
+      relatedTo = "server.stages.event.driven")
+  public static final ConfigurationProperty<Long> EVENT_DRIVEN_STAGE_FULL_SCAN_INTERVAL = new ConfigurationProperty<>(
+      "server.stages.event.driven.full.scan.interval", 60000L);
+
   /**
    *
    * Property driving the view extraction.
@@ -1885,6 +1928,31 @@ public class Configuration {
   public static final ConfigurationProperty<Integer> AGENTS_REPORT_THREAD_POOL_SIZE = new ConfigurationProperty<>(
       "agents.reports.thread.pool.size", 10);
 
+  /**
+   * Maximum number of agents reports queued per processing thread.
+   */
+  @Markdown(
+      description = "The maximum number of agents reports waiting to be processed by each agents reports processing thread. When a queue is full, the STOMP thread handling the report waits for room in it.",
+      relatedTo = "agents.reports.thread.pool.size")
+  public static final ConfigurationProperty<Integer> AGENTS_REPORT_QUEUE_SIZE = new ConfigurationProperty<>(
+      "agents.reports.queue.size", 1000);
+
+  /**
+   * Time in seconds to wait for room in a full agents reports queue.
+   */
+  @Markdown(
+      description = "The time, in seconds, a report can wait for room in a full agents reports queue before a warning is logged. The report keeps waiting until it is queued.",
+      relatedTo = "agents.reports.queue.size")
+  public static final ConfigurationProperty<Integer> AGENTS_REPORT_QUEUE_TIMEOUT = new ConfigurationProperty<>(
+      "agents.reports.queue.timeout", 30);
+
+  /**
+   * Maximum number of agents reports processed in a single unit of work.
+   */
+  @Markdown(description = "The maximum number of queued agents reports processed together in a single unit of work.")
+  public static final ConfigurationProperty<Integer> AGENTS_REPORT_BATCH_SIZE = new ConfigurationProperty<>(
+      "agents.reports.batch.size", 50);
+
   /**
    * Server to API STOMP endpoint heartbeat interval in milliseconds.
    */
@@ -1906,6 +1974,26 @@ public class Configuration {
   public static final ConfigurationProperty<Integer> STOMP_MAX_BUFFER_MESSAGE_SIZE = new ConfigurationProperty<>(
       "stomp.max_buffer.message.size", 5*1024*1024);
 
+  /**
+   * The time in milliseconds between two flushes of the buffered STOMP update
+   * events. Can be overridden per event type.
+   */
+  @Markdown(
+      description = "The time, in milliseconds, between two flushes of the buffered STOMP update events sent to the UI. Can be overridden per event type with `stomp.buffer.<type>.flush.interval`, for example `stomp.buffer.request.flush.interval`.",
+      relatedTo = "stomp.buffer.max.size")
+  public static final ConfigurationProperty<Long> STOMP_BUFFER_FLUSH_INTERVAL = new ConfigurationProperty<>(
+      "stomp.buffer.flush.interval", 1000L);
+
+  /**
+   * The number of buffered STOMP update entities which triggers an early
+   * flush. Can be overridden per event type.
+   */
+  @Markdown(
+      description = "The number of distinct entities (host components, requests, services) buffered for STOMP update events after which the buffer is flushed without waiting for the flush interval. Can be overridden per event type with `stomp.buffer.<type>.max.size`, for example `stomp.buffer.hostcomponent.max.size`.",
+      relatedTo = "stomp.buffer.flush.interval")
+  public static final ConfigurationProperty<Integer> STOMP_BUFFER_MAX_SIZE = new ConfigurationProperty<>(
+      "stomp.buffer.max.size", 10000);
+
   /**
    * The number of attempts to emit execution command message to agent. Default is 4
    */
@@ -2367,6 +2455,27 @@ public class Configuration {
   public static final ConfigurationProperty<Integer> AUDIT_LOGGER_CAPACITY = new ConfigurationProperty<>(
       "auditlog.logger.capacity", 10000);
 
+  /**
+   * The maximum number of audit events written to the audit log at once.
+   */
+  @Markdown(
+      relatedTo = "auditlog.enabled",
+      description = "The maximum number of audit events formatted and written to the audit log at once.")
+  public static final ConfigurationProperty<Integer> AUDIT_LOGGER_BATCH_SIZE = new ConfigurationProperty<>(
+      "auditlog.logger.batch.size", 500);
+
+  /**
+   * What to do with an audit event when the worker queue is full.
+   */
+  @Markdown(
+      relatedTo = "auditlog.logger.capacity",
+      description = "What to do with an audit event when the worker queue of the audit logger is full: "
+          + "`block` makes the caller wait for free space, `drop` discards the event. "
+          + "Dropped events are counted in the server metrics.",
+      examples = { "block", "drop" })
+  public static final ConfigurationProperty<String> AUDIT_LOGGER_OVERFLOW_POLICY = new ConfigurationProperty<>(
+      "auditlog.logger.overflow.policy", "block");
+
   /**
    * The UDP port to use when binding the SNMP dispatcher on Ambari Server startup.
    */
@@ -3889,6 +3998,15 @@ public class Configuration {
     return Boolean.parseBoolean(getProperty(GZIP_HANDLER_JETTY_ENABLED));
   }
 
+  /**
+   * Check to see if successful API responses should be streamed to the client
+   * or not
+   * @return false if not, true if the responses need to be streamed.
+   */
+  public boolean isApiResponseStreamingEnabled() {
+    return Boolean.parseBoolean(getProperty(API_STREAMING_RESPONSES_ENABLED));
+  }
+
   /**
    * Check to see if the agent API responses should be compressed via gzip or not
    * @return false if not, true if gzip compression needs to be used.
@@ -4364,6 +4482,10 @@ public class Configuration {
     return ambariPropertiesMap;
   }
 
+  /**
+   * @deprecated the cache is bounded by {@link #getExecutionCommandsCacheWeight()}
+   */
+  @Deprecated
   public long getExecutionCommandsCacheSize() {
     String stringValue = getProperty(SERVER_EC_CACHE_SIZE);
     long value = SERVER_EC_CACHE_SIZE.getDefaultValue();
@@ -4377,6 +4499,14 @@ public class Configuration {
 
     return value;
   }
+  /**
+   * @return the maximum estimated size, in bytes, of the cached
+   *         {@link HostRoleCommand} instances
+   */
+  public long getExecutionCommandsCacheWeight() {
+    return Long.parseLong(getProperty(SERVER_EC_CACHE_WEIGHT));
+  }
+
 
   /**
    * Caching of host role command status summary can be enabled/disabled
@@ -4563,6 +4693,22 @@ public class Configuration {
     return Boolean.parseBoolean(configsMap.get(PARALLEL_STAGE_EXECUTION.getKey()));
   }
 
+  /**
+   * @return {@code true} if the action scheduler should only scan in-progress
+   *         stages when an event requires it.
+   */
+  public boolean isEventDrivenStageExecution() {
+    return Boolean.parseBoolean(getProperty(EVENT_DRIVEN_STAGE_EXECUTION));
+  }
+
+  /**
+   * @return the maximum time in milliseconds between two full scans of the
+   *         in-progress stages in event-driven mode.
+   */
+  public long getEventDrivenStageFullScanInterval() {
+    return Long.parseLong(getProperty(EVENT_DRIVEN_STAGE_FULL_SCAN_INTERVAL));
+  }
+
   public String getCustomActionDefinitionPath() {
     return getProperty(CUSTOM_ACTION_DEFINITION);
   }
@@ -4697,6 +4843,27 @@ public class Configuration {
     return Integer.parseInt(getProperty(AGENTS_REPORT_THREAD_POOL_SIZE));
   }
 
+  /**
+   * @return maximum number of agents reports queued per processing thread.
+   */
+  public int getAgentsReportQueueSize() {
+    return Integer.parseInt(getProperty(AGENTS_REPORT_QUEUE_SIZE));
+  }
+
+  /**
+   * @return time in seconds to wait for room in a full agents reports queue before logging a warning.
+   */
+  public int getAgentsReportQueueTimeout() {
+    return Integer.parseInt(getProperty(AGENTS_REPORT_QUEUE_TIMEOUT));
+  }
+
+  /**
+   * @return maximum number of agents reports processed in a single unit of work.
+   */
+  public int getAgentsReportBatchSize() {
+    return Integer.parseInt(getProperty(AGENTS_REPORT_BATCH_SIZE));
+  }
+
   /**
    * @return server to API STOMP endpoint heartbeat interval in milliseconds.
    */
@@ -4718,6 +4885,42 @@ public class Configuration {
     return Integer.parseInt(getProperty(STOMP_MAX_BUFFER_MESSAGE_SIZE));
   }
 
+  /**
+   * @param eventType
+   *          the name of the STOMP event type
+   * @return the time in milliseconds between two flushes of the buffered
+   *         update events of the given type; the default if the configured
+   *         value is not positive.
+   */
+  public long getStompBufferFlushInterval(String eventType) {
+    String key = "stomp.buffer." + eventType.toLowerCase() + ".flush.interval";
+    long flushInterval = Long.parseLong(properties.getProperty(key, getProperty(STOMP_BUFFER_FLUSH_INTERVAL)));
+    if (flushInterval <= 0) {
+      LOG.warn("Invalid STOMP buffer flush interval ({}) for {} events, should be positive. Value reset to default {}",
+          flushInterval, eventType, STOMP_BUFFER_FLUSH_INTERVAL.getDefaultValue());
+      flushInterval = STOMP_BUFFER_FLUSH_INTERVAL.getDefaultValue();
+    }
+    return flushInterval;
+  }
+
+  /**
+   * @param eventType
+   *          the name of the STOMP event type
+   * @return the number of buffered update entities of the given type which
+   *         triggers an early flush; the default if the configured value is
+   *         not positive.
+   */
+  public int getStompBufferMaxSize(String eventType) {
+    String key = "stomp.buffer." + eventType.toLowerCase() + ".max.size";
+    int maxSize = Integer.parseInt(properties.getProperty(key, getProperty(STOMP_BUFFER_MAX_SIZE)));
+    if (maxSize <= 0) {
+      LOG.warn("Invalid STOMP buffer max size ({}) for {} events, should be positive. Value reset to default {}",
+          maxSize, eventType, STOMP_BUFFER_MAX_SIZE.getDefaultValue());
+      maxSize = STOMP_BUFFER_MAX_SIZE.getDefaultValue();
+    }
+    return maxSize;
+  }
+
   /**
    * @return the number of attempts to emit execution command message to agent. Default is 4
    */
@@ -5357,6 +5560,20 @@ public class Configuration {
     return NumberUtils.toInt(getProperty(AUDIT_LOGGER_CAPACITY));
   }
 
+  /**
+   * @return the maximum number of audit events written at once by async audit logger
+   */
+  public int getAuditLoggerBatchSize() {
+    return NumberUtils.toInt(getProperty(AUDIT_LOGGER_BATCH_SIZE));
+  }
+
+  /**
+   * @return the policy of async audit logger when its queue is full, {@code block} or {@code drop}
+   */
+  public String getAuditLoggerOverflowPolicy() {
+    return getProperty(AUDIT_LOGGER_OVERFLOW_POLICY);
+  }
+
   /**
    * Customized UDP port for SNMP dispatcher
    * @return Integer if property exists else null
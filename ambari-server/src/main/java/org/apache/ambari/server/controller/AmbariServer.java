@@ -950,7 +950,7 @@ public class AmbariServer {
     StackAdvisorBlueprintProcessor.init(injector.getInstance(StackAdvisorHelper.class));
     ThreadPoolEnabledPropertyProvider.init(injector.getInstance(Configuration.class));
 
-    BaseService.init(injector.getInstance(RequestAuditLogger.class));
+    BaseService.init(injector.getInstance(RequestAuditLogger.class), configs.isApiResponseStreamingEnabled());
 
     RetryHelper.init(injector.getInstance(Clusters.class), configs.getOperationsRetryAttempts());
 
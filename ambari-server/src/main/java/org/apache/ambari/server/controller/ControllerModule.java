@@ -360,10 +360,10 @@ public class ControllerModule extends AbstractModule {
     bindConstant().annotatedWith(Names.named("dbInitNeeded")).to(dbInitNeeded);
     bindConstant().annotatedWith(Names.named("statusCheckInterval")).to(5000L);
 
-    //ExecutionCommands cache size
+    //ExecutionCommands cache weight
 
-    bindConstant().annotatedWith(Names.named("executionCommandCacheSize")).
-        to(configuration.getExecutionCommandsCacheSize());
+    bindConstant().annotatedWith(Names.named("executionCommandCacheWeight")).
+        to(configuration.getExecutionCommandsCacheWeight());
 
 
     // Host role commands status summary max cache enable/disable
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.controller.internal;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ambari.server.controller.predicate.AndPredicate;
+import org.apache.ambari.server.controller.predicate.ComparisonPredicate;
+import org.apache.ambari.server.controller.predicate.NotPredicate;
+import org.apache.ambari.server.controller.predicate.OrPredicate;
+import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.Resource;
+
+/**
+ * A predicate prepared for evaluation against many resources.  For each resource
+ * type, the property ids of the comparisons are resolved to the property slots of
+ * the type once, so evaluating a {@link ResourceImpl} reads its property values
+ * directly instead of looking up the property ids.  Other predicates and
+ * resources are evaluated through {@link Predicate#evaluate(Resource)}.
+ */
+class CompiledPredicate {
+
+  /**
+   * The predicate.
+   */
+  private final Predicate predicate;
+
+  /**
+   * The predicate evaluation trees by resource type.
+   */
+  private final ConcurrentMap<Resource.Type, Node> nodes = new ConcurrentHashMap<>();
+
+  // ----- Constructors ------------------------------------------------------
+
+  /**
+   * Create a compiled predicate.
+   *
+   * @param predicate  the predicate
+   */
+  CompiledPredicate(Predicate predicate) {
+    this.predicate = predicate;
+  }
+
+  // ----- CompiledPredicate -------------------------------------------------
+
+  /**
+   * Evaluate the predicate for the given resource.
+   *
+   * @param resource  the resource
+   *
+   * @return true if the predicate evaluates to true for the resource
+   */
+  boolean evaluate(Resource resource) {
+    Resource.Type type = resource.getType();
+    if (type == null) {
+      return predicate.evaluate(resource);
+    }
+    Node node = nodes.get(type);
+    if (node == null) {
+      node = nodes.computeIfAbsent(type, t -> compile(predicate, ResourcePropertySchema.getSchema(t)));
+    }
+    return node.evaluate(resource);
+  }
+
+  // ----- utility methods ---------------------------------------------------
+
+  private static Node compile(Predicate predicate, ResourcePropertySchema schema) {
+    if (predicate instanceof AndPredicate) {
+      Node[] nodes = compile(((AndPredicate) predicate).getPredicates(), schema);
+      return resource -> {
+        for (Node node : nodes) {
+          if (!node.evaluate(resource)) {
+            return false;
+          }
+        }
+        return true;
+      };
+    }
+    if (predicate instanceof OrPredicate) {
+      Node[] nodes = compile(((OrPredicate) predicate).getPredicates(), schema);
+      return resource -> {
+        for (Node node : nodes) {
+          if (node.evaluate(resource)) {
+            return true;
+          }
+        }
+        return false;
+      };
+    }
+    if (predicate instanceof NotPredicate) {
+      Node node = compile(((NotPredicate) predicate).getPredicate(), schema);
+      return resource -> !node.evaluate(resource);
+    }
+    if (predicate instanceof ComparisonPredicate) {
+      ComparisonPredicate<?> comparison = (ComparisonPredicate<?>) predicate;
+      ResourcePropertySchema.Slot slot = schema.getSlot(comparison.getPropertyId());
+      if (slot != null) {
+        return resource -> comparison.evaluateValue(resource instanceof ResourceImpl ?
+            ((ResourceImpl) resource).getPropertyValue(slot) :
+            resource.getPropertyValue(comparison.getPropertyId()));
+      }
+    }
+    return predicate::evaluate;
+  }
+
+  private static Node[] compile(Predicate[] predicates, ResourcePropertySchema schema) {
+    Node[] nodes = new Node[predicates.length];
+    for (int i = 0; i < predicates.length; i++) {
+      nodes[i] = compile(predicates[i], schema);
+    }
+    return nodes;
+  }
+
+  // ----- inner interface : Node --------------------------------------------
+
+  /**
+   * A node of a predicate evaluation tree.
+   */
+  private interface Node {
+    boolean evaluate(Resource resource);
+  }
+}
@@ -38,6 +38,7 @@ import org.apache.ambari.server.controller.MaintenanceStateHelper;
 import org.apache.ambari.server.controller.RequestStatusResponse;
 import org.apache.ambari.server.controller.ServiceComponentRequest;
 import org.apache.ambari.server.controller.ServiceComponentResponse;
+import org.apache.ambari.server.controller.spi.BatchableResourceProvider;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
 import org.apache.ambari.server.controller.spi.Predicate;
@@ -76,7 +77,8 @@ import com.google.inject.persist.Transactional;
 /**
  * Resource provider for component resources.
  */
-public class ComponentResourceProvider extends AbstractControllerResourceProvider {
+public class ComponentResourceProvider extends AbstractControllerResourceProvider
+    implements BatchableResourceProvider {
 
   private static final Logger LOG = LoggerFactory.getLogger(ComponentResourceProvider.class);
 
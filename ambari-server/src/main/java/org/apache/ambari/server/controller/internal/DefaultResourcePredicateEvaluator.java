@@ -21,12 +21,31 @@ import org.apache.ambari.server.controller.spi.Predicate;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.spi.ResourcePredicateEvaluator;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
 /**
- * The default predicate evaluator.
+ * The default predicate evaluator.  The evaluated predicates are compiled for
+ * the types of the resources they are evaluated against and kept while the
+ * predicate instances are in use.
  */
 public class DefaultResourcePredicateEvaluator implements ResourcePredicateEvaluator {
+
+  /**
+   * The maximum number of compiled predicates.
+   */
+  private static final int MAX_COMPILED_PREDICATES = 1000;
+
+  /**
+   * Compiled predicates keyed by predicate instance.
+   */
+  private final LoadingCache<Predicate, CompiledPredicate> compiledPredicates =
+      CacheBuilder.newBuilder().weakKeys().maximumSize(MAX_COMPILED_PREDICATES).build(
+          CacheLoader.from(CompiledPredicate::new));
+
   @Override
   public boolean evaluate(Predicate predicate, Resource resource) {
-    return predicate.evaluate(resource);
+    return compiledPredicates.getUnchecked(predicate).evaluate(resource);
   }
 }
@@ -38,6 +38,7 @@ import org.apache.ambari.server.controller.ServiceComponentHostResponse;
 import org.apache.ambari.server.controller.predicate.AndPredicate;
 import org.apache.ambari.server.controller.predicate.EqualsPredicate;
 import org.apache.ambari.server.controller.predicate.NotPredicate;
+import org.apache.ambari.server.controller.spi.BatchableResourceProvider;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
 import org.apache.ambari.server.controller.spi.Predicate;
@@ -78,7 +79,8 @@ import com.google.inject.assistedinject.AssistedInject;
 /**
  * Resource provider for host component resources.
  */
-public class HostComponentResourceProvider extends AbstractControllerResourceProvider {
+public class HostComponentResourceProvider extends AbstractControllerResourceProvider
+    implements BatchableResourceProvider {
 
   private static final Logger LOG = LoggerFactory.getLogger(HostComponentResourceProvider.class);
 
@@ -18,9 +18,12 @@
 
 package org.apache.ambari.server.controller.internal;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
 
@@ -29,19 +32,51 @@ import org.apache.ambari.server.controller.utilities.PropertyHelper;
 
 /**
  * Simple resource implementation.
+ * <p/>
+ * While a resource is populated the values of the property ids declared for its
+ * type are kept in an array indexed by the slots of the {@link ResourcePropertySchema}
+ * of the type, and the other values in a map, without locking.
+ * A resource is expected to be populated by one thread at a time. The map of
+ * property maps is built the first time it is requested and it holds the
+ * properties of the resource from then on.
  */
 public class ResourceImpl implements Resource {
 
+  /**
+   * Marks a property explicitly set to null.
+   */
+  private static final Object NULL_VALUE = new Object();
+
   /**
    * The resource type.
    */
   private final Type type;
 
   /**
-   * The map of property maps keyed by property category.
+   * The property slots of the resource type.
+   */
+  private final ResourcePropertySchema schema;
+
+  /**
+   * The property values by slot number; null if the property is not set. The
+   * array only reaches the highest slot set.
+   */
+  private Object[] values;
+
+  /**
+   * The values of the properties without a slot, keyed by category and name.
+   */
+  private Map<String, Map<String, Object>> unslottedProperties;
+
+  /**
+   * The categories added with {@link #addCategory(String)}.
+   */
+  private Set<String> categories;
+
+  /**
+   * The map of property maps keyed by property category; null until requested.
    */
-  private final Map<String, Map<String, Object>> propertiesMap =
-      Collections.synchronizedMap(new TreeMap<String, Map<String, Object>>());
+  private volatile Map<String, Map<String, Object>> propertiesMap;
 
   // ----- Constructors ------------------------------------------------------
 
@@ -52,6 +87,7 @@ public class ResourceImpl implements Resource {
    */
   public ResourceImpl(Type type) {
     this.type = type;
+    this.schema = ResourcePropertySchema.getSchema(type);
   }
 
   /**
@@ -71,7 +107,11 @@ public class ResourceImpl implements Resource {
    * @param propertyIds the set of requested property and category ids
    */
   public ResourceImpl(Resource resource, Set<String> propertyIds) {
-    this.type = resource.getType();
+    this(resource.getType());
+
+    if (resource instanceof ResourceImpl && ((ResourceImpl) resource).copySlotsTo(this, propertyIds)) {
+      return;
+    }
 
     for (Map.Entry<String, Map<String, Object>> categoryEntry :
         resource.getPropertiesMap().entrySet()) {
@@ -99,41 +139,100 @@ public class ResourceImpl implements Resource {
 
   @Override
   public Map<String, Map<String, Object>> getPropertiesMap() {
-    return propertiesMap;
+    Map<String, Map<String, Object>> map = propertiesMap;
+    return map != null ? map : inflate();
   }
 
   @Override
   public void setProperty(String id, Object value) {
-    String categoryKey = getCategoryKey(PropertyHelper.getPropertyCategory(id));
+    Map<String, Map<String, Object>> map = propertiesMap;
+    if (map != null) {
+      setProperty(map, getCategoryKey(PropertyHelper.getPropertyCategory(id)),
+          PropertyHelper.getPropertyName(id), value);
+      return;
+    }
 
-    Map<String, Object> properties = propertiesMap.get(categoryKey);
-    if (properties == null) {
-      properties = Collections.synchronizedMap(new TreeMap<String, Object>());
-      propertiesMap.put(categoryKey, properties);
+    ResourcePropertySchema.Slot slot = schema.getSlot(id);
+    if (slot == null) {
+      if (unslottedProperties == null) {
+        unslottedProperties = new HashMap<>();
+      }
+      setProperty(unslottedProperties, getCategoryKey(PropertyHelper.getPropertyCategory(id)),
+          PropertyHelper.getPropertyName(id), value);
+      return;
     }
-    properties.put(PropertyHelper.getPropertyName(id), value);
+
+    if (values == null) {
+      values = new Object[slot.index + 1];
+    } else if (values.length <= slot.index) {
+      values = Arrays.copyOf(values, Math.max(slot.index + 1, Math.min(values.length * 2, schema.size())));
+    }
+    values[slot.index] = value == null ? NULL_VALUE : value;
   }
 
   @Override
   public void addCategory(String id) {
     String categoryKey = getCategoryKey(id);
 
-    if (!propertiesMap.containsKey(categoryKey)) {
-      propertiesMap.put(categoryKey, new HashMap<>());
+    Map<String, Map<String, Object>> map = propertiesMap;
+    if (map != null) {
+      if (!map.containsKey(categoryKey)) {
+        map.put(categoryKey, new HashMap<>());
+      }
+      return;
     }
+
+    if (categories == null) {
+      categories = new HashSet<>();
+    }
+    categories.add(categoryKey);
   }
 
   @Override
   public Object getPropertyValue(String id) {
+    Map<String, Map<String, Object>> map = propertiesMap;
+    if (map == null) {
+      ResourcePropertySchema.Slot slot = schema.getSlot(id);
+      if (slot != null) {
+        return values == null || values.length <= slot.index ? null : unmask(values[slot.index]);
+      }
+      map = unslottedProperties;
+      if (map == null) {
+        return null;
+      }
+    }
     String categoryKey = getCategoryKey(PropertyHelper.getPropertyCategory(id));
 
-    Map<String, Object> properties = propertiesMap.get(categoryKey);
+    Map<String, Object> properties = map.get(categoryKey);
 
     return properties == null ?
         null : properties.get(PropertyHelper.getPropertyName(id));
   }
 
 
+  /**
+   * Get the value of the property with the given slot of the resource type.
+   *
+   * @param slot  the property slot
+   *
+   * @return the property value; null if the property is not set
+   */
+  Object getPropertyValue(ResourcePropertySchema.Slot slot) {
+    Map<String, Map<String, Object>> map = propertiesMap;
+    if (map == null) {
+      if (!schema.hasSlot(slot)) {
+        // the resource was created before the property ids of its type were declared
+        return getPropertyValue(slot.propertyId);
+      }
+      Object[] slotValues = values;
+      return slotValues == null || slotValues.length <= slot.index ? null : unmask(slotValues[slot.index]);
+    }
+    Map<String, Object> properties = map.get(slot.category);
+
+    return properties == null ? null : properties.get(slot.name);
+  }
+
+
   // ----- Object overrides --------------------------------------------------
 
   @Override
@@ -142,7 +241,7 @@ public class ResourceImpl implements Resource {
 
     sb.append("Resource : ").append(type).append("\n");
     sb.append("Properties:\n");
-    sb.append(propertiesMap);
+    sb.append(propertiesMap != null ? propertiesMap : buildPropertiesMap());
 
     return sb.toString();
   }
@@ -154,13 +253,52 @@ public class ResourceImpl implements Resource {
 
     ResourceImpl resource = (ResourceImpl) o;
 
-    return type == resource.type &&
-        !(propertiesMap != null ? !propertiesMap.equals(resource.propertiesMap) : resource.propertiesMap != null);
+    if (type != resource.type) {
+      return false;
+    }
+    if (schema == resource.schema && propertiesMap == null && resource.propertiesMap == null &&
+        categories == null && resource.categories == null) {
+      return slotValuesEqual(values, resource.values) &&
+          Objects.equals(getUnslottedProperties(), resource.getUnslottedProperties());
+    }
+    Map<String, Map<String, Object>> map = propertiesMap != null ? propertiesMap : buildPropertiesMap();
+    Map<String, Map<String, Object>> otherMap = resource.propertiesMap != null ?
+        resource.propertiesMap : resource.buildPropertiesMap();
+    return map.equals(otherMap);
   }
 
   @Override
   public int hashCode() {
-    return 31 * type.hashCode() + (propertiesMap != null ? propertiesMap.hashCode() : 0);
+    Map<String, Map<String, Object>> map = propertiesMap;
+    if (map != null) {
+      return 31 * type.hashCode() + map.hashCode();
+    }
+
+    // same as the hash code of the map of property maps, without building it
+    Map<String, Integer> categoryHashCodes = new HashMap<>();
+    if (categories != null) {
+      for (String category : categories) {
+        categoryHashCodes.put(category, 0);
+      }
+    }
+    if (values != null) {
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] != null) {
+          ResourcePropertySchema.Slot slot = schema.getSlot(i);
+          categoryHashCodes.merge(slot.category, slot.name.hashCode() ^ Objects.hashCode(unmask(values[i])), Integer::sum);
+        }
+      }
+    }
+    if (unslottedProperties != null) {
+      for (Map.Entry<String, Map<String, Object>> categoryEntry : unslottedProperties.entrySet()) {
+        categoryHashCodes.merge(categoryEntry.getKey(), categoryEntry.getValue().hashCode(), Integer::sum);
+      }
+    }
+    int hashCode = 0;
+    for (Map.Entry<String, Integer> categoryEntry : categoryHashCodes.entrySet()) {
+      hashCode += categoryEntry.getKey().hashCode() ^ categoryEntry.getValue();
+    }
+    return 31 * type.hashCode() + hashCode;
   }
 
   // ----- utility methods ---------------------------------------------------
@@ -168,4 +306,120 @@ public class ResourceImpl implements Resource {
   private String getCategoryKey(String category) {
     return category == null ? "" : category;
   }
+
+  private static void setProperty(Map<String, Map<String, Object>> map, String categoryKey, String name, Object value) {
+    Map<String, Object> properties = map.get(categoryKey);
+    if (properties == null) {
+      properties = Collections.synchronizedMap(new TreeMap<String, Object>());
+      map.put(categoryKey, properties);
+    }
+    properties.put(name, value);
+  }
+
+  private static Object unmask(Object value) {
+    return value == NULL_VALUE ? null : value;
+  }
+
+  private Map<String, Map<String, Object>> getUnslottedProperties() {
+    return unslottedProperties == null ? Collections.emptyMap() : unslottedProperties;
+  }
+
+  private static boolean slotValuesEqual(Object[] values, Object[] otherValues) {
+    int length = Math.max(values == null ? 0 : values.length, otherValues == null ? 0 : otherValues.length);
+    for (int i = 0; i < length; i++) {
+      Object value = values == null || values.length <= i ? null : values[i];
+      Object otherValue = otherValues == null || otherValues.length <= i ? null : otherValues[i];
+      if (!Objects.equals(value, otherValue)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Build the map of property maps from the property slots.
+   *
+   * @return the map of property maps keyed by property category
+   */
+  private Map<String, Map<String, Object>> buildPropertiesMap() {
+    Map<String, Map<String, Object>> map = Collections.synchronizedMap(new TreeMap<String, Map<String, Object>>());
+    if (categories != null) {
+      for (String category : categories) {
+        map.put(category, new HashMap<>());
+      }
+    }
+    if (values != null) {
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] != null) {
+          ResourcePropertySchema.Slot slot = schema.getSlot(i);
+          setProperty(map, slot.category, slot.name, unmask(values[i]));
+        }
+      }
+    }
+    if (unslottedProperties != null) {
+      for (Map.Entry<String, Map<String, Object>> categoryEntry : unslottedProperties.entrySet()) {
+        for (Map.Entry<String, Object> propertyEntry : categoryEntry.getValue().entrySet()) {
+          setProperty(map, categoryEntry.getKey(), propertyEntry.getKey(), propertyEntry.getValue());
+        }
+      }
+    }
+    return map;
+  }
+
+  /**
+   * Build the map of property maps, which holds the properties from now on.
+   *
+   * @return the map of property maps keyed by property category
+   */
+  private synchronized Map<String, Map<String, Object>> inflate() {
+    if (propertiesMap == null) {
+      propertiesMap = buildPropertiesMap();
+      values = null;
+      unslottedProperties = null;
+      categories = null;
+    }
+    return propertiesMap;
+  }
+
+  /**
+   * Copy the property slots of this resource to a new resource of the same type.
+   *
+   * @param resource    the resource to copy to
+   * @param propertyIds the set of requested property and category ids
+   *
+   * @return false if the properties of this resource are kept in the map of
+   *         property maps and were not copied
+   */
+  private boolean copySlotsTo(ResourceImpl resource, Set<String> propertyIds) {
+    if (propertiesMap != null) {
+      return false;
+    }
+    boolean copyAll = propertyIds == null || propertyIds.isEmpty();
+    Object[] slotValues = values;
+    if (slotValues != null) {
+      if (copyAll && resource.schema == schema) {
+        resource.values = slotValues.clone();
+      } else {
+        for (int i = 0; i < slotValues.length; i++) {
+          if (slotValues[i] != null) {
+            ResourcePropertySchema.Slot slot = schema.getSlot(i);
+            if (copyAll || PropertyHelper.containsProperty(propertyIds, slot.propertyId)) {
+              resource.setProperty(slot.propertyId, unmask(slotValues[i]));
+            }
+          }
+        }
+      }
+    }
+    if (unslottedProperties != null) {
+      for (Map.Entry<String, Map<String, Object>> categoryEntry : unslottedProperties.entrySet()) {
+        for (Map.Entry<String, Object> propertyEntry : categoryEntry.getValue().entrySet()) {
+          String propertyId = PropertyHelper.getPropertyId(categoryEntry.getKey(), propertyEntry.getKey());
+          if (copyAll || PropertyHelper.containsProperty(propertyIds, propertyId)) {
+            resource.setProperty(propertyId, propertyEntry.getValue());
+          }
+        }
+      }
+    }
+    return true;
+  }
 }
@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.controller.internal;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ambari.server.controller.spi.Resource;
+import org.apache.ambari.server.controller.utilities.PropertyHelper;
+
+/**
+ * Assigns dense slot numbers to the property ids declared for a resource type
+ * (see {@link PropertyHelper#getPropertyIds(Resource.Type)}), so that
+ * {@link ResourceImpl} can keep their values in an array. The category and
+ * name of each declared property id are computed once, when the schema is
+ * built.
+ * <p/>
+ * The slots of a type are fixed once its schema is built. Property ids which
+ * are not declared (e.g. configuration properties) have no slot and are kept
+ * in a map by the resources. A type whose property ids are not declared yet
+ * gets an empty schema, which is not kept, so that its slots are assigned
+ * once its resource provider has declared them.
+ * <p/>
+ * Lookups don't lock. Misses are remembered up to {@link #MAX_CACHED_MISSES}
+ * property ids per type, so that dynamic property ids can't grow the schema
+ * without limit.
+ */
+final class ResourcePropertySchema {
+
+  /**
+   * The schema of the resource types without declared property ids.
+   */
+  private static final ResourcePropertySchema EMPTY = new ResourcePropertySchema(Collections.emptySet());
+
+  /**
+   * The maximum number of undeclared property ids remembered by a schema.
+   */
+  static final int MAX_CACHED_MISSES = 1024;
+
+  /**
+   * Marks the property ids which are not declared for the resource type.
+   */
+  private static final Slot NO_SLOT = new Slot(-1, "", "");
+
+  private static final ConcurrentMap<Resource.Type, ResourcePropertySchema> SCHEMAS = new ConcurrentHashMap<>();
+
+  /**
+   * The slots keyed by property id. Ids with the same category and name share a slot.
+   * Undeclared property ids map to {@link #NO_SLOT}.
+   */
+  private final ConcurrentMap<String, Slot> slotsByPropertyId = new ConcurrentHashMap<>();
+
+  /**
+   * The number of undeclared property ids in {@link #slotsByPropertyId}.
+   */
+  private final AtomicInteger cachedMisses = new AtomicInteger();
+
+  /**
+   * The slots keyed by category and name.
+   */
+  private final Map<String, Slot> slotsByPath = new HashMap<>();
+
+  /**
+   * The slots by slot number.
+   */
+  private final Slot[] slots;
+
+  // ----- Constructors ------------------------------------------------------
+
+  /**
+   * Create a schema with a slot for each of the given property ids.
+   *
+   * @param propertyIds the declared property ids
+   */
+  private ResourcePropertySchema(Set<String> propertyIds) {
+    for (String propertyId : propertyIds) {
+      String category = PropertyHelper.getPropertyCategory(propertyId);
+      String categoryKey = category == null ? "" : category;
+      String name = PropertyHelper.getPropertyName(propertyId);
+
+      Slot slot = slotsByPath.computeIfAbsent(getPath(categoryKey, name),
+          path -> new Slot(slotsByPath.size(), categoryKey, name));
+      slotsByPropertyId.put(propertyId, slot);
+    }
+
+    slots = new Slot[slotsByPath.size()];
+    for (Slot slot : slotsByPath.values()) {
+      slots[slot.index] = slot;
+    }
+  }
+
+  // ----- ResourcePropertySchema --------------------------------------------
+
+  /**
+   * Get the schema of the given resource type.
+   *
+   * @param type the resource type
+   *
+   * @return the schema of the resource type; an empty schema if the type has
+   *         no declared property ids yet
+   */
+  static ResourcePropertySchema getSchema(Resource.Type type) {
+    ResourcePropertySchema schema = SCHEMAS.get(type);
+    if (schema == null) {
+      Set<String> propertyIds = PropertyHelper.getPropertyIds(type);
+      if (propertyIds.isEmpty()) {
+        return EMPTY;
+      }
+      schema = SCHEMAS.computeIfAbsent(type, t -> new ResourcePropertySchema(propertyIds));
+    }
+    return schema;
+  }
+
+  /**
+   * Get the slot of the given property id.
+   *
+   * @param propertyId the property id
+   *
+   * @return the slot; null if the property id is not declared for the resource type
+   */
+  Slot getSlot(String propertyId) {
+    Slot slot = slotsByPropertyId.get(propertyId);
+    if (slot != null) {
+      return slot == NO_SLOT ? null : slot;
+    }
+    if (slots.length == 0) {
+      return null;
+    }
+
+    // another spelling of a declared category and name
+    String category = PropertyHelper.getPropertyCategory(propertyId);
+    slot = slotsByPath.get(getPath(category == null ? "" : category, PropertyHelper.getPropertyName(propertyId)));
+    if (slot != null) {
+      slotsByPropertyId.putIfAbsent(propertyId, slot);
+    } else if (cachedMisses.get() < MAX_CACHED_MISSES
+        && slotsByPropertyId.putIfAbsent(propertyId, NO_SLOT) == null) {
+      cachedMisses.incrementAndGet();
+    }
+    return slot;
+  }
+
+  /**
+   * Get the slot with the given slot number.
+   *
+   * @param index the slot number
+   *
+   * @return the slot
+   */
+  Slot getSlot(int index) {
+    return slots[index];
+  }
+
+  /**
+   * Determine whether the given slot belongs to this schema.
+   *
+   * @param slot the slot
+   *
+   * @return true if the slot is one of the slots of this schema
+   */
+  boolean hasSlot(Slot slot) {
+    return slot.index < slots.length && slots[slot.index] == slot;
+  }
+
+  /**
+   * Get the number of slots.
+   *
+   * @return the number of slots
+   */
+  int size() {
+    return slots.length;
+  }
+
+  private static String getPath(String categoryKey, String name) {
+    return categoryKey + '\0' + name;
+  }
+
+  // ----- Slot --------------------------------------------------------------
+
+  /**
+   * A property id of a resource type with its slot number.
+   */
+  static final class Slot {
+    final int index;
+    final String category;
+    final String name;
+    final String propertyId;
+
+    private Slot(int index, String category, String name) {
+      this.index = index;
+      this.category = category;
+      this.name = name;
+      this.propertyId = PropertyHelper.getPropertyId(category, name);
+    }
+  }
+}
@@ -44,6 +44,7 @@ import org.apache.ambari.server.controller.MaintenanceStateHelper;
 import org.apache.ambari.server.controller.RequestStatusResponse;
 import org.apache.ambari.server.controller.ServiceRequest;
 import org.apache.ambari.server.controller.ServiceResponse;
+import org.apache.ambari.server.controller.spi.BatchableResourceProvider;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
 import org.apache.ambari.server.controller.spi.Predicate;
@@ -90,7 +91,8 @@ import com.google.inject.assistedinject.AssistedInject;
 /**
  * Resource provider for service resources.
  */
-public class ServiceResourceProvider extends AbstractControllerResourceProvider {
+public class ServiceResourceProvider extends AbstractControllerResourceProvider
+    implements BatchableResourceProvider {
 
   private static final Logger LOG = LoggerFactory.getLogger(ServiceResourceProvider.class);
 
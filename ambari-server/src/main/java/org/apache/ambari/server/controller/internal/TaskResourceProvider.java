@@ -28,6 +28,7 @@ import java.util.Set;
 import org.apache.ambari.server.StaticallyInject;
 import org.apache.ambari.server.actionmanager.HostRoleCommand;
 import org.apache.ambari.server.actionmanager.HostRoleCommandFactory;
+import org.apache.ambari.server.actionmanager.HostRoleCommandOutputs;
 import org.apache.ambari.server.controller.AmbariManagementController;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
@@ -136,6 +137,12 @@ public class TaskResourceProvider extends AbstractControllerResourceProvider {
   @Inject
   private static HostRoleCommandFactory s_hostRoleCommandFactory;
 
+  /**
+   * Used for reading the outputs of the tasks, which are not loaded with them.
+   */
+  @Inject
+  private static HostRoleCommandOutputs s_hostRoleCommandOutputs;
+
   @Inject
   protected static TopologyManager s_topologyManager;
 
@@ -194,6 +201,9 @@ public class TaskResourceProvider extends AbstractControllerResourceProvider {
       for (HostRoleCommandEntity entity : entities) {
         commands.add(s_hostRoleCommandFactory.createExisting(entity));
       }
+
+      // read the outputs of the tasks of a request together, if requested
+      s_hostRoleCommandOutputs.release(commands);
     } else {
       // if query has no results, look up in TopologyManager as the request might be a TopologyLogicalRequest
       // which is not directly linked to tasks
@@ -221,11 +231,17 @@ public class TaskResourceProvider extends AbstractControllerResourceProvider {
       setResourceProperty(resource, TASK_COMMAND_PROPERTY_ID, hostRoleCommand.getRoleCommand(), requestedIds);
       setResourceProperty(resource, TASK_STATUS_PROPERTY_ID, hostRoleCommand.getStatus(), requestedIds);
       setResourceProperty(resource, TASK_EXIT_CODE_PROPERTY_ID, hostRoleCommand.getExitCode(), requestedIds);
-      setResourceProperty(resource, TASK_STDERR_PROPERTY_ID, hostRoleCommand.getStderr(), requestedIds);
-      setResourceProperty(resource, TASK_STOUT_PROPERTY_ID, hostRoleCommand.getStdout(), requestedIds);
+      if (isPropertyRequested(TASK_STDERR_PROPERTY_ID, requestedIds)) {
+        setResourceProperty(resource, TASK_STDERR_PROPERTY_ID, hostRoleCommand.getStderr(), requestedIds);
+      }
+      if (isPropertyRequested(TASK_STOUT_PROPERTY_ID, requestedIds)) {
+        setResourceProperty(resource, TASK_STOUT_PROPERTY_ID, hostRoleCommand.getStdout(), requestedIds);
+      }
       setResourceProperty(resource, TASK_OUTPUTLOG_PROPERTY_ID, hostRoleCommand.getOutputLog(), requestedIds);
       setResourceProperty(resource, TASK_ERRORLOG_PROPERTY_ID, hostRoleCommand.getErrorLog(), requestedIds);
-      setResourceProperty(resource, TASK_STRUCT_OUT_PROPERTY_ID, parseStructuredOutput(hostRoleCommand.getStructuredOut()), requestedIds);
+      if (isPropertyRequested(TASK_STRUCT_OUT_PROPERTY_ID, requestedIds)) {
+        setResourceProperty(resource, TASK_STRUCT_OUT_PROPERTY_ID, parseStructuredOutput(hostRoleCommand.getStructuredOut()), requestedIds);
+      }
       setResourceProperty(resource, TASK_START_TIME_PROPERTY_ID, hostRoleCommand.getStartTime(), requestedIds);
       setResourceProperty(resource, TASK_END_TIME_PROPERTY_ID, hostRoleCommand.getEndTime(), requestedIds);
       setResourceProperty(resource, TASK_ATTEMPT_CNT_PROPERTY_ID, hostRoleCommand.getAttemptCount(), requestedIds);
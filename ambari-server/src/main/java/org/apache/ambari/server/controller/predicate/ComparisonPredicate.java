@@ -27,6 +27,11 @@ import org.apache.ambari.server.controller.spi.Resource;
  * Predicate that compares a given value to a {@link Resource} property.
  */
 public abstract class ComparisonPredicate<T> extends PropertyPredicate implements BasePredicate {
+  /**
+   * Number formats are not thread safe and expensive to create, so one is kept per thread.
+   */
+  private static final ThreadLocal<NumberFormat> NUMBER_FORMAT = ThreadLocal.withInitial(NumberFormat::getInstance);
+
   private final Comparable<T> value;
   private final String stringValue;
   private final Double doubleValue;
@@ -53,6 +58,20 @@ public abstract class ComparisonPredicate<T> extends PropertyPredicate implement
     return value;
   }
 
+  @Override
+  public boolean evaluate(Resource resource) {
+    return evaluateValue(resource.getPropertyValue(getPropertyId()));
+  }
+
+  /**
+   * Evaluate the predicate for the given value of its property.
+   *
+   * @param propertyValue  the property value; may be null
+   *
+   * @return true if the predicate evaluates to true for the property value
+   */
+  public abstract boolean evaluateValue(Object propertyValue);
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -115,7 +134,7 @@ public abstract class ComparisonPredicate<T> extends PropertyPredicate implement
     }
 
     ParsePosition parsePosition = new ParsePosition(0);
-    NumberFormat  numberFormat  = NumberFormat.getInstance();
+    NumberFormat  numberFormat  = NUMBER_FORMAT.get();
     Number        parsedNumber  = numberFormat.parse(stringValue, parsePosition);
 
     return parsePosition.getIndex() == stringValue.length() ? parsedNumber.doubleValue() : null;
@@ -40,8 +40,7 @@ public class LessPredicate<T> extends ComparisonPredicate<T> {
   }
 
   @Override
-  public boolean evaluate(Resource resource) {
-    Object propertyValue = resource.getPropertyValue(getPropertyId());
+  public boolean evaluateValue(Object propertyValue) {
     return propertyValue != null && compareValueTo(propertyValue) > 0;
   }
 
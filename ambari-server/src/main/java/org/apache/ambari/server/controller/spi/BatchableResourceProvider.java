@@ -0,0 +1,31 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.spi;
+
+/**
+ * Marks a resource provider that can get the sub-resources of several parent
+ * resources with a single call.  The query then ORs the key property predicates
+ * of the parent resources and joins the returned resources back to the parents
+ * by their key property values.
+ * <p/>
+ * Only mark a provider whose getResources handles OR predicates: it must get
+ * a request for each property map of the predicate, must not fail when one of
+ * the requests finds no resources, and must not amend the query predicates.
+ */
+public interface BatchableResourceProvider {
+}
@@ -19,38 +19,83 @@
 package org.apache.ambari.server.events.publishers;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.events.STOMPEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.eventbus.EventBus;
 
+/**
+ * Buffers update events of a single {@link STOMPEvent.Type} and periodically
+ * posts them merged. Events are buffered by entity (see
+ * {@link #getBufferKey(Object)}), so that a newer event about an entity
+ * already in the buffer is merged into the buffered one in place instead of
+ * growing the buffer. The buffer is flushed every flush interval, or earlier
+ * once it holds the maximum number of entities configured for the type. All
+ * publishers are flushed by the scheduler shared through the
+ * {@link STOMPUpdatePublisher}.
+ */
 public abstract class BufferedUpdateEventPublisher<T> {
+  private static final Logger LOG = LoggerFactory.getLogger(BufferedUpdateEventPublisher.class);
 
-  private static final long TIMEOUT = 1000L;
-  private final ConcurrentLinkedQueue<T> buffer = new ConcurrentLinkedQueue<>();
+  /**
+   * Buffered events by entity, in the order the entities were first buffered.
+   */
+  private final Map<Object, T> buffer = new LinkedHashMap<>();
 
-  public abstract STOMPEvent.Type getType();
+  /**
+   * Prevents two flushes of this publisher from running concurrently.
+   */
+  private final Object flushLock = new Object();
+
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+  private final AtomicBoolean earlyFlushRequested = new AtomicBoolean();
 
-  private ScheduledExecutorService scheduledExecutorService;
+  private final ScheduledExecutorService scheduledExecutorService;
 
-  public BufferedUpdateEventPublisher(STOMPUpdatePublisher stompUpdatePublisher) {
+  private final long flushInterval;
+
+  private final int maxBufferSize;
+
+  public abstract STOMPEvent.Type getType();
+
+  public BufferedUpdateEventPublisher(STOMPUpdatePublisher stompUpdatePublisher, Configuration configuration) {
+    scheduledExecutorService = stompUpdatePublisher.getBufferFlushExecutor();
+    flushInterval = configuration.getStompBufferFlushInterval(getType().name());
+    maxBufferSize = configuration.getStompBufferMaxSize(getType().name());
     stompUpdatePublisher.registerPublisher(this);
   }
 
   public void publish(T event, EventBus m_eventBus) {
-    if (scheduledExecutorService == null) {
-      scheduledExecutorService =
-          Executors.newScheduledThreadPool(1);
+    if (flushScheduled.compareAndSet(false, true)) {
       scheduledExecutorService
-          .scheduleWithFixedDelay(getScheduledPublisher(m_eventBus), TIMEOUT, TIMEOUT, TimeUnit.MILLISECONDS);
+          .scheduleWithFixedDelay(getScheduledPublisher(m_eventBus), flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    boolean bufferFull;
+    synchronized (buffer) {
+      for (T part : splitEvent(event)) {
+        Object key = getBufferKey(part);
+        T buffered = buffer.get(key);
+        buffer.put(key, buffered == null ? part : mergeEvents(buffered, part));
+      }
+      bufferFull = buffer.size() >= maxBufferSize;
+    }
+
+    if (bufferFull && earlyFlushRequested.compareAndSet(false, true)) {
+      scheduledExecutorService.execute(getScheduledPublisher(m_eventBus));
     }
-    buffer.add(event);
   }
 
   protected MergingRunnable getScheduledPublisher(EventBus m_eventBus) {
@@ -58,11 +103,50 @@ public abstract class BufferedUpdateEventPublisher<T> {
   }
 
   protected List<T> retrieveBuffer() {
-    List<T> bufferContent = new ArrayList<>();
-    while (!buffer.isEmpty()) {
-      bufferContent.add(buffer.poll());
+    synchronized (buffer) {
+      List<T> bufferContent = new ArrayList<>(buffer.values());
+      buffer.clear();
+      return bufferContent;
     }
-    return bufferContent;
+  }
+
+  /**
+   * Splits an event into the parts which are buffered independently, one per
+   * entity. By default events are not split.
+   *
+   * @param event
+   *          the published event
+   * @return the parts of the event
+   */
+  protected List<T> splitEvent(T event) {
+    return Collections.singletonList(event);
+  }
+
+  /**
+   * Identifies the entity an event (or a part of it) is about. Events with the
+   * same key are merged in the buffer. By default events are merged when they
+   * are equal.
+   *
+   * @param event
+   *          the event to buffer
+   * @return the key of the entity
+   */
+  protected Object getBufferKey(T event) {
+    return event;
+  }
+
+  /**
+   * Merges a newly published event into the event buffered for the same
+   * entity. By default the newer event replaces the buffered one.
+   *
+   * @param buffered
+   *          the event already buffered
+   * @param event
+   *          the newer event
+   * @return the event to keep in the buffer
+   */
+  protected T mergeEvents(T buffered, T event) {
+    return event;
   }
 
   public abstract void mergeBufferAndPost(List<T> events, EventBus m_eventBus);
@@ -77,11 +161,20 @@ public abstract class BufferedUpdateEventPublisher<T> {
 
     @Override
     public final void run() {
-      List<T> events = retrieveBuffer();
-      if (events.isEmpty()) {
-        return;
+      synchronized (flushLock) {
+        earlyFlushRequested.set(false);
+        List<T> events = retrieveBuffer();
+        if (events.isEmpty()) {
+          return;
+        }
+
+        // an exception would cancel the periodic flush of this publisher
+        try {
+          mergeBufferAndPost(events, m_eventBus);
+        } catch (RuntimeException e) {
+          LOG.error("Unable to post {} buffered events of type {}", events.size(), getType(), e);
+        }
       }
-      mergeBufferAndPost(events, m_eventBus);
     }
   }
 
@@ -18,10 +18,13 @@
 
 package org.apache.ambari.server.events.publishers;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import org.apache.ambari.server.EagerSingleton;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.events.HostComponentUpdate;
 import org.apache.ambari.server.events.HostComponentsUpdateEvent;
 import org.apache.ambari.server.events.STOMPEvent;
@@ -33,8 +36,8 @@ import com.google.inject.Inject;
 public class HostComponentUpdateEventPublisher extends BufferedUpdateEventPublisher<HostComponentsUpdateEvent> {
 
   @Inject
-  public HostComponentUpdateEventPublisher(STOMPUpdatePublisher stompUpdatePublisher) {
-    super(stompUpdatePublisher);
+  public HostComponentUpdateEventPublisher(STOMPUpdatePublisher stompUpdatePublisher, Configuration configuration) {
+    super(stompUpdatePublisher, configuration);
   }
 
   @Override
@@ -42,6 +45,51 @@ public class HostComponentUpdateEventPublisher extends BufferedUpdateEventPublis
     return STOMPEvent.Type.HOSTCOMPONENT;
   }
 
+  /**
+   * Buffers every host component update on its own so that updates of the
+   * same host component are merged.
+   */
+  @Override
+  protected List<HostComponentsUpdateEvent> splitEvent(HostComponentsUpdateEvent event) {
+    if (event.getHostComponentUpdates().size() == 1) {
+      return Collections.singletonList(event);
+    }
+    return event.getHostComponentUpdates().stream().map(
+        u -> new HostComponentsUpdateEvent(Collections.singletonList(u))).collect(Collectors.toList());
+  }
+
+  @Override
+  protected Object getBufferKey(HostComponentsUpdateEvent event) {
+    HostComponentUpdate update = event.getHostComponentUpdates().get(0);
+    return Arrays.asList(update.getClusterId(), update.getServiceName(), update.getHostName(),
+        update.getComponentName());
+  }
+
+  /**
+   * Applies the fields set by the newer update to the buffered one. When both
+   * report a state transition, the buffered previous state is kept so that the
+   * merged update describes the whole transition.
+   */
+  @Override
+  protected HostComponentsUpdateEvent mergeEvents(HostComponentsUpdateEvent buffered,
+                                                  HostComponentsUpdateEvent event) {
+    HostComponentUpdate bufferedUpdate = buffered.getHostComponentUpdates().get(0);
+    HostComponentUpdate update = event.getHostComponentUpdates().get(0);
+    if (update.getCurrentState() != null) {
+      if (bufferedUpdate.getCurrentState() == null) {
+        bufferedUpdate.setPreviousState(update.getPreviousState());
+      }
+      bufferedUpdate.setCurrentState(update.getCurrentState());
+    }
+    if (update.getMaintenanceState() != null) {
+      bufferedUpdate.setMaintenanceState(update.getMaintenanceState());
+    }
+    if (update.getStaleConfigs() != null) {
+      bufferedUpdate.setStaleConfigs(update.getStaleConfigs());
+    }
+    return buffered;
+  }
+
   @Override
   public void mergeBufferAndPost(List<HostComponentsUpdateEvent> events, EventBus m_eventBus) {
     List<HostComponentUpdate> hostComponentUpdates = events.stream().flatMap(
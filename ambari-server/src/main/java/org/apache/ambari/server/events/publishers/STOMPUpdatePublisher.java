@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.apache.ambari.server.AmbariRuntimeException;
 import org.apache.ambari.server.events.DefaultMessageEmitter;
@@ -45,6 +46,12 @@ public class STOMPUpdatePublisher {
   private final ExecutorService threadPoolExecutorAPI = Executors.newSingleThreadExecutor(
       new ThreadFactoryBuilder().setNameFormat("stomp-api-bus-%d").build());
 
+  /**
+   * Flushes the buffers of all registered {@link BufferedUpdateEventPublisher}s.
+   */
+  private final ScheduledExecutorService bufferFlushExecutor = Executors.newScheduledThreadPool(2,
+      new ThreadFactoryBuilder().setNameFormat("stomp-buffer-flush-%d").build());
+
   public STOMPUpdatePublisher() throws NoSuchFieldException, IllegalAccessException {
     agentEventBus = new AsyncEventBus("agent-update-bus",
         threadPoolExecutorAgent);
@@ -63,6 +70,13 @@ public class STOMPUpdatePublisher {
     }
   }
 
+  /**
+   * @return the scheduler shared by all buffered publishers to flush their buffers.
+   */
+  public ScheduledExecutorService getBufferFlushExecutor() {
+    return bufferFlushExecutor;
+  }
+
   public void publish(STOMPEvent event) {
     if (DefaultMessageEmitter.DEFAULT_AGENT_EVENT_TYPES.contains(event.getType())) {
       publishAgent(event);
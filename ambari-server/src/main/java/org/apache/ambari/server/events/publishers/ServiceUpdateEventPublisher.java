@@ -18,12 +18,12 @@
 
 package org.apache.ambari.server.events.publishers;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.ambari.server.EagerSingleton;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.utilities.ServiceCalculatedStateFactory;
 import org.apache.ambari.server.controller.utilities.state.ServiceCalculatedState;
 import org.apache.ambari.server.events.STOMPEvent;
@@ -38,8 +38,8 @@ public class ServiceUpdateEventPublisher extends BufferedUpdateEventPublisher<Se
   private Map<String, Map<String, State>> states = new HashMap<>();
 
   @Inject
-  public ServiceUpdateEventPublisher(STOMPUpdatePublisher stompUpdatePublisher) {
-    super(stompUpdatePublisher);
+  public ServiceUpdateEventPublisher(STOMPUpdatePublisher stompUpdatePublisher, Configuration configuration) {
+    super(stompUpdatePublisher, configuration);
   }
 
 
@@ -48,23 +48,24 @@ public class ServiceUpdateEventPublisher extends BufferedUpdateEventPublisher<Se
     return STOMPEvent.Type.SERVICE;
   }
 
+  /**
+   * Service update events are equal when they are about the same service, so
+   * the default buffer key merges them by service.
+   */
   @Override
-  public void mergeBufferAndPost(List<ServiceUpdateEvent> events, EventBus eventBus) {
-    List<ServiceUpdateEvent> filtered = new ArrayList<>();
-    for (ServiceUpdateEvent event : events) {
-      int pos = filtered.indexOf(event);
-      if (pos != -1) {
-        if (event.isStateChanged()) {
-          filtered.get(pos).setStateChanged(true);
-        }
-        if (event.getMaintenanceState() != null) {
-          filtered.get(pos).setMaintenanceState(event.getMaintenanceState());
-        }
-      } else {
-        filtered.add(event);
-      }
+  protected ServiceUpdateEvent mergeEvents(ServiceUpdateEvent buffered, ServiceUpdateEvent event) {
+    if (event.isStateChanged()) {
+      buffered.setStateChanged(true);
+    }
+    if (event.getMaintenanceState() != null) {
+      buffered.setMaintenanceState(event.getMaintenanceState());
     }
-    for (ServiceUpdateEvent serviceUpdateEvent : filtered) {
+    return buffered;
+  }
+
+  @Override
+  public void mergeBufferAndPost(List<ServiceUpdateEvent> events, EventBus eventBus) {
+    for (ServiceUpdateEvent serviceUpdateEvent : events) {
       // calc state
       if (serviceUpdateEvent.isStateChanged()) {
         ServiceCalculatedState serviceCalculatedState =
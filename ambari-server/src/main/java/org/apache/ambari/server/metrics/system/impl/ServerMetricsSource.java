@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.metrics.system.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.metrics.system.MetricsSink;
+import org.apache.ambari.server.metrics.system.SingleMetric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+/**
+ * {@link ServerMetricsSource} publishes metrics of internal server components (action scheduler,
+ * agent reports processing, caches, etc.) to the Metrics Sink. Components register their
+ * counters, histograms and timers in the shared {@link #registry}, which is always available,
+ * so instrumentation does not depend on whether this source is configured.
+ */
+public class ServerMetricsSource extends AbstractMetricsSource {
+  private static final Logger LOG = LoggerFactory.getLogger(ServerMetricsSource.class);
+
+  /**
+   * Registry shared by all instrumented server components.
+   */
+  public static final MetricRegistry registry = new MetricRegistry();
+
+  private static final String SERVER_PREFIX = "server";
+  private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+  private int interval = 60;
+
+  @Override
+  public void init(MetricsConfiguration configuration, MetricsSink sink) {
+    super.init(configuration, sink);
+    interval = Integer.parseInt(configuration.getProperty("interval", "60"));
+    LOG.info("Initialized Server Metrics source...");
+  }
+
+  @Override
+  public void start() {
+    try {
+      executor.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            LOG.debug("Publishing server metrics to sink");
+            sink.publish(getMetrics());
+          } catch (Exception e) {
+            LOG.debug("Error in publishing server metrics to sink.", e);
+          }
+        }
+      }, interval, interval, TimeUnit.SECONDS);
+      LOG.info("Started Server Metrics source...");
+    } catch (Exception e) {
+      LOG.info("Throwing exception when starting metric source", e);
+    }
+  }
+
+  /**
+   * Converts the content of the registry to a list of metrics. Histograms and timers are
+   * reported as mean, 95th percentile and max of their current snapshot; timer values are
+   * in milliseconds.
+   *
+   * @return the metrics to publish
+   */
+  public List<SingleMetric> getMetrics() {
+    List<SingleMetric> metrics = new ArrayList<>();
+    long now = System.currentTimeMillis();
+
+    for (Map.Entry<String, Gauge> gauge : registry.getGauges().entrySet()) {
+      Object value = gauge.getValue().getValue();
+      if (value instanceof Number) {
+        metrics.add(new SingleMetric(metricName(gauge.getKey()), ((Number) value).doubleValue(), now));
+      }
+    }
+
+    for (Map.Entry<String, Counter> counter : registry.getCounters().entrySet()) {
+      metrics.add(new SingleMetric(metricName(counter.getKey()), counter.getValue().getCount(), now));
+    }
+
+    for (Map.Entry<String, Meter> meter : registry.getMeters().entrySet()) {
+      metrics.add(new SingleMetric(metricName(meter.getKey()) + ".count", meter.getValue().getCount(), now));
+      metrics.add(new SingleMetric(metricName(meter.getKey()) + ".rate", meter.getValue().getOneMinuteRate(), now));
+    }
+
+    for (Map.Entry<String, Histogram> histogram : registry.getHistograms().entrySet()) {
+      addSnapshot(metrics, metricName(histogram.getKey()), histogram.getValue().getSnapshot(), 1, now);
+    }
+
+    for (Map.Entry<String, Timer> timer : registry.getTimers().entrySet()) {
+      metrics.add(new SingleMetric(metricName(timer.getKey()) + ".count", timer.getValue().getCount(), now));
+      addSnapshot(metrics, metricName(timer.getKey()), timer.getValue().getSnapshot(), NANOS_PER_MILLI, now);
+    }
+
+    return metrics;
+  }
+
+  private void addSnapshot(List<SingleMetric> metrics, String name, Snapshot snapshot, double divisor, long now) {
+    metrics.add(new SingleMetric(name + ".avg", snapshot.getMean() / divisor, now));
+    metrics.add(new SingleMetric(name + ".p95", snapshot.get95thPercentile() / divisor, now));
+    metrics.add(new SingleMetric(name + ".max", snapshot.getMax() / divisor, now));
+  }
+
+  private String metricName(String name) {
+    return SERVER_PREFIX + "." + name;
+  }
+}
@@ -20,8 +20,10 @@ package org.apache.ambari.server.orm;
 
 import java.lang.reflect.Method;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 
@@ -77,6 +79,13 @@ public class AmbariJpaLocalTxnInterceptor implements MethodInterceptor {
     }
   };
 
+  /**
+   * The callbacks to run when the transaction begun by the outer-most
+   * interceptor of the thread completes; not set if this thread has no such
+   * transaction.
+   */
+  private static final ThreadLocal<List<CompletionCallback>> s_completionCallbacks = new ThreadLocal<>();
+
   /**
    * Used to ensure that methods which rely on the completion of
    * {@link Transactional} can detect when they are able to run.
@@ -122,6 +131,7 @@ public class AmbariJpaLocalTxnInterceptor implements MethodInterceptor {
       // this is the outer-most transactional, begin a transaction
       final EntityTransaction txn = em.getTransaction();
       txn.begin();
+      s_completionCallbacks.set(new ArrayList<>());
 
       Object result;
       try {
@@ -129,8 +139,14 @@ public class AmbariJpaLocalTxnInterceptor implements MethodInterceptor {
 
       } catch (Exception e) {
         // commit transaction only if rollback didn't occur
-        if (rollbackIfNecessary(transactional, e, txn)) {
-          txn.commit();
+        boolean committed = false;
+        try {
+          if (rollbackIfNecessary(transactional, e, txn)) {
+            txn.commit();
+            committed = true;
+          }
+        } finally {
+          runCompletionCallbacks(committed);
         }
 
         detailedLogForPersistenceError(e);
@@ -149,12 +165,16 @@ public class AmbariJpaLocalTxnInterceptor implements MethodInterceptor {
       // everything was normal so commit the txn (do not move into try block
       // above as it
       // interferes with the advised method's throwing semantics)
+      boolean committed = false;
       try {
         txn.commit();
+        committed = true;
       } catch (Exception e) {
         detailedLogForPersistenceError(e);
         throw e;
       } finally {
+        runCompletionCallbacks(committed);
+
         // close the em if necessary
         if (null != didWeStartWork.get()) {
           didWeStartWork.remove();
@@ -165,11 +185,57 @@ public class AmbariJpaLocalTxnInterceptor implements MethodInterceptor {
       // or return result
       return result;
     } finally {
+      // the transaction did not complete normally if its callbacks are still there
+      runCompletionCallbacks(false);
+
       // unlock all lock areas for this transaction
       unlockTransaction();
     }
   }
 
+  /**
+   * Registers a callback to run when the current transaction completes,
+   * before the {@link TransactionalLock}s of the transaction are released.
+   * Callbacks are only supported for transactions begun by this interceptor.
+   *
+   * @param callback
+   *          the callback to run
+   * @return {@code true} if the callback was registered, {@code false} if the
+   *         thread has no transaction begun by this interceptor
+   */
+  public static boolean registerCompletionCallback(CompletionCallback callback) {
+    List<CompletionCallback> callbacks = s_completionCallbacks.get();
+    if (null == callbacks) {
+      return false;
+    }
+
+    callbacks.add(callback);
+    return true;
+  }
+
+  /**
+   * Runs, in registration order, the callbacks of the transaction which has
+   * just completed, if they have not been run yet.
+   *
+   * @param committed
+   *          whether the transaction was committed
+   */
+  private static void runCompletionCallbacks(boolean committed) {
+    List<CompletionCallback> callbacks = s_completionCallbacks.get();
+    if (null == callbacks) {
+      return;
+    }
+
+    s_completionCallbacks.remove();
+    for (CompletionCallback callback : callbacks) {
+      try {
+        callback.afterCompletion(committed);
+      } catch (RuntimeException e) {
+        LOG.error("Unable to run transaction completion callback", e);
+      }
+    }
+  }
+
   private void detailedLogForPersistenceError(Exception e) {
     if (e instanceof PersistenceException) {
       PersistenceException rbe = (PersistenceException) e;
@@ -331,4 +397,19 @@ public class AmbariJpaLocalTxnInterceptor implements MethodInterceptor {
   @Transactional
   private static class Internal {
   }
+
+  /**
+   * A callback run when a transaction completes.
+   *
+   * @see AmbariJpaLocalTxnInterceptor#registerCompletionCallback(CompletionCallback)
+   */
+  public interface CompletionCallback {
+
+    /**
+     * @param committed
+     *          {@code true} if the transaction was committed, {@code false} if
+     *          it was rolled back
+     */
+    void afterCompletion(boolean committed);
+  }
 }
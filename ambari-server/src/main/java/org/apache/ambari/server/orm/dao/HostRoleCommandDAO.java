@@ -23,7 +23,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -56,6 +55,7 @@ import org.apache.ambari.server.controller.utilities.PredicateHelper;
 import org.apache.ambari.server.events.TaskCreateEvent;
 import org.apache.ambari.server.events.TaskUpdateEvent;
 import org.apache.ambari.server.events.publishers.TaskEventPublisher;
+import org.apache.ambari.server.orm.AmbariJpaLocalTxnInterceptor;
 import org.apache.ambari.server.orm.RequiresSession;
 import org.apache.ambari.server.orm.TransactionalLocks;
 import org.apache.ambari.server.orm.entities.HostEntity;
@@ -106,6 +106,12 @@ public class HostRoleCommandDAO {
       " GROUP BY hrc.requestId, hrc.stageId HAVING hrc.requestId = :requestId",
       HostRoleCommandStatusSummaryDTO.class.getName());
 
+  /**
+   * JPQL to get the status and times of every task of a request, used to
+   * populate a {@link RequestStatusSummary}.
+   */
+  private static final String TASK_STATUSES_BY_REQUEST_SQL = "SELECT hrc.taskId, hrc.stageId, hrc.status, hrc.startTime, hrc.endTime, hrc.stage.skippable FROM HostRoleCommandEntity hrc WHERE hrc.requestId = :requestId";
+
   /**
    * SQL template to get requests that have at least one task in any of the
    * specified statuses.
@@ -119,10 +125,18 @@ public class HostRoleCommandDAO {
   private static final String COMPLETED_REQUESTS_SQL = "SELECT DISTINCT task.requestId FROM HostRoleCommandEntity task WHERE task.requestId NOT IN (SELECT task.requestId FROM HostRoleCommandEntity task WHERE task.status IN :notCompletedStatuses) ORDER BY task.requestId {0}";
 
   /**
-   * A cache that holds {@link HostRoleCommandStatusSummaryDTO} grouped by stage
-   * id for requests by request id. The JPQL computing the host role command
-   * status summary for a request is rather expensive thus this cache helps
-   * reducing the load on the database.
+   * A cache that holds the {@link RequestStatusSummary} of requests by request
+   * id. The JPQL computing the host role command status summary for a request
+   * is rather expensive thus this cache helps reducing the load on the
+   * database.
+   * <p/>
+   * Once cached, the summary of a request is kept up to date as the status of
+   * its tasks is merged instead of being invalidated, so that progress reads
+   * of a running request do not have to reload it. Creating or removing tasks
+   * still invalidates the entry. The merged statuses are only applied to the
+   * summary once the transaction which merged them commits, while the
+   * {@link LockArea#HRC_STATUS_CACHE} lock is still held, so that a rolled back
+   * transaction leaves the summary untouched.
    * <p/>
    * Methods which interact with this cache, including invalidation and
    * population, should use the {@link TransactionalLock} annotation along with
@@ -138,7 +152,7 @@ public class HostRoleCommandDAO {
    * last invalidation would not invalidate anything since the cache was empty
    * at the time.
    */
-  private final Cache<Long, Map<Long, HostRoleCommandStatusSummaryDTO>> hrcStatusSummaryCache;
+  private final Cache<Long, RequestStatusSummary> hrcStatusSummaryCache;
 
   /**
    * Specifies whether caching for {@link HostRoleCommandStatusSummaryDTO} grouped by stage id for requests
@@ -218,18 +232,71 @@ public class HostRoleCommandDAO {
     }
 
     if (hostRoleCommandEntity != null) {
-      Long requestId = hostRoleCommandEntity.getRequestId();
-      if (requestId == null) {
-        StageEntity stageEntity = hostRoleCommandEntity.getStage();
-        if (stageEntity != null) {
-          requestId = stageEntity.getRequestId();
+      Long requestId = getRequestId(hostRoleCommandEntity);
+      if (requestId != null) {
+        invalidateHostRoleCommandStatusSummaryCache(requestId.longValue());
+      }
+    }
+  }
+
+  /**
+   * Applies the status of the passed
+   * {@link org.apache.ambari.server.orm.entities.HostRoleCommandEntity} to the
+   * cached summary of its request, if any, once the current transaction
+   * commits. The entry is invalidated if the task is not part of the cached
+   * summary, or right away if there is no transaction to wait for.
+   *
+   * @param hostRoleCommandEntity
+   */
+  protected void updateHostRoleCommandStatusSummaryCache(
+      HostRoleCommandEntity hostRoleCommandEntity) {
+    if (!hostRoleCommandStatusSummaryCacheEnabled || hostRoleCommandEntity == null) {
+      return;
+    }
+
+    Long requestId = getRequestId(hostRoleCommandEntity);
+    if (requestId == null) {
+      return;
+    }
+
+    final Long taskId = hostRoleCommandEntity.getTaskId();
+    if (null == taskId) {
+      invalidateHostRoleCommandStatusSummaryCache(requestId);
+      return;
+    }
+
+    // the entity may change again before the transaction commits
+    final HostRoleStatus status = hostRoleCommandEntity.getStatus();
+    final Long startTime = hostRoleCommandEntity.getStartTime();
+    final Long endTime = hostRoleCommandEntity.getEndTime();
+
+    boolean registered = AmbariJpaLocalTxnInterceptor.registerCompletionCallback(committed -> {
+      if (committed) {
+        RequestStatusSummary summary = hrcStatusSummaryCache.getIfPresent(requestId);
+        if (null != summary && !summary.updateTask(taskId, status, startTime, endTime)) {
+          invalidateHostRoleCommandStatusSummaryCache(requestId);
         }
       }
+    });
 
-      if (requestId != null) {
-        invalidateHostRoleCommandStatusSummaryCache(requestId.longValue());
+    if (!registered) {
+      invalidateHostRoleCommandStatusSummaryCache(requestId);
+    }
+  }
+
+  /**
+   * Gets the request of a task, falling back to the request of its stage.
+   */
+  private static Long getRequestId(HostRoleCommandEntity hostRoleCommandEntity) {
+    Long requestId = hostRoleCommandEntity.getRequestId();
+    if (requestId == null) {
+      StageEntity stageEntity = hostRoleCommandEntity.getStage();
+      if (stageEntity != null) {
+        requestId = stageEntity.getRequestId();
       }
     }
+
+    return requestId;
   }
 
   /**
@@ -267,6 +334,31 @@ public class HostRoleCommandDAO {
     return map;
   }
 
+  /**
+   * Loads the status of every task of a request into a new
+   * {@link RequestStatusSummary}.
+   *
+   * @param requestId
+   *          the request id
+   * @return the summary of the request
+   */
+  @RequiresSession
+  private RequestStatusSummary loadStatusSummary(Long requestId) {
+    TypedQuery<Object[]> query = entityManagerProvider.get().createQuery(
+        TASK_STATUSES_BY_REQUEST_SQL, Object[].class);
+    query.setParameter("requestId", requestId);
+
+    RequestStatusSummary summary = new RequestStatusSummary();
+    for (Object[] row : daoUtils.selectList(query)) {
+      Number skippable = (Number) row[5];
+      summary.addTask(((Number) row[0]).longValue(), ((Number) row[1]).longValue(),
+          (HostRoleStatus) row[2], (Long) row[3], (Long) row[4],
+          null != skippable && 1 == skippable.intValue());
+    }
+
+    return summary;
+  }
+
   @Inject
   public HostRoleCommandDAO(
       @Named(HRC_STATUS_SUMMARY_CACHE_ENABLED) boolean hostRoleCommandStatusSummaryCacheEnabled,
@@ -312,6 +404,62 @@ public class HostRoleCommandDAO {
     return daoUtils.selectList(query, taskIds);
   }
 
+  /**
+   * Finds a single output of tasks, such as their stdout, without loading the
+   * rest of the tasks.
+   *
+   * @param taskIds
+   *          the ids of the tasks
+   * @param output
+   *          the output to find, one of {@link HostRoleCommandEntity_#stdOut},
+   *          {@link HostRoleCommandEntity_#stdError} or
+   *          {@link HostRoleCommandEntity_#structuredOut}
+   * @return the output of each task found, by task id
+   */
+  @RequiresSession
+  public Map<Long, byte[]> findOutputs(Collection<Long> taskIds,
+      SingularAttribute<HostRoleCommandEntity, byte[]> output) {
+    return findOutputs(taskIds, output, null);
+  }
+
+  /**
+   * Finds a single output of the tasks in the given statuses, such as their
+   * stdout, without loading the rest of the tasks.
+   *
+   * @param taskIds
+   *          the ids of the tasks
+   * @param output
+   *          the output to find, one of {@link HostRoleCommandEntity_#stdOut},
+   *          {@link HostRoleCommandEntity_#stdError} or
+   *          {@link HostRoleCommandEntity_#structuredOut}
+   * @param statuses
+   *          the statuses of the tasks to find, or {@code null} for any status
+   * @return the output of each task found, by task id
+   */
+  @RequiresSession
+  public Map<Long, byte[]> findOutputs(Collection<Long> taskIds,
+      SingularAttribute<HostRoleCommandEntity, byte[]> output, Collection<HostRoleStatus> statuses) {
+    if (taskIds == null || taskIds.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    String jpql = "SELECT task.taskId, task." + output.getName() + " FROM HostRoleCommandEntity task WHERE task.taskId IN ?1";
+    if (null != statuses) {
+      jpql += " AND task.status IN ?2";
+    }
+    TypedQuery<Object[]> query = entityManagerProvider.get().createQuery(jpql, Object[].class);
+
+    Map<Long, byte[]> outputs = new HashMap<>(taskIds.size());
+    for (List<Long> list : Lists.partition(new ArrayList<>(taskIds), configuration.getTaskIdListLimit())) {
+      List<Object[]> rows = null != statuses ? daoUtils.selectList(query, list, statuses) : daoUtils.selectList(query, list);
+      for (Object[] row : rows) {
+        outputs.put((Long) row[0], (byte[]) row[1]);
+      }
+    }
+
+    return outputs;
+  }
+
   @RequiresSession
   public List<HostRoleCommandEntity> findByHostId(Long hostId) {
     TypedQuery<HostRoleCommandEntity> query = entityManagerProvider.get().createNamedQuery(
@@ -667,7 +815,7 @@ public class HostRoleCommandDAO {
   public HostRoleCommandEntity mergeWithoutPublishEvent(HostRoleCommandEntity entity) {
     EntityManager entityManager = entityManagerProvider.get();
     entity = entityManager.merge(entity);
-    invalidateHostRoleCommandStatusSummaryCache(entity);
+    updateHostRoleCommandStatusSummaryCache(entity);
     return entity;
   }
 
@@ -682,25 +830,18 @@ public class HostRoleCommandDAO {
   @Transactional
   @TransactionalLock(lockArea = LockArea.HRC_STATUS_CACHE, lockType = LockType.WRITE)
   public List<HostRoleCommandEntity> mergeAll(Collection<HostRoleCommandEntity> entities) {
-    Set<Long> requestsToInvalidate = new LinkedHashSet<>();
     List<HostRoleCommandEntity> managedList = new ArrayList<>(entities.size());
     for (HostRoleCommandEntity entity : entities) {
       EntityManager entityManager = entityManagerProvider.get();
       entity = entityManager.merge(entity);
       managedList.add(entity);
+    }
 
-      Long requestId = entity.getRequestId();
-      if (requestId == null) {
-        StageEntity stageEntity = entity.getStage();
-        if (stageEntity != null) {
-          requestId = stageEntity.getRequestId();
-        }
-      }
-
-      requestsToInvalidate.add(requestId);
+    // only update the summaries once every task was merged
+    for (HostRoleCommandEntity entity : managedList) {
+      updateHostRoleCommandStatusSummaryCache(entity);
     }
 
-    invalidateHostRoleCommandStatusSummaryCache(requestsToInvalidate);
     publishTaskUpdateEvent(getHostRoleCommands(entities));
     return managedList;
   }
@@ -776,9 +917,9 @@ public class HostRoleCommandDAO {
       return loadAggregateCounts(requestId);
     }
 
-    Map<Long, HostRoleCommandStatusSummaryDTO> map = hrcStatusSummaryCache.getIfPresent(requestId);
-    if (null != map) {
-      return map;
+    RequestStatusSummary summary = hrcStatusSummaryCache.getIfPresent(requestId);
+    if (null != summary) {
+      return summary.getSummaries();
     }
 
     // ensure that we wait for any running transactions working on this cache to
@@ -787,10 +928,10 @@ public class HostRoleCommandDAO {
     lock.readLock().lock();
 
     try {
-      map = loadAggregateCounts(requestId);
-      hrcStatusSummaryCache.put(requestId, map);
+      summary = loadStatusSummary(requestId);
+      hrcStatusSummaryCache.put(requestId, summary);
 
-      return map;
+      return summary.getSummaries();
     } finally {
       lock.readLock().unlock();
     }
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.orm.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ambari.server.actionmanager.HostRoleStatus;
+
+/**
+ * The {@link RequestStatusSummary} holds the per-stage task counters of a
+ * single request, which are otherwise computed by grouping all of the
+ * request's host role commands in the database. It is loaded once from the
+ * tasks of the request and then kept up to date as the status of the tasks
+ * is written, so that reading the summaries of a request only costs as much
+ * as the number of its stages.
+ * <p/>
+ * The summary of a stage is only rebuilt when one of its tasks changed since
+ * it was last read.
+ */
+class RequestStatusSummary {
+
+  private static final HostRoleStatus[] STATUSES = HostRoleStatus.values();
+
+  /**
+   * The tasks of the request by task id.
+   */
+  private final Map<Long, TaskStatus> tasks = new HashMap<>();
+
+  /**
+   * The counters of the request by stage id.
+   */
+  private final Map<Long, StageCounters> stages = new HashMap<>();
+
+  /**
+   * Adds a task of the request.
+   *
+   * @param taskId
+   *          the id of the task
+   * @param stageId
+   *          the id of the stage of the task
+   * @param status
+   *          the status of the task
+   * @param startTime
+   *          the start time of the task, or {@code null}
+   * @param endTime
+   *          the end time of the task, or {@code null}
+   * @param skippable
+   *          whether the stage of the task is skippable
+   */
+  synchronized void addTask(long taskId, long stageId, HostRoleStatus status, Long startTime,
+      Long endTime, boolean skippable) {
+    StageCounters stage = stages.get(stageId);
+    if (null == stage) {
+      stage = new StageCounters(stageId);
+      stages.put(stageId, stage);
+    }
+
+    stage.skippable |= skippable;
+
+    TaskStatus task = tasks.get(taskId);
+    if (null != task) {
+      update(task, status, startTime, endTime);
+      return;
+    }
+
+    task = new TaskStatus(stage, status, startTime, endTime);
+    tasks.put(taskId, task);
+    stage.tasks.add(task);
+    stage.counts[status.ordinal()]++;
+    stage.summary = null;
+  }
+
+  /**
+   * Updates a task of the request.
+   *
+   * @param taskId
+   *          the id of the task
+   * @param status
+   *          the new status of the task
+   * @param startTime
+   *          the new start time of the task, or {@code null}
+   * @param endTime
+   *          the new end time of the task, or {@code null}
+   * @return {@code false} if the task is not part of this summary, in which
+   *         case it is no longer accurate
+   */
+  synchronized boolean updateTask(long taskId, HostRoleStatus status, Long startTime, Long endTime) {
+    TaskStatus task = tasks.get(taskId);
+    if (null == task) {
+      return false;
+    }
+
+    update(task, status, startTime, endTime);
+    return true;
+  }
+
+  /**
+   * Gets the summaries of the stages of the request.
+   *
+   * @return the map of stage-to-summary objects
+   */
+  synchronized Map<Long, HostRoleCommandStatusSummaryDTO> getSummaries() {
+    Map<Long, HostRoleCommandStatusSummaryDTO> summaries = new HashMap<>(stages.size());
+    for (StageCounters stage : stages.values()) {
+      if (null == stage.summary) {
+        stage.summary = stage.toSummary();
+      }
+
+      summaries.put(stage.stageId, stage.summary);
+    }
+
+    return Collections.unmodifiableMap(summaries);
+  }
+
+  private void update(TaskStatus task, HostRoleStatus status, Long startTime, Long endTime) {
+    if (task.status == status && equal(task.startTime, startTime) && equal(task.endTime, endTime)) {
+      return;
+    }
+
+    StageCounters stage = task.stage;
+    stage.counts[task.status.ordinal()]--;
+    stage.counts[status.ordinal()]++;
+    stage.summary = null;
+
+    task.status = status;
+    task.startTime = startTime;
+    task.endTime = endTime;
+  }
+
+  private static boolean equal(Long left, Long right) {
+    return null == left ? null == right : left.equals(right);
+  }
+
+  /**
+   * The last known status and times of a task.
+   */
+  private static final class TaskStatus {
+    private final StageCounters stage;
+    private HostRoleStatus status;
+    private Long startTime;
+    private Long endTime;
+
+    private TaskStatus(StageCounters stage, HostRoleStatus status, Long startTime, Long endTime) {
+      this.stage = stage;
+      this.status = status;
+      this.startTime = startTime;
+      this.endTime = endTime;
+    }
+  }
+
+  /**
+   * The task counts by status of a stage, along with its last built summary.
+   */
+  private static final class StageCounters {
+    private final long stageId;
+    private final int[] counts = new int[STATUSES.length];
+    private final List<TaskStatus> tasks = new ArrayList<>();
+    private boolean skippable;
+
+    /**
+     * The summary built from the counters, or {@code null} if a task changed
+     * since it was built.
+     */
+    private HostRoleCommandStatusSummaryDTO summary;
+
+    private StageCounters(long stageId) {
+      this.stageId = stageId;
+    }
+
+    /**
+     * Builds the summary of the stage. The minimum start and maximum end
+     * times are computed the way the database aggregates them, ignoring
+     * unknown times.
+     */
+    private HostRoleCommandStatusSummaryDTO toSummary() {
+      Long minStartTime = null;
+      Long maxEndTime = null;
+      for (TaskStatus task : tasks) {
+        if (null != task.startTime && (null == minStartTime || task.startTime < minStartTime)) {
+          minStartTime = task.startTime;
+        }
+        if (null != task.endTime && (null == maxEndTime || task.endTime > maxEndTime)) {
+          maxEndTime = task.endTime;
+        }
+      }
+
+      return new HostRoleCommandStatusSummaryDTO(
+          skippable ? 1 : 0,
+          minStartTime,
+          maxEndTime,
+          stageId,
+          count(HostRoleStatus.ABORTED),
+          count(HostRoleStatus.COMPLETED),
+          count(HostRoleStatus.FAILED),
+          count(HostRoleStatus.HOLDING),
+          count(HostRoleStatus.HOLDING_FAILED),
+          count(HostRoleStatus.HOLDING_TIMEDOUT),
+          count(HostRoleStatus.IN_PROGRESS),
+          count(HostRoleStatus.PENDING),
+          count(HostRoleStatus.QUEUED),
+          count(HostRoleStatus.TIMEDOUT),
+          count(HostRoleStatus.SKIPPED_FAILED));
+    }
+
+    private Integer count(HostRoleStatus status) {
+      return counts[status.ordinal()];
+    }
+  }
+}
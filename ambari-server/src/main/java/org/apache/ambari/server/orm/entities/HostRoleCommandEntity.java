@@ -151,12 +151,12 @@ public class HostRoleCommandEntity {
 
   @Column(name = "std_error")
   @Lob
-  @Basic
+  @Basic(fetch = FetchType.LAZY)
   private byte[] stdError = new byte[0];
 
   @Column(name = "std_out")
   @Lob
-  @Basic
+  @Basic(fetch = FetchType.LAZY)
   private byte[] stdOut = new byte[0];
 
   @Column(name = "output_log")
@@ -170,7 +170,7 @@ public class HostRoleCommandEntity {
 
   @Column(name = "structured_out")
   @Lob
-  @Basic
+  @Basic(fetch = FetchType.LAZY)
   private byte[] structuredOut = new byte[0];
 
   @Basic
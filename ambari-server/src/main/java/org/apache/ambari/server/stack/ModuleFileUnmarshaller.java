@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBContext;
@@ -59,10 +60,15 @@ public class ModuleFileUnmarshaller {
   private static final Logger LOG = LoggerFactory.getLogger(ModuleFileUnmarshaller.class);
 
   /**
-   * Map of class to JAXB context
+   * Map of class to JAXB context, populated once when the class is loaded
    */
   private static final Map<Class<?>, JAXBContext> jaxbContexts = new HashMap<>();
-  private static final Map<String, Schema> jaxbSchemas = new HashMap<>();
+
+  /**
+   * Map of XSD name to schema, populated as the schemas are first used. Stack
+   * definitions are parsed concurrently, so this needs to be thread safe.
+   */
+  private static final Map<String, Schema> jaxbSchemas = new ConcurrentHashMap<>();
 
 
   /**
@@ -23,11 +23,17 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 import javax.xml.XMLConstants;
@@ -57,6 +63,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 
@@ -87,6 +94,12 @@ public class StackManager {
 
   public static final String METAINFO_FILE_NAME = "metainfo.xml";
 
+  /**
+   * Maximum number of stack, extension and common service definition
+   * directories which are parsed concurrently.
+   */
+  private static final int PARSE_THREAD_COUNT = Math.min(8, Runtime.getRuntime().availableProcessors());
+
   /**
    * Provides access to non-stack server functionality
    */
@@ -188,11 +201,70 @@ public class StackManager {
     populateDB(stackDao, extensionDao);
   }
 
+  /**
+   * Parses the stack, common service and extension definitions. Every version
+   * of a stack, common service or extension is parsed independently of the
+   * others (resolution only happens once all of them are parsed), so the
+   * version directories are parsed concurrently on a bounded pool. The modules
+   * are registered in the order of the directories, as they would be by a
+   * sequential parse.
+   */
   protected void parseDirectories(File stackRoot, File commonServicesRoot, File extensionRoot) throws AmbariException {
-    commonServiceModules = parseCommonServicesDirectory(commonServicesRoot);
-    stackModules = parseStackDirectory(stackRoot);
-    LOG.info("About to parse extension directories");
-    extensionModules = parseExtensionDirectory(extensionRoot);
+    ExecutorService executor = createParseExecutor();
+    try {
+      commonServiceModules = parseCommonServicesDirectory(commonServicesRoot, executor);
+      stackModules = parseStackDirectory(stackRoot, executor);
+      LOG.info("About to parse extension directories");
+      extensionModules = parseExtensionDirectory(extensionRoot, executor);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Creates the executor which parses the definition directories. It is shut
+   * down once they are parsed.
+   *
+   * @return the executor to parse the definitions on
+   */
+  protected ExecutorService createParseExecutor() {
+    return Executors.newFixedThreadPool(PARSE_THREAD_COUNT,
+        new ThreadFactoryBuilder().setNameFormat("stack-parser-%d").setDaemon(true).build());
+  }
+
+  /**
+   * Runs the parse tasks on the executor and waits for all of them.
+   *
+   * @param tasks     the parse tasks
+   * @param executor  the executor to run the tasks on
+   * @return the results of the tasks, in the order of the tasks
+   * @throws AmbariException if a task failed with an {@link AmbariException}
+   *                         or the parse was interrupted
+   */
+  private static <T> List<T> parseConcurrently(List<Callable<T>> tasks, ExecutorService executor)
+      throws AmbariException {
+    List<T> results = new ArrayList<>(tasks.size());
+    try {
+      for (Future<T> future : executor.invokeAll(tasks)) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AmbariException("Interrupted while parsing stack definitions", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof AmbariException) {
+        throw (AmbariException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new AmbariException("Unable to parse stack definitions", cause);
+    }
+    return results;
   }
 
   private void populateDB(StackDAO stackDao, ExtensionDAO extensionDao) throws AmbariException {
@@ -557,38 +629,63 @@ public class StackManager {
    * Parse the specified common services root directory
    *
    * @param commonServicesRoot  the common services root directory to parse
+   * @param executor            the executor to parse the common services on
    * @return map of common service id which contains name and version to common service module.
    * @throws AmbariException if unable to parse all common services
    */
-  private Map<String, ServiceModule> parseCommonServicesDirectory(File commonServicesRoot) throws AmbariException {
+  private Map<String, ServiceModule> parseCommonServicesDirectory(File commonServicesRoot, ExecutorService executor)
+      throws AmbariException {
     Map<String, ServiceModule> commonServiceModules = new HashMap<>();
 
     if(commonServicesRoot != null && commonServicesRoot.exists()) {
+      List<Callable<Map<String, ServiceModule>>> tasks = new ArrayList<>();
       File[] commonServiceFiles = commonServicesRoot.listFiles(StackDirectory.FILENAME_FILTER);
       for (File commonService : commonServiceFiles) {
         if (commonService.isFile()) {
           continue;
         }
-        for (File serviceFolder : commonService.listFiles(StackDirectory.FILENAME_FILTER)) {
-          ServiceDirectory serviceDirectory = new CommonServiceDirectory(serviceFolder.getPath());
-          ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
-          if (metaInfoXml != null) {
-            if (metaInfoXml.isValid()) {
-              for (ServiceInfo serviceInfo : metaInfoXml.getServices()) {
-                ServiceModule serviceModule = new ServiceModule(stackContext, serviceInfo, serviceDirectory, true);
-
-                String commonServiceKey = serviceInfo.getName() + StackManager.PATH_DELIMITER + serviceInfo.getVersion();
-                commonServiceModules.put(commonServiceKey, serviceModule);
-              }
-            } else {
-              ServiceModule serviceModule = new ServiceModule(stackContext, new ServiceInfo(), serviceDirectory, true);
-              serviceModule.setValid(false);
-              serviceModule.addErrors(metaInfoXml.getErrors());
-              commonServiceModules.put(metaInfoXml.getSchemaVersion(), serviceModule);
-              metaInfoXml.setSchemaVersion(null);
+        for (final File serviceFolder : commonService.listFiles(StackDirectory.FILENAME_FILTER)) {
+          tasks.add(new Callable<Map<String, ServiceModule>>() {
+            @Override
+            public Map<String, ServiceModule> call() throws AmbariException {
+              return parseCommonServiceFolder(serviceFolder);
             }
-          }
+          });
+        }
+      }
+
+      for (Map<String, ServiceModule> modules : parseConcurrently(tasks, executor)) {
+        commonServiceModules.putAll(modules);
+      }
+    }
+    return commonServiceModules;
+  }
+
+  /**
+   * Parse a single version directory of a common service.
+   *
+   * @param serviceFolder  the common service version directory
+   * @return map of common service id which contains name and version to common service module
+   * @throws AmbariException if unable to parse the common service
+   */
+  private Map<String, ServiceModule> parseCommonServiceFolder(File serviceFolder) throws AmbariException {
+    Map<String, ServiceModule> commonServiceModules = new LinkedHashMap<>();
+    ServiceDirectory serviceDirectory = new CommonServiceDirectory(serviceFolder.getPath());
+    ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
+    if (metaInfoXml != null) {
+      if (metaInfoXml.isValid()) {
+        for (ServiceInfo serviceInfo : metaInfoXml.getServices()) {
+          ServiceModule serviceModule = new ServiceModule(stackContext, serviceInfo, serviceDirectory, true);
+
+          String commonServiceKey = serviceInfo.getName() + StackManager.PATH_DELIMITER + serviceInfo.getVersion();
+          commonServiceModules.put(commonServiceKey, serviceModule);
         }
+      } else {
+        ServiceModule serviceModule = new ServiceModule(stackContext, new ServiceInfo(), serviceDirectory, true);
+        serviceModule.setValid(false);
+        serviceModule.addErrors(metaInfoXml.getErrors());
+        commonServiceModules.put(metaInfoXml.getSchemaVersion(), serviceModule);
+        metaInfoXml.setSchemaVersion(null);
       }
     }
     return commonServiceModules;
@@ -598,31 +695,46 @@ public class StackManager {
    * Parse the specified stack root directory
    *
    * @param stackRoot  the stack root directory to parse
+   * @param executor   the executor to parse the stacks on
    * @return map of stack id which contains name and version to stack module.
    * @throws AmbariException if unable to parse all stacks
    */
-  private Map<String, StackModule> parseStackDirectory(File stackRoot) throws AmbariException {
+  private Map<String, StackModule> parseStackDirectory(File stackRoot, ExecutorService executor) throws AmbariException {
     Map<String, StackModule> stackModules = new HashMap<>();
 
+    List<File> stackFolders = new ArrayList<>();
+    List<Callable<StackModule>> tasks = new ArrayList<>();
     File[] stackFiles = stackRoot.listFiles(StackDirectory.FILENAME_FILTER);
     for (File stack : stackFiles) {
       if (stack.isFile()) {
         continue;
       }
-      for (File stackFolder : stack.listFiles(StackDirectory.FILENAME_FILTER)) {
+      for (final File stackFolder : stack.listFiles(StackDirectory.FILENAME_FILTER)) {
         if (stackFolder.isFile()) {
           continue;
         }
-        String stackName = stackFolder.getParentFile().getName();
-        String stackVersion = stackFolder.getName();
-
-        StackModule stackModule = new StackModule(new StackDirectory(stackFolder.getPath()), stackContext);
-        String stackKey = stackName + StackManager.PATH_DELIMITER + stackVersion;
-        stackModules.put(stackKey, stackModule);
-        stackMap.put(stackKey, stackModule.getModuleInfo());
+        stackFolders.add(stackFolder);
+        tasks.add(new Callable<StackModule>() {
+          @Override
+          public StackModule call() throws AmbariException {
+            return new StackModule(new StackDirectory(stackFolder.getPath()), stackContext);
+          }
+        });
       }
     }
 
+    List<StackModule> modules = parseConcurrently(tasks, executor);
+    for (int i = 0; i < modules.size(); i++) {
+      File stackFolder = stackFolders.get(i);
+      String stackName = stackFolder.getParentFile().getName();
+      String stackVersion = stackFolder.getName();
+
+      StackModule stackModule = modules.get(i);
+      String stackKey = stackName + StackManager.PATH_DELIMITER + stackVersion;
+      stackModules.put(stackKey, stackModule);
+      stackMap.put(stackKey, stackModule.getModuleInfo());
+    }
+
     if (stackMap.isEmpty()) {
       throw new AmbariException("Unable to find stack definitions under " +
           "stackRoot = " + stackRoot.getAbsolutePath());
@@ -642,34 +754,50 @@ public class StackManager {
    * Parse the specified extension root directory
    *
    * @param extensionRoot  the extension root directory to parse
+   * @param executor       the executor to parse the extensions on
    * @return map of extension id which contains name and version to extension module.
    * @throws AmbariException if unable to parse all extensions
    */
-  private Map<String, ExtensionModule> parseExtensionDirectory(File extensionRoot) throws AmbariException {
+  private Map<String, ExtensionModule> parseExtensionDirectory(File extensionRoot, ExecutorService executor)
+      throws AmbariException {
     Map<String, ExtensionModule> extensionModules = new HashMap<>();
     if (extensionRoot == null || !extensionRoot.exists()) {
       return extensionModules;
     }
 
+    List<File> extensionVersionFolders = new ArrayList<>();
+    List<Callable<ExtensionModule>> tasks = new ArrayList<>();
     File[] extensionFiles = extensionRoot.listFiles(StackDirectory.FILENAME_FILTER);
     for (File extensionNameFolder : extensionFiles) {
       if (extensionNameFolder.isFile()) {
         continue;
       }
-      for (File extensionVersionFolder : extensionNameFolder.listFiles(StackDirectory.FILENAME_FILTER)) {
+      for (final File extensionVersionFolder : extensionNameFolder.listFiles(StackDirectory.FILENAME_FILTER)) {
         if (extensionVersionFolder.isFile()) {
           continue;
         }
-        String extensionName = extensionNameFolder.getName();
-        String extensionVersion = extensionVersionFolder.getName();
-
-        ExtensionModule extensionModule = new ExtensionModule(new ExtensionDirectory(extensionVersionFolder.getPath()), stackContext);
-        String extensionKey = extensionName + StackManager.PATH_DELIMITER + extensionVersion;
-        extensionModules.put(extensionKey, extensionModule);
-        extensionMap.put(extensionKey, extensionModule.getModuleInfo());
+        extensionVersionFolders.add(extensionVersionFolder);
+        tasks.add(new Callable<ExtensionModule>() {
+          @Override
+          public ExtensionModule call() throws AmbariException {
+            return new ExtensionModule(new ExtensionDirectory(extensionVersionFolder.getPath()), stackContext);
+          }
+        });
       }
     }
 
+    List<ExtensionModule> modules = parseConcurrently(tasks, executor);
+    for (int i = 0; i < modules.size(); i++) {
+      File extensionVersionFolder = extensionVersionFolders.get(i);
+      String extensionName = extensionVersionFolder.getParentFile().getName();
+      String extensionVersion = extensionVersionFolder.getName();
+
+      ExtensionModule extensionModule = modules.get(i);
+      String extensionKey = extensionName + StackManager.PATH_DELIMITER + extensionVersion;
+      extensionModules.put(extensionKey, extensionModule);
+      extensionMap.put(extensionKey, extensionModule.getModuleInfo());
+    }
+
     if (stackMap.isEmpty()) {
       throw new AmbariException("Unable to find extension definitions under " +
           "extensionRoot = " + extensionRoot.getAbsolutePath());
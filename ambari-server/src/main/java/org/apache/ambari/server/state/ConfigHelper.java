@@ -31,6 +31,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.ambari.server.AmbariException;
@@ -87,10 +88,19 @@ public class ConfigHelper {
 
   /**
    * Cache for storing stale config flags. Key for cache is hash of [actualConfigs, desiredConfigs, hostName, serviceName,
-   * componentName].
+   * componentName], where only the config types the component depends on are taken into account (see
+   * {@link #getComponentConfigTypes(ServiceInfo, String)}). This way, a change of a config type only invalidates the
+   * entries of the components depending on it.
    */
   private final Cache<Integer, Boolean> staleConfigsCache;
 
+  /**
+   * Index of the config types each component depends on, by service definition and component name. Service
+   * definitions are weakly referenced and compared by identity, so that the entries of a reloaded stack go away.
+   */
+  private final Cache<ServiceInfo, Map<String, Set<String>>> componentConfigTypes = CacheBuilder.newBuilder()
+      .weakKeys().build();
+
   /**
    * clusterId -> hostId -> serviceName -> serviceComponentName -> state map to reduce redundant updates sending.
    */
@@ -1419,14 +1429,18 @@ public class ConfigHelper {
     Map<String, Map<String, String>> desired = getEffectiveDesiredTags(cluster, sch.getHostName(),
             desiredConfigs);
 
+    StackId stackId = sch.getServiceComponent().getDesiredStackId();
+
+    ServiceInfo serviceInfo = ambariMetaInfo.getService(stackId.getStackName(),
+            stackId.getStackVersion(), sch.getServiceName());
+
+    // only the types the component depends on can make it stale
+    Set<String> configTypes = getComponentConfigTypes(serviceInfo, sch.getServiceComponentName());
+
     Boolean stale = null;
     int staleHash = 0;
     if (STALE_CONFIGS_CACHE_ENABLED){
-      staleHash = Objects.hashCode(actual.hashCode(),
-              desired.hashCode(),
-              sch.getHostName(),
-              sch.getServiceComponentName(),
-              sch.getServiceName());
+      staleHash = getStaleConfigsHash(sch, actual, desired, configTypes);
       stale = staleConfigsCache.getIfPresent(staleHash);
       if(stale != null) {
         return stale;
@@ -1435,14 +1449,8 @@ public class ConfigHelper {
 
     stale = false;
 
-    StackId stackId = sch.getServiceComponent().getDesiredStackId();
-
     StackInfo stackInfo = ambariMetaInfo.getStack(stackId);
 
-    ServiceInfo serviceInfo = ambariMetaInfo.getService(stackId.getStackName(),
-            stackId.getStackVersion(), sch.getServiceName());
-
-    ComponentInfo componentInfo = serviceInfo.getComponentByName(sch.getServiceComponentName());
     // Configs are considered stale when:
     // - desired type DOES NOT exist in actual
     // --- desired type DOES NOT exist in stack: not_stale
@@ -1462,9 +1470,13 @@ public class ConfigHelper {
       String type = desiredEntry.getKey();
       Map<String, String> tags = desiredEntry.getValue();
 
+      if (!configTypes.contains(type)) {
+        continue;
+      }
+
       if (!actual.containsKey(type)) {
         // desired is set, but actual is not
-        staleEntry = (serviceInfo.hasConfigDependency(type) || componentInfo.hasConfigType(type));
+        staleEntry = true;
       } else {
         // desired and actual both define the type
         HostConfig hc = actual.get(type);
@@ -1473,11 +1485,9 @@ public class ConfigHelper {
         if (!isTagChanged(tags, actualTags, hasGroupSpecificConfigsForType(cluster, sch.getHostName(), type))) {
           staleEntry = false;
         } else {
-          staleEntry = (serviceInfo.hasConfigDependency(type) || componentInfo.hasConfigType(type));
-          if (staleEntry) {
-            Collection<String> changedKeys = findChangedKeys(cluster, type, tags.values(), actualTags.values());
-            changedProperties.addAll(changedKeys);
-          }
+          staleEntry = true;
+          Collection<String> changedKeys = findChangedKeys(cluster, type, tags.values(), actualTags.values());
+          changedProperties.addAll(changedKeys);
         }
       }
       stale = stale | staleEntry;
@@ -1503,6 +1513,48 @@ public class ConfigHelper {
     return stale;
   }
 
+  /**
+   * Gets the config types the specified component depends on, either directly or through its service. Changes of
+   * other config types can't make the component's configs stale.
+   *
+   * @param serviceInfo
+   *          the definition of the component's service (not {@code null}).
+   * @param componentName
+   *          the component name (not {@code null}).
+   * @return the config types the component depends on, never {@code null}.
+   */
+  Set<String> getComponentConfigTypes(ServiceInfo serviceInfo, String componentName) {
+    Map<String, Set<String>> configTypesByComponent = componentConfigTypes.asMap().computeIfAbsent(serviceInfo,
+        key -> new ConcurrentHashMap<>());
+
+    return configTypesByComponent.computeIfAbsent(componentName, key -> {
+      Set<String> configTypes = new HashSet<>();
+      if (null != serviceInfo.getConfigDependencies()) {
+        configTypes.addAll(serviceInfo.getConfigDependencies());
+      }
+
+      ComponentInfo componentInfo = serviceInfo.getComponentByName(componentName);
+      if (null != componentInfo && null != componentInfo.getConfigDependencies()) {
+        configTypes.addAll(componentInfo.getConfigDependencies());
+      }
+
+      return Collections.unmodifiableSet(configTypes);
+    });
+  }
+
+  /**
+   * Hashes the actual and desired configs of the config types a host component depends on, to key the stale configs
+   * and refresh command caches.
+   */
+  private int getStaleConfigsHash(ServiceComponentHost sch, Map<String, HostConfig> actual,
+                                  Map<String, Map<String, String>> desired, Set<String> configTypes) {
+    return Objects.hashCode(Maps.filterKeys(actual, configTypes::contains).hashCode(),
+        Maps.filterKeys(desired, configTypes::contains).hashCode(),
+        sch.getHostName(),
+        sch.getServiceComponentName(),
+        sch.getServiceName());
+  }
+
   /**
    * Checks populated services for staled configs and updates agent configs.
    * Method retrieves actual agent configs and compares them with just generated to identify stale configs.
@@ -1679,12 +1731,12 @@ public class ConfigHelper {
     ServiceInfo serviceInfo = ambariMetaInfo.getService(stackId.getStackName(),
         stackId.getStackVersion(), sch.getServiceName());
 
-    ComponentInfo componentInfo = serviceInfo.getComponentByName(sch.getServiceComponentName());
+    Set<String> configTypes = getComponentConfigTypes(serviceInfo, sch.getServiceComponentName());
 
     List<String> changedProperties = new LinkedList<>();
     for (Map.Entry<String, Collection<String>> changedConfigType : changedConfigs.entrySet()) {
       String type = changedConfigType.getKey();
-      stale |= (serviceInfo.hasConfigDependency(type) || componentInfo.hasConfigType(type));
+      stale |= configTypes.contains(type);
       if (stale) {
         changedProperties.addAll(changedConfigType.getValue());
       }
@@ -1792,11 +1844,11 @@ public class ConfigHelper {
     if (STALE_CONFIGS_CACHE_ENABLED) {
       Map<String, Map<String, String>> desired = getEffectiveDesiredTags(cluster, sch.getHostName(),
               cluster.getDesiredConfigs());
-      int staleHash = Objects.hashCode(actual.hashCode(),
-              desired.hashCode(),
-              sch.getHostName(),
-              sch.getServiceComponentName(),
-              sch.getServiceName());
+      StackId stackId = sch.getServiceComponent().getDesiredStackId();
+      ServiceInfo serviceInfo = ambariMetaInfo.getService(stackId.getStackName(),
+              stackId.getStackVersion(), sch.getServiceName());
+      int staleHash = getStaleConfigsHash(sch, actual, desired,
+              getComponentConfigTypes(serviceInfo, sch.getServiceComponentName()));
       refreshCommand = refreshConfigCommandCache.getIfPresent(staleHash);
     }
     return refreshCommand;
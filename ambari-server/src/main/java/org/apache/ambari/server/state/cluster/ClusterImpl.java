@@ -189,8 +189,11 @@ public class ClusterImpl implements Cluster {
 
   /**
    * [ Config Type -> [ Config Version Tag -> Config ] ]
+   * <p/>
+   * Replaced as a whole when the configurations are re-cached, so that lookups
+   * never see it partially loaded and don't need to lock.
    */
-  private final ConcurrentMap<String, ConcurrentMap<String, Config>> allConfigs = new ConcurrentHashMap<>();
+  private volatile ConcurrentMap<String, ConcurrentMap<String, Config>> allConfigs = new ConcurrentHashMap<>();
 
   /**
    * [ ServiceName -> [ ServiceComponentName -> [ HostName -> [ ... ] ] ] ]
@@ -214,6 +217,14 @@ public class ClusterImpl implements Cluster {
 
   private final ReadWriteLock clusterGlobalLock;
 
+  /**
+   * Guards the desired configurations and the service config versions of the
+   * cluster. It is kept apart from {@link #clusterGlobalLock} so that saving
+   * configurations doesn't block the processing of host component events. When
+   * both locks are needed, {@link #clusterGlobalLock} must be acquired first.
+   */
+  private final ReadWriteLock clusterConfigLock;
+
   /**
    * The unique ID of the {@link @ClusterEntity}.
    */
@@ -346,6 +357,7 @@ public class ClusterImpl implements Cluster {
     injector.injectMembers(this);
 
     clusterGlobalLock = lockFactory.newReadWriteLock("clusterGlobalLock");
+    clusterConfigLock = lockFactory.newReadWriteLock("clusterConfigLock");
 
     loadStackVersion();
     loadServices();
@@ -684,34 +696,25 @@ public class ClusterImpl implements Cluster {
           + ", clusterId=" + getClusterId());
     }
 
-    if (!serviceComponentHosts.containsKey(serviceName)) {
-      serviceComponentHosts.put(serviceName, new ConcurrentHashMap<>());
-    }
-
-    if (!serviceComponentHosts.get(serviceName).containsKey(componentName)) {
-      serviceComponentHosts.get(serviceName).put(componentName, new ConcurrentHashMap<>());
-    }
+    // the maps are only ever added to atomically, so that components can be
+    // added to different hosts concurrently without taking the global lock
+    ConcurrentMap<String, ServiceComponentHost> componentHosts = serviceComponentHosts
+        .computeIfAbsent(serviceName, name -> new ConcurrentHashMap<>())
+        .computeIfAbsent(componentName, name -> new ConcurrentHashMap<>());
 
-    if (serviceComponentHosts.get(serviceName).get(componentName).containsKey(
-        hostname)) {
+    if (null != componentHosts.putIfAbsent(hostname, svcCompHost)) {
       throw new AmbariException("Duplicate entry for ServiceComponentHost"
           + ", serviceName=" + serviceName + ", serviceComponentName"
           + componentName + ", hostname= " + hostname);
     }
 
-    if (!serviceComponentHostsByHost.containsKey(hostname)) {
-      serviceComponentHostsByHost.put(hostname, new CopyOnWriteArrayList<>());
-    }
-
     if (LOG.isDebugEnabled()) {
       LOG.debug("Adding a new ServiceComponentHost, clusterName={}, clusterId={}, serviceName={}, serviceComponentName{}, hostname= {}",
         getClusterName(), getClusterId(), serviceName, componentName, hostname);
     }
 
-    serviceComponentHosts.get(serviceName).get(componentName).put(hostname,
-      svcCompHost);
-
-    serviceComponentHostsByHost.get(hostname).add(svcCompHost);
+    serviceComponentHostsByHost.computeIfAbsent(hostname, name -> new CopyOnWriteArrayList<>()).add(
+        svcCompHost);
   }
 
   @Override
@@ -1161,30 +1164,22 @@ public class ClusterImpl implements Cluster {
 
   @Override
   public Map<String, Config> getConfigsByType(String configType) {
-    clusterGlobalLock.readLock().lock();
-    try {
-      if (!allConfigs.containsKey(configType)) {
-        return null;
-      }
-
-      return Collections.unmodifiableMap(allConfigs.get(configType));
-    } finally {
-      clusterGlobalLock.readLock().unlock();
+    Map<String, Config> configs = allConfigs.get(configType);
+    if (null == configs) {
+      return null;
     }
+
+    return Collections.unmodifiableMap(configs);
   }
 
   @Override
   public Config getConfig(String configType, String versionTag) {
-    clusterGlobalLock.readLock().lock();
-    try {
-      if (!allConfigs.containsKey(configType)
-          || !allConfigs.get(configType).containsKey(versionTag)) {
-        return null;
-      }
-      return allConfigs.get(configType).get(versionTag);
-    } finally {
-      clusterGlobalLock.readLock().unlock();
+    Map<String, Config> configs = allConfigs.get(configType);
+    if (null == configs) {
+      return null;
     }
+
+    return configs.get(versionTag);
   }
 
   @Override
@@ -1197,22 +1192,18 @@ public class ClusterImpl implements Cluster {
 
   @Override
   public Config getConfigByVersion(String configType, Long configVersion) {
-    clusterGlobalLock.readLock().lock();
-    try {
-      if (!allConfigs.containsKey(configType)) {
-        return null;
-      }
+    Map<String, Config> configs = allConfigs.get(configType);
+    if (null == configs) {
+      return null;
+    }
 
-      for (Map.Entry<String, Config> entry : allConfigs.get(configType).entrySet()) {
-        if (entry.getValue().getVersion().equals(configVersion)) {
-          return entry.getValue();
-        }
+    for (Map.Entry<String, Config> entry : configs.entrySet()) {
+      if (entry.getValue().getVersion().equals(configVersion)) {
+        return entry.getValue();
       }
-
-      return null;
-    } finally {
-      clusterGlobalLock.readLock().unlock();
     }
+
+    return null;
   }
 
   @Override
@@ -1221,30 +1212,24 @@ public class ClusterImpl implements Cluster {
       throw new IllegalArgumentException("Config type cannot be empty");
     }
 
-    clusterGlobalLock.writeLock().lock();
+    // configs of different types, or of the same type, can be added
+    // concurrently; only re-caching all of them has to wait
+    clusterConfigLock.readLock().lock();
     try {
-      if (!allConfigs.containsKey(config.getType())) {
-        allConfigs.put(config.getType(), new ConcurrentHashMap<>());
-      }
-
-      allConfigs.get(config.getType()).put(config.getTag(), config);
+      allConfigs.computeIfAbsent(config.getType(), type -> new ConcurrentHashMap<>()).put(
+          config.getTag(), config);
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      clusterConfigLock.readLock().unlock();
     }
   }
 
   @Override
   public Collection<Config> getAllConfigs() {
-    clusterGlobalLock.readLock().lock();
-    try {
-      List<Config> list = new ArrayList<>();
-      for (Entry<String, ConcurrentMap<String, Config>> entry : allConfigs.entrySet()) {
-        list.addAll(entry.getValue().values());
-      }
-      return Collections.unmodifiableList(list);
-    } finally {
-      clusterGlobalLock.readLock().unlock();
+    List<Config> list = new ArrayList<>();
+    for (Entry<String, ConcurrentMap<String, Config>> entry : allConfigs.entrySet()) {
+      list.addAll(entry.getValue().values());
     }
+    return Collections.unmodifiableList(list);
   }
 
   @Override
@@ -1282,10 +1267,12 @@ public class ClusterImpl implements Cluster {
   @Transactional
   public void refresh() {
     clusterGlobalLock.writeLock().lock();
+    clusterConfigLock.writeLock().lock();
     try {
       ClusterEntity clusterEntity = getClusterEntity();
       clusterDAO.refresh(clusterEntity);
     } finally {
+      clusterConfigLock.writeLock().unlock();
       clusterGlobalLock.writeLock().unlock();
     }
   }
@@ -1322,12 +1309,14 @@ public class ClusterImpl implements Cluster {
   @Transactional
   public void deleteAllClusterConfigs() {
     clusterGlobalLock.writeLock().lock();
+    clusterConfigLock.writeLock().lock();
     try {
       Collection<ClusterConfigEntity> clusterConfigs = getClusterEntity().getClusterConfigEntities();
       for (ClusterConfigEntity clusterConfigEntity : clusterConfigs) {
         clusterDAO.removeConfig(clusterConfigEntity);
       }
     } finally {
+      clusterConfigLock.writeLock().unlock();
       clusterGlobalLock.writeLock().unlock();
     }
   }
@@ -1415,7 +1404,13 @@ public class ClusterImpl implements Cluster {
 
       refresh(); // update one-to-many clusterServiceEntities
       removeEntities();
-      allConfigs.clear();
+
+      clusterConfigLock.writeLock().lock();
+      try {
+        allConfigs = new ConcurrentHashMap<>();
+      } finally {
+        clusterConfigLock.writeLock().unlock();
+      }
     } finally {
       clusterGlobalLock.writeLock().unlock();
     }
@@ -1451,7 +1446,7 @@ public class ClusterImpl implements Cluster {
       throw new NullPointerException("User must be specified.");
     }
 
-    clusterGlobalLock.writeLock().lock();
+    clusterConfigLock.writeLock().lock();
     try {
       if (configs == null) {
         return null;
@@ -1479,7 +1474,7 @@ public class ClusterImpl implements Cluster {
 
       return serviceConfigVersionResponse;
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      clusterConfigLock.writeLock().unlock();
     }
   }
 
@@ -1520,7 +1515,7 @@ public class ClusterImpl implements Cluster {
    * @return a map of type-to-configuration information.
    */
   private Map<String, Set<DesiredConfig>> getDesiredConfigs(boolean allVersions, boolean cachedConfigEntities) {
-    clusterGlobalLock.readLock().lock();
+    clusterConfigLock.readLock().lock();
     try {
       Map<String, Set<DesiredConfig>> map = new HashMap<>();
       Collection<String> types = new HashSet<>();
@@ -1592,7 +1587,7 @@ public class ClusterImpl implements Cluster {
 
       return map;
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      clusterConfigLock.readLock().unlock();
     }
   }
 
@@ -1605,7 +1600,7 @@ public class ClusterImpl implements Cluster {
     // Create next service config version
     ServiceConfigEntity serviceConfigEntity = new ServiceConfigEntity();
 
-    clusterGlobalLock.writeLock().lock();
+    clusterConfigLock.writeLock().lock();
     try {
       ClusterEntity clusterEntity = getClusterEntity();
       // set config group
@@ -1660,7 +1655,7 @@ public class ClusterImpl implements Cluster {
       STOMPUpdatePublisher.publish(new ConfigsUpdateEvent(serviceConfigEntity,
           configGroup == null ? null : configGroup.getName(), groupHostNames, changedConfigs.keySet()));
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      clusterConfigLock.writeLock().unlock();
     }
 
     String configGroupName = configGroup == null ? ServiceConfigVersionResponse.DEFAULT_CONFIG_GROUP_NAME : configGroup.getName();
@@ -1715,19 +1710,19 @@ public class ClusterImpl implements Cluster {
       throw new NullPointerException("User must be specified.");
     }
 
-    clusterGlobalLock.writeLock().lock();
+    clusterConfigLock.writeLock().lock();
     try {
       ServiceConfigVersionResponse serviceConfigVersionResponse = applyServiceConfigVersion(
           serviceName, version, user, note);
       return serviceConfigVersionResponse;
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      clusterConfigLock.writeLock().unlock();
     }
   }
 
   @Override
   public Map<String, Collection<ServiceConfigVersionResponse>> getActiveServiceConfigVersions() {
-    clusterGlobalLock.readLock().lock();
+    clusterConfigLock.readLock().lock();
     try {
       Map<String, Collection<ServiceConfigVersionResponse>> map = new HashMap<>();
 
@@ -1740,13 +1735,13 @@ public class ClusterImpl implements Cluster {
       }
       return map;
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      clusterConfigLock.readLock().unlock();
     }
   }
 
   @Override
   public List<ServiceConfigVersionResponse> getServiceConfigVersions() {
-    clusterGlobalLock.readLock().lock();
+    clusterConfigLock.readLock().lock();
     try {
       List<ServiceConfigVersionResponse> serviceConfigVersionResponses = new ArrayList<>();
 
@@ -1799,7 +1794,7 @@ public class ClusterImpl implements Cluster {
 
       return serviceConfigVersionResponses;
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      clusterConfigLock.readLock().unlock();
     }
   }
 
@@ -1831,7 +1826,7 @@ public class ClusterImpl implements Cluster {
 
   @Override
   public List<ServiceConfigVersionResponse> getActiveServiceConfigVersionResponse(String serviceName) {
-    clusterGlobalLock.readLock().lock();
+    clusterConfigLock.readLock().lock();
     try {
       List<ServiceConfigEntity> activeServiceConfigVersionEntities = new ArrayList<>();
       List<ServiceConfigVersionResponse> activeServiceConfigVersionResponses = new ArrayList<>();
@@ -1843,7 +1838,7 @@ public class ClusterImpl implements Cluster {
       }
       return activeServiceConfigVersionResponses;
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      clusterConfigLock.readLock().unlock();
     }
   }
 
@@ -2487,6 +2482,7 @@ public class ClusterImpl implements Cluster {
   @Transactional
   public void applyLatestConfigurations(StackId stackId, String serviceName) {
     clusterGlobalLock.writeLock().lock();
+    clusterConfigLock.writeLock().lock();
 
     try {
       // grab all of the configurations and hash them so we can easily update them when picking and choosing only those from the service
@@ -2550,6 +2546,7 @@ public class ClusterImpl implements Cluster {
           serviceName, stackId, StringUtils.join(configTypesForService, ','));
 
     } finally {
+      clusterConfigLock.writeLock().unlock();
       clusterGlobalLock.writeLock().unlock();
     }
 
@@ -2577,14 +2574,15 @@ public class ClusterImpl implements Cluster {
 
   /**
    * Removes all configurations associated with the specified stack for the
-   * specified service. The caller should make sure the cluster global write
-   * lock is acquired.
+   * specified service. The caller should make sure the cluster global and
+   * config write locks are acquired.
    *
    * @param stackId
    *          the stack to remove configurations for (not {@code null}).
    * @param serviceName
    *          the service name (not {@code null}).
    * @see #clusterGlobalLock
+   * @see #clusterConfigLock
    */
   @Transactional
   void removeAllConfigsForStack(StackId stackId, String serviceName) {
@@ -2637,37 +2635,37 @@ public class ClusterImpl implements Cluster {
   @Override
   public void removeConfigurations(StackId stackId, String serviceName) {
     clusterGlobalLock.writeLock().lock();
+    clusterConfigLock.writeLock().lock();
     try {
       removeAllConfigsForStack(stackId, serviceName);
       cacheConfigurations();
     } finally {
+      clusterConfigLock.writeLock().unlock();
       clusterGlobalLock.writeLock().unlock();
     }
   }
 
   /**
-   * Caches all of the {@link ClusterConfigEntity}s in {@link #allConfigs}.
+   * Caches all of the {@link ClusterConfigEntity}s in {@link #allConfigs}. The
+   * cache is rebuilt aside and then swapped in, so that concurrent lookups keep
+   * using the previous one in the meantime.
    */
   private void cacheConfigurations() {
-    clusterGlobalLock.writeLock().lock();
+    clusterConfigLock.writeLock().lock();
     try {
       ClusterEntity clusterEntity = getClusterEntity();
-      allConfigs.clear();
+      ConcurrentMap<String, ConcurrentMap<String, Config>> configs = new ConcurrentHashMap<>();
 
-      if (!clusterEntity.getClusterConfigEntities().isEmpty()) {
-        for (ClusterConfigEntity entity : clusterEntity.getClusterConfigEntities()) {
-
-          if (!allConfigs.containsKey(entity.getType())) {
-            allConfigs.put(entity.getType(), new ConcurrentHashMap<>());
-          }
+      for (ClusterConfigEntity entity : clusterEntity.getClusterConfigEntities()) {
+        Config config = configFactory.createExisting(this, entity);
 
-          Config config = configFactory.createExisting(this, entity);
-
-          allConfigs.get(entity.getType()).put(entity.getTag(), config);
-        }
+        configs.computeIfAbsent(entity.getType(), type -> new ConcurrentHashMap<>()).put(
+            entity.getTag(), config);
       }
+
+      allConfigs = configs;
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      clusterConfigLock.writeLock().unlock();
     }
   }
 
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.actionmanager;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link InProgressStagesIndex}.
+ */
+public class InProgressStagesIndexTest {
+
+  private static final long FULL_SCAN_INTERVAL = 60000L;
+
+  @Test
+  public void testFirstScanIsAlwaysRequired() {
+    InProgressStagesIndex index = new InProgressStagesIndex();
+    Assert.assertTrue(index.beginScan(1000L, FULL_SCAN_INTERVAL));
+    Assert.assertFalse(index.beginScan(2000L, FULL_SCAN_INTERVAL));
+  }
+
+  @Test
+  public void testFullScanInterval() {
+    InProgressStagesIndex index = new InProgressStagesIndex();
+    Assert.assertTrue(index.beginScan(1000L, FULL_SCAN_INTERVAL));
+    Assert.assertFalse(index.beginScan(1000L + FULL_SCAN_INTERVAL - 1, FULL_SCAN_INTERVAL));
+    Assert.assertTrue(index.beginScan(1000L + FULL_SCAN_INTERVAL, FULL_SCAN_INTERVAL));
+
+    // without interval every wakeup is a scan
+    Assert.assertTrue(index.beginScan(1000L + FULL_SCAN_INTERVAL, 0L));
+  }
+
+  @Test
+  public void testTaskTimeoutRequiresScan() {
+    InProgressStagesIndex index = new InProgressStagesIndex();
+    Assert.assertTrue(index.beginScan(1000L, FULL_SCAN_INTERVAL));
+
+    index.addTaskTimeout(5000L);
+    index.addTaskTimeout(3000L);
+    Assert.assertEquals(3000L, index.getNextTimeout());
+
+    Assert.assertFalse(index.beginScan(2999L, FULL_SCAN_INTERVAL));
+    Assert.assertTrue(index.beginScan(3000L, FULL_SCAN_INTERVAL));
+    Assert.assertEquals(Long.MAX_VALUE, index.getNextTimeout());
+  }
+
+  @Test
+  public void testOnTasksUpdated() {
+    InProgressStagesIndex index = new InProgressStagesIndex();
+    Assert.assertTrue(index.beginScan(1000L, FULL_SCAN_INTERVAL));
+    index.addStage(createStage(1L, 2L, "h1"));
+    index.endScan();
+
+    // progress reports do not require a scan
+    Assert.assertFalse(index.onTasksUpdated(Arrays.asList(
+        createCommand(HostRoleStatus.QUEUED, 1L, 2L), createCommand(HostRoleStatus.IN_PROGRESS, 1L, 2L))));
+    Assert.assertFalse(index.beginScan(2000L, FULL_SCAN_INTERVAL));
+
+    Assert.assertTrue(index.onTasksUpdated(Arrays.asList(
+        createCommand(HostRoleStatus.IN_PROGRESS, 1L, 2L), createCommand(HostRoleStatus.COMPLETED, 1L, 2L))));
+    Assert.assertTrue(index.beginScan(2000L, FULL_SCAN_INTERVAL));
+  }
+
+  @Test
+  public void testTasksOutsideOfIndexedStagesAreIgnored() {
+    InProgressStagesIndex index = new InProgressStagesIndex();
+    Assert.assertTrue(index.beginScan(1000L, FULL_SCAN_INTERVAL));
+    index.addStage(createStage(1L, 2L, "h1"));
+    index.endScan();
+
+    // another stage of the request, or another request
+    Assert.assertFalse(index.onTasksUpdated(Arrays.asList(
+        createCommand(HostRoleStatus.COMPLETED, 1L, 3L), createCommand(HostRoleStatus.FAILED, 4L, 2L))));
+    Assert.assertFalse(index.beginScan(2000L, FULL_SCAN_INTERVAL));
+
+    // nothing in progress
+    Assert.assertTrue(index.beginScan(1000L + FULL_SCAN_INTERVAL, FULL_SCAN_INTERVAL));
+    index.endScan();
+    Assert.assertFalse(index.onTasksUpdated(Collections.singletonList(
+        createCommand(HostRoleStatus.COMPLETED, 1L, 2L))));
+    Assert.assertFalse(index.beginScan(2000L + FULL_SCAN_INTERVAL, FULL_SCAN_INTERVAL));
+  }
+
+  @Test
+  public void testTasksUpdatedDuringScanRequireScan() {
+    InProgressStagesIndex index = new InProgressStagesIndex();
+    Assert.assertTrue(index.beginScan(1000L, FULL_SCAN_INTERVAL));
+
+    // the stage of the task may not be indexed yet
+    Assert.assertTrue(index.onTasksUpdated(Collections.singletonList(
+        createCommand(HostRoleStatus.COMPLETED, 1L, 2L))));
+    index.addStage(createStage(1L, 2L, "h1"));
+    index.endScan();
+
+    Assert.assertTrue(index.beginScan(2000L, FULL_SCAN_INTERVAL));
+  }
+
+  @Test
+  public void testOnHostLost() {
+    InProgressStagesIndex index = new InProgressStagesIndex();
+    Assert.assertTrue(index.beginScan(1000L, FULL_SCAN_INTERVAL));
+
+    index.addStage(createStage(1L, 2L, "h1"));
+    Assert.assertEquals(1, index.getStageCount());
+
+    Assert.assertFalse(index.onHostLost("h2"));
+    Assert.assertTrue(index.onHostLost("h1"));
+
+    // the index is cleared by the next scan
+    Assert.assertTrue(index.beginScan(2000L, FULL_SCAN_INTERVAL));
+    Assert.assertEquals(0, index.getStageCount());
+    Assert.assertFalse(index.onHostLost("h1"));
+  }
+
+  private Stage createStage(long requestId, long stageId, String host) {
+    Stage stage = createNiceMock(Stage.class);
+    expect(stage.getRequestId()).andReturn(requestId).anyTimes();
+    expect(stage.getStageId()).andReturn(stageId).anyTimes();
+    expect(stage.getHosts()).andReturn(Collections.singletonList(host)).anyTimes();
+    replay(stage);
+    return stage;
+  }
+
+  private HostRoleCommand createCommand(HostRoleStatus status, long requestId, long stageId) {
+    HostRoleCommand command = createNiceMock(HostRoleCommand.class);
+    expect(command.getStatus()).andReturn(status).anyTimes();
+    expect(command.getRequestId()).andReturn(requestId).anyTimes();
+    expect(command.getStageId()).andReturn(stageId).anyTimes();
+    replay(command);
+    return command;
+  }
+}
@@ -20,10 +20,13 @@ package org.apache.ambari.server.actionmanager;
 import static org.apache.ambari.server.orm.DBAccessor.DbType.ORACLE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -40,6 +43,7 @@ import org.apache.ambari.server.api.services.BaseRequest;
 import org.apache.ambari.server.audit.AuditLogger;
 import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.internal.RequestResourceFilter;
+import org.apache.ambari.server.events.HostsRemovedEvent;
 import org.apache.ambari.server.orm.DBAccessor;
 import org.apache.ambari.server.orm.DBAccessorImpl;
 import org.apache.ambari.server.orm.GuiceJpaInitializer;
@@ -729,6 +733,132 @@ public class TestActionDBAccessorImpl {
       taskIds.size(), entities.size());
   }
 
+  @Test
+  public void testCachedTasksReadReleasedOutputs() throws AmbariException {
+    Stage s = createStubStage(hostName, requestId, stageId, false);
+    for (String role : new String[] {Role.HBASE_REGIONSERVER.name(), Role.HBASE_MASTER.name()}) {
+      s.setHostRoleStatus(hostName, role, HostRoleStatus.COMPLETED);
+      HostRoleCommand command = s.getHostRoleCommand(hostName, role);
+      command.setStdout("stdout of " + role);
+      command.setStderr("stderr of " + role);
+      command.setStructuredOut("{\"role\":\"" + role + "\"}");
+    }
+    db.persistActions(new Request(Collections.singletonList(s), "", clusters));
+
+    // the first call caches the completed tasks, the second one reads them from the cache
+    List<HostRoleCommand> tasks = db.getRequestTasks(requestId);
+    List<HostRoleCommand> cached = db.getRequestTasks(requestId);
+    assertEquals(2, cached.size());
+
+    for (int i = 0; i < cached.size(); i++) {
+      HostRoleCommand task = cached.get(i);
+      assertSame(tasks.get(i), task);
+      assertTrue(task.isOutputsReleased());
+
+      String role = task.getRole().name();
+      assertEquals("stdout of " + role, task.getStdout());
+      assertEquals("stderr of " + role, task.getStderr());
+      assertEquals("{\"role\":\"" + role + "\"}", task.getStructuredOut());
+
+      // reading the outputs does not hold them again
+      assertTrue(task.isOutputsReleased());
+    }
+  }
+
+  @Test
+  public void testCommandFromEntityReadsUnloadedOutputs() throws AmbariException {
+    Stage s = createStubStage(hostName, requestId, stageId, false);
+    s.setHostRoleStatus(hostName, Role.HBASE_MASTER.name(), HostRoleStatus.COMPLETED);
+    HostRoleCommand command = s.getHostRoleCommand(hostName, Role.HBASE_MASTER.name());
+    command.setStdout("stdout of master");
+    command.setStderr("stderr of master");
+    db.persistActions(new Request(Collections.singletonList(s), "", clusters));
+
+    // the outputs of the entity are not loaded
+    injector.getInstance(EntityManager.class).clear();
+    HostRoleCommandEntity entity = hostRoleCommandDAO.findByHostRole(
+        hostName, requestId, stageId, Role.HBASE_MASTER.name()).get(0);
+
+    HostRoleCommand existing = injector.getInstance(HostRoleCommandFactory.class).createExisting(entity);
+    assertEquals("stdout of master", existing.getStdout());
+    assertEquals("stderr of master", existing.getStderr());
+  }
+
+  @Test
+  public void testOutputsOfTasksInProgressAreNotKept() throws AmbariException {
+    Stage s = createStubStage(hostName, requestId, stageId, false);
+    s.setHostRoleStatus(hostName, Role.HBASE_MASTER.name(), HostRoleStatus.IN_PROGRESS);
+    s.getHostRoleCommand(hostName, Role.HBASE_MASTER.name()).setStdout("first");
+    db.persistActions(new Request(Collections.singletonList(s), "", clusters));
+
+    injector.getInstance(EntityManager.class).clear();
+    HostRoleCommand command = injector.getInstance(HostRoleCommandFactory.class).createExisting(
+        hostRoleCommandDAO.findByHostRole(hostName, requestId, stageId, Role.HBASE_MASTER.name()).get(0));
+    assertEquals("first", command.getStdout());
+
+    updateStdout(HostRoleStatus.IN_PROGRESS, "second");
+    assertEquals("second", command.getStdout());
+
+    // the output of a completed task no longer changes, it is kept once read
+    updateStdout(HostRoleStatus.COMPLETED, "third");
+    assertEquals("third", command.getStdout());
+    updateStdout(HostRoleStatus.COMPLETED, "fourth");
+    assertEquals("third", command.getStdout());
+  }
+
+  private void updateStdout(HostRoleStatus status, String stdout) {
+    injector.getInstance(EntityManager.class).clear();
+    HostRoleCommandEntity entity = hostRoleCommandDAO.findByHostRole(
+        hostName, requestId, stageId, Role.HBASE_MASTER.name()).get(0);
+    entity.setStatus(status);
+    entity.setStdOut(stdout.getBytes());
+    hostRoleCommandDAO.mergeWithoutPublishEvent(entity);
+    injector.getInstance(EntityManager.class).clear();
+  }
+
+  @Test
+  public void testCompletedTasksCacheInvalidatedPerHost() throws AmbariException {
+    String otherHostName = "host2";
+    clusters.addHost(otherHostName);
+
+    List<Long> requestIds = Arrays.asList(requestId, requestId + 1);
+    List<String> hostnames = Arrays.asList(hostName, otherHostName);
+    for (int i = 0; i < hostnames.size(); i++) {
+      String hostname = hostnames.get(i);
+      Stage s = createStubStage(hostname, requestIds.get(i), stageId, false);
+      s.setHostRoleStatus(hostname, Role.HBASE_REGIONSERVER.name(), HostRoleStatus.COMPLETED);
+      s.setHostRoleStatus(hostname, Role.HBASE_MASTER.name(), HostRoleStatus.COMPLETED);
+      s.getHostRoleCommand(hostname, Role.HBASE_MASTER.name()).setStdout("stdout of " + hostname);
+      db.persistActions(new Request(Collections.singletonList(s), "", clusters));
+    }
+
+    List<HostRoleCommand> tasks = db.getAllTasksByRequestIds(requestIds);
+    assertEquals(4, tasks.size());
+
+    // completed tasks are cached, their outputs are read when requested
+    List<HostRoleCommand> cached = db.getAllTasksByRequestIds(requestIds);
+    for (int i = 0; i < tasks.size(); i++) {
+      HostRoleCommand task = cached.get(i);
+      assertSame(tasks.get(i), task);
+      if (task.getRole() == Role.HBASE_MASTER) {
+        assertEquals("stdout of " + task.getHostName(), task.getStdout());
+      }
+    }
+
+    db.invalidateCommandCacheOnHostRemove(new HostsRemovedEvent(
+        Collections.singleton(hostName), Collections.emptySet()));
+
+    // only the tasks of the removed host are evicted
+    List<HostRoleCommand> reloaded = db.getAllTasksByRequestIds(requestIds);
+    for (int i = 0; i < tasks.size(); i++) {
+      if (hostName.equals(tasks.get(i).getHostName())) {
+        assertNotSame(tasks.get(i), reloaded.get(i));
+      } else {
+        assertSame(tasks.get(i), reloaded.get(i));
+      }
+    }
+  }
+
   private void populateActionDB(ActionDBAccessor db, String hostname,
       long requestId, long stageId, boolean retryAllowed) throws AmbariException {
     Stage s = createStubStage(hostname, requestId, stageId, retryAllowed);
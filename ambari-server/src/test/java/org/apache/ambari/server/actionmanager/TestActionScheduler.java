@@ -35,6 +35,7 @@ import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -75,6 +76,8 @@ import org.apache.ambari.server.agent.ExecutionCommand;
 import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.HostsMap;
 import org.apache.ambari.server.events.AmbariEvent;
+import org.apache.ambari.server.events.TaskCreateEvent;
+import org.apache.ambari.server.events.TaskUpdateEvent;
 import org.apache.ambari.server.events.publishers.AgentCommandsPublisher;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
 import org.apache.ambari.server.metadata.RoleCommandOrder;
@@ -3153,6 +3156,44 @@ public class TestActionScheduler {
     EasyMock.verify(previousStage, nextStage, actionDBAccessor, hostRoleCommand);
   }
 
+  /**
+   * Tests that an event-driven scheduler does not go back to the action DB
+   * when nothing is in progress and no new task was created.
+   */
+  @Test
+  public void testEventDrivenSchedulerSkipsScanWhenNothingIsPending() throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty(Configuration.EVENT_DRIVEN_STAGE_EXECUTION.getKey(), "true");
+    Configuration conf = new Configuration(properties);
+
+    ActionDBAccessor db = mock(ActionDBAccessor.class);
+    when(db.getCommandsInProgressCount()).thenReturn(0);
+
+    ActionScheduler scheduler = new ActionScheduler(100, 50, db, mock(Clusters.class), 3,
+        new HostsMap((String) null), mock(UnitOfWork.class), null, conf, entityManagerProviderMock,
+        mock(HostRoleCommandDAO.class), null, mock(AgentCommandsPublisher.class));
+
+    scheduler.doWork();
+    verify(db, times(1)).getCommandsInProgressCount();
+
+    // a task of a request which is not in progress completes
+    HostRoleCommand command = mock(HostRoleCommand.class);
+    when(command.getStatus()).thenReturn(HostRoleStatus.COMPLETED);
+    when(command.getRequestId()).thenReturn(1L);
+    when(command.getStageId()).thenReturn(2L);
+    scheduler.onTaskUpdateEvent(new TaskUpdateEvent(Collections.singletonList(command)));
+
+    scheduler.doWork();
+    scheduler.doWork();
+    verify(db, times(1)).getCommandsInProgressCount();
+    verify(db, never()).getFirstStageInProgressPerRequest();
+
+    // new tasks may be ready to be scheduled
+    scheduler.onTaskCreateEvent(new TaskCreateEvent(Collections.singletonList(command)));
+    scheduler.doWork();
+    verify(db, times(2)).getCommandsInProgressCount();
+  }
+
   @Test
   public void testPreviousStageToFailForFirstStage() throws Exception {
     Stage nextStage = createNiceMock(Stage.class);
@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.agent;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.AmbariException;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.metrics.system.impl.ServerMetricsSource;
+import org.junit.Test;
+
+import com.codahale.metrics.Counter;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.persist.UnitOfWork;
+
+public class AgentReportsProcessorTest {
+
+  private static final long TIMEOUT_MS = 10000;
+
+  private final TestUnitOfWork unitOfWork = new TestUnitOfWork();
+
+  private final List<String> processed = Collections.synchronizedList(new ArrayList<>());
+
+  @Test
+  public void testReportsOfHostAreProcessedInOrder() throws Exception {
+    AgentReportsProcessor processor = createProcessor(4, 1000, 30, 5);
+
+    CountDownLatch done = new CountDownLatch(300);
+    for (int i = 0; i < 100; i++) {
+      for (String host : new String[] {"host1", "host2", "host3"}) {
+        processor.addAgentReport(new TestReport(host, String.valueOf(i), null, done));
+      }
+    }
+    assertTrue(done.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+    Map<String, List<Integer>> processedByHost = new HashMap<>();
+    synchronized (processed) {
+      for (String report : processed) {
+        String[] parts = report.split(":");
+        processedByHost.computeIfAbsent(parts[0], host -> new ArrayList<>()).add(Integer.valueOf(parts[1]));
+      }
+    }
+    assertEquals(3, processedByHost.size());
+    for (List<Integer> sequence : processedByHost.values()) {
+      assertEquals(100, sequence.size());
+      for (int i = 0; i < sequence.size(); i++) {
+        assertEquals(Integer.valueOf(i), sequence.get(i));
+      }
+    }
+    unitOfWork.awaitEnded();
+  }
+
+  @Test
+  public void testQueuedReportsAreProcessedInBatches() throws Exception {
+    AgentReportsProcessor processor = createProcessor(1, 1000, 30, 3);
+
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(7);
+    processor.addAgentReport(new TestReport("host1", "0", release, done));
+    for (int i = 1; i < 7; i++) {
+      processor.addAgentReport(new TestReport("host1", String.valueOf(i), null, done));
+    }
+    release.countDown();
+    assertTrue(done.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    unitOfWork.awaitEnded();
+
+    // the first report alone, then two batches of three
+    assertEquals(3, unitOfWork.getBegun());
+    assertEquals(7, processed.size());
+  }
+
+  @Test
+  public void testFailedReportEndsUnitOfWork() throws Exception {
+    AgentReportsProcessor processor = createProcessor(1, 1000, 30, 10);
+
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(4);
+    processor.addAgentReport(new TestReport("host1", "0", release, done));
+    unitOfWork.awaitBegun();
+    processor.addAgentReport(new TestReport("host2", "1", null, done));
+    processor.addAgentReport(new TestReport("host3", "fail", null, done));
+    processor.addAgentReport(new TestReport("host4", "3", null, done));
+    release.countDown();
+    assertTrue(done.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    unitOfWork.awaitEnded();
+
+    assertEquals(3, processed.size());
+    assertTrue(processed.contains("host4:3"));
+    // the report following the failed one is processed in a new unit of work
+    assertEquals(3, unitOfWork.getBegun());
+    assertEquals(Integer.valueOf(3), unitOfWork.getUnitOfWorkOf("host4:3"));
+  }
+
+  @Test
+  public void testFullQueueMakesCallerWait() throws Exception {
+    Counter delayed = ServerMetricsSource.registry.counter("agentreports.delayed");
+    final AgentReportsProcessor processor = createProcessor(1, 1, 0, 10);
+
+    CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(3);
+    processor.addAgentReport(new TestReport("host1", "0", release, done));
+    unitOfWork.awaitBegun();
+    processor.addAgentReport(new TestReport("host1", "1", null, done));
+
+    long delayedBefore = delayed.getCount();
+    Thread caller = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          processor.addAgentReport(new TestReport("host1", "2", null, done));
+        } catch (AmbariException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+    caller.start();
+
+    long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+    while (delayed.getCount() == delayedBefore && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(delayedBefore + 1, delayed.getCount());
+    assertTrue(caller.isAlive());
+
+    release.countDown();
+    caller.join(TIMEOUT_MS);
+    assertTrue(done.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    assertEquals(3, processed.size());
+  }
+
+  private AgentReportsProcessor createProcessor(int poolSize, int queueSize, int queueTimeout, int batchSize) {
+    final Configuration configuration = createNiceMock(Configuration.class);
+    expect(configuration.getAgentsReportThreadPoolSize()).andReturn(poolSize).anyTimes();
+    expect(configuration.getAgentsReportQueueSize()).andReturn(queueSize).anyTimes();
+    expect(configuration.getAgentsReportQueueTimeout()).andReturn(queueTimeout).anyTimes();
+    expect(configuration.getAgentsReportBatchSize()).andReturn(batchSize).anyTimes();
+    replay(configuration);
+
+    return Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(Configuration.class).toInstance(configuration);
+        bind(UnitOfWork.class).toInstance(unitOfWork);
+      }
+    }).getInstance(AgentReportsProcessor.class);
+  }
+
+  /**
+   * Records the reports it processes; fails if its name is "fail", optionally waits for a latch first.
+   */
+  private class TestReport extends AgentReport<String> {
+    private final CountDownLatch release;
+    private final CountDownLatch done;
+
+    TestReport(String hostName, String name, CountDownLatch release, CountDownLatch done) {
+      super(hostName, name);
+      this.release = release;
+      this.done = done;
+    }
+
+    @Override
+    protected void process(String name, String hostName) throws AmbariException {
+      try {
+        if (release != null && !release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+          throw new AmbariException("Processing was not released");
+        }
+        if ("fail".equals(name)) {
+          throw new IllegalStateException("Failing report of " + hostName);
+        }
+        String report = hostName + ":" + name;
+        unitOfWork.record(report);
+        processed.add(report);
+      } catch (InterruptedException e) {
+        throw new AmbariException("Interrupted", e);
+      } finally {
+        done.countDown();
+      }
+    }
+  }
+
+  /**
+   * Counts the units of work and records in which one each report is processed.
+   */
+  private static class TestUnitOfWork implements UnitOfWork {
+    private int begun;
+    private int ended;
+    private final Map<String, Integer> unitOfWorkByReport = new HashMap<>();
+
+    @Override
+    public synchronized void begin() {
+      begun++;
+      notifyAll();
+    }
+
+    @Override
+    public synchronized void end() {
+      ended++;
+      notifyAll();
+    }
+
+    synchronized void record(String report) {
+      unitOfWorkByReport.put(report, begun);
+    }
+
+    synchronized int getBegun() {
+      return begun;
+    }
+
+    synchronized Integer getUnitOfWorkOf(String report) {
+      return unitOfWorkByReport.get(report);
+    }
+
+    synchronized void awaitBegun() throws InterruptedException {
+      long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+      while (begun == 0 && System.currentTimeMillis() < deadline) {
+        wait(100);
+      }
+      assertTrue(begun > 0);
+    }
+
+    /**
+     * Waits for all the units of work begun to be ended.
+     */
+    synchronized void awaitEnded() throws InterruptedException {
+      long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+      while (ended < begun && System.currentTimeMillis() < deadline) {
+        wait(100);
+      }
+      assertEquals(begun, ended);
+    }
+  }
+}
@@ -22,6 +22,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.sql.SQLException;
@@ -241,6 +243,37 @@ public class TestHeartbeatMonitor {
     assertTrue("HeartbeatMonitor should not generate StatusCommands for host2 because it has no services", cmds.isEmpty());
   }
 
+  @Test
+  public void testOnlyExpiredHostsLoseHeartbeat() throws Exception {
+    Clusters clusters = injector.getInstance(Clusters.class);
+    clusters.addHost(hostname1);
+    clusters.addHost(hostname2);
+    // host2 heartbeats far in the future, its deadline doesn't expire during the test
+    clusters.getHost(hostname2).setLastHeartbeatTime(System.currentTimeMillis() + 3600000);
+
+    ActionManager am = mock(ActionManager.class);
+    HeartbeatMonitor hm = new HeartbeatMonitor(clusters, am,
+      heartbeatMonitorWakeupIntervalMS, injector);
+    hm.start();
+
+    int tryNumber = 0;
+    while (clusters.getHost(hostname1).getState() != HostState.HEARTBEAT_LOST) {
+      Thread.sleep(heartbeatMonitorWakeupIntervalMS);
+      tryNumber++;
+
+      if (tryNumber >= 20) {
+        fail("host1 should have lost its heartbeat");
+      }
+    }
+    hm.shutdown();
+    hm.join(10 * heartbeatMonitorWakeupIntervalMS);
+
+    assertEquals(HostState.HEARTBEAT_LOST, clusters.getHost(hostname1).getState());
+    assertEquals(HostState.INIT, clusters.getHost(hostname2).getState());
+    verify(am).handleLostHost(hostname1);
+    verify(am, never()).handleLostHost(hostname2);
+  }
+
   @Test
   @Ignore
   //TODO should be rewritten, componentStatuses already are not actual as a part of heartbeat.
@@ -20,11 +20,22 @@ package org.apache.ambari.server.agent.stomp;
 import static org.easymock.EasyMock.createNiceMock;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.TreeMap;
+
+import org.apache.ambari.server.AmbariException;
+import org.apache.ambari.server.agent.stomp.dto.TopologyCluster;
 import org.apache.ambari.server.events.AgentConfigsUpdateEvent;
 import org.apache.ambari.server.events.MetadataUpdateEvent;
+import org.apache.ambari.server.events.TopologyUpdateEvent;
 import org.apache.ambari.server.events.UpdateEventType;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
+import org.apache.ambari.server.events.publishers.STOMPUpdatePublisher;
 import org.apache.commons.collections.MapUtils;
 import org.junit.Test;
 
@@ -101,4 +112,103 @@ public class AgentDataHolderTest {
     assertEquals(eventHash1, eventHash2);
     assertFalse(eventHash1.equals(eventHash3));
   }
+
+  @Test
+  public void testMissedUpdateIsSent() throws Exception {
+    LoggingClusterDataHolder holder = new LoggingClusterDataHolder();
+    holder.initializeDataIfNeeded(true);
+    String initialHash = holder.getData().getHash();
+
+    holder.updateData(update("1"));
+    String firstHash = holder.getData().getHash();
+    assertNotEquals(initialHash, firstHash);
+
+    // an agent which missed a single update only receives that update
+    TopologyUpdateEvent missed = holder.getUpdateIfChanged(initialHash);
+    assertEquals(UpdateEventType.UPDATE, missed.getEventType());
+    assertEquals(firstHash, missed.getHash());
+    assertEquals(Collections.singleton("1"), missed.getClusters().keySet());
+
+    // an agent which is up to date receives nothing
+    assertNull(holder.getUpdateIfChanged(firstHash).getClusters());
+
+    // several missed updates or an unknown hash require the whole data
+    holder.updateData(update("2"));
+    assertSame(holder.getData(), holder.getUpdateIfChanged(initialHash));
+    assertSame(holder.getData(), holder.getUpdateIfChanged("unknown"));
+    assertEquals(Collections.singleton("2"), holder.getUpdateIfChanged(firstHash).getClusters().keySet());
+  }
+
+  @Test
+  public void testMissedUpdateIsSentAsPublished() throws Exception {
+    LoggingClusterDataHolder holder = new LoggingClusterDataHolder("1");
+    holder.initializeDataIfNeeded(true);
+    String initialHash = holder.getData().getHash();
+
+    // the known cluster is dropped from the update before it is published
+    TopologyUpdateEvent update = update("1", "2");
+    holder.updateData(update);
+    assertEquals(Collections.singleton("2"), update.getClusters().keySet());
+    assertEquals(Collections.singleton("2"), holder.getUpdateIfChanged(initialHash).getClusters().keySet());
+  }
+
+  @Test
+  public void testHashDependsOnDataOnly() throws Exception {
+    LoggingClusterDataHolder holder = new LoggingClusterDataHolder();
+    holder.initializeDataIfNeeded(true);
+    holder.updateData(update("1"));
+    holder.updateData(update("2"));
+
+    // the same data rebuilt, e.g. after a restart, has the same hash
+    LoggingClusterDataHolder rebuilt = new LoggingClusterDataHolder("1", "2");
+    rebuilt.initializeDataIfNeeded(true);
+    assertEquals(holder.getData().getHash(), rebuilt.getData().getHash());
+    assertNull(rebuilt.getUpdateIfChanged(holder.getData().getHash()).getClusters());
+  }
+
+  private TopologyUpdateEvent update(String... clusterIds) {
+    return new TopologyUpdateEvent(clusters(clusterIds), UpdateEventType.UPDATE);
+  }
+
+  private static TreeMap<String, TopologyCluster> clusters(String... clusterIds) {
+    TreeMap<String, TopologyCluster> clusters = new TreeMap<>();
+    for (String clusterId : clusterIds) {
+      clusters.put(clusterId, new TopologyCluster(new HashSet<>(), new HashSet<>()));
+    }
+    return clusters;
+  }
+
+  /**
+   * Holds clusters without content and keeps its last update.
+   */
+  private static class LoggingClusterDataHolder extends AgentClusterDataHolder<TopologyUpdateEvent> {
+    private final String[] initialClusterIds;
+
+    private LoggingClusterDataHolder(String... initialClusterIds) {
+      this.initialClusterIds = initialClusterIds;
+      STOMPUpdatePublisher = createNiceMock(STOMPUpdatePublisher.class);
+    }
+
+    @Override
+    protected TopologyUpdateEvent getCurrentData() throws AmbariException {
+      return new TopologyUpdateEvent(clusters(initialClusterIds), UpdateEventType.CREATE);
+    }
+
+    @Override
+    protected boolean handleUpdate(TopologyUpdateEvent update) throws AmbariException {
+      update.getClusters().keySet().removeAll(getData().getClusters().keySet());
+      getData().getClusters().putAll(update.getClusters());
+      return !update.getClusters().isEmpty();
+    }
+
+    @Override
+    protected TopologyUpdateEvent copyDelta(TopologyUpdateEvent update) {
+      return update.deepCopy();
+    }
+
+    @Override
+    protected TopologyUpdateEvent getEmptyData() {
+      return TopologyUpdateEvent.emptyUpdate();
+    }
+  }
 }
@@ -34,10 +34,12 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -48,6 +50,7 @@ import org.apache.ambari.server.api.resources.ClusterResourceDefinition;
 import org.apache.ambari.server.api.resources.HostResourceDefinition;
 import org.apache.ambari.server.api.resources.ResourceDefinition;
 import org.apache.ambari.server.api.resources.ResourceInstance;
+import org.apache.ambari.server.api.resources.ServiceResourceDefinition;
 import org.apache.ambari.server.api.resources.StackResourceDefinition;
 import org.apache.ambari.server.api.resources.StackVersionResourceDefinition;
 import org.apache.ambari.server.api.resources.SubResourceDefinition;
@@ -57,6 +60,10 @@ import org.apache.ambari.server.api.util.TreeNodeImpl;
 import org.apache.ambari.server.controller.internal.ClusterControllerImpl;
 import org.apache.ambari.server.controller.internal.ClusterControllerImplTest;
 import org.apache.ambari.server.controller.internal.PageRequestImpl;
+import org.apache.ambari.server.controller.internal.QueryResponseImpl;
+import org.apache.ambari.server.controller.internal.ResourceImpl;
+import org.apache.ambari.server.controller.predicate.OrPredicate;
+import org.apache.ambari.server.controller.spi.BatchableResourceProvider;
 import org.apache.ambari.server.controller.spi.ClusterController;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
@@ -66,6 +73,7 @@ import org.apache.ambari.server.controller.spi.Predicate;
 import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.Resource;
+import org.apache.ambari.server.controller.spi.ResourceProvider;
 import org.apache.ambari.server.controller.spi.Schema;
 import org.apache.ambari.server.controller.spi.SchemaFactory;
 import org.apache.ambari.server.controller.spi.SortRequest;
@@ -1081,6 +1089,100 @@ public class QueryImplTest {
 
   }
 
+  @Test
+  public void testExecute_BatchedSubResourceQuery() throws Exception {
+    ResourceDefinition resourceDefinition = new ServiceResourceDefinition();
+
+    Map<Resource.Type, String> mapIds = new HashMap<>();
+    mapIds.put(Resource.Type.Cluster, "c1");
+    mapIds.put(Resource.Type.Service, null);
+
+    ClusterController clusterController = createNiceMock(ClusterController.class);
+    Schema serviceSchema = createNiceMock(Schema.class);
+    Schema componentSchema = createNiceMock(Schema.class);
+    Renderer renderer = createNiceMock(Renderer.class);
+    BatchableProvider componentProvider = createNiceMock(BatchableProvider.class);
+
+    Resource hdfs = new ResourceImpl(Resource.Type.Service);
+    hdfs.setProperty("ServiceInfo/cluster_name", "c1");
+    hdfs.setProperty("ServiceInfo/service_name", "HDFS");
+    Resource yarn = new ResourceImpl(Resource.Type.Service);
+    yarn.setProperty("ServiceInfo/cluster_name", "c1");
+    yarn.setProperty("ServiceInfo/service_name", "YARN");
+
+    Resource namenode = createComponent("HDFS", "NAMENODE");
+    Resource datanode = createComponent("HDFS", "DATANODE");
+    Resource nodemanager = createComponent("YARN", "NODEMANAGER");
+
+    expect(clusterController.getSchema(Resource.Type.Service)).andReturn(serviceSchema).anyTimes();
+    expect(clusterController.getSchema(Resource.Type.Component)).andReturn(componentSchema).anyTimes();
+    expect(clusterController.ensureResourceProvider(Resource.Type.Component)).andReturn(componentProvider).anyTimes();
+
+    expect(serviceSchema.getKeyPropertyId(Resource.Type.Cluster)).andReturn("ServiceInfo/cluster_name").anyTimes();
+    expect(serviceSchema.getKeyPropertyId(Resource.Type.Service)).andReturn("ServiceInfo/service_name").anyTimes();
+    expect(serviceSchema.getKeyTypes()).andReturn(new HashSet<>(Arrays.asList(Resource.Type.Cluster, Resource.Type.Service))).anyTimes();
+    expect(componentSchema.getKeyPropertyId(Resource.Type.Cluster)).andReturn("ServiceComponentInfo/cluster_name").anyTimes();
+    expect(componentSchema.getKeyPropertyId(Resource.Type.Service)).andReturn("ServiceComponentInfo/service_name").anyTimes();
+    expect(componentSchema.getKeyPropertyId(Resource.Type.Component)).andReturn("ServiceComponentInfo/component_name").anyTimes();
+
+    expect(clusterController.getResources(eq(Resource.Type.Service), anyObject(Request.class), anyObject(Predicate.class))).
+        andReturn(new QueryResponseImpl(new LinkedHashSet<>(Arrays.asList(hdfs, yarn))));
+
+    // the components of both services are requested with a single call
+    Capture<Predicate> predicateCapture = EasyMock.newCapture();
+    expect(clusterController.getResources(eq(Resource.Type.Component), anyObject(Request.class), capture(predicateCapture))).
+        andReturn(new QueryResponseImpl(new LinkedHashSet<>(Arrays.asList(namenode, datanode, nodemanager)))).once();
+
+    expect(clusterController.getIterable(anyObject(Resource.Type.class), anyObject(QueryResponse.class),
+        anyObject(Request.class), anyObject(Predicate.class), anyObject(PageRequest.class), anyObject(SortRequest.class))).
+        andAnswer(() -> ((QueryResponse) EasyMock.getCurrentArguments()[1]).getResources()).anyTimes();
+
+    TreeNode<Set<String>> treeNode = new TreeNodeImpl<>(null, Collections.<String>emptySet(), null);
+    expect(renderer.finalizeProperties(EasyMock.anyObject(), anyBoolean())).andReturn(treeNode).anyTimes();
+
+    Capture<Result> resultCapture = EasyMock.newCapture();
+    expect(renderer.finalizeResult(capture(resultCapture))).andReturn(null);
+
+    replay(clusterController, serviceSchema, componentSchema, renderer, componentProvider);
+
+    //test
+    QueryImpl query = new TestQuery(mapIds, resourceDefinition, clusterController);
+    query.setRenderer(renderer);
+    query.addProperty("components", null);
+
+    query.execute();
+
+    Assert.assertTrue(predicateCapture.getValue() instanceof OrPredicate);
+
+    // the components are joined back to their services
+    TreeNode<Resource> tree = resultCapture.getValue().getResultTree();
+    Assert.assertEquals(2, tree.getChildren().size());
+    for (TreeNode<Resource> serviceNode : tree.getChildren()) {
+      Set<Resource> components = new HashSet<>();
+      for (TreeNode<Resource> componentNode : serviceNode.getChild("components").getChildren()) {
+        components.add(componentNode.getObject());
+      }
+      if (serviceNode.getObject() == hdfs) {
+        Assert.assertEquals(new HashSet<>(Arrays.asList(namenode, datanode)), components);
+      } else {
+        Assert.assertEquals(Collections.singleton(nodemanager), components);
+      }
+    }
+
+    verify(clusterController, serviceSchema, componentSchema, renderer, componentProvider);
+  }
+
+  private static Resource createComponent(String serviceName, String componentName) {
+    Resource resource = new ResourceImpl(Resource.Type.Component);
+    resource.setProperty("ServiceComponentInfo/cluster_name", "c1");
+    resource.setProperty("ServiceComponentInfo/service_name", serviceName);
+    resource.setProperty("ServiceComponentInfo/component_name", componentName);
+    return resource;
+  }
+
+  private abstract static class BatchableProvider implements ResourceProvider, BatchableResourceProvider {
+  }
+
   public static class TestQuery extends QueryImpl {
     public TestQuery(Map<Resource.Type, String> mapIds, ResourceDefinition resourceDefinition) {
       super(mapIds, resourceDefinition, new ClusterControllerImpl(new ClusterControllerImplTest.TestProviderModule()));
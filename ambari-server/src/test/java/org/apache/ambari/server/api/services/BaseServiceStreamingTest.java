@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.api.services;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+
+import org.apache.ambari.server.api.resources.ResourceInstance;
+import org.apache.ambari.server.api.services.parsers.RequestBodyParser;
+import org.apache.ambari.server.api.util.TreeNode;
+import org.apache.ambari.server.audit.request.RequestAuditLogger;
+import org.apache.ambari.server.controller.spi.Resource;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests how {@link BaseService} reports a failure to serialize a result.
+ */
+public class BaseServiceStreamingTest {
+
+  @After
+  public void after() {
+    BaseService.init(createNiceMock(RequestAuditLogger.class));
+  }
+
+  @Test
+  public void testSerializerFailureWhileStreaming() throws Exception {
+    BaseService.init(createNiceMock(RequestAuditLogger.class), true);
+
+    Response response = handleRequest(createFailingResult());
+    assertEquals(200, response.getStatus());
+    assertTrue(response.getEntity() instanceof StreamingOutput);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      ((StreamingOutput) response.getEntity()).write(out);
+      fail("The serialization should have failed");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+
+    // nothing was sent, so the container can still report the failure
+    assertEquals(0, out.size());
+  }
+
+  @Test
+  public void testSerializerFailureWithoutStreaming() throws Exception {
+    BaseService.init(createNiceMock(RequestAuditLogger.class), false);
+
+    Result result = createFailingResult();
+    try {
+      handleRequest(result);
+      fail("The serialization should have failed");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+  }
+
+  /**
+   * Creates a successful result which fails to be serialized after its first
+   * resource.
+   */
+  private Result createFailingResult() {
+    Map<String, Object> properties = new LinkedHashMap<>();
+    properties.put("prop1", "value1");
+    Map<String, Map<String, Object>> propertiesMap = new LinkedHashMap<>();
+    propertiesMap.put(null, properties);
+
+    Resource resource = createNiceMock(Resource.class);
+    expect(resource.getPropertiesMap()).andReturn(propertiesMap).anyTimes();
+    Resource failingResource = createNiceMock(Resource.class);
+    expect(failingResource.getPropertiesMap()).andThrow(new IllegalStateException("Unable to read the properties"));
+    replay(resource, failingResource);
+
+    Result result = new ResultImpl(new ResultStatus(ResultStatus.STATUS.OK));
+    TreeNode<Resource> resources = result.getResultTree().addChild(null, "resources");
+    resources.addChild(resource, "resource1");
+    resources.addChild(failingResource, "resource2");
+    return result;
+  }
+
+  private Response handleRequest(Result result) {
+    final Request request = createNiceMock(Request.class);
+    expect(request.process()).andReturn(result);
+
+    final RequestFactory requestFactory = createNiceMock(RequestFactory.class);
+    expect(requestFactory.createRequest(anyObject(HttpHeaders.class), anyObject(RequestBody.class),
+        anyObject(UriInfo.class), anyObject(Request.Type.class), anyObject(ResourceInstance.class)))
+        .andReturn(request).anyTimes();
+    replay(request, requestFactory);
+
+    BaseService service = new BaseService() {
+      @Override
+      RequestFactory getRequestFactory() {
+        return requestFactory;
+      }
+
+      @Override
+      protected RequestBodyParser getBodyParser() {
+        return new RequestBodyParser() {
+          @Override
+          public Set<RequestBody> parse(String body) {
+            return Collections.singleton(new RequestBody());
+          }
+        };
+      }
+    };
+
+    return service.handleRequest(createNiceMock(HttpHeaders.class), null, createNiceMock(UriInfo.class),
+        Request.Type.GET, null, createNiceMock(ResourceInstance.class));
+  }
+}
@@ -24,6 +24,7 @@ import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayOutputStream;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -243,5 +244,36 @@ public class JsonSerializerTest {
     String  json = new JsonSerializer().serialize(result).toString().replace("\r", "");
     assertEquals(expected, json);
   }
-  
+
+  @Test
+  public void testSerializeToStream() throws Exception {
+    Resource resource = createMock(Resource.class);
+
+    Result result = new ResultImpl(true);
+    result.setResultStatus(new ResultStatus(ResultStatus.STATUS.OK));
+    TreeNode<Resource> resourcesNode = result.getResultTree().addChild(null, "resources");
+    resourcesNode.addChild(resource, "resource1");
+    resourcesNode.addChild(resource, "resource2");
+
+    Map<String, Object> mapRootProps = new LinkedHashMap<>();
+    mapRootProps.put("prop1", "value1");
+
+    Map<String, Map<String, Object>> propertyMap = new LinkedHashMap<>();
+    propertyMap.put(null, mapRootProps);
+
+    expect(resource.getPropertiesMap()).andReturn(propertyMap).anyTimes();
+    expect(resource.getType()).andReturn(Resource.Type.Cluster).anyTimes();
+
+    replay(resource);
+
+    JsonSerializer serializer = new JsonSerializer();
+    String expected = serializer.serialize(result).toString();
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    serializer.serializeToStream(result).write(out);
+
+    assertEquals(expected, out.toString("UTF-8"));
+
+    verify(resource);
+  }
 }
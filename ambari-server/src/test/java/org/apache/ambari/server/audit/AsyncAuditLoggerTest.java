@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.audit;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.audit.event.AuditEvent;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.metrics.system.impl.ServerMetricsSource;
+import org.junit.Test;
+
+import com.codahale.metrics.Counter;
+
+public class AsyncAuditLoggerTest {
+
+  private static final long TIMEOUT_MS = 10000;
+
+  @Test
+  public void testEventsAreWrittenInOrderInBatches() throws Exception {
+    RecordingAuditLogger innerLogger = new RecordingAuditLogger(null);
+    AsyncAuditLogger auditLogger = new AsyncAuditLogger(innerLogger, createConfiguration(100, 10, "block"));
+
+    List<AuditEvent> events = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      AuditEvent event = new TestAuditEvent(i);
+      events.add(event);
+      auditLogger.log(event);
+    }
+
+    innerLogger.awaitEvents(50);
+    assertEquals(events, innerLogger.getEvents());
+    for (Integer batchSize : innerLogger.getBatchSizes()) {
+      assertTrue("Batch of " + batchSize + " events is too large", batchSize <= 10);
+    }
+  }
+
+  @Test
+  public void testDropPolicy() throws Exception {
+    Counter dropped = ServerMetricsSource.registry.counter("auditlog.dropped");
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingAuditLogger innerLogger = new RecordingAuditLogger(release);
+    AsyncAuditLogger auditLogger = new AsyncAuditLogger(innerLogger, createConfiguration(2, 10, "drop"));
+
+    // the worker takes the first event and waits to write it
+    auditLogger.log(new TestAuditEvent(0));
+    innerLogger.awaitWriting();
+
+    long droppedBefore = dropped.getCount();
+    auditLogger.log(new TestAuditEvent(1));
+    auditLogger.log(new TestAuditEvent(2));
+    auditLogger.log(new TestAuditEvent(3));
+    assertEquals(droppedBefore + 1, dropped.getCount());
+
+    release.countDown();
+    innerLogger.awaitEvents(3);
+    assertEquals(3, innerLogger.getEvents().size());
+    assertFalse(innerLogger.getEvents().contains(new TestAuditEvent(3)));
+  }
+
+  @Test
+  public void testBlockPolicy() throws Exception {
+    Counter blocked = ServerMetricsSource.registry.counter("auditlog.blocked");
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingAuditLogger innerLogger = new RecordingAuditLogger(release);
+    final AsyncAuditLogger auditLogger = new AsyncAuditLogger(innerLogger, createConfiguration(1, 10, "block"));
+
+    auditLogger.log(new TestAuditEvent(0));
+    innerLogger.awaitWriting();
+    auditLogger.log(new TestAuditEvent(1));
+
+    long blockedBefore = blocked.getCount();
+    Thread caller = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        auditLogger.log(new TestAuditEvent(2));
+      }
+    });
+    caller.start();
+
+    long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+    while (blocked.getCount() == blockedBefore && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(blockedBefore + 1, blocked.getCount());
+    assertTrue(caller.isAlive());
+
+    release.countDown();
+    caller.join(TIMEOUT_MS);
+    innerLogger.awaitEvents(3);
+
+    List<AuditEvent> expected = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      expected.add(new TestAuditEvent(i));
+    }
+    assertEquals(expected, innerLogger.getEvents());
+  }
+
+  private Configuration createConfiguration(int capacity, int batchSize, String overflowPolicy) {
+    Configuration configuration = createNiceMock(Configuration.class);
+    expect(configuration.isAuditLogEnabled()).andReturn(true).anyTimes();
+    expect(configuration.getAuditLoggerCapacity()).andReturn(capacity).anyTimes();
+    expect(configuration.getAuditLoggerBatchSize()).andReturn(batchSize).anyTimes();
+    expect(configuration.getAuditLoggerOverflowPolicy()).andReturn(overflowPolicy).anyTimes();
+    replay(configuration);
+    return configuration;
+  }
+
+  /**
+   * Audit logger which records the written events, optionally waiting for a latch before writing.
+   */
+  private static class RecordingAuditLogger implements AuditLogger {
+    private final CountDownLatch release;
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final List<AuditEvent> events = new ArrayList<>();
+    private final List<Integer> batchSizes = new ArrayList<>();
+
+    RecordingAuditLogger(CountDownLatch release) {
+      this.release = release;
+    }
+
+    @Override
+    public void log(AuditEvent event) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void logAll(List<AuditEvent> batch) {
+      writing.countDown();
+      try {
+        if (release != null && !release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+          throw new IllegalStateException("Writing audit events was not released");
+        }
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      synchronized (this) {
+        events.addAll(batch);
+        batchSizes.add(batch.size());
+        notifyAll();
+      }
+    }
+
+    @Override
+    public boolean isEnabled() {
+      return true;
+    }
+
+    void awaitWriting() throws InterruptedException {
+      assertTrue(writing.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    synchronized void awaitEvents(int count) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+      while (events.size() < count && System.currentTimeMillis() < deadline) {
+        wait(100);
+      }
+      assertEquals(count, events.size());
+    }
+
+    synchronized List<AuditEvent> getEvents() {
+      return new ArrayList<>(events);
+    }
+
+    synchronized List<Integer> getBatchSizes() {
+      return new ArrayList<>(batchSizes);
+    }
+  }
+
+  private static class TestAuditEvent implements AuditEvent {
+    private final int id;
+
+    TestAuditEvent(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public Long getTimestamp() {
+      return (long) id;
+    }
+
+    @Override
+    public String getAuditMessage() {
+      return "event " + id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof TestAuditEvent && ((TestAuditEvent) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+      return id;
+    }
+  }
+}
@@ -967,4 +967,25 @@ public class ConfigurationTest {
       // This is expected
     }
   }
+
+  @Test
+  public void testStompBufferConfiguration() {
+    Properties properties = new Properties();
+    properties.setProperty(Configuration.STOMP_BUFFER_FLUSH_INTERVAL.getKey(), "500");
+    properties.setProperty("stomp.buffer.request.flush.interval", "0");
+    properties.setProperty("stomp.buffer.service.flush.interval", "2000");
+    properties.setProperty(Configuration.STOMP_BUFFER_MAX_SIZE.getKey(), "-1");
+    properties.setProperty("stomp.buffer.hostcomponent.max.size", "100");
+    Configuration configuration = new Configuration(properties);
+
+    assertEquals(500L, configuration.getStompBufferFlushInterval("HOSTCOMPONENT"));
+    assertEquals(2000L, configuration.getStompBufferFlushInterval("SERVICE"));
+    assertEquals(100, configuration.getStompBufferMaxSize("HOSTCOMPONENT"));
+
+    // non positive values are reset to the defaults
+    assertEquals(Configuration.STOMP_BUFFER_FLUSH_INTERVAL.getDefaultValue().longValue(),
+        configuration.getStompBufferFlushInterval("REQUEST"));
+    assertEquals(Configuration.STOMP_BUFFER_MAX_SIZE.getDefaultValue().intValue(),
+        configuration.getStompBufferMaxSize("SERVICE"));
+  }
 }
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.controller.internal;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+import org.apache.ambari.server.controller.predicate.AndPredicate;
+import org.apache.ambari.server.controller.predicate.EqualsPredicate;
+import org.apache.ambari.server.controller.predicate.FilterPredicate;
+import org.apache.ambari.server.controller.predicate.GreaterPredicate;
+import org.apache.ambari.server.controller.predicate.NotPredicate;
+import org.apache.ambari.server.controller.predicate.OrPredicate;
+import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.Resource;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * DefaultResourcePredicateEvaluator tests.
+ */
+public class DefaultResourcePredicateEvaluatorTest {
+
+  @Test
+  public void testEvaluate() {
+    DefaultResourcePredicateEvaluator evaluator = new DefaultResourcePredicateEvaluator();
+
+    Predicate predicate = new OrPredicate(
+        new AndPredicate(new EqualsPredicate<>("Hosts/rack", "/r1"), new GreaterPredicate<>("Hosts/cpu_count", 4)),
+        new NotPredicate(new FilterPredicate("Hosts/host_name", "h.*")));
+
+    Resource resource1 = createHost("h1", "/r1", 8);
+    Resource resource2 = createHost("h2", "/r1", 2);
+    Resource resource3 = createHost("x3", "/r2", "2");
+    Resource resource4 = createHost("h4", "/r2", null);
+
+    // the map of property maps is built for resource3
+    resource3.getPropertiesMap();
+
+    for (int i = 0; i < 2; i++) {
+      Assert.assertTrue(evaluator.evaluate(predicate, resource1));
+      Assert.assertFalse(evaluator.evaluate(predicate, resource2));
+      Assert.assertTrue(evaluator.evaluate(predicate, resource3));
+      Assert.assertFalse(evaluator.evaluate(predicate, resource4));
+    }
+  }
+
+  @Test
+  public void testEvaluateOtherResource() {
+    DefaultResourcePredicateEvaluator evaluator = new DefaultResourcePredicateEvaluator();
+
+    Predicate predicate = new EqualsPredicate<>("Hosts/host_name", "h1");
+    createHost("h1", "/r1", 8);
+
+    Resource resource = createNiceMock(Resource.class);
+    expect(resource.getType()).andReturn(Resource.Type.Host).anyTimes();
+    expect(resource.getPropertyValue("Hosts/host_name")).andReturn("h1").anyTimes();
+    replay(resource);
+
+    Assert.assertTrue(evaluator.evaluate(predicate, resource));
+  }
+
+  private static Resource createHost(String hostName, String rack, Object cpuCount) {
+    Resource resource = new ResourceImpl(Resource.Type.Host);
+    resource.setProperty("Hosts/host_name", hostName);
+    resource.setProperty("Hosts/rack", rack);
+    resource.setProperty("Hosts/cpu_count", cpuCount);
+    return resource;
+  }
+}
@@ -18,6 +18,7 @@
 
 package org.apache.ambari.server.controller.internal;
 
+import java.util.Collections;
 import java.util.Map;
 
 import org.apache.ambari.server.controller.spi.Resource;
@@ -184,5 +185,95 @@ public class ResourceImplTest {
     Assert.assertTrue(resource1.equals(resource2));
     Assert.assertTrue(resource2.equals(resource1));
   }
-}
 
+  @Test
+  public void testHashCode() {
+    Resource resource1 = new ResourceImpl(Resource.Type.Cluster);
+    Resource resource2 = new ResourceImpl(Resource.Type.Cluster);
+
+    resource1.setProperty("c1/p1", "foo");
+    resource1.setProperty("c1/p2", null);
+    resource1.setProperty("p3", 1);
+    resource1.addCategory("c2");
+    resource2.setProperty("p3", 1);
+    resource2.setProperty("c1/p2", null);
+    resource2.setProperty("c1/p1", "foo");
+    resource2.addCategory("c2");
+
+    Assert.assertEquals(resource1.hashCode(), resource2.hashCode());
+
+    // the map of property maps is built for resource2 only
+    resource2.getPropertiesMap();
+    Assert.assertTrue(resource1.equals(resource2));
+    Assert.assertTrue(resource2.equals(resource1));
+    Assert.assertEquals(resource1.hashCode(), resource2.hashCode());
+  }
+
+  @Test
+  public void testSetPropertyAfterGetPropertiesMap() {
+    Resource resource = new ResourceImpl(Resource.Type.Cluster);
+
+    resource.setProperty("c1/p1", "foo");
+    resource.setProperty("c1/p2", null);
+    Map<String, Map<String, Object>> map = resource.getPropertiesMap();
+    Assert.assertTrue(map.get("c1").containsKey("p2"));
+    Assert.assertNull(resource.getPropertyValue("c1/p2"));
+
+    resource.setProperty("c1/p3", "bar");
+    Assert.assertEquals("bar", map.get("c1").get("p3"));
+
+    map.get("c1").remove("p1");
+    Assert.assertNull(resource.getPropertyValue("c1/p1"));
+    Assert.assertEquals("bar", resource.getPropertyValue("c1/p3"));
+  }
+
+  @Test
+  public void testCopyConstructorWithPropertyIds() {
+    Resource resource = new ResourceImpl(Resource.Type.Cluster);
+    resource.setProperty("c1/p1", "foo");
+    resource.setProperty("c1/p2", 1);
+    resource.setProperty("c2/p3", 1.99);
+
+    Resource copy = new ResourceImpl(resource, Collections.singleton("c1"));
+
+    Assert.assertEquals("foo", copy.getPropertyValue("c1/p1"));
+    Assert.assertEquals(1, copy.getPropertyValue("c1/p2"));
+    Assert.assertNull(copy.getPropertyValue("c2/p3"));
+    Assert.assertFalse(copy.getPropertiesMap().containsKey("c2"));
+  }
+
+  @Test
+  public void testDeclaredAndDynamicPropertyIds() {
+    // declared as the host resource provider does
+    PropertyHelper.setPropertyIds(Resource.Type.Host, HostResourceProvider.propertyIds);
+    ResourcePropertySchema schema = ResourcePropertySchema.getSchema(Resource.Type.Host);
+    int slots = schema.size();
+    Assert.assertNotNull(schema.getSlot(HostResourceProvider.HOST_HOST_NAME_PROPERTY_ID));
+
+    Resource resource = new ResourceImpl(Resource.Type.Host);
+    resource.setProperty(HostResourceProvider.HOST_HOST_NAME_PROPERTY_ID, "host1");
+    resource.setProperty(HostResourceProvider.HOST_RACK_INFO_PROPERTY_ID, null);
+    for (int i = 0; i < 5000; i++) {
+      resource.setProperty("Hosts/desired_configs/config" + i, i);
+    }
+
+    // the dynamic property ids don't get slots
+    Assert.assertEquals(slots, schema.size());
+    Assert.assertNull(schema.getSlot("Hosts/desired_configs/config1"));
+    Assert.assertNull(schema.getSlot("Hosts/desired_configs/config4999"));
+    Assert.assertNotNull(schema.getSlot(HostResourceProvider.HOST_HOST_NAME_PROPERTY_ID));
+
+    Assert.assertEquals("host1", resource.getPropertyValue(HostResourceProvider.HOST_HOST_NAME_PROPERTY_ID));
+    Assert.assertNull(resource.getPropertyValue(HostResourceProvider.HOST_RACK_INFO_PROPERTY_ID));
+    Assert.assertEquals(4999, resource.getPropertyValue("Hosts/desired_configs/config4999"));
+
+    Resource copy = new ResourceImpl(resource);
+    Assert.assertEquals(resource, copy);
+    Assert.assertEquals(resource.hashCode(), copy.hashCode());
+
+    Map<String, Map<String, Object>> map = copy.getPropertiesMap();
+    Assert.assertEquals("host1", map.get("Hosts").get("host_name"));
+    Assert.assertTrue(map.get("Hosts").containsKey("rack_info"));
+    Assert.assertEquals(5000, map.get("Hosts/desired_configs").size());
+  }
+}
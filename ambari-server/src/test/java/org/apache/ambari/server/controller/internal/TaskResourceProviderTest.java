@@ -37,6 +37,7 @@ import java.util.Set;
 import org.apache.ambari.server.Role;
 import org.apache.ambari.server.actionmanager.ExecutionCommandWrapperFactory;
 import org.apache.ambari.server.actionmanager.HostRoleCommand;
+import org.apache.ambari.server.actionmanager.HostRoleCommandOutputs;
 import org.apache.ambari.server.controller.AmbariManagementController;
 import org.apache.ambari.server.controller.RequestStatusResponse;
 import org.apache.ambari.server.controller.spi.Predicate;
@@ -191,7 +192,8 @@ public class TaskResourceProviderTest {
     hostRoleCommandEntity.setCustomCommandName("customCommandName");
     hostRoleCommandEntity.setCommandDetail("commandDetail");
     hostRoleCommandEntity.setOpsDisplayName("opsDisplayName");
-    commands.add(new HostRoleCommand(hostRoleCommandEntity, hostDAO, executionCommandDAO, ecwFactory));
+    commands.add(new HostRoleCommand(hostRoleCommandEntity, hostDAO, executionCommandDAO, ecwFactory,
+        m_injector.getInstance(HostRoleCommandOutputs.class)));
 
     // set expectations
     expect(hostRoleCommandDAO.findAll(EasyMock.anyObject(Request.class),
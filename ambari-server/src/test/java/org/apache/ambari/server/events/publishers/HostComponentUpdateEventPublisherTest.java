@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.events.publishers;
+
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.events.HostComponentUpdate;
+import org.apache.ambari.server.events.HostComponentsUpdateEvent;
+import org.apache.ambari.server.orm.entities.HostComponentStateEntity;
+import org.apache.ambari.server.orm.entities.HostEntity;
+import org.apache.ambari.server.state.MaintenanceState;
+import org.apache.ambari.server.state.State;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.eventbus.EventBus;
+
+/**
+ * Tests buffering of {@link HostComponentsUpdateEvent}s by
+ * {@link HostComponentUpdateEventPublisher}.
+ */
+public class HostComponentUpdateEventPublisherTest {
+
+  private HostComponentUpdateEventPublisher publisher;
+  private EventBus eventBus;
+
+  @Before
+  public void setup() throws Exception {
+    Configuration configuration = createNiceMock(Configuration.class);
+    // keep the scheduled flush out of the way of the test
+    expect(configuration.getStompBufferFlushInterval(anyString())).andReturn(60000L).anyTimes();
+    expect(configuration.getStompBufferMaxSize(anyString())).andReturn(100).anyTimes();
+    replay(configuration);
+
+    publisher = new HostComponentUpdateEventPublisher(new STOMPUpdatePublisher(), configuration);
+    eventBus = createNiceMock(EventBus.class);
+  }
+
+  @Test
+  public void testUpdatesOfSameHostComponentAreMerged() {
+    publisher.publish(new HostComponentsUpdateEvent(Arrays.asList(
+        statusUpdate("h1", "DATANODE", State.INSTALLED, State.STARTING),
+        statusUpdate("h2", "DATANODE", State.INSTALLED, State.STARTING))), eventBus);
+    publisher.publish(new HostComponentsUpdateEvent(Collections.singletonList(
+        statusUpdate("h1", "DATANODE", State.STARTING, State.STARTED))), eventBus);
+    publisher.publish(new HostComponentsUpdateEvent(Collections.singletonList(
+        HostComponentUpdate.createHostComponentMaintenanceStatusUpdate(1L, "HDFS", "h1", "DATANODE",
+            MaintenanceState.ON))), eventBus);
+
+    List<HostComponentsUpdateEvent> buffered = publisher.retrieveBuffer();
+    assertEquals(2, buffered.size());
+
+    HostComponentUpdate h1 = buffered.get(0).getHostComponentUpdates().get(0);
+    assertEquals("h1", h1.getHostName());
+    assertEquals(State.INSTALLED, h1.getPreviousState());
+    assertEquals(State.STARTED, h1.getCurrentState());
+    assertEquals(MaintenanceState.ON, h1.getMaintenanceState());
+
+    HostComponentUpdate h2 = buffered.get(1).getHostComponentUpdates().get(0);
+    assertEquals("h2", h2.getHostName());
+    assertEquals(State.STARTING, h2.getCurrentState());
+
+    assertTrue(publisher.retrieveBuffer().isEmpty());
+  }
+
+  @Test
+  public void testStateTransitionAfterOtherUpdate() {
+    publisher.publish(new HostComponentsUpdateEvent(Collections.singletonList(
+        HostComponentUpdate.createHostComponentStaleConfigsStatusUpdate(1L, "HDFS", "h1", "DATANODE",
+            Boolean.TRUE))), eventBus);
+    publisher.publish(new HostComponentsUpdateEvent(Collections.singletonList(
+        statusUpdate("h1", "DATANODE", State.INSTALLED, State.STARTING))), eventBus);
+
+    List<HostComponentsUpdateEvent> buffered = publisher.retrieveBuffer();
+    assertEquals(1, buffered.size());
+
+    HostComponentUpdate h1 = buffered.get(0).getHostComponentUpdates().get(0);
+    assertEquals(State.INSTALLED, h1.getPreviousState());
+    assertEquals(State.STARTING, h1.getCurrentState());
+    assertEquals(Boolean.TRUE, h1.getStaleConfigs());
+  }
+
+  private HostComponentUpdate statusUpdate(String hostName, String componentName, State previousState,
+                                           State currentState) {
+    HostEntity hostEntity = new HostEntity();
+    hostEntity.setHostName(hostName);
+
+    HostComponentStateEntity stateEntity = new HostComponentStateEntity();
+    stateEntity.setClusterId(1L);
+    stateEntity.setServiceName("HDFS");
+    stateEntity.setComponentName(componentName);
+    stateEntity.setCurrentState(currentState);
+    stateEntity.setHostEntity(hostEntity);
+
+    return HostComponentUpdate.createHostComponentStatusUpdate(stateEntity, previousState);
+  }
+}
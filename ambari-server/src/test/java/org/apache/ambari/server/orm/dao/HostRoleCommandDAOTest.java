@@ -20,6 +20,7 @@ package org.apache.ambari.server.orm.dao;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.persistence.EntityManager;
@@ -43,7 +44,9 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.google.inject.Guice;
+import com.google.inject.Inject;
 import com.google.inject.Injector;
+import com.google.inject.persist.Transactional;
 
 import junit.framework.Assert;
 
@@ -167,6 +170,56 @@ public class HostRoleCommandDAOTest {
     }
   }
 
+  /**
+   * Tests that the cached status summary of a request only reflects the
+   * statuses merged by transactions which were committed.
+   */
+  @Test
+  public void testStatusSummaryIsNotUpdatedByRolledBackTransaction() {
+    OrmTestHelper helper = m_injector.getInstance(OrmTestHelper.class);
+    helper.createDefaultData();
+
+    Long requestId = Long.valueOf(100L);
+    ClusterEntity clusterEntity = m_clusterDAO.findByName("test_cluster1");
+
+    RequestEntity requestEntity = new RequestEntity();
+    requestEntity.setRequestId(requestId);
+    requestEntity.setClusterId(clusterEntity.getClusterId());
+    requestEntity.setStages(new ArrayList<>());
+    m_requestDAO.create(requestEntity);
+
+    HostEntity host = m_hostDAO.findByName("test_host1");
+    host.setHostRoleCommandEntities(new ArrayList<>());
+    createStage(1L, 2, host, requestEntity, HostRoleStatus.PENDING);
+
+    // populate the cache
+    Map<HostRoleStatus, Integer> counts = m_hostRoleCommandDAO.findAggregateCounts(requestId).get(1L).getCounts();
+    Assert.assertEquals(Integer.valueOf(2), counts.get(HostRoleStatus.PENDING));
+
+    HostRoleCommandEntity task = m_hostRoleCommandDAO.findByRequest(requestId).get(0);
+    task.setStatus(HostRoleStatus.COMPLETED);
+
+    TaskMerger taskMerger = m_injector.getInstance(TaskMerger.class);
+    try {
+      taskMerger.mergeAndFail(task);
+      Assert.fail("The transaction should have been rolled back");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+
+    counts = m_hostRoleCommandDAO.findAggregateCounts(requestId).get(1L).getCounts();
+    Assert.assertEquals(Integer.valueOf(2), counts.get(HostRoleStatus.PENDING));
+    Assert.assertEquals(Integer.valueOf(0), counts.get(HostRoleStatus.COMPLETED));
+
+    task = m_hostRoleCommandDAO.findByPK(task.getTaskId());
+    task.setStatus(HostRoleStatus.COMPLETED);
+    m_hostRoleCommandDAO.merge(task);
+
+    counts = m_hostRoleCommandDAO.findAggregateCounts(requestId).get(1L).getCounts();
+    Assert.assertEquals(Integer.valueOf(1), counts.get(HostRoleStatus.PENDING));
+    Assert.assertEquals(Integer.valueOf(1), counts.get(HostRoleStatus.COMPLETED));
+  }
+
   /**
    * Creates a single stage with the specified number of commands.
    *
@@ -233,4 +286,18 @@ public class HostRoleCommandDAOTest {
       m_stageDAO.merge(stageEntity);
     }
   }
+
+  /**
+   * Merges a task in a transaction which is then rolled back.
+   */
+  public static class TaskMerger {
+    @Inject
+    private HostRoleCommandDAO hostRoleCommandDAO;
+
+    @Transactional
+    public void mergeAndFail(HostRoleCommandEntity task) {
+      hostRoleCommandDAO.merge(task);
+      throw new IllegalStateException("Rolling back the merge of task " + task.getTaskId());
+    }
+  }
 }
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.orm.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.apache.ambari.server.actionmanager.HostRoleStatus;
+import org.junit.Test;
+
+/**
+ * Tests {@link RequestStatusSummary}.
+ */
+public class RequestStatusSummaryTest {
+
+  @Test
+  public void testSummaries() {
+    RequestStatusSummary summary = new RequestStatusSummary();
+    summary.addTask(1L, 1L, HostRoleStatus.COMPLETED, 100L, 200L, false);
+    summary.addTask(2L, 1L, HostRoleStatus.FAILED, 50L, 300L, false);
+    summary.addTask(3L, 2L, HostRoleStatus.PENDING, -1L, -1L, true);
+
+    Map<Long, HostRoleCommandStatusSummaryDTO> summaries = summary.getSummaries();
+    assertEquals(2, summaries.size());
+
+    HostRoleCommandStatusSummaryDTO stage1 = summaries.get(1L);
+    assertEquals(2, stage1.getTaskTotal());
+    assertEquals(1, stage1.getCounts().get(HostRoleStatus.COMPLETED).intValue());
+    assertEquals(1, stage1.getCounts().get(HostRoleStatus.FAILED).intValue());
+    assertEquals(0, stage1.getCounts().get(HostRoleStatus.PENDING).intValue());
+    assertEquals(Long.valueOf(50L), stage1.getStartTime());
+    assertEquals(Long.valueOf(300L), stage1.getEndTime());
+    assertFalse(stage1.isStageSkippable());
+
+    HostRoleCommandStatusSummaryDTO stage2 = summaries.get(2L);
+    assertEquals(1, stage2.getCounts().get(HostRoleStatus.PENDING).intValue());
+    assertTrue(stage2.isStageSkippable());
+  }
+
+  @Test
+  public void testUpdateTask() {
+    RequestStatusSummary summary = new RequestStatusSummary();
+    summary.addTask(1L, 1L, HostRoleStatus.PENDING, -1L, -1L, false);
+    summary.addTask(2L, 1L, HostRoleStatus.PENDING, -1L, -1L, false);
+    summary.addTask(3L, 2L, HostRoleStatus.PENDING, -1L, -1L, false);
+
+    Map<Long, HostRoleCommandStatusSummaryDTO> before = summary.getSummaries();
+
+    assertTrue(summary.updateTask(1L, HostRoleStatus.IN_PROGRESS, 100L, -1L));
+    Map<Long, HostRoleCommandStatusSummaryDTO> after = summary.getSummaries();
+
+    // only the summary of the updated stage is rebuilt
+    assertNotSame(before.get(1L), after.get(1L));
+    assertSame(before.get(2L), after.get(2L));
+
+    HostRoleCommandStatusSummaryDTO stage1 = after.get(1L);
+    assertEquals(1, stage1.getCounts().get(HostRoleStatus.PENDING).intValue());
+    assertEquals(1, stage1.getCounts().get(HostRoleStatus.IN_PROGRESS).intValue());
+    assertEquals(2, stage1.getTaskTotal());
+    assertEquals(Long.valueOf(-1L), stage1.getStartTime());
+
+    // an update which changes nothing keeps the summary
+    assertTrue(summary.updateTask(1L, HostRoleStatus.IN_PROGRESS, 100L, -1L));
+    assertSame(stage1, summary.getSummaries().get(1L));
+
+    assertTrue(summary.updateTask(1L, HostRoleStatus.COMPLETED, 100L, 400L));
+    assertTrue(summary.updateTask(2L, HostRoleStatus.COMPLETED, 150L, 350L));
+    stage1 = summary.getSummaries().get(1L);
+    assertEquals(2, stage1.getCounts().get(HostRoleStatus.COMPLETED).intValue());
+    assertEquals(0, stage1.getCounts().get(HostRoleStatus.IN_PROGRESS).intValue());
+    assertEquals(Long.valueOf(100L), stage1.getStartTime());
+    assertEquals(Long.valueOf(400L), stage1.getEndTime());
+  }
+
+  @Test
+  public void testUpdateUnknownTask() {
+    RequestStatusSummary summary = new RequestStatusSummary();
+    summary.addTask(1L, 1L, HostRoleStatus.PENDING, -1L, -1L, false);
+
+    assertFalse(summary.updateTask(2L, HostRoleStatus.COMPLETED, 100L, 200L));
+    assertEquals(1, summary.getSummaries().get(1L).getTaskTotal());
+  }
+}
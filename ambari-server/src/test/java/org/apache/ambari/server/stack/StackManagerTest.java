@@ -27,6 +27,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.FileReader;
@@ -39,6 +40,11 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.Role;
@@ -63,10 +69,13 @@ import org.apache.ambari.server.state.stack.ConfigUpgradePack;
 import org.apache.ambari.server.state.stack.MetricDefinition;
 import org.apache.ambari.server.state.stack.OsFamily;
 import org.apache.ambari.server.state.stack.UpgradePack;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.easymock.EasyMock;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.springframework.util.Assert;
 
 import com.google.gson.Gson;
@@ -85,6 +94,9 @@ public class StackManagerTest {
   private static ExtensionDAO extensionDao;
   private static ExtensionLinkDAO linkDao;
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @BeforeClass
   public static void initStack() throws Exception{
     stackManager = createTestStackManager();
@@ -1039,4 +1051,105 @@ public class StackManagerTest {
     latestUri = stack.getRepositoryXml().getLatestURI();
     assertTrue(latestUri == null);
   }
+
+  @Test
+  public void testConcurrentAndSequentialParsingMatch() throws Exception {
+    File stackRoot = new File(ClassLoader.getSystemClassLoader().getResource("stacks").getPath());
+
+    StackManager concurrent = createStackManager(stackRoot, false);
+    StackManager sequential = createStackManager(stackRoot, true);
+
+    Map<String, String> stacks = describeStacks(concurrent);
+    assertEquals(21, stacks.size());
+    assertEquals(describeStacks(sequential), stacks);
+  }
+
+  @Test
+  public void testConcurrentAndSequentialParsingFailTheSameWay() throws Exception {
+    File stackRoot = temporaryFolder.newFolder("stacks");
+    File validStack = new File(ClassLoader.getSystemClassLoader().getResource("single_stack").getPath(), "ABC/1.0.0");
+    FileUtils.copyDirectory(validStack, new File(stackRoot, "ABC/1.0.0"));
+    FileUtils.copyDirectory(validStack, new File(stackRoot, "ABC/2.0.0"));
+    FileUtils.copyDirectory(validStack, new File(stackRoot, "ABC/3.0.0"));
+
+    // one of the stacks cannot be parsed
+    File upgradePack = new File(stackRoot, "ABC/2.0.0/upgrades/upgrade-3.0.0.xml");
+    FileUtils.writeStringToFile(upgradePack, "<upgrade xmlns:xsi=", "UTF-8");
+
+    String concurrentError = null;
+    try {
+      createStackManager(stackRoot, false);
+      fail("The stacks should not have been parsed");
+    } catch (AmbariException e) {
+      concurrentError = e.getMessage();
+    }
+
+    String sequentialError = null;
+    try {
+      createStackManager(stackRoot, true);
+      fail("The stacks should not have been parsed");
+    } catch (AmbariException e) {
+      sequentialError = e.getMessage();
+    }
+
+    assertTrue(concurrentError, concurrentError.contains(upgradePack.getAbsolutePath()));
+    assertEquals(sequentialError, concurrentError);
+  }
+
+  /**
+   * Creates a stack manager for the stacks, which parses them either on the
+   * default pool or one at a time.
+   */
+  private static StackManager createStackManager(File stackRoot, final boolean sequential) throws AmbariException {
+    MetainfoDAO metaInfoDao = createNiceMock(MetainfoDAO.class);
+    StackDAO stackDao = createNiceMock(StackDAO.class);
+    ExtensionDAO extensionDao = createNiceMock(ExtensionDAO.class);
+    ExtensionLinkDAO linkDao = createNiceMock(ExtensionLinkDAO.class);
+    ActionMetadata actionMetadata = createNiceMock(ActionMetadata.class);
+    Configuration config = createNiceMock(Configuration.class);
+    ExtensionEntity extensionEntity = createNiceMock(ExtensionEntity.class);
+
+    expect(config.getSharedResourcesDirPath()).andReturn(
+        ClassLoader.getSystemClassLoader().getResource("").getPath()).anyTimes();
+    expect(extensionDao.find(EasyMock.anyObject(String.class),
+        EasyMock.anyObject(String.class))).andReturn(extensionEntity).anyTimes();
+    List<ExtensionLinkEntity> list = Collections.emptyList();
+    expect(linkDao.findByStack(EasyMock.anyObject(String.class),
+        EasyMock.anyObject(String.class))).andReturn(list).anyTimes();
+
+    replay(config, metaInfoDao, stackDao, extensionDao, linkDao, actionMetadata);
+
+    OsFamily osFamily = new OsFamily(config);
+    AmbariManagementHelper helper = new AmbariManagementHelper(stackDao, extensionDao, linkDao);
+
+    return new StackManager(stackRoot, null, null, osFamily, false, metaInfoDao, actionMetadata,
+        stackDao, extensionDao, linkDao, helper) {
+      @Override
+      protected ExecutorService createParseExecutor() {
+        return sequential ? Executors.newSingleThreadExecutor() : super.createParseExecutor();
+      }
+    };
+  }
+
+  /**
+   * Describes each stack by its validity, parent, errors, services and
+   * components, by stack name and version.
+   */
+  private static Map<String, String> describeStacks(StackManager stackManager) {
+    Map<String, String> stacks = new TreeMap<>();
+    for (StackInfo stack : stackManager.getStacks()) {
+      Map<String, Set<String>> components = new TreeMap<>();
+      for (ServiceInfo service : stack.getServices()) {
+        Set<String> names = new TreeSet<>();
+        for (ComponentInfo component : service.getComponents()) {
+          names.add(component.getName());
+        }
+        components.put(service.getName(), names);
+      }
+
+      stacks.put(stack.getName() + "-" + stack.getVersion(), String.format("valid=%s parent=%s errors=%s services=%s",
+          stack.isValid(), stack.getParentStackVersion(), new TreeSet<>(stack.getErrors()), components));
+    }
+    return stacks;
+  }
 }
@@ -1039,6 +1039,44 @@ public class ConfigHelperTest {
       verify(sch);
   }
 
+  @Test
+  public void testCalculateIsStaleConfigsIgnoresUnrelatedTypes() throws Exception {
+    Map<String, HostConfig> schReturn = new HashMap<>();
+    HostConfig hc = new HostConfig();
+    hc.setDefaultVersionTag("version1");
+    schReturn.put("flume-conf", hc);
+
+    ServiceComponent sc = createNiceMock(ServiceComponent.class);
+    ServiceComponentHost sch = createNiceMock(ServiceComponentHost.class);
+    expect(sc.getDesiredStackId()).andReturn(cluster.getDesiredStackVersion()).anyTimes();
+
+    expect(sch.getActualConfigs()).andReturn(schReturn).anyTimes();
+    expect(sch.getHostName()).andReturn("h1").anyTimes();
+    expect(sch.getClusterId()).andReturn(cluster.getClusterId()).anyTimes();
+    expect(sch.getServiceName()).andReturn("FLUME").anyTimes();
+    expect(sch.getServiceComponentName()).andReturn("FLUME_HANDLER").anyTimes();
+    expect(sch.getServiceComponent()).andReturn(sc).anyTimes();
+
+    replay(sc, sch);
+
+    boolean stale = configHelper.isStaleConfigs(sch, null);
+
+    // FLUME doesn't depend on hdfs-site, so an outdated one doesn't matter
+    HostConfig hdfsSite = new HostConfig();
+    hdfsSite.setDefaultVersionTag("version0");
+    schReturn.put("hdfs-site", hdfsSite);
+    Assert.assertEquals(stale, configHelper.isStaleConfigs(sch, null));
+
+    StackId stackId = cluster.getDesiredStackVersion();
+    ServiceInfo serviceInfo = metaInfo.getService(stackId.getStackName(), stackId.getStackVersion(), "FLUME");
+    Set<String> configTypes = configHelper.getComponentConfigTypes(serviceInfo, "FLUME_HANDLER");
+    Assert.assertTrue(configTypes.contains("flume-conf"));
+    Assert.assertFalse(configTypes.contains("hdfs-site"));
+
+    // the index is reused
+    Assert.assertSame(configTypes, configHelper.getComponentConfigTypes(serviceInfo, "FLUME_HANDLER"));
+  }
+
   @Test
   public void testCalculateRefreshCommands() throws Exception {
 
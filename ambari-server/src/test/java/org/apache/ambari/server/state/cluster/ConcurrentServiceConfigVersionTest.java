@@ -37,6 +37,7 @@ import org.apache.ambari.server.orm.dao.ServiceConfigDAO;
 import org.apache.ambari.server.orm.entities.RepositoryVersionEntity;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
+import org.apache.ambari.server.state.ConfigFactory;
 import org.apache.ambari.server.state.Host;
 import org.apache.ambari.server.state.Service;
 import org.apache.ambari.server.state.ServiceComponent;
@@ -88,6 +89,9 @@ public class ConcurrentServiceConfigVersionTest {
   @Inject
   private ServiceConfigDAO serviceConfigDAO;
 
+  @Inject
+  private ConfigFactory configFactory;
+
   private StackId stackId = new StackId("HDP-0.1");
 
   /**
@@ -164,6 +168,83 @@ public class ConcurrentServiceConfigVersionTest {
     Assert.assertEquals(maxVersion + 1, nextVersion);
   }
 
+  /**
+   * Tests that configurations created while service config versions are being
+   * created are all cached and can be looked up.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testConcurrentConfigsAndServiceConfigVersions() throws Exception {
+    List<ConcurrentConfigThread> configThreads = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+      ConcurrentConfigThread configThread = new ConcurrentConfigThread(cluster, configFactory, "config-" + i);
+      configThreads.add(configThread);
+      threads.add(configThread);
+      threads.add(new ConcurrentServiceConfigThread(cluster));
+    }
+
+    for (Thread thread : threads) {
+      thread.start();
+    }
+
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    for (ConcurrentConfigThread configThread : configThreads) {
+      Assert.assertNull(configThread.failure);
+    }
+
+    Assert.assertEquals(NUMBER_OF_THREADS * NUMBER_OF_SERVICE_CONFIG_VERSIONS,
+        cluster.getConfigsByType("hdfs-site").size());
+
+    long nextVersion = serviceConfigDAO.findNextServiceConfigVersion(
+        cluster.getClusterId(), "HDFS");
+
+    Assert.assertEquals(NUMBER_OF_THREADS * NUMBER_OF_SERVICE_CONFIG_VERSIONS + 1, nextVersion);
+  }
+
+  private final static class ConcurrentConfigThread extends Thread {
+
+    private final Cluster cluster;
+    private final ConfigFactory configFactory;
+    private final String tagPrefix;
+
+    /**
+     * The first error, either thrown or due to a config not being found.
+     */
+    private volatile Throwable failure;
+
+    private ConcurrentConfigThread(Cluster cluster, ConfigFactory configFactory, String tagPrefix) {
+      this.cluster = cluster;
+      this.configFactory = configFactory;
+      this.tagPrefix = tagPrefix;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      try {
+        for (int i = 0; i < NUMBER_OF_SERVICE_CONFIG_VERSIONS; i++) {
+          String tag = tagPrefix + "-" + i;
+          Map<String, String> properties = new HashMap<>();
+          properties.put("key", tag);
+          configFactory.createNew(cluster, "hdfs-site", tag, properties, new HashMap<>());
+
+          if (null == cluster.getConfig("hdfs-site", tag)) {
+            throw new AssertionError("Config " + tag + " was not cached");
+          }
+        }
+      } catch (Throwable throwable) {
+        failure = throwable;
+      }
+    }
+  }
+
   private final static class ConcurrentServiceConfigThread extends Thread {
 
     private Cluster cluster = null;
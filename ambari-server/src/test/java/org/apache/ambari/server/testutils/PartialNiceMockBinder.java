@@ -224,7 +224,7 @@ public class PartialNiceMockBinder implements Module {
 
     public Builder addActionDBAccessorConfigsBindings() {
       configurers.add((Binder binder) ->
-          binder.bindConstant().annotatedWith(Names.named("executionCommandCacheSize")).to(10000L)
+          binder.bindConstant().annotatedWith(Names.named("executionCommandCacheWeight")).to(104857600L)
       );
       return this;
     }